@@ -0,0 +1,55 @@
+package com.absurdrambler.apcproject.jmh;
+
+import com.absurdrambler.apcproject.ApcprojectApplication;
+import com.absurdrambler.apcproject.entity.Task;
+import com.absurdrambler.apcproject.entity.User;
+import com.absurdrambler.apcproject.repository.TaskRepository;
+import com.absurdrambler.apcproject.service.UserService;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The application running on the embedded test database, with the "user" account
+ * assigned a seeded set of tasks
+ */
+@State(Scope.Benchmark)
+public class ApplicationState {
+
+    static final int TASK_COUNT = 500;
+
+    ConfigurableApplicationContext context;
+    User user;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(ApcprojectApplication.class)
+                .run("--server.port=0", "--spring.main.banner-mode=off", "--logging.level.root=WARN");
+        user = context.getBean(UserService.class).findByUsername("user").orElseThrow();
+        TaskRepository taskRepository = context.getBean(TaskRepository.class);
+        List<Task> tasks = new ArrayList<>(TASK_COUNT);
+        for (long id = 1; id <= TASK_COUNT; id++) {
+            Task task = TaskFixtures.task(id, user);
+            task.setId(null);
+            task.setVersion(null);
+            tasks.add(task);
+        }
+        taskRepository.saveAll(tasks);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+}
@@ -0,0 +1,122 @@
+package com.absurdrambler.apcproject.jmh;
+
+import com.absurdrambler.apcproject.dto.TaskPageResponse;
+import com.absurdrambler.apcproject.dto.TaskResponse;
+import com.absurdrambler.apcproject.entity.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.runner.IterationType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bytes on the wire and encode time for a page of 1000 tasks in each response format,
+ * with and without the gzip compression Tomcat applies. The bytes per page are reported
+ * as the secondary result encode:bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskEncodingBenchmark {
+
+    private static final int PAGE_SIZE = 1000;
+
+    @Param({"json", "json+gzip", "smile", "smile+gzip"})
+    private String format;
+
+    private ObjectMapper objectMapper;
+    private boolean gzip;
+    private TaskPageResponse<TaskResponse> page;
+
+    @Setup
+    public void setUp() throws IOException {
+        // Configured like the application's JSON and Smile converters
+        objectMapper = format.startsWith("smile")
+                ? Jackson2ObjectMapperBuilder.json().factory(SmileFactory.builder()
+                        .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                        .build()).build()
+                : Jackson2ObjectMapperBuilder.json().build();
+        gzip = format.endsWith("+gzip");
+        User assignee = TaskFixtures.user();
+        List<TaskResponse> tasks = new ArrayList<>(PAGE_SIZE);
+        for (long id = 1; id <= PAGE_SIZE; id++) {
+            tasks.add(TaskResponse.fromEntity(TaskFixtures.task(id, assignee)));
+        }
+        page = new TaskPageResponse<>(tasks, "cursor");
+    }
+
+    @Benchmark
+    public long encode(WireSize wireSize) throws IOException {
+        CountingOutputStream wire = new CountingOutputStream();
+        if (gzip) {
+            try (OutputStream out = new GZIPOutputStream(wire, 8192)) {
+                objectMapper.writeValue(out, page);
+            }
+        } else {
+            objectMapper.writeValue(wire, page);
+        }
+        if (wireSize.counting) {
+            wireSize.bytes = wire.count;
+        }
+        return wire.count;
+    }
+
+    /**
+     * Bytes on the wire per page. JMH sums event counters over the measurement iterations,
+     * and every encode writes the same bytes, so only the first measurement iteration reports them.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class WireSize {
+        public long bytes;
+        private boolean counting;
+        private int measurements;
+
+        @Setup(Level.Iteration)
+        public void startIteration(IterationParams iteration) {
+            bytes = 0;
+            counting = iteration.getType() == IterationType.MEASUREMENT && measurements++ == 0;
+        }
+    }
+
+    /**
+     * Discards what is written, counting the bytes
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
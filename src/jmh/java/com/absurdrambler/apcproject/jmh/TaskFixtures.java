@@ -0,0 +1,29 @@
+package com.absurdrambler.apcproject.jmh;
+
+import com.absurdrambler.apcproject.entity.Task;
+import com.absurdrambler.apcproject.entity.User;
+
+import java.time.LocalDate;
+
+/**
+ * Task data shaped like a typical user's list
+ */
+final class TaskFixtures {
+
+    private TaskFixtures() {
+    }
+
+    static User user() {
+        User user = new User("user", "{bcrypt}hash", "ROLE_USER");
+        user.setId(1L);
+        return user;
+    }
+
+    static Task task(long id, User assignee) {
+        Task task = new Task("Task " + id, "Description of task " + id + ", long enough to be realistic",
+                LocalDate.now().plusDays(id % 30), id % 4 == 0, id % 3 == 0, assignee);
+        task.setId(id);
+        task.setVersion(id % 5);
+        return task;
+    }
+}
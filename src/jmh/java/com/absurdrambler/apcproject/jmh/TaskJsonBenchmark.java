@@ -0,0 +1,57 @@
+package com.absurdrambler.apcproject.jmh;
+
+import com.absurdrambler.apcproject.dto.TaskResponse;
+import com.absurdrambler.apcproject.entity.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of serializing task lists with an ObjectMapper configured like the application's
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskJsonBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+    private List<TaskResponse> tasks;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        User assignee = TaskFixtures.user();
+        tasks = new ArrayList<>(size);
+        for (long id = 1; id <= size; id++) {
+            tasks.add(TaskResponse.fromEntity(TaskFixtures.task(id, assignee)));
+        }
+    }
+
+    @Benchmark
+    public void serialize() throws IOException {
+        // Writing to a discarding stream measures serialization, not buffer growth
+        objectMapper.writeValue(OutputStream.nullOutputStream(), tasks);
+    }
+}
@@ -0,0 +1,40 @@
+package com.absurdrambler.apcproject.jmh;
+
+import com.absurdrambler.apcproject.dto.TaskResponse;
+import com.absurdrambler.apcproject.entity.Task;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of mapping a task entity to its response DTO
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskMappingBenchmark {
+
+    private Task task;
+
+    @Setup
+    public void setUp() {
+        task = TaskFixtures.task(1, TaskFixtures.user());
+    }
+
+    @Benchmark
+    public TaskResponse fromEntity() {
+        return TaskResponse.fromEntity(task);
+    }
+}
@@ -0,0 +1,59 @@
+package com.absurdrambler.apcproject.jmh;
+
+import com.absurdrambler.apcproject.repository.TaskPage;
+import com.absurdrambler.apcproject.repository.TaskSort;
+import com.absurdrambler.apcproject.service.TaskService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the task list service methods, one page of 50 at a time, against the embedded database
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskServiceBenchmark {
+
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"false", "true"})
+    private boolean summary;
+
+    private ApplicationState application;
+    private TaskService taskService;
+
+    @Setup
+    public void setUp(ApplicationState application) {
+        this.application = application;
+        this.taskService = application.getBean(TaskService.class);
+    }
+
+    @Benchmark
+    public TaskPage<?> assignedToMe() {
+        return taskService.getTasksAssignedToUser(application.user, null, TaskSort.DUE_DATE_ASC, PAGE_SIZE, summary, false);
+    }
+
+    @Benchmark
+    public TaskPage<?> important() {
+        return taskService.getImportantTasksForUser(application.user, null, TaskSort.DUE_DATE_ASC, PAGE_SIZE, summary, false);
+    }
+
+    @Benchmark
+    public TaskPage<?> daily() {
+        return taskService.getDailyTasksForUser(application.user, null, TaskSort.DUE_DATE_ASC, PAGE_SIZE, summary, false);
+    }
+}
@@ -0,0 +1,49 @@
+package com.absurdrambler.apcproject.jmh;
+
+import com.absurdrambler.apcproject.security.UserPrincipalCache;
+import com.absurdrambler.apcproject.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of loading a user for authentication, with the principal cache hit and missed
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserServiceBenchmark {
+
+    private UserService userService;
+    private UserPrincipalCache principalCache;
+
+    @Setup
+    public void setUp(ApplicationState application) {
+        userService = application.getBean(UserService.class);
+        principalCache = application.getBean(UserPrincipalCache.class);
+    }
+
+    @Benchmark
+    public UserDetails loadUserByUsername() {
+        return userService.loadUserByUsername("user");
+    }
+
+    @Benchmark
+    public UserDetails loadUserByUsernameUncached() {
+        principalCache.evict("user");
+        return userService.loadUserByUsername("user");
+    }
+}
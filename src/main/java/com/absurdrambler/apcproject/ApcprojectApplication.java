@@ -2,11 +2,13 @@ package com.absurdrambler.apcproject;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Main application class for the Microsoft To-Do inspired web application
  */
 @SpringBootApplication
+@EnableScheduling
 public class ApcprojectApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,10 @@
+package com.absurdrambler.apcproject.cache;
+
+/**
+ * Notice that an entity changed on one application instance, so others evict their cached copies
+ * @param origin the instance that committed the change
+ * @param entityName the changed entity's name
+ * @param id the changed entity's ID, or null when any entity of the type may have changed
+ */
+public record CacheInvalidation(String origin, String entityName, Long id) {
+}
@@ -0,0 +1,22 @@
+package com.absurdrambler.apcproject.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Transport carrying cache invalidations between application instances. Implementations
+ * deliver every published invalidation to every subscribed instance, including the publisher.
+ */
+public interface CacheInvalidationBus {
+
+    /**
+     * Send an invalidation to all instances
+     * @param invalidation the invalidation to send
+     */
+    void publish(CacheInvalidation invalidation);
+
+    /**
+     * Receive the invalidations sent by all instances
+     * @param listener called for each invalidation
+     */
+    void subscribe(Consumer<CacheInvalidation> listener);
+}
@@ -0,0 +1,21 @@
+package com.absurdrambler.apcproject.cache;
+
+/**
+ * Names of the Hibernate second-level cache regions
+ */
+public final class CacheRegions {
+
+    public static final String USERS = "users";
+    public static final String TASKS = "tasks";
+
+    // Query results are kept per entity type, so a change to one type only evicts its own queries
+    public static final String USER_QUERIES = "user-queries";
+    public static final String TASK_QUERIES = "task-queries";
+
+    // Regions Hibernate always creates when the query cache is on
+    public static final String DEFAULT_QUERIES = "default-query-results-region";
+    public static final String UPDATE_TIMESTAMPS = "default-update-timestamps-region";
+
+    private CacheRegions() {
+    }
+}
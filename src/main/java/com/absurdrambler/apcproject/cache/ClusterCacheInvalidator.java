@@ -0,0 +1,159 @@
+package com.absurdrambler.apcproject.cache;
+
+import com.absurdrambler.apcproject.entity.Task;
+import com.absurdrambler.apcproject.entity.User;
+import com.absurdrambler.apcproject.security.UserPrincipalCache;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Keeps the second-level caches of several application instances consistent. Each committed
+ * change to a cached entity is published on the invalidation bus; other instances evict the
+ * entity, the query results for its type and, for users, the cached principal. An instance
+ * that reads a row just before a remote change commits may still cache the old state, so
+ * every region also expires its entries.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ClusterCacheInvalidator implements PostCommitInsertEventListener, PostCommitUpdateEventListener,
+        PostCommitDeleteEventListener {
+
+    private static final Map<String, String> QUERY_REGIONS = Map.of(
+            Task.class.getName(), CacheRegions.TASK_QUERIES,
+            User.class.getName(), CacheRegions.USER_QUERIES);
+
+    private final String origin = UUID.randomUUID().toString();
+    private final EntityManagerFactory entityManagerFactory;
+    private final CacheInvalidationBus bus;
+    private final UserPrincipalCache principalCache;
+
+    private Cache cache;
+
+    @PostConstruct
+    public void register() {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        cache = sessionFactory.getCache();
+        EventListenerRegistry listeners = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+        listeners.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        listeners.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        listeners.appendListeners(EventType.POST_COMMIT_DELETE, this);
+        bus.subscribe(this::evict);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        publish(event.getPersister(), event.getId());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        publish(event.getPersister(), event.getId());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        publish(event.getPersister(), event.getId());
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return persister.canWriteToCache();
+    }
+
+    /**
+     * Evict an entity changed by a statement Hibernate did not run, along with the query results
+     * for its type, here and on the other instances. Call once the change has committed.
+     * @param entityClass the changed entity's type
+     * @param id the changed entity's ID
+     */
+    public void evictChanged(Class<?> entityClass, Long id) {
+        cache.evictEntityData(entityClass, id);
+        String queryRegion = QUERY_REGIONS.get(entityClass.getName());
+        if (queryRegion != null) {
+            cache.evictQueryRegion(queryRegion);
+        }
+        publish(entityClass.getName(), id);
+    }
+
+    /**
+     * Evict every entity of a type after a bulk statement changed many of them, along with the
+     * query results for the type, here and on the other instances. Call once the change has committed.
+     * @param entityClass the changed entities' type
+     */
+    public void evictAllChanged(Class<?> entityClass) {
+        cache.evictEntityData(entityClass);
+        String queryRegion = QUERY_REGIONS.get(entityClass.getName());
+        if (queryRegion != null) {
+            cache.evictQueryRegion(queryRegion);
+        }
+        publish(entityClass.getName(), null);
+    }
+
+    private void publish(EntityPersister persister, Object id) {
+        publish(persister.getEntityName(), (Long) id);
+    }
+
+    private void publish(String entityName, Long id) {
+        try {
+            bus.publish(new CacheInvalidation(origin, entityName, id));
+        } catch (RuntimeException e) {
+            // The change is committed; other instances catch up when their entries expire
+            log.warn("Failed to publish cache invalidation for {}#{}", entityName, id, e);
+        }
+    }
+
+    /**
+     * Evict the local copies of an entity changed on another instance
+     */
+    private void evict(CacheInvalidation invalidation) {
+        if (origin.equals(invalidation.origin())) {
+            return;
+        }
+        if (invalidation.id() != null) {
+            cache.evictEntityData(invalidation.entityName(), invalidation.id());
+        } else {
+            cache.evictEntityData(invalidation.entityName());
+        }
+        String queryRegion = QUERY_REGIONS.get(invalidation.entityName());
+        if (queryRegion != null) {
+            cache.evictQueryRegion(queryRegion);
+        }
+        if (User.class.getName().equals(invalidation.entityName())) {
+            if (invalidation.id() != null) {
+                principalCache.evictById(invalidation.id());
+            } else {
+                principalCache.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.absurdrambler.apcproject.cache;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
+
+/**
+ * In-memory stand-in for a message broker: every application context in this JVM receives
+ * every invalidation. A single instance needs nothing more; a cluster plugs in a
+ * broker-backed CacheInvalidationBus and sets app.cache.invalidation.bus to its name.
+ */
+@Component
+@ConditionalOnProperty(name = "app.cache.invalidation.bus", havingValue = "local", matchIfMissing = true)
+public class LocalCacheInvalidationBus implements CacheInvalidationBus {
+
+    private static final Set<LocalCacheInvalidationBus> BUSES = new CopyOnWriteArraySet<>();
+
+    private final List<Consumer<CacheInvalidation>> listeners = new CopyOnWriteArrayList<>();
+
+    public LocalCacheInvalidationBus() {
+        BUSES.add(this);
+    }
+
+    @Override
+    public void publish(CacheInvalidation invalidation) {
+        BUSES.forEach(bus -> bus.listeners.forEach(listener -> listener.accept(invalidation)));
+    }
+
+    @Override
+    public void subscribe(Consumer<CacheInvalidation> listener) {
+        listeners.add(listener);
+    }
+
+    @PreDestroy
+    public void close() {
+        BUSES.remove(this);
+    }
+}
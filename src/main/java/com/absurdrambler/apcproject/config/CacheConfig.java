@@ -0,0 +1,64 @@
+package com.absurdrambler.apcproject.config;
+
+import com.absurdrambler.apcproject.cache.CacheRegions;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Hibernate second-level cache configuration. Every region is bounded in size, and records
+ * hit and miss statistics published over JMX as JCache CacheStatistics MXBeans.
+ */
+@Configuration
+public class CacheConfig {
+
+    private static final long UPDATE_TIMESTAMPS_MAX_SIZE = 1_000;
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(@Value("${app.cache.users.max-size:10000}") long usersMaxSize,
+                                              @Value("${app.cache.users.ttl:PT10M}") Duration usersTtl,
+                                              @Value("${app.cache.tasks.max-size:100000}") long tasksMaxSize,
+                                              @Value("${app.cache.tasks.ttl:PT10M}") Duration tasksTtl,
+                                              @Value("${app.cache.queries.max-size:10000}") long queriesMaxSize,
+                                              @Value("${app.cache.queries.ttl:PT5M}") Duration queriesTtl) {
+        // A URI of its own, so application contexts sharing a JVM do not share caches
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("apcproject-" + UUID.randomUUID()), getClass().getClassLoader());
+        cacheManager.createCache(CacheRegions.USERS, region(usersMaxSize, usersTtl));
+        cacheManager.createCache(CacheRegions.TASKS, region(tasksMaxSize, tasksTtl));
+        cacheManager.createCache(CacheRegions.USER_QUERIES, region(queriesMaxSize, queriesTtl));
+        cacheManager.createCache(CacheRegions.TASK_QUERIES, region(queriesMaxSize, queriesTtl));
+        cacheManager.createCache(CacheRegions.DEFAULT_QUERIES, region(queriesMaxSize, queriesTtl));
+        // One entry per table; they must outlive the query results they validate, so they never expire
+        cacheManager.createCache(CacheRegions.UPDATE_TIMESTAMPS, region(UPDATE_TIMESTAMPS_MAX_SIZE, null));
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheManagerCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+
+    private static CaffeineConfiguration<Object, Object> region(long maxSize, Duration ttl) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maxSize));
+        if (ttl != null) {
+            configuration.setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+        }
+        // Hibernate caches immutable disassembled state, so copying entries would only add cost
+        configuration.setStoreByValue(false);
+        configuration.setStatisticsEnabled(true);
+        return configuration;
+    }
+}
@@ -0,0 +1,42 @@
+package com.absurdrambler.apcproject.config;
+
+import com.absurdrambler.apcproject.metrics.ConnectionHoldTimingDataSource;
+import com.absurdrambler.apcproject.metrics.TimedJacksonHttpMessageConverter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import javax.sql.DataSource;
+
+/**
+ * Metrics configuration. Request timers, connection pool and Hibernate statistics come
+ * from Actuator; this adds the JSON converter timings and the per-request connection hold time.
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Time how long requests hold database connections; the pool stays reachable through
+     * the wrapper, so its own metrics are still bound
+     */
+    @Bean
+    public static BeanPostProcessor connectionHoldTimingPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource dataSource && !(bean instanceof ConnectionHoldTimingDataSource)
+                        ? new ConnectionHoldTimingDataSource(dataSource)
+                        : bean;
+            }
+        };
+    }
+
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper,
+                                                                                   MeterRegistry meterRegistry) {
+        return new TimedJacksonHttpMessageConverter(objectMapper, meterRegistry);
+    }
+}
@@ -0,0 +1,93 @@
+package com.absurdrambler.apcproject.config;
+
+import com.absurdrambler.apcproject.datasource.ReadReplicaRouter;
+import com.absurdrambler.apcproject.datasource.ReplicaRoutingDataSource;
+import com.absurdrambler.apcproject.datasource.ReplicaRoutingJpaDialect;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.orm.jpa.JpaTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read replica configuration, active when app.datasource.replicas.urls lists any replicas.
+ * The primary pool is built from the spring.datasource properties as Boot would build it, and
+ * each replica gets a read-only pool with the same settings. Flyway, writes and reads outside
+ * read-only transactions all use the primary.
+ */
+@Configuration
+@ConditionalOnExpression("!'${app.datasource.replicas.urls:}'.isBlank()")
+public class ReadReplicaConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public ReadReplicaRouter readReplicaRouter(DataSourceProperties properties, Environment environment,
+                                               MeterRegistry meterRegistry,
+                                               @Value("${app.datasource.replicas.urls}") List<String> urls,
+                                               @Value("${app.datasource.replicas.username:${spring.datasource.username:}}") String username,
+                                               @Value("${app.datasource.replicas.password:${spring.datasource.password:}}") String password,
+                                               @Value("${app.datasource.replicas.pool-size:10}") int poolSize,
+                                               @Value("${app.datasource.replicas.selection:ROUND_ROBIN}") ReadReplicaRouter.Selection selection,
+                                               @Value("${app.datasource.replicas.lag-query:}") String lagQuery,
+                                               @Value("${app.datasource.replicas.max-lag-millis:1000}") long maxLagMillis,
+                                               @Value("${app.datasource.replicas.read-your-writes-millis:5000}") long readYourWritesMillis,
+                                               @Value("${app.datasource.replicas.check-interval-millis:1000}") long checkIntervalMillis) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (String url : urls) {
+            HikariConfig replica = new HikariConfig();
+            primary.copyStateTo(replica);
+            replica.setJdbcUrl(url.trim());
+            replica.setUsername(username);
+            replica.setPassword(password);
+            replica.setPoolName("replica-" + (replicas.size() + 1));
+            replica.setMaximumPoolSize(poolSize);
+            if (replica.getMinimumIdle() > poolSize) {
+                replica.setMinimumIdle(poolSize);
+            }
+            replica.setReadOnly(true);
+            replica.setMetricRegistry(meterRegistry);
+            // A replica that is down at startup is left to the checks rather than failing startup
+            replica.setInitializationFailTimeout(-1);
+            replicas.add(new HikariDataSource(replica));
+        }
+        return new ReadReplicaRouter(primary, replicas, selection, lagQuery, maxLagMillis, readYourWritesMillis,
+                checkIntervalMillis, meterRegistry);
+    }
+
+    @Bean
+    public DataSource dataSource(ReadReplicaRouter readReplicaRouter) {
+        return new ReplicaRoutingDataSource(readReplicaRouter);
+    }
+
+    /**
+     * Route transactions through the replica-aware dialect. The transaction manager takes the
+     * entity manager factory's dialect while it is initialized, so it is replaced afterwards.
+     */
+    @Bean
+    public static BeanPostProcessor replicaRoutingJpaDialectPostProcessor(ObjectProvider<ReadReplicaRouter> router) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof JpaTransactionManager transactionManager) {
+                    transactionManager.setJpaDialect(new ReplicaRoutingJpaDialect(router.getObject()));
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -1,16 +1,40 @@
 package com.absurdrambler.apcproject.config;
 
+import com.absurdrambler.apcproject.dto.TokenResponse;
+import com.absurdrambler.apcproject.security.AuthenticatedUser;
+import com.absurdrambler.apcproject.security.LoginRateLimiter;
+import com.absurdrambler.apcproject.security.LoginRejectedException;
+import com.absurdrambler.apcproject.security.ThrottledAuthenticationProvider;
+import com.absurdrambler.apcproject.security.TokenAuthenticationFilter;
+import com.absurdrambler.apcproject.security.TokenService;
+import com.absurdrambler.apcproject.service.RefreshTokenService;
 import com.absurdrambler.apcproject.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
+import org.springframework.security.web.context.SecurityContextRepository;
+
+import java.time.Duration;
+import java.util.Map;
 
 /**
  * Spring Security configuration for authentication and authorization
@@ -21,10 +45,35 @@ import org.springframework.security.web.SecurityFilterChain;
 public class SecurityConfig {
 
     private final UserService userService;
+    private final TokenService tokenService;
+    private final RefreshTokenService refreshTokenService;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Hashes new passwords with BCrypt at the configured cost. Hashes stored without an
+     * encoder prefix are plain BCrypt; they and any hash below the configured cost are
+     * re-hashed on the user's next successful login.
+     */
+    @Bean
+    public PasswordEncoder passwordEncoder(@Value("${app.security.password.bcrypt-strength:10}") int strength) {
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(strength);
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", bcrypt));
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return encoder;
+    }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public AuthenticationProvider authenticationProvider(PasswordEncoder passwordEncoder,
+                                                         LoginRateLimiter rateLimiter,
+                                                         @Value("${app.security.login.threads:2}") int threads,
+                                                         @Value("${app.security.login.queue-capacity:32}") int queueCapacity,
+                                                         @Value("${app.security.login.timeout:PT5S}") Duration timeout,
+                                                         MeterRegistry meterRegistry) {
+        DaoAuthenticationProvider passwordCheck = new DaoAuthenticationProvider(userService);
+        passwordCheck.setPasswordEncoder(passwordEncoder);
+        passwordCheck.setUserDetailsPasswordService(userService);
+        return new ThrottledAuthenticationProvider(passwordCheck, rateLimiter, threads, queueCapacity, timeout,
+                meterRegistry);
     }
 
     @Bean
@@ -34,12 +83,27 @@ public class SecurityConfig {
 
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+        if (tokenService.isEnabled()) {
+            // Stateless mode: no HTTP session; each request is authenticated from its access token
+            SecurityContextRepository requestContextRepository = new RequestAttributeSecurityContextRepository();
+            http
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .securityContext(context -> context.securityContextRepository(requestContextRepository))
+                // Token clients have no login page to be redirected to
+                .exceptionHandling(exceptions -> exceptions
+                        .authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)))
+                .addFilterBefore(new TokenAuthenticationFilter(tokenService, requestContextRepository),
+                        UsernamePasswordAuthenticationFilter.class);
+        }
+
         http
             .csrf(csrf -> csrf.disable())
             .authorizeHttpRequests(authz -> authz
                 .requestMatchers("/api/auth/**").permitAll()
                 .requestMatchers("/").permitAll()
                 .requestMatchers("/index.html").permitAll()
+                .requestMatchers("/actuator/health", "/actuator/prometheus").permitAll()
+                .requestMatchers("/actuator/**").hasRole("ADMIN")
                 .requestMatchers("/api/users/**").hasRole("ADMIN")
                 .requestMatchers("/api/tasks/**").authenticated()
                 .anyRequest().authenticated()
@@ -49,6 +113,12 @@ public class SecurityConfig {
                 .successHandler((request, response, authentication) -> {
                     response.setStatus(200);
                     response.setContentType("application/json");
+                    if (tokenService.isEnabled()) {
+                        TokenResponse tokens = refreshTokenService.issue((AuthenticatedUser) authentication.getPrincipal());
+                        tokenService.addCookies(request, response, tokens);
+                        objectMapper.writeValue(response.getWriter(), tokens);
+                        return;
+                    }
                     String role = authentication.getAuthorities().iterator().next().getAuthority();
                     String username = authentication.getName();
                     response.getWriter().write(String.format(
@@ -57,6 +127,14 @@ public class SecurityConfig {
                     ));
                 })
                 .failureHandler((request, response, exception) -> {
+                    if (exception instanceof LoginRejectedException rejected) {
+                        response.setStatus(rejected.getStatus().value());
+                        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(rejected.getRetryAfterSeconds()));
+                        response.setContentType("application/json");
+                        response.getWriter().write(String.format(
+                            "{\"success\":false,\"message\":\"%s\"}", rejected.getMessage()));
+                        return;
+                    }
                     response.setStatus(401);
                     response.setContentType("application/json");
                     response.getWriter().write("{\"success\":false,\"message\":\"Invalid credentials\"}");
@@ -64,6 +142,13 @@ public class SecurityConfig {
             )
             .logout(logout -> logout
                 .logoutUrl("/api/auth/logout")
+                .addLogoutHandler((request, response, authentication) -> {
+                    // The cookies alone are not enough: a copied refresh token would stay valid until it expires
+                    if (tokenService.isEnabled()) {
+                        refreshTokenService.revoke(tokenService.resolveRefreshCookie(request));
+                    }
+                })
+                .deleteCookies(TokenService.ACCESS_COOKIE, TokenService.REFRESH_COOKIE)
                 .logoutSuccessHandler((request, response, authentication) -> {
                     response.setStatus(200);
                     response.setContentType("application/json");
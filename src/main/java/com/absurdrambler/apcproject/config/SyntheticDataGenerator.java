@@ -0,0 +1,271 @@
+package com.absurdrambler.apcproject.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Generator filling the database with synthetic users and tasks for load testing.
+ * Rows are written with batched JDBC inserts rather than through JPA, so millions
+ * of tasks load in minutes. Off unless app.seed.enabled is set.
+ */
+@Component
+@ConditionalOnProperty(name = "app.seed.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class SyntheticDataGenerator implements CommandLineRunner {
+
+    // Matches the allocation size of task_id_seq: each sequence value ends a block of 50 ids
+    private static final int TASK_ID_BLOCK_SIZE = 50;
+
+    // Words beyond the common ones are made up, with word frequencies following Zipf's law,
+    // so text search sees both very common and rare words
+    private static final int VOCABULARY_SIZE = 5_000;
+    private static final String[] SYLLABLES = {
+            "ba", "ce", "di", "fo", "gu", "ka", "le", "mi", "no", "pu", "ra", "se", "ti", "vo", "zu", "lan", "ter", "mor"
+    };
+
+    // Descriptions are cut from one text; at this length most words occur in few descriptions
+    private static final int DESCRIPTION_TEXT_LENGTH = 1 << 20;
+
+    private static final String[] WORDS = {
+            "review", "draft", "call", "email", "plan", "fix", "update", "prepare", "book", "pay",
+            "report", "budget", "meeting", "invoice", "release", "backlog", "dentist", "groceries",
+            "quarterly", "design", "notes", "slides", "contract", "travel", "renewal", "feedback"
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PasswordEncoder passwordEncoder;
+
+    @Value("${app.seed.users:1000}")
+    private int userCount;
+
+    @Value("${app.seed.tasks-per-user:200}")
+    private int tasksPerUser;
+
+    @Value("${app.seed.username-prefix:load-user-}")
+    private String usernamePrefix;
+
+    @Value("${app.seed.password:load123}")
+    private String password;
+
+    @Value("${app.seed.important-ratio:0.15}")
+    private double importantRatio;
+
+    @Value("${app.seed.completed-ratio:0.5}")
+    private double completedRatio;
+
+    @Value("${app.seed.no-due-date-ratio:0.3}")
+    private double noDueDateRatio;
+
+    @Value("${app.seed.due-date-spread-days:30}")
+    private int dueDateSpreadDays;
+
+    @Value("${app.seed.description-mean-length:500}")
+    private int descriptionMeanLength;
+
+    @Value("${app.seed.description-max-length:8000}")
+    private int descriptionMaxLength;
+
+    @Value("${app.seed.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${app.seed.random-seed:42}")
+    private long randomSeed;
+
+    @Override
+    public void run(String... args) {
+        if (userCount <= 0 || Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) > 0 FROM users WHERE username = ?", Boolean.class, usernamePrefix + 1))) {
+            log.info("Synthetic data already present or disabled, skipping generation");
+            return;
+        }
+
+        long start = System.nanoTime();
+        SplittableRandom random = new SplittableRandom(randomSeed);
+        LocalDate today = LocalDate.now();
+        Vocabulary vocabulary = new Vocabulary(random);
+        String description = buildDescriptionText(random, vocabulary);
+        List<Long> userIds = insertUsers();
+
+        List<Object[]> tasks = new ArrayList<>(batchSize);
+        List<Object[]> counters = new ArrayList<>(batchSize);
+        long taskCount = 0;
+        for (Long userId : userIds) {
+            long[] counts = new long[4];
+            for (long id : allocateTaskIds(tasksPerUser)) {
+                Object[] task = generateTask(random, vocabulary, today, description, id, userId);
+                tasks.add(task);
+                count(counts, task, today);
+                if (tasks.size() == batchSize) {
+                    insertTasks(tasks);
+                }
+            }
+            counters.add(new Object[] {userId, counts[0], counts[1], counts[2], counts[3], Date.valueOf(today)});
+            if (counters.size() == batchSize) {
+                insertCounters(counters);
+            }
+            taskCount += tasksPerUser;
+        }
+        insertTasks(tasks);
+        insertCounters(counters);
+
+        long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        log.info("Generated {} users and {} tasks in {} ms ({} tasks/s); users are {}1..{}{} with password {}",
+                userIds.size(), taskCount, millis, taskCount * 1000 / millis,
+                usernamePrefix, usernamePrefix, userCount, password);
+    }
+
+    /**
+     * Insert the users, all sharing one password hash since hashing dominates otherwise
+     * @return the new user IDs
+     */
+    private List<Long> insertUsers() {
+        String hash = passwordEncoder.encode(password);
+        List<Object[]> rows = new ArrayList<>(batchSize);
+        for (int i = 1; i <= userCount; i++) {
+            rows.add(new Object[] {usernamePrefix + i, hash, "ROLE_USER"});
+            if (rows.size() == batchSize) {
+                jdbcTemplate.batchUpdate("INSERT INTO users (username, password, role) VALUES (?, ?, ?)", rows);
+                rows.clear();
+            }
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO users (username, password, role) VALUES (?, ?, ?)", rows);
+        }
+        return jdbcTemplate.queryForList("SELECT id FROM users WHERE username LIKE ? ORDER BY id",
+                Long.class, usernamePrefix.replace("%", "\\%").replace("_", "\\_") + "%");
+    }
+
+    /**
+     * Take ids from task_id_seq the way Hibernate's pooled optimizer does, so tasks
+     * created later by the application never collide with generated ones
+     */
+    private long[] allocateTaskIds(int count) {
+        long[] ids = new long[count];
+        int allocated = 0;
+        while (allocated < count) {
+            long high = jdbcTemplate.queryForObject("SELECT nextval('task_id_seq')", Long.class);
+            for (long id = high - TASK_ID_BLOCK_SIZE + 1; id <= high && allocated < count; id++) {
+                ids[allocated++] = id;
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Generate one task row. Due dates cluster around today, overdue tasks are
+     * more often completed, and description lengths have a long tail.
+     */
+    private Object[] generateTask(SplittableRandom random, Vocabulary vocabulary, LocalDate today, String description,
+                                  long id, Long userId) {
+        LocalDate dueDate = null;
+        if (random.nextDouble() >= noDueDateRatio) {
+            long offset = Math.round(random.nextGaussian() * dueDateSpreadDays / 2);
+            dueDate = today.plusDays(Math.max(-dueDateSpreadDays, Math.min(dueDateSpreadDays, offset)));
+        }
+        boolean overdue = dueDate != null && dueDate.isBefore(today);
+        boolean completed = random.nextDouble() < (overdue ? Math.min(1, completedRatio * 1.5) : completedRatio);
+        boolean important = random.nextDouble() < importantRatio;
+
+        String title = capitalize(vocabulary.next(random)) + " " + vocabulary.next(random)
+                + " " + vocabulary.next(random);
+        int length = (int) Math.min(descriptionMaxLength, -descriptionMeanLength * Math.log(1 - random.nextDouble()));
+        int offset = random.nextInt(Math.max(1, description.length() - length));
+        return new Object[] {id, title, description.substring(offset, offset + length),
+                dueDate != null ? Date.valueOf(dueDate) : null, important, completed, userId,
+                Timestamp.from(Instant.now())};
+    }
+
+    /**
+     * Add a task row to a user's total, open, important and due-today counts
+     */
+    private static void count(long[] counts, Object[] task, LocalDate today) {
+        counts[0]++;
+        if (!(Boolean) task[5]) {
+            counts[1]++;
+        }
+        if ((Boolean) task[4]) {
+            counts[2]++;
+        }
+        if (task[3] != null && ((Date) task[3]).toLocalDate().equals(today)) {
+            counts[3]++;
+        }
+    }
+
+    private void insertTasks(List<Object[]> rows) {
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO tasks (id, title, description, due_date, is_important, is_completed,"
+                    + " assignee_id, updated_at, version, change_seq) VALUES (?, ?, ?, ?, ?, ?, ?, ?, 0, 0)", rows);
+            rows.clear();
+        }
+    }
+
+    private void insertCounters(List<Object[]> rows) {
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO task_counters (user_id, total_count, open_count, important_count,"
+                    + " due_today_count, due_today_date) VALUES (?, ?, ?, ?, ?, ?)", rows);
+            rows.clear();
+        }
+    }
+
+    /**
+     * Build the text descriptions are cut from, long enough for the largest description
+     */
+    private String buildDescriptionText(SplittableRandom random, Vocabulary vocabulary) {
+        int length = Math.max(DESCRIPTION_TEXT_LENGTH, descriptionMaxLength * 2 + 1);
+        StringBuilder text = new StringBuilder(length + 64);
+        while (text.length() < length) {
+            text.append(vocabulary.next(random)).append(random.nextInt(8) == 0 ? ". " : " ");
+        }
+        return text.toString();
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    /**
+     * Words ranked by frequency, the common task words first, sampled with Zipf weights
+     */
+    private static final class Vocabulary {
+
+        private final String[] words = new String[VOCABULARY_SIZE];
+        private final double[] cumulativeWeights = new double[VOCABULARY_SIZE];
+
+        Vocabulary(SplittableRandom random) {
+            System.arraycopy(WORDS, 0, words, 0, WORDS.length);
+            for (int i = WORDS.length; i < words.length; i++) {
+                StringBuilder word = new StringBuilder();
+                for (int syllables = 2 + random.nextInt(3); syllables > 0; syllables--) {
+                    word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+                }
+                words[i] = word.toString();
+            }
+            double total = 0;
+            for (int i = 0; i < words.length; i++) {
+                total += 1.0 / (i + 1);
+                cumulativeWeights[i] = total;
+            }
+        }
+
+        String next(SplittableRandom random) {
+            int i = Arrays.binarySearch(cumulativeWeights, random.nextDouble(cumulativeWeights[words.length - 1]));
+            return words[i >= 0 ? i : Math.min(-i - 1, words.length - 1)];
+        }
+    }
+}
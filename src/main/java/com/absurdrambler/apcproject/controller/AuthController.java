@@ -2,15 +2,32 @@ package com.absurdrambler.apcproject.controller;
 
 import com.absurdrambler.apcproject.dto.LoginRequest;
 import com.absurdrambler.apcproject.dto.LoginResponse;
+import com.absurdrambler.apcproject.dto.RefreshRequest;
+import com.absurdrambler.apcproject.dto.TaskBulkProgress;
+import com.absurdrambler.apcproject.dto.TokenResponse;
 import com.absurdrambler.apcproject.entity.User;
+import com.absurdrambler.apcproject.security.AuthenticatedUser;
+import com.absurdrambler.apcproject.security.CurrentUser;
+import com.absurdrambler.apcproject.security.TokenService;
+import com.absurdrambler.apcproject.service.RefreshTokenService;
+import com.absurdrambler.apcproject.service.TaskBulkService;
 import com.absurdrambler.apcproject.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.IntSupplier;
 import java.util.stream.Collectors;
 
 /**
@@ -21,25 +38,50 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class AuthController {
 
-    private final UserService userService;
+    private final TokenService tokenService;
+    private final RefreshTokenService refreshTokenService;
 
     /**
-     * Get current user information
+     * Get current user information, from the token claims in stateless mode
      */
     @GetMapping("/me")
-    public ResponseEntity<LoginResponse> getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null && authentication.isAuthenticated()) {
-            String username = authentication.getName();
-            String role = authentication.getAuthorities().iterator().next().getAuthority();
-            return ResponseEntity.ok(new LoginResponse(true, "User authenticated", username, role));
+    public ResponseEntity<LoginResponse> getCurrentUser(@CurrentUser AuthenticatedUser principal) {
+        if (principal != null) {
+            return ResponseEntity.ok(new LoginResponse(true, "User authenticated", principal.getUsername(),
+                    principal.getRole()));
         }
         return ResponseEntity.status(401).body(new LoginResponse(false, "Not authenticated", null, null));
     }
+
+    /**
+     * Exchange a refresh token for a new token pair (stateless mode only). The user is
+     * looked up again, so deleted users and role changes take effect on refresh. Each
+     * refresh token is accepted once; the response carries its replacement.
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<TokenResponse> refresh(@RequestBody(required = false) RefreshRequest refreshRequest,
+                                                 HttpServletRequest request, HttpServletResponse response) {
+        if (!tokenService.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        String token = refreshRequest != null && refreshRequest.getRefreshToken() != null
+                ? refreshRequest.getRefreshToken()
+                : tokenService.resolveRefreshCookie(request);
+        Optional<TokenResponse> refreshed = refreshTokenService.refresh(token);
+        if (refreshed.isEmpty()) {
+            return ResponseEntity.status(401).build();
+        }
+
+        TokenResponse tokens = refreshed.get();
+        tokens.setMessage("Token refreshed");
+        tokenService.addCookies(request, response, tokens);
+        return ResponseEntity.ok(tokens);
+    }
 }
 
 /**
- * Controller for user management (admin only)
+ * Controller for user management (admin only). Bulk operations on a user's tasks run in chunks
+ * of one transaction each and report progress as newline-delimited JSON, a line per chunk.
  */
 @RestController
 @RequestMapping("/api/users")
@@ -47,6 +89,8 @@ public class AuthController {
 class UserController {
 
     private final UserService userService;
+    private final TaskBulkService taskBulkService;
+    private final ObjectMapper objectMapper;
 
     /**
      * Get all users (admin only)
@@ -60,6 +104,74 @@ class UserController {
         return ResponseEntity.ok(userInfos);
     }
 
+    /**
+     * Reassign all of a user's open tasks to another user (admin only)
+     */
+    @PostMapping(value = "/{id}/tasks/reassign", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void reassignOpenTasks(@PathVariable Long id, @RequestParam Long to, HttpServletResponse response)
+            throws IOException {
+        if (id.equals(to)) {
+            response.setStatus(400);
+            return;
+        }
+        if (userService.findById(id).isEmpty() || userService.findById(to).isEmpty()) {
+            response.setStatus(404);
+            return;
+        }
+        writeProgress(response, "reassign", () -> taskBulkService.reassignOpenTasks(id, to));
+    }
+
+    /**
+     * Complete all of a user's open tasks that were due before today (admin only)
+     */
+    @PostMapping(value = "/{id}/tasks/complete-overdue", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void completeOverdueTasks(@PathVariable Long id, HttpServletResponse response) throws IOException {
+        if (userService.findById(id).isEmpty()) {
+            response.setStatus(404);
+            return;
+        }
+        writeProgress(response, "complete-overdue", () -> taskBulkService.completeOverdueTasks(id));
+    }
+
+    /**
+     * Remove a user and all of their tasks (admin only). Admins cannot remove themselves.
+     */
+    @DeleteMapping(value = "/{id}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void removeUser(@CurrentUser AuthenticatedUser principal, @PathVariable Long id,
+                           HttpServletResponse response) throws IOException {
+        if (id.equals(principal.getId())) {
+            response.setStatus(400);
+            return;
+        }
+        if (userService.findById(id).isEmpty()) {
+            response.setStatus(404);
+            return;
+        }
+        writeProgress(response, "remove", () -> taskBulkService.removeUser(id));
+    }
+
+    /**
+     * Helper method to run a bulk task operation chunk by chunk, writing a newline-delimited
+     * JSON progress line as each chunk commits. A stream that ends without a line marked done
+     * failed after the chunks it reported.
+     */
+    private void writeProgress(HttpServletResponse response, String operation, IntSupplier chunk) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noStore().getHeaderValue());
+        ObjectWriter writer = objectMapper.writerFor(TaskBulkProgress.class);
+        OutputStream out = response.getOutputStream();
+        int chunkSize = taskBulkService.getChunkSize();
+        long processed = 0;
+        int count;
+        do {
+            count = chunk.getAsInt();
+            processed += count;
+            out.write(writer.writeValueAsBytes(new TaskBulkProgress(operation, processed, count < chunkSize)));
+            out.write('\n');
+            response.flushBuffer();
+        } while (count == chunkSize);
+    }
+
     /**
      * Inner class for user information response
      */
@@ -1,20 +1,58 @@
 package com.absurdrambler.apcproject.controller;
 
+import com.absurdrambler.apcproject.dto.TaskActivityResponse;
+import com.absurdrambler.apcproject.dto.TaskBatchRequest;
+import com.absurdrambler.apcproject.dto.TaskBatchResponse;
+import com.absurdrambler.apcproject.dto.TaskCountsResponse;
+import com.absurdrambler.apcproject.dto.TaskBatchResult;
+import com.absurdrambler.apcproject.dto.TaskCursor;
+import com.absurdrambler.apcproject.dto.TaskImportResponse;
+import com.absurdrambler.apcproject.dto.TaskPageResponse;
 import com.absurdrambler.apcproject.dto.TaskRequest;
 import com.absurdrambler.apcproject.dto.TaskResponse;
+import com.absurdrambler.apcproject.dto.TaskSyncResponse;
 import com.absurdrambler.apcproject.entity.Task;
 import com.absurdrambler.apcproject.entity.User;
+import com.absurdrambler.apcproject.repository.TaskActivityPage;
+import com.absurdrambler.apcproject.repository.TaskKeyset;
+import com.absurdrambler.apcproject.repository.TaskPage;
+import com.absurdrambler.apcproject.repository.TaskSearchKeyset;
+import com.absurdrambler.apcproject.repository.TaskSearchPage;
+import com.absurdrambler.apcproject.repository.TaskSort;
+import com.absurdrambler.apcproject.security.AuthenticatedUser;
+import com.absurdrambler.apcproject.security.CurrentUser;
+import com.absurdrambler.apcproject.service.TaskEventBus;
+import com.absurdrambler.apcproject.service.TaskPatchCoalescer;
 import com.absurdrambler.apcproject.service.TaskService;
 import com.absurdrambler.apcproject.service.UserService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.ETag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.function.BiFunction;
 
 /**
  * Controller for task management endpoints
@@ -24,82 +62,240 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class TaskController {
 
+    private static final int MAX_REPORTED_IMPORT_FAILURES = 100;
+
     private final TaskService taskService;
     private final UserService userService;
+    private final TaskEventBus taskEventBus;
+    private final TaskPatchCoalescer taskPatchCoalescer;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.tasks.import.batch-size:500}")
+    private int importBatchSize;
 
     /**
-     * Get all tasks assigned to the current user
+     * Get one page of tasks assigned to the current user
      */
     @GetMapping("/assigned-to-me")
-    public ResponseEntity<List<TaskResponse>> getTasksAssignedToMe() {
-        User currentUser = getCurrentUser();
+    public ResponseEntity<TaskPageResponse<?>> getTasksAssignedToMe(@CurrentUser AuthenticatedUser principal,
+                                                                 @RequestParam(required = false) String cursor,
+                                                                 @RequestParam(required = false) Integer limit,
+                                                                 @RequestParam(defaultValue = "DUE_DATE_ASC") TaskSort sort,
+                                                                 @RequestParam(defaultValue = "false") boolean summary,
+                                                                 @RequestParam(defaultValue = "false") boolean includeArchived,
+                                                                 @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return listTasks(principal, ifNoneMatch, cursor, sort, etagSuffix(null, includeArchived),
+                (user, after) -> taskService.getTasksAssignedToUser(user, after, sort, limit, summary, includeArchived));
+    }
+
+    /**
+     * Get one page of important tasks assigned to the current user
+     */
+    @GetMapping("/important")
+    public ResponseEntity<TaskPageResponse<?>> getImportantTasks(@CurrentUser AuthenticatedUser principal,
+                                                              @RequestParam(required = false) String cursor,
+                                                              @RequestParam(required = false) Integer limit,
+                                                              @RequestParam(defaultValue = "DUE_DATE_ASC") TaskSort sort,
+                                                              @RequestParam(defaultValue = "false") boolean summary,
+                                                              @RequestParam(defaultValue = "false") boolean includeArchived,
+                                                              @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return listTasks(principal, ifNoneMatch, cursor, sort, etagSuffix(null, includeArchived),
+                (user, after) -> taskService.getImportantTasksForUser(user, after, sort, limit, summary, includeArchived));
+    }
+
+    /**
+     * Get one page of tasks assigned to the current user due today
+     */
+    @GetMapping("/daily")
+    public ResponseEntity<TaskPageResponse<?>> getDailyTasks(@CurrentUser AuthenticatedUser principal,
+                                                          @RequestParam(required = false) String cursor,
+                                                          @RequestParam(required = false) Integer limit,
+                                                          @RequestParam(defaultValue = "DUE_DATE_ASC") TaskSort sort,
+                                                          @RequestParam(defaultValue = "false") boolean summary,
+                                                          @RequestParam(defaultValue = "false") boolean includeArchived,
+                                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // The daily list also changes at midnight, so its ETag includes the day
+        return listTasks(principal, ifNoneMatch, cursor, sort, etagSuffix(LocalDate.now().toString(), includeArchived),
+                (user, after) -> taskService.getDailyTasksForUser(user, after, sort, limit, summary, includeArchived));
+    }
+
+    /**
+     * Search the current user's tasks, most relevant first, one page at a time
+     */
+    @GetMapping("/search")
+    public ResponseEntity<TaskPageResponse<TaskResponse>> searchTasks(@CurrentUser AuthenticatedUser principal,
+                                                                     @RequestParam String q,
+                                                                     @RequestParam(required = false) String cursor,
+                                                                     @RequestParam(required = false) Integer limit) {
+        User currentUser = getCurrentUser(principal);
         if (currentUser == null) {
             return ResponseEntity.status(401).build();
         }
 
-        List<Task> tasks = taskService.getTasksAssignedToUser(currentUser);
-        List<TaskResponse> taskResponses = tasks.stream()
-                .map(TaskResponse::fromEntity)
-                .collect(Collectors.toList());
-
-        return ResponseEntity.ok(taskResponses);
+        TaskSearchPage page;
+        try {
+            TaskSearchKeyset after = TaskCursor.decodeSearch(cursor);
+            page = taskService.searchTasks(currentUser, q, after, limit);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(new TaskPageResponse<>(page.items(), TaskCursor.encode(page.next())));
     }
 
     /**
-     * Get all important tasks assigned to the current user
+     * Get one page of a task's history, newest first. Admins can read the history of any task,
+     * including deleted ones; everyone else only that of their own tasks.
      */
-    @GetMapping("/important")
-    public ResponseEntity<List<TaskResponse>> getImportantTasks() {
-        User currentUser = getCurrentUser();
+    @GetMapping("/{id}/history")
+    public ResponseEntity<TaskPageResponse<TaskActivityResponse>> getTaskHistory(@CurrentUser AuthenticatedUser principal,
+                                                                                 @PathVariable Long id,
+                                                                                 @RequestParam(required = false) String cursor,
+                                                                                 @RequestParam(required = false) Integer limit) {
+        User currentUser = getCurrentUser(principal);
         if (currentUser == null) {
             return ResponseEntity.status(401).build();
         }
+        if (!principal.isAdmin() && taskService.findByIdAndUser(id, currentUser).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        TaskActivityPage page;
+        try {
+            page = taskService.getTaskHistory(id, TaskCursor.decodeHistory(cursor), limit);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (page.items().isEmpty() && cursor == null && taskService.findById(id).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(new TaskPageResponse<>(page.items(), TaskCursor.encodeHistory(page.nextBeforeId())));
+    }
 
-        List<Task> tasks = taskService.getImportantTasksForUser(currentUser);
-        List<TaskResponse> taskResponses = tasks.stream()
-                .map(TaskResponse::fromEntity)
-                .collect(Collectors.toList());
+    /**
+     * Get the sidebar task counts for the current user
+     */
+    @GetMapping("/counts")
+    public ResponseEntity<TaskCountsResponse> getTaskCounts(@CurrentUser AuthenticatedUser principal) {
+        User currentUser = getCurrentUser(principal);
+        if (currentUser == null) {
+            return ResponseEntity.status(401).build();
+        }
 
-        return ResponseEntity.ok(taskResponses);
+        return ResponseEntity.ok(taskService.getTaskCounts(currentUser));
     }
 
     /**
-     * Get all tasks assigned to the current user due today
+     * Get one page of the changes to the current user's tasks since a sync token
      */
-    @GetMapping("/daily")
-    public ResponseEntity<List<TaskResponse>> getDailyTasks() {
-        User currentUser = getCurrentUser();
+    @GetMapping("/sync")
+    public ResponseEntity<TaskSyncResponse> syncTasks(@CurrentUser AuthenticatedUser principal,
+                                                      @RequestParam(required = false) Long since,
+                                                      @RequestParam(required = false) String cursor,
+                                                      @RequestParam(required = false) Integer limit) {
+        User currentUser = getCurrentUser(principal);
         if (currentUser == null) {
             return ResponseEntity.status(401).build();
         }
 
-        List<Task> tasks = taskService.getDailyTasksForUser(currentUser);
-        List<TaskResponse> taskResponses = tasks.stream()
-                .map(TaskResponse::fromEntity)
-                .collect(Collectors.toList());
+        TaskSyncResponse sync;
+        try {
+            sync = taskService.sync(currentUser, since, TaskCursor.decodeSync(cursor), limit);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(sync);
+    }
+
+    /**
+     * Stream the current user's task changes as server-sent events. On a resync event,
+     * the client catches up through the sync endpoint using the event's token.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamTasks(@CurrentUser AuthenticatedUser principal) {
+        if (principal == null) {
+            return ResponseEntity.status(401).build();
+        }
+
+        // The bus only needs the user's ID, so opening a stream takes no database connection
+        SseEmitter emitter = taskEventBus.subscribe(principal.getId());
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .header("X-Accel-Buffering", "no") // keep reverse proxies from buffering the stream
+                .body(emitter);
+    }
+
+    /**
+     * Export tasks as newline-delimited JSON, written as they are read from the database.
+     * Archived tasks follow the rest. Admins export one user's tasks, or every task when no
+     * user is given; everyone else exports their own.
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportTasks(@CurrentUser AuthenticatedUser principal, @RequestParam(required = false) Long userId,
+                            HttpServletResponse response) throws IOException {
+        if (principal == null) {
+            response.setStatus(401);
+            return;
+        }
+
+        Long assigneeId = principal.getId();
+        if (principal.isAdmin()) {
+            if (userId != null && userService.findById(userId).isEmpty()) {
+                response.setStatus(404);
+                return;
+            }
+            assigneeId = userId;
+        } else if (userId != null && !userId.equals(principal.getId())) {
+            response.setStatus(403);
+            return;
+        }
 
-        return ResponseEntity.ok(taskResponses);
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noStore().getHeaderValue());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename("tasks.ndjson").build().toString());
+        // One generator for the whole export; it flushes to the response whenever its buffer fills
+        ObjectWriter writer = objectMapper.writerFor(TaskResponse.class)
+                .withRootValueSeparator("")
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator generator = writer.createGenerator(response.getOutputStream())) {
+            taskService.exportTasks(assigneeId, task -> {
+                try {
+                    writer.writeValue(generator, task);
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
     }
 
     /**
      * Create a new task
      */
     @PostMapping
-    public ResponseEntity<TaskResponse> createTask(@RequestBody TaskRequest taskRequest) {
-        User currentUser = getCurrentUser();
+    public ResponseEntity<TaskResponse> createTask(@CurrentUser AuthenticatedUser principal,
+                                                   @RequestBody TaskRequest taskRequest) {
+        User currentUser = getCurrentUser(principal);
         if (currentUser == null) {
             return ResponseEntity.status(401).build();
         }
 
-        Task task = new Task();
-        task.setTitle(taskRequest.getTitle());
-        task.setDescription(taskRequest.getDescription());
-        task.setDueDate(taskRequest.getDueDate());
-        task.setIsImportant(taskRequest.getIsImportant() != null ? taskRequest.getIsImportant() : false);
-        task.setIsCompleted(taskRequest.getIsCompleted() != null ? taskRequest.getIsCompleted() : false);
+        Task task = taskRequest.toEntity();
 
         // Admin can assign to any user, regular user can only assign to themselves
-        if (isAdmin(currentUser) && taskRequest.getAssigneeId() != null) {
+        if (principal.isAdmin() && taskRequest.getAssigneeId() != null) {
             Optional<User> assignee = userService.findById(taskRequest.getAssigneeId());
             if (assignee.isPresent()) {
                 task.setAssignee(assignee.get());
@@ -112,21 +308,25 @@ public class TaskController {
         }
 
         Task createdTask = taskService.createTask(task);
-        return ResponseEntity.ok(TaskResponse.fromEntity(createdTask));
+        return ResponseEntity.ok()
+                .eTag(taskETag(createdTask).formattedTag())
+                .body(TaskResponse.fromEntity(createdTask));
     }
 
     /**
      * Update an existing task
      */
     @PutMapping("/{id}")
-    public ResponseEntity<TaskResponse> updateTask(@PathVariable Long id, @RequestBody TaskRequest taskRequest) {
-        User currentUser = getCurrentUser();
+    public ResponseEntity<TaskResponse> updateTask(@CurrentUser AuthenticatedUser principal, @PathVariable Long id,
+                                                   @RequestBody TaskRequest taskRequest,
+                                                   @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        User currentUser = getCurrentUser(principal);
         if (currentUser == null) {
             return ResponseEntity.status(401).build();
         }
 
         Optional<Task> taskOptional;
-        if (isAdmin(currentUser)) {
+        if (principal.isAdmin()) {
             taskOptional = taskService.findById(id);
         } else {
             taskOptional = taskService.findByIdAndUser(id, currentUser);
@@ -137,38 +337,136 @@ public class TaskController {
         }
 
         Task task = taskOptional.get();
-        if (taskRequest.getTitle() != null) {
-            task.setTitle(taskRequest.getTitle());
+        if (ifMatch != null && !matches(ifMatch, taskETag(task), true)) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).eTag(taskETag(task).formattedTag()).build();
+        }
+        taskRequest.applyTo(task);
+
+        Task updatedTask;
+        try {
+            updatedTask = taskService.updateTask(task);
+        } catch (OptimisticLockingFailureException e) {
+            // Changed by someone else between loading and saving
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(taskETag(updatedTask).formattedTag())
+                .body(TaskResponse.fromEntity(updatedTask));
+    }
+
+    /**
+     * Change some fields of a task with one targeted update, without loading it first. Tasks
+     * that do not exist and tasks of other users both get 404, as with PUT. With If-Match, the
+     * update only applies to the given version; without, repeated patches to the task are
+     * coalesced while one is being applied.
+     */
+    @PatchMapping("/{id}")
+    public ResponseEntity<TaskResponse> patchTask(@CurrentUser AuthenticatedUser principal, @PathVariable Long id,
+                                                  @RequestBody TaskRequest changes,
+                                                  @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        if (principal == null) {
+            return ResponseEntity.status(401).build();
+        }
+        if (changes.getTitle() == null && changes.getDescription() == null && changes.getDueDate() == null
+                && changes.getIsImportant() == null && changes.getIsCompleted() == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (changes.getTitle() != null && changes.getTitle().isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        // Admins may patch anyone's task; the update still checks it is assigned to whoever it was
+        Long assigneeId = principal.isAdmin() ? taskService.findAssigneeId(id).orElse(null) : principal.getId();
+        if (assigneeId == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        Optional<Task> patched;
+        if (ifMatch == null) {
+            patched = taskPatchCoalescer.patch(id, assigneeId, changes);
+        } else {
+            List<Long> versions = matchedVersions(ifMatch);
+            patched = versions.isEmpty() ? Optional.empty() : taskService.patchTask(id, assigneeId,
+                    versions.contains(null) ? null : versions, changes);
         }
-        if (taskRequest.getDescription() != null) {
-            task.setDescription(taskRequest.getDescription());
+        if (patched.isEmpty()) {
+            // No row updated: tell a stale If-Match from a task that is not there
+            Optional<Long> current = ifMatch != null ? taskService.findVersion(id, assigneeId) : Optional.empty();
+            return current.isPresent()
+                    ? ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                            .eTag(new ETag(String.valueOf(current.get()), false).formattedTag()).build()
+                    : ResponseEntity.notFound().build();
         }
-        if (taskRequest.getDueDate() != null) {
-            task.setDueDate(taskRequest.getDueDate());
+        return ResponseEntity.ok()
+                .eTag(taskETag(patched.get()).formattedTag())
+                .body(TaskResponse.fromEntity(patched.get()));
+    }
+
+    /**
+     * Apply a batch of task creates, updates and deletes in one transaction,
+     * reporting a result for every operation
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<TaskBatchResponse> applyBatch(@CurrentUser AuthenticatedUser principal,
+                                                        @RequestBody TaskBatchRequest batchRequest) {
+        User currentUser = getCurrentUser(principal);
+        if (currentUser == null) {
+            return ResponseEntity.status(401).build();
         }
-        if (taskRequest.getIsImportant() != null) {
-            task.setIsImportant(taskRequest.getIsImportant());
+
+        try {
+            return ResponseEntity.ok(taskService.applyBatch(batchRequest, currentUser, principal.isAdmin()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         }
-        if (taskRequest.getIsCompleted() != null) {
-            task.setIsCompleted(taskRequest.getIsCompleted());
+    }
+
+    /**
+     * Import newline-delimited JSON tasks, in the export's format, as new tasks. The body is
+     * parsed as it arrives and saved in batches, each in its own transaction, so everything
+     * before a malformed line stays imported.
+     */
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<TaskImportResponse> importTasks(@CurrentUser AuthenticatedUser principal,
+                                                          HttpServletRequest request) throws IOException {
+        User currentUser = getCurrentUser(principal);
+        if (currentUser == null) {
+            return ResponseEntity.status(401).build();
         }
 
-        Task updatedTask = taskService.updateTask(task);
-        return ResponseEntity.ok(TaskResponse.fromEntity(updatedTask));
+        TaskImportResponse result = new TaskImportResponse();
+        List<TaskResponse> batch = new ArrayList<>(importBatchSize);
+        int read = 0;
+        try (MappingIterator<TaskResponse> lines = objectMapper.readerFor(TaskResponse.class)
+                .readValues(request.getInputStream())) {
+            while (lines.hasNextValue()) {
+                batch.add(lines.nextValue());
+                read++;
+                if (batch.size() == importBatchSize) {
+                    importBatch(result, batch, read - batch.size(), currentUser, principal.isAdmin());
+                }
+            }
+        } catch (JsonProcessingException e) {
+            importBatch(result, batch, read - batch.size(), currentUser, principal.isAdmin());
+            addImportFailure(result, TaskBatchResult.failure(read, null, 400, "Malformed JSON"));
+            return ResponseEntity.badRequest().body(result);
+        }
+        importBatch(result, batch, read - batch.size(), currentUser, principal.isAdmin());
+        return ResponseEntity.ok(result);
     }
 
     /**
      * Delete a task
      */
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteTask(@PathVariable Long id) {
-        User currentUser = getCurrentUser();
+    public ResponseEntity<Void> deleteTask(@CurrentUser AuthenticatedUser principal, @PathVariable Long id) {
+        User currentUser = getCurrentUser(principal);
         if (currentUser == null) {
             return ResponseEntity.status(401).build();
         }
 
         Optional<Task> taskOptional;
-        if (isAdmin(currentUser)) {
+        if (principal.isAdmin()) {
             taskOptional = taskService.findById(id);
         } else {
             taskOptional = taskService.findByIdAndUser(id, currentUser);
@@ -183,21 +481,139 @@ public class TaskController {
     }
 
     /**
-     * Helper method to get the current authenticated user
+     * Helper method to serve a task list page, answering 304 Not Modified without querying
+     * tasks when the client already has the current version of the user's task collection.
+     * The page's ETag carries the version read with the page, which may come from a replica,
+     * so it is never newer than the tasks it labels.
+     */
+    private ResponseEntity<TaskPageResponse<?>> listTasks(AuthenticatedUser principal, String ifNoneMatch,
+                                                          String cursor, TaskSort sort, String etagSuffix,
+                                                          BiFunction<User, TaskKeyset, TaskPage<?>> query) {
+        User currentUser = getCurrentUser(principal);
+        if (currentUser == null) {
+            return ResponseEntity.status(401).build();
+        }
+
+        // The current version, from the primary: a client holding it has a body at least that new
+        ETag current = listEtag(taskService.getCollectionVersion(currentUser), etagSuffix);
+        CacheControl cacheControl = CacheControl.noCache().cachePrivate();
+        if (ifNoneMatch != null && matches(ifNoneMatch, current, false)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(current.formattedTag())
+                    .cacheControl(cacheControl)
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .build();
+        }
+
+        TaskKeyset after;
+        try {
+            after = TaskCursor.decode(cursor, sort);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        TaskPage<?> page = query.apply(currentUser, after);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .cacheControl(cacheControl)
+                .varyBy(HttpHeaders.ACCEPT);
+        if (page.collectionVersion() != null) {
+            response.eTag(listEtag(page.collectionVersion(), etagSuffix).formattedTag());
+        }
+        return response.body(toPageResponse(page, sort));
+    }
+
+    /**
+     * Helper method to build a list ETag from a collection version. Weak, since the same page is sent
+     * as JSON or Smile, compressed or not; Tomcat never compresses strong ETags.
+     */
+    private static ETag listEtag(long version, String suffix) {
+        return new ETag(suffix != null ? version + "-" + suffix : String.valueOf(version), true);
+    }
+
+    /**
+     * Helper method to tell list ETags with archived tasks from those without; archiving bumps the
+     * collection version, so the version covers archived tasks too
+     */
+    private static String etagSuffix(String suffix, boolean includeArchived) {
+        if (!includeArchived) {
+            return suffix;
+        }
+        return suffix != null ? suffix + "-archived" : "archived";
+    }
+
+    /**
+     * Helper method to import a batch of tasks, adding the outcome to the import's result
+     */
+    private void importBatch(TaskImportResponse result, List<TaskResponse> batch, int firstIndex,
+                             User currentUser, boolean admin) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<TaskBatchResult> failures = taskService.importTasks(batch, firstIndex, currentUser, admin);
+        result.setImported(result.getImported() + batch.size() - failures.size());
+        failures.forEach(failure -> addImportFailure(result, failure));
+        batch.clear();
+    }
+
+    /**
+     * Helper method to count an import failure, listing only the first ones
+     */
+    private static void addImportFailure(TaskImportResponse result, TaskBatchResult failure) {
+        result.setFailed(result.getFailed() + 1);
+        if (result.getFailures().size() < MAX_REPORTED_IMPORT_FAILURES) {
+            result.getFailures().add(failure);
+        }
+    }
+
+    /**
+     * Helper method to check a conditional request header against an ETag
+     */
+    private static boolean matches(String header, ETag etag, boolean strong) {
+        for (ETag candidate : ETag.parse(header)) {
+            if (candidate.isWildcard() || candidate.compare(etag, strong)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Helper method to get the task versions an If-Match header accepts, with null standing for any version
      */
-    private User getCurrentUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication != null && authentication.isAuthenticated()) {
-            String username = authentication.getName();
-            return userService.findByUsername(username).orElse(null);
+    private static List<Long> matchedVersions(String ifMatch) {
+        List<Long> versions = new ArrayList<>();
+        for (ETag candidate : ETag.parse(ifMatch)) {
+            if (candidate.isWildcard()) {
+                versions.add(null);
+            } else if (!candidate.weak()) {
+                try {
+                    versions.add(Long.valueOf(candidate.tag()));
+                } catch (NumberFormatException e) {
+                    // Not one of our task ETags, so it matches no version
+                }
+            }
         }
-        return null;
+        return versions;
+    }
+
+    /**
+     * Helper method to get the ETag of a single task, derived from its version
+     */
+    private static ETag taskETag(Task task) {
+        return new ETag(String.valueOf(task.getVersion()), false);
+    }
+
+    /**
+     * Helper method to wrap a page of tasks with the cursor for the next page
+     */
+    private <T> TaskPageResponse<T> toPageResponse(TaskPage<T> page, TaskSort sort) {
+        return new TaskPageResponse<>(page.items(), TaskCursor.encode(sort, page.next()));
     }
 
     /**
-     * Helper method to check if user is admin
+     * Helper method to get a reference to the current authenticated user without querying the database
      */
-    private boolean isAdmin(User user) {
-        return user != null && "ROLE_ADMIN".equals(user.getRole());
+    private User getCurrentUser(AuthenticatedUser principal) {
+        return principal != null ? userService.getReference(principal.getId()) : null;
     }
 }
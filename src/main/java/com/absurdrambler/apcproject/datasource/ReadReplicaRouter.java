@@ -0,0 +1,243 @@
+package com.absurdrambler.apcproject.datasource;
+
+import com.absurdrambler.apcproject.security.AuthenticatedUser;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chooses where read-only transactions read from. Replicas are checked on a thread of their
+ * own, so a long scheduled job cannot hold up the checks; a replica is used while its last
+ * check found it up and lagging no more than the maximum. A user who wrote within the
+ * read-your-writes window reads from the primary, and so does everyone when no replica is usable.
+ * Only writes made through this instance pin a user, so the window is per instance.
+ */
+@Slf4j
+public class ReadReplicaRouter implements AutoCloseable {
+
+    public enum Selection {
+        ROUND_ROBIN,
+        LEAST_CONNECTIONS
+    }
+
+    private static final String PRIMARY = "primary";
+
+    private final HikariDataSource primary;
+    private final List<Replica> replicas;
+    private final Selection selection;
+    private final String lagQuery;
+    private final long maxLagMillis;
+    private final long readYourWritesNanos;
+    private final long checkIntervalMillis;
+    private final MeterRegistry meterRegistry;
+    private final Counter primaryReads;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ConcurrentMap<Long, Long> lastWrites = new ConcurrentHashMap<>();
+    private final ThreadLocal<DataSource> readTarget = new ThreadLocal<>();
+    private ScheduledExecutorService checker;
+
+    public ReadReplicaRouter(HikariDataSource primary, List<HikariDataSource> replicas, Selection selection,
+                             String lagQuery, long maxLagMillis, long readYourWritesMillis, long checkIntervalMillis,
+                             MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.selection = selection;
+        this.lagQuery = lagQuery == null || lagQuery.isBlank() ? null : lagQuery;
+        this.maxLagMillis = maxLagMillis;
+        this.readYourWritesNanos = TimeUnit.MILLISECONDS.toNanos(readYourWritesMillis);
+        this.checkIntervalMillis = checkIntervalMillis;
+        this.meterRegistry = meterRegistry;
+        this.primaryReads = readCounter(PRIMARY);
+        this.replicas = replicas.stream().map(Replica::new).toList();
+    }
+
+    /**
+     * Start checking replicas, right away and then every check interval. Reads stay on the
+     * primary until a replica's first check finds it usable.
+     */
+    public void start() {
+        checker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "read-replica-checker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checker.scheduleWithFixedDelay(this::checkReplicas, 0, checkIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Get the primary, which takes every write and every read not routed to a replica
+     * @return the primary's pool
+     */
+    public HikariDataSource getPrimary() {
+        return primary;
+    }
+
+    /**
+     * Get the data source connections are taken from on the current thread
+     * @return the replica chosen by {@link #beginRead}, or the primary
+     */
+    public DataSource connectionTarget() {
+        DataSource target = readTarget.get();
+        return target != null ? target : primary;
+    }
+
+    /**
+     * Route connections taken on the current thread until {@link #endRead} to a replica, if one is usable
+     * @param userId the user reading, or null when no user is signed in
+     * @return true if a replica was chosen, false if reads stay on the primary
+     */
+    public boolean beginRead(Long userId) {
+        Replica replica = wroteRecently(userId) ? null : choose();
+        if (replica == null) {
+            primaryReads.increment();
+            return false;
+        }
+        replica.reads.increment();
+        readTarget.set(replica.pool);
+        return true;
+    }
+
+    /**
+     * Route connections taken on the current thread to the primary again
+     */
+    public void endRead() {
+        readTarget.remove();
+    }
+
+    /**
+     * Keep a user's reads on the primary for the read-your-writes window
+     * @param userId the user who wrote
+     */
+    public void recordWrite(Long userId) {
+        if (userId != null && readYourWritesNanos > 0) {
+            lastWrites.put(userId, System.nanoTime());
+        }
+    }
+
+    /**
+     * Check each replica is up and within the maximum lag, and forget writes past the window
+     */
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            replica.check();
+        }
+        long now = System.nanoTime();
+        lastWrites.values().removeIf(writtenAt -> now - writtenAt >= readYourWritesNanos);
+    }
+
+    @Override
+    public void close() {
+        if (checker != null) {
+            checker.shutdownNow();
+        }
+        for (Replica replica : replicas) {
+            replica.pool.close();
+        }
+        primary.close();
+    }
+
+    /**
+     * Get the signed-in user on the current thread
+     * @return the user's ID, or null when no user is signed in
+     */
+    static Long currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser user
+                ? user.getId()
+                : null;
+    }
+
+    private boolean wroteRecently(Long userId) {
+        Long writtenAt = userId != null ? lastWrites.get(userId) : null;
+        return writtenAt != null && System.nanoTime() - writtenAt < readYourWritesNanos;
+    }
+
+    private Replica choose() {
+        if (selection == Selection.LEAST_CONNECTIONS) {
+            return replicas.stream()
+                    .filter(replica -> replica.available)
+                    .min(Comparator.comparingInt(Replica::activeConnections))
+                    .orElse(null);
+        }
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.available) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private Counter readCounter(String target) {
+        return Counter.builder("app.datasource.reads")
+                .description("Read-only transactions by the database they read from")
+                .tag("target", target)
+                .register(meterRegistry);
+    }
+
+    /**
+     * A replica's pool and the outcome of its last check
+     */
+    private final class Replica {
+        private final HikariDataSource pool;
+        private final Counter reads;
+        private volatile boolean available;
+        private volatile long lagMillis = -1;
+
+        private Replica(HikariDataSource pool) {
+            this.pool = pool;
+            this.reads = readCounter(pool.getPoolName());
+            Gauge.builder("app.datasource.replica.lag", this, replica -> replica.lagMillis)
+                    .description("Replication lag at the last check in milliseconds, -1 while the replica is down")
+                    .baseUnit("milliseconds")
+                    .tag("replica", pool.getPoolName())
+                    .register(meterRegistry);
+        }
+
+        private void check() {
+            boolean wasAvailable = available;
+            try (Connection connection = pool.getConnection()) {
+                lagMillis = lagQuery != null ? queryLag(connection) : connection.isValid(1) ? 0 : -1;
+            } catch (SQLException | RuntimeException e) {
+                log.debug("Check of read replica {} failed", pool.getPoolName(), e);
+                lagMillis = -1;
+            }
+            available = lagMillis >= 0 && lagMillis <= maxLagMillis;
+            if (available != wasAvailable) {
+                log.info("Read replica {} is {} (lag {} ms)", pool.getPoolName(),
+                        available ? "in use" : "out of use", lagMillis);
+            }
+        }
+
+        private long queryLag(Connection connection) throws SQLException {
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(lagQuery)) {
+                return resultSet.next() ? Math.max(0, Math.round(resultSet.getDouble(1))) : -1;
+            }
+        }
+
+        private int activeConnections() {
+            HikariPoolMXBean poolBean = pool.getHikariPoolMXBean();
+            return poolBean != null ? poolBean.getActiveConnections() : 0;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.absurdrambler.apcproject.datasource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * The application's data source when read replicas are configured. Connections come from the
+ * replica the router chose for the current thread's read-only transaction, and otherwise from
+ * the primary, which is also what the data source unwraps to for pool metrics. A primary
+ * connection that prepared anything but a query records its user as a writer when it is
+ * closed, so transactions that only read do not keep their user off the replicas.
+ */
+public class ReplicaRoutingDataSource extends DelegatingDataSource {
+
+    private final ReadReplicaRouter router;
+
+    public ReplicaRoutingDataSource(ReadReplicaRouter router) {
+        super(router.getPrimary());
+        this.router = router;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        DataSource target = router.connectionTarget();
+        return routed(target, target.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        DataSource target = router.connectionTarget();
+        return routed(target, target.getConnection(username, password));
+    }
+
+    private Connection routed(DataSource target, Connection connection) {
+        if (target != router.getPrimary()) {
+            return connection;
+        }
+        return (Connection) Proxy.newProxyInstance(ReplicaRoutingDataSource.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, new WriteTracker(connection));
+    }
+
+    private static boolean isQuery(String sql) {
+        String statement = sql.stripLeading().toLowerCase(Locale.ROOT);
+        return statement.startsWith("select") || statement.startsWith("with") || statement.startsWith("values");
+    }
+
+    /**
+     * Passes every call through to the primary's connection, noting whether anything but a
+     * query was prepared on it. Statements created without SQL count as writes, since what
+     * they run is not known up front.
+     */
+    private final class WriteTracker implements InvocationHandler {
+        private final Connection target;
+        private boolean wrote;
+        private boolean closed;
+
+        private WriteTracker(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "prepareStatement", "prepareCall":
+                    wrote |= !isQuery((String) args[0]);
+                    break;
+                case "createStatement":
+                    wrote = true;
+                    break;
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        if (wrote) {
+                            router.recordWrite(ReadReplicaRouter.currentUserId());
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.absurdrambler.apcproject.datasource;
+
+import jakarta.persistence.CacheStoreMode;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+
+import java.sql.SQLException;
+
+/**
+ * Routes each new read-only transaction to a replica or the primary as it begins, while
+ * Hibernate takes the connection it holds for the whole transaction. Sessions reading from a
+ * replica use cached entries but do not add to the caches, so a lagging replica's rows are
+ * never cached.
+ */
+public class ReplicaRoutingJpaDialect extends HibernateJpaDialect {
+
+    private static final String CACHE_STORE_MODE = "jakarta.persistence.cache.storeMode";
+
+    private final ReadReplicaRouter router;
+
+    public ReplicaRoutingJpaDialect(ReadReplicaRouter router) {
+        this.router = router;
+    }
+
+    @Override
+    public Object beginTransaction(EntityManager entityManager, TransactionDefinition definition)
+            throws PersistenceException, SQLException, TransactionException {
+        if (!definition.isReadOnly() || !router.beginRead(ReadReplicaRouter.currentUserId())) {
+            return super.beginTransaction(entityManager, definition);
+        }
+        try {
+            // A property rather than the session's cache mode, since finds and queries take their mode from it
+            Object previousStoreMode = entityManager.getProperties().getOrDefault(CACHE_STORE_MODE, CacheStoreMode.USE);
+            entityManager.setProperty(CACHE_STORE_MODE, CacheStoreMode.BYPASS);
+            try {
+                return new ReplicaTransaction(super.beginTransaction(entityManager, definition), entityManager,
+                        previousStoreMode);
+            } catch (SQLException | RuntimeException e) {
+                entityManager.setProperty(CACHE_STORE_MODE, previousStoreMode);
+                throw e;
+            }
+        } finally {
+            router.endRead();
+        }
+    }
+
+    @Override
+    public void cleanupTransaction(Object transactionData) {
+        if (transactionData instanceof ReplicaTransaction replica) {
+            super.cleanupTransaction(replica.delegate());
+            replica.entityManager().setProperty(CACHE_STORE_MODE, replica.previousStoreMode());
+        } else {
+            super.cleanupTransaction(transactionData);
+        }
+    }
+
+    /**
+     * Hibernate's transaction data for a transaction on a replica, with the cache store mode to restore when it ends
+     */
+    private record ReplicaTransaction(Object delegate, EntityManager entityManager, Object previousStoreMode) {
+    }
+}
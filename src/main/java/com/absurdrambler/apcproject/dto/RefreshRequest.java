@@ -0,0 +1,15 @@
+package com.absurdrambler.apcproject.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for token refresh requests
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RefreshRequest {
+    private String refreshToken; // optional when sent as the refresh cookie
+}
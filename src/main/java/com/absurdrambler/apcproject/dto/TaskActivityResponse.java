@@ -0,0 +1,25 @@
+package com.absurdrambler.apcproject.dto;
+
+import com.absurdrambler.apcproject.entity.TaskActivity;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * DTO for one entry of a task's history
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskActivityResponse {
+    private Long id;
+    private Long taskId;
+    private TaskActivity.Action action;
+    private Long actorId; // null for changes made outside a user's request
+    private String actorName;
+    private Map<String, TaskFieldChange> changes; // empty on delete
+    private Instant occurredAt;
+}
@@ -0,0 +1,19 @@
+package com.absurdrambler.apcproject.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO for batch task requests. All operations run in one transaction.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskBatchRequest {
+    private List<TaskRequest> create;
+    private List<TaskBatchUpdate> update;
+    private List<Long> delete; // task IDs
+}
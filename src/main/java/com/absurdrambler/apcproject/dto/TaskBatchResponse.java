@@ -0,0 +1,19 @@
+package com.absurdrambler.apcproject.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO for batch task responses, with one result per requested operation
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskBatchResponse {
+    private List<TaskBatchResult> created;
+    private List<TaskBatchResult> updated;
+    private List<TaskBatchResult> deleted;
+}
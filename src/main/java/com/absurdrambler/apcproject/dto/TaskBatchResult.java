@@ -0,0 +1,27 @@
+package com.absurdrambler.apcproject.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for the outcome of one operation in a batch task request
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskBatchResult {
+    private int index; // position of the operation in its request array
+    private Long id;
+    private int status; // HTTP status the operation would have had on its own
+    private String error;
+    private TaskResponse task;
+
+    public static TaskBatchResult success(int index, int status, TaskResponse task) {
+        return new TaskBatchResult(index, task.getId(), status, null, task);
+    }
+
+    public static TaskBatchResult failure(int index, Long id, int status, String error) {
+        return new TaskBatchResult(index, id, status, error, null);
+    }
+}
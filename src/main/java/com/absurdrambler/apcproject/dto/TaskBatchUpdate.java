@@ -0,0 +1,16 @@
+package com.absurdrambler.apcproject.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for one update in a batch task request. Only non-null fields are changed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskBatchUpdate {
+    private Long id;
+    private TaskRequest changes;
+}
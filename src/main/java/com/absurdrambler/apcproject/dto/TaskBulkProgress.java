@@ -0,0 +1,17 @@
+package com.absurdrambler.apcproject.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for one progress line of a bulk task operation, written after every chunk
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskBulkProgress {
+    private String operation;
+    private long processed; // tasks changed so far, across all committed chunks
+    private boolean done;
+}
@@ -0,0 +1,18 @@
+package com.absurdrambler.apcproject.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for the sidebar task counts of a user
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskCountsResponse {
+    private long total;
+    private long open;
+    private long important;
+    private long dueToday;
+}
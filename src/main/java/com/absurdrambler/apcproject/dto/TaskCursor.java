@@ -0,0 +1,173 @@
+package com.absurdrambler.apcproject.dto;
+
+import com.absurdrambler.apcproject.repository.TaskKeyset;
+import com.absurdrambler.apcproject.repository.TaskSearchKeyset;
+import com.absurdrambler.apcproject.repository.TaskSort;
+import com.absurdrambler.apcproject.repository.TaskSyncKeyset;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+/**
+ * Opaque pagination cursor handed to clients. Encodes the sort order and the
+ * keyset position of the last task on a page.
+ */
+public final class TaskCursor {
+
+    private static final String SEPARATOR = "|";
+    private static final String SEARCH = "SEARCH";
+    private static final String HISTORY = "HISTORY";
+    private static final String SYNC = "SYNC";
+
+    private TaskCursor() {
+    }
+
+    /**
+     * Encode a keyset position as an opaque cursor
+     * @param sort the sort order the position belongs to
+     * @param keyset the keyset position, may be null
+     * @return the cursor, or null if there is no position
+     */
+    public static String encode(TaskSort sort, TaskKeyset keyset) {
+        if (keyset == null) {
+            return null;
+        }
+        String raw = sort.name() + SEPARATOR
+                + (keyset.dueDate() != null ? keyset.dueDate().toString() : "") + SEPARATOR
+                + keyset.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor produced by {@link #encode}
+     * @param cursor the cursor, may be null or blank for the first page
+     * @param sort the sort order of the current request
+     * @return the keyset position, or null for the first page
+     * @throws IllegalArgumentException if the cursor is malformed or was issued for another sort order
+     */
+    public static TaskKeyset decode(String cursor, TaskSort sort) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+
+        String[] parts = raw.split("\\|", -1);
+        if (parts.length != 3 || !parts[0].equals(sort.name())) {
+            throw new IllegalArgumentException("Cursor does not match sort order " + sort);
+        }
+        try {
+            LocalDate dueDate = parts[1].isEmpty() ? null : LocalDate.parse(parts[1]);
+            return new TaskKeyset(dueDate, Long.parseLong(parts[2]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+
+    /**
+     * Encode a search results position as an opaque cursor
+     * @param keyset the position, may be null
+     * @return the cursor, or null if there is no position
+     */
+    public static String encode(TaskSearchKeyset keyset) {
+        if (keyset == null) {
+            return null;
+        }
+        String raw = SEARCH + SEPARATOR + keyset.rank() + SEPARATOR + keyset.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor produced by {@link #encode(TaskSearchKeyset)}
+     * @param cursor the cursor, may be null or blank for the first page
+     * @return the position, or null for the first page
+     * @throws IllegalArgumentException if the cursor is malformed or was not issued for a search
+     */
+    public static TaskSearchKeyset decodeSearch(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", -1);
+            if (parts.length != 3 || !parts[0].equals(SEARCH)) {
+                throw new IllegalArgumentException("Not a search cursor");
+            }
+            return new TaskSearchKeyset(Float.parseFloat(parts[1]), Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+
+    /**
+     * Encode a task history position as an opaque cursor
+     * @param beforeId ID of the last entry read, may be null
+     * @return the cursor, or null if there is no position
+     */
+    public static String encodeHistory(Long beforeId) {
+        if (beforeId == null) {
+            return null;
+        }
+        String raw = HISTORY + SEPARATOR + beforeId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor produced by {@link #encodeHistory(Long)}
+     * @param cursor the cursor, may be null or blank for the first page
+     * @return ID of the last entry read, or null for the first page
+     * @throws IllegalArgumentException if the cursor is malformed or was not issued for a task history
+     */
+    public static Long decodeHistory(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", -1);
+            if (parts.length != 2 || !parts[0].equals(HISTORY)) {
+                throw new IllegalArgumentException("Not a history cursor");
+            }
+            return Long.parseLong(parts[1]);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+
+    /**
+     * Encode a sync position as an opaque cursor
+     * @param keyset the position, may be null
+     * @return the cursor, or null if there is no position
+     */
+    public static String encode(TaskSyncKeyset keyset) {
+        if (keyset == null) {
+            return null;
+        }
+        String raw = SYNC + SEPARATOR + keyset.changeSeq() + SEPARATOR + keyset.id() + SEPARATOR + keyset.deletedAfter();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor produced by {@link #encode(TaskSyncKeyset)}
+     * @param cursor the cursor, may be null or blank for the first page
+     * @return the position, or null for the first page
+     * @throws IllegalArgumentException if the cursor is malformed or was not issued for a sync
+     */
+    public static TaskSyncKeyset decodeSync(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", -1);
+            if (parts.length != 4 || !parts[0].equals(SYNC)) {
+                throw new IllegalArgumentException("Not a sync cursor");
+            }
+            return new TaskSyncKeyset(Long.parseLong(parts[1]), Long.parseLong(parts[2]), Long.parseLong(parts[3]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.absurdrambler.apcproject.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for one event on the task stream
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskEvent {
+    private Long taskId; // null on resync
+    private long token; // sync token as of this event
+    private TaskResponse task; // null on delete and resync
+}
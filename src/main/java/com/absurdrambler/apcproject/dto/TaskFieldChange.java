@@ -0,0 +1,16 @@
+package com.absurdrambler.apcproject.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for the old and new value of one task field in the activity log
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskFieldChange {
+    private Object from; // null when the task was created
+    private Object to;
+}
@@ -0,0 +1,20 @@
+package com.absurdrambler.apcproject.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO for task import responses. Only the first failures are listed; the count covers all of them.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskImportResponse {
+    private long imported;
+    private long failed;
+    private List<TaskBatchResult> failures = new ArrayList<>(); // index is the line's position in the import
+}
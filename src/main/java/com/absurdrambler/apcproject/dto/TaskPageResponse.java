@@ -0,0 +1,19 @@
+package com.absurdrambler.apcproject.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO for one page of a task listing
+ * @param <T> the task response type (full or summary)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskPageResponse<T> {
+    private List<T> items;
+    private String nextCursor; // null on the last page
+}
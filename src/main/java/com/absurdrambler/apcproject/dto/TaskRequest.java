@@ -1,5 +1,6 @@
 package com.absurdrambler.apcproject.dto;
 
+import com.absurdrambler.apcproject.entity.Task;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -19,4 +20,40 @@ public class TaskRequest {
     private Boolean isImportant;
     private Boolean isCompleted;
     private Long assigneeId; // Only used by admins
+
+    /**
+     * Create a new, unassigned task from this request
+     * @return the new task
+     */
+    public Task toEntity() {
+        Task task = new Task();
+        task.setTitle(title);
+        task.setDescription(description);
+        task.setDueDate(dueDate);
+        task.setIsImportant(isImportant != null ? isImportant : false);
+        task.setIsCompleted(isCompleted != null ? isCompleted : false);
+        return task;
+    }
+
+    /**
+     * Copy the non-null fields of this request onto an existing task
+     * @param task the task to update
+     */
+    public void applyTo(Task task) {
+        if (title != null) {
+            task.setTitle(title);
+        }
+        if (description != null) {
+            task.setDescription(description);
+        }
+        if (dueDate != null) {
+            task.setDueDate(dueDate);
+        }
+        if (isImportant != null) {
+            task.setIsImportant(isImportant);
+        }
+        if (isCompleted != null) {
+            task.setIsCompleted(isCompleted);
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package com.absurdrambler.apcproject.dto;
 
+import com.absurdrambler.apcproject.entity.ArchivedTask;
 import com.absurdrambler.apcproject.entity.Task;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -21,6 +22,7 @@ public class TaskResponse {
     private Boolean isImportant;
     private Boolean isCompleted;
     private String assigneeName;
+    private Long version; // send back in If-Match to update only this version
 
     public static TaskResponse fromEntity(Task task) {
         return new TaskResponse(
@@ -30,7 +32,21 @@ public class TaskResponse {
             task.getDueDate(),
             task.getIsImportant(),
             task.getIsCompleted(),
-            task.getAssignee() != null ? task.getAssignee().getUsername() : null
+            task.getAssignee() != null ? task.getAssignee().getUsername() : null,
+            task.getVersion()
+        );
+    }
+
+    public static TaskResponse fromEntity(ArchivedTask task) {
+        return new TaskResponse(
+            task.getId(),
+            task.getTitle(),
+            task.getDescription(),
+            task.getDueDate(),
+            task.getIsImportant(),
+            task.getIsCompleted(),
+            task.getAssignee() != null ? task.getAssignee().getUsername() : null,
+            task.getVersion()
         );
     }
 }
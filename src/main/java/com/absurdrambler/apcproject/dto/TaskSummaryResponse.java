@@ -0,0 +1,23 @@
+package com.absurdrambler.apcproject.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * DTO for task list responses without the description
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskSummaryResponse {
+    private Long id;
+    private String title;
+    private LocalDate dueDate;
+    private Boolean isImportant;
+    private Boolean isCompleted;
+    private String assigneeName;
+    private Long version; // send back in If-Match to update only this version
+}
@@ -0,0 +1,24 @@
+package com.absurdrambler.apcproject.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO for one page of the changes to a user's tasks since a sync token. Changes are paged
+ * in the order they were made; a client applies each page, then asks for the next with
+ * nextCursor until hasMore is false.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskSyncResponse {
+    private List<TaskResponse> upserts;
+    private List<Long> deletions;
+    private long token; // pass as "since" on the next sync, once hasMore is false
+    private boolean reset; // true if upserts start a full snapshot and the client must drop its copy
+    private boolean hasMore; // true if more changes follow on the next page
+    private String nextCursor; // pass as "cursor" to get the next page; null on the last page
+}
@@ -0,0 +1,22 @@
+package com.absurdrambler.apcproject.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO for login and refresh responses in stateless mode
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TokenResponse {
+    private boolean success;
+    private String message;
+    private String username;
+    private String role;
+    private String accessToken;
+    private String refreshToken;
+    private String tokenType;
+    private long expiresIn; // access token lifetime in seconds
+}
@@ -0,0 +1,56 @@
+package com.absurdrambler.apcproject.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Task completed long ago and moved out of the tasks table by the archiver. Keeps the task's
+ * ID and fields as they were when archived; rows are only ever inserted, in bulk, and read
+ * by listings that ask for archived tasks.
+ */
+@Entity
+@Table(name = "archived_tasks")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchivedTask {
+
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private String title;
+
+    @Column(columnDefinition = "TEXT")
+    private String description;
+
+    @Column(name = "due_date")
+    private LocalDate dueDate;
+
+    @Column(name = "is_important")
+    private Boolean isImportant;
+
+    @Column(name = "is_completed")
+    private Boolean isCompleted;
+
+    @Column(nullable = false)
+    private Long version;
+
+    @Column(name = "change_seq", nullable = false)
+    private long changeSeq;
+
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+
+    @Column(name = "archived_at", nullable = false)
+    private Instant archivedAt;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "assignee_id")
+    private User assignee;
+}
@@ -1,24 +1,37 @@
 package com.absurdrambler.apcproject.entity;
 
+import com.absurdrambler.apcproject.cache.CacheRegions;
 import jakarta.persistence.*;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.UpdateTimestamp;
 
+import java.time.Instant;
 import java.time.LocalDate;
 
 /**
  * Task entity representing todo tasks
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.TASKS)
 @Table(name = "tasks")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Task {
 
+    // Sequence ids let Hibernate batch inserts; ids are allocated 50 at a time
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "task_id_seq")
+    @SequenceGenerator(name = "task_id_seq", sequenceName = "task_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -36,10 +49,35 @@ public class Task {
     @Column(name = "is_completed")
     private Boolean isCompleted = false;
 
+    @Version
+    private Long version;
+
+    // Assignee's collection version at the last write, used as the delta sync position
+    @Column(name = "change_seq", nullable = false)
+    private long changeSeq;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "assignee_id")
     private User assignee;
 
+    // Counted fields as last loaded or counted, used to maintain per-user task counters
+    @Transient
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private CountedState countedState;
+
+    // Fields as last loaded or logged, used to record field-level changes in the activity log
+    @Transient
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private LoggedState loggedState;
+
     // Constructor for easy creation
     public Task(String title, String description, LocalDate dueDate, Boolean isImportant, Boolean isCompleted, User assignee) {
         this.title = title;
@@ -49,4 +87,38 @@ public class Task {
         this.isCompleted = isCompleted != null ? isCompleted : false;
         this.assignee = assignee;
     }
+
+    @PostLoad
+    private void loaded() {
+        markCounted();
+        markLogged();
+    }
+
+    /**
+     * Remember the current counted fields, so the next change can be counted as a delta
+     */
+    public void markCounted() {
+        this.countedState = new CountedState(isImportant, isCompleted, dueDate);
+    }
+
+    /**
+     * Remember the current fields, so the next logged change records only what changed since
+     */
+    public void markLogged() {
+        this.loggedState = new LoggedState(title, description, dueDate, isImportant, isCompleted,
+                assignee != null ? assignee.getId() : null);
+    }
+
+    /**
+     * Snapshot of the fields that per-user task counters depend on
+     */
+    public record CountedState(Boolean isImportant, Boolean isCompleted, LocalDate dueDate) {
+    }
+
+    /**
+     * Snapshot of the fields recorded in the activity log
+     */
+    public record LoggedState(String title, String description, LocalDate dueDate, Boolean isImportant,
+                              Boolean isCompleted, Long assigneeId) {
+    }
 }
@@ -0,0 +1,46 @@
+package com.absurdrambler.apcproject.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Entry of a task's activity log: who did what to the task, and which fields changed.
+ * Rows are only ever inserted, by TaskActivityLog.
+ */
+@Entity
+@Table(name = "task_events")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskActivity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "task_id", nullable = false)
+    private Long taskId;
+
+    // Null for changes made outside a user's request
+    @Column(name = "actor_id")
+    private Long actorId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Action action;
+
+    // JSON object mapping each changed field to its old and new value
+    @Column(columnDefinition = "TEXT")
+    private String changes;
+
+    @Column(name = "occurred_at", nullable = false)
+    private Instant occurredAt;
+
+    public enum Action {
+        CREATED, UPDATED, COMPLETED, REOPENED, DELETED, ARCHIVED
+    }
+}
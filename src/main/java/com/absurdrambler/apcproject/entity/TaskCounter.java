@@ -0,0 +1,48 @@
+package com.absurdrambler.apcproject.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Per-user task counters shown in the sidebar and the version of the user's task
+ * collection, both maintained incrementally on every task write
+ */
+@Entity
+@Table(name = "task_counters")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskCounter {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "total_count", nullable = false)
+    private long totalCount;
+
+    @Column(name = "open_count", nullable = false)
+    private long openCount;
+
+    @Column(name = "important_count", nullable = false)
+    private long importantCount;
+
+    @Column(name = "due_today_count", nullable = false)
+    private long dueTodayCount;
+
+    // The day due_today_count was counted for; the nightly rollover moves it forward
+    @Column(name = "due_today_date")
+    private LocalDate dueTodayDate;
+
+    // Bumped by every write to the user's tasks; used as the ETag of their task lists
+    @Column(name = "collection_version", nullable = false)
+    private long collectionVersion;
+
+    // Highest collection version among compacted tombstones; older sync positions need a full resync
+    @Column(name = "compacted_seq", nullable = false)
+    private long compactedSeq;
+}
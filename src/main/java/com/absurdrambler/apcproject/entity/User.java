@@ -1,9 +1,12 @@
 package com.absurdrambler.apcproject.entity;
 
+import com.absurdrambler.apcproject.cache.CacheRegions;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.List;
 
@@ -11,6 +14,8 @@ import java.util.List;
  * User entity representing application users
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.USERS)
 @Table(name = "users")
 @Data
 @NoArgsConstructor
@@ -30,7 +35,8 @@ public class User {
     @Column(nullable = false)
     private String role;
 
-    @OneToMany(mappedBy = "assignee", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    // No cascade: tasks are written through TaskRepository, in bulk when a user is removed
+    @OneToMany(mappedBy = "assignee", fetch = FetchType.LAZY)
     private List<Task> assignedTasks;
 
     // Constructor without assignedTasks for easier creation
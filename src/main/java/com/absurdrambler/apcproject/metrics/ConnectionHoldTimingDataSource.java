@@ -0,0 +1,94 @@
+package com.absurdrambler.apcproject.metrics;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Measures how long connections are held, from checkout until they are closed back to the
+ * pool, and adds it up per thread while timing is on. A connection closed on another thread
+ * than the one that checked it out counts for the thread that closed it.
+ */
+public class ConnectionHoldTimingDataSource extends DelegatingDataSource {
+
+    private static final ThreadLocal<long[]> HELD_NANOS = new ThreadLocal<>();
+
+    public ConnectionHoldTimingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    /**
+     * Start timing connections closed on the current thread
+     */
+    public static void start() {
+        HELD_NANOS.set(new long[1]);
+    }
+
+    /**
+     * Stop timing connections closed on the current thread
+     * @return the nanoseconds connections were held since start, or 0 if timing was off
+     */
+    public static long stop() {
+        long[] held = HELD_NANOS.get();
+        HELD_NANOS.remove();
+        return held != null ? held[0] : 0;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return timed(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return timed(super.getConnection(username, password));
+    }
+
+    private static Connection timed(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(ConnectionHoldTimingDataSource.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, new HoldTimer(connection));
+    }
+
+    /**
+     * Passes every call through to the pooled connection, timing from checkout to the first close
+     */
+    private static final class HoldTimer implements InvocationHandler {
+        private final Connection target;
+        private final long checkedOutAt = System.nanoTime();
+        private boolean closed;
+
+        private HoldTimer(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            if (method.getName().equals("close") && !closed) {
+                closed = true;
+                long[] held = HELD_NANOS.get();
+                if (held != null) {
+                    held[0] += System.nanoTime() - checkedOutAt;
+                }
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
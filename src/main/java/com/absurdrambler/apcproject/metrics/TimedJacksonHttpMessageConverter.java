@@ -0,0 +1,58 @@
+package com.absurdrambler.apcproject.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * JSON converter timing how long request bodies take to read and response bodies to write,
+ * by body type. Write times include copying into the response buffer.
+ */
+public class TimedJacksonHttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    private final MeterRegistry meterRegistry;
+
+    public TimedJacksonHttpMessageConverter(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        super(objectMapper);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage)
+            throws IOException, HttpMessageNotReadableException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return super.read(type, contextClass, inputMessage);
+        } finally {
+            sample.stop(timer("read", getJavaType(type, contextClass).getRawClass()));
+        }
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            super.writeInternal(object, type, outputMessage);
+        } finally {
+            sample.stop(timer("write", object.getClass()));
+        }
+    }
+
+    private Timer timer(String operation, Class<?> bodyType) {
+        return Timer.builder("http.server.json")
+                .description("Time to read or write JSON bodies")
+                .tag("operation", operation)
+                .tag("type", bodyType.getSimpleName())
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
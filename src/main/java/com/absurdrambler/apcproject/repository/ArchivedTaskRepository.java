@@ -0,0 +1,66 @@
+package com.absurdrambler.apcproject.repository;
+
+import com.absurdrambler.apcproject.entity.ArchivedTask;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.stream.Stream;
+
+/**
+ * Repository interface for ArchivedTask entity operations. Archived tasks are listed through
+ * TaskRepository, alongside the tasks still in the hot table.
+ */
+@Repository
+public interface ArchivedTaskRepository extends JpaRepository<ArchivedTask, Long> {
+
+    /**
+     * Copy tasks into the archive with one statement
+     * @param ids the task IDs
+     * @param archivedAt the time of archiving
+     * @return the number of tasks copied
+     */
+    @Modifying
+    @Query("insert into ArchivedTask (id, title, description, dueDate, isImportant, isCompleted, assignee, "
+            + "version, changeSeq, updatedAt, archivedAt) "
+            + "select t.id, t.title, t.description, t.dueDate, t.isImportant, t.isCompleted, t.assignee, "
+            + "t.version, t.changeSeq, t.updatedAt, :archivedAt from Task t where t.id in :ids")
+    int copyFromTasks(@Param("ids") Collection<Long> ids, @Param("archivedAt") Instant archivedAt);
+
+    /**
+     * Stream every archived task in ID order, like {@link TaskRepository#streamAll()}
+     * @return the archived tasks
+     */
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE")})
+    @Query("select t from ArchivedTask t left join fetch t.assignee order by t.id")
+    Stream<ArchivedTask> streamAll();
+
+    /**
+     * Stream a user's archived tasks in ID order, like {@link TaskRepository#streamAll()}
+     * @param assigneeId the user's ID
+     * @return the user's archived tasks
+     */
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE")})
+    @Query("select t from ArchivedTask t join fetch t.assignee a where a.id = :assigneeId order by t.id")
+    Stream<ArchivedTask> streamByAssigneeId(@Param("assigneeId") Long assigneeId);
+
+    /**
+     * Delete a user's archived tasks
+     * @param assigneeId the user's ID
+     * @return the number of archived tasks removed
+     */
+    @Modifying
+    @Query("delete from ArchivedTask t where t.assignee.id = :assigneeId")
+    int deleteByAssigneeId(@Param("assigneeId") Long assigneeId);
+}
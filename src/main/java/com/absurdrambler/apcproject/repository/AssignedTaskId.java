@@ -0,0 +1,9 @@
+package com.absurdrambler.apcproject.repository;
+
+/**
+ * ID of a task together with its assignee's, for bulk writes that lock the assignees' counters
+ * @param id the task ID
+ * @param assigneeId the assignee's ID
+ */
+public record AssignedTaskId(Long id, Long assigneeId) {
+}
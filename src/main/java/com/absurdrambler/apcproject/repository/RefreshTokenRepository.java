@@ -0,0 +1,44 @@
+package com.absurdrambler.apcproject.repository;
+
+import com.absurdrambler.apcproject.entity.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+
+/**
+ * Repository interface for RefreshToken entity operations
+ */
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, String> {
+
+    /**
+     * Mark a refresh token used, unless it already was
+     * @param tokenId the token's ID
+     * @return 1 if this call marked it, 0 if it was already used or does not exist
+     */
+    @Modifying
+    @Query("update RefreshToken t set t.used = true where t.tokenId = :tokenId and t.used = false")
+    int markUsed(@Param("tokenId") String tokenId);
+
+    /**
+     * Delete every token of a family
+     * @param familyId the family
+     * @return the number of tokens removed
+     */
+    @Modifying
+    @Query("delete from RefreshToken t where t.familyId = :familyId")
+    int deleteByFamilyId(@Param("familyId") String familyId);
+
+    /**
+     * Delete tokens that expired before a cutoff
+     * @param cutoff tokens expiring before this instant are removed
+     * @return the number of tokens removed
+     */
+    @Modifying
+    @Query("delete from RefreshToken t where t.expiresAt < :cutoff")
+    int deleteExpiredBefore(@Param("cutoff") Instant cutoff);
+}
@@ -0,0 +1,13 @@
+package com.absurdrambler.apcproject.repository;
+
+import com.absurdrambler.apcproject.dto.TaskActivityResponse;
+
+import java.util.List;
+
+/**
+ * One keyset page of a task's history, newest first.
+ * @param items the entries on this page
+ * @param nextBeforeId ID of the last entry on this page to continue from, or null if this is the last page
+ */
+public record TaskActivityPage(List<TaskActivityResponse> items, Long nextBeforeId) {
+}
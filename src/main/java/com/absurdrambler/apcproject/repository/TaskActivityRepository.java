@@ -0,0 +1,32 @@
+package com.absurdrambler.apcproject.repository;
+
+import com.absurdrambler.apcproject.entity.TaskActivity;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repository interface for reading TaskActivity entries; TaskActivityLog writes them
+ */
+@Repository
+public interface TaskActivityRepository extends JpaRepository<TaskActivity, Long> {
+
+    /**
+     * Find a task's most recent activity
+     * @param taskId the task
+     * @param limit the maximum number of entries
+     * @return the entries, newest first
+     */
+    List<TaskActivity> findByTaskIdOrderByIdDesc(Long taskId, Limit limit);
+
+    /**
+     * Find a task's activity older than an entry
+     * @param taskId the task
+     * @param beforeId the ID of the last entry already read
+     * @param limit the maximum number of entries
+     * @return the entries, newest first
+     */
+    List<TaskActivity> findByTaskIdAndIdLessThanOrderByIdDesc(Long taskId, Long beforeId, Limit limit);
+}
@@ -0,0 +1,11 @@
+package com.absurdrambler.apcproject.repository;
+
+import com.absurdrambler.apcproject.dto.TaskResponse;
+
+/**
+ * A task created or changed since a sync position
+ * @param task the task
+ * @param changeSeq the change sequence of its last change
+ */
+public record TaskChange(TaskResponse task, long changeSeq) {
+}
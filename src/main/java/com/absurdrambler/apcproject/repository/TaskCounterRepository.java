@@ -0,0 +1,174 @@
+package com.absurdrambler.apcproject.repository;
+
+import com.absurdrambler.apcproject.dto.TaskCountsResponse;
+import com.absurdrambler.apcproject.entity.TaskCounter;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Optional;
+
+/**
+ * Repository interface for TaskCounter entity operations
+ */
+@Repository
+public interface TaskCounterRepository extends JpaRepository<TaskCounter, Long> {
+
+    /**
+     * Atomically add deltas to a user's counters and bump their collection version.
+     * The due-today delta only applies if the counters were last rolled over to the given day.
+     * @param userId the user whose counters change
+     * @param total the change in total tasks
+     * @param open the change in open tasks
+     * @param important the change in important tasks
+     * @param dueToday the change in tasks due today
+     * @param today the current day
+     * @return the number of counter rows updated (0 if the user has none yet)
+     */
+    @Modifying
+    @Query("update TaskCounter c set c.totalCount = c.totalCount + :total, c.openCount = c.openCount + :open, "
+            + "c.importantCount = c.importantCount + :important, "
+            + "c.dueTodayCount = case when c.dueTodayDate = :today then c.dueTodayCount + :dueToday "
+            + "else c.dueTodayCount end, "
+            + "c.collectionVersion = c.collectionVersion + 1 "
+            + "where c.userId = :userId")
+    int increment(@Param("userId") Long userId, @Param("total") long total, @Param("open") long open,
+                  @Param("important") long important, @Param("dueToday") long dueToday,
+                  @Param("today") LocalDate today);
+
+    /**
+     * Atomically add deltas to a user's counters, leaving their collection version as it is.
+     * For writes that bumped the version with {@link #increment} before their deltas were known.
+     * @param userId the user whose counters change
+     * @param total the change in total tasks
+     * @param open the change in open tasks
+     * @param important the change in important tasks
+     * @param dueToday the change in tasks due today
+     * @param today the current day
+     * @return the number of counter rows updated
+     */
+    @Modifying
+    @Query("update TaskCounter c set c.totalCount = c.totalCount + :total, c.openCount = c.openCount + :open, "
+            + "c.importantCount = c.importantCount + :important, "
+            + "c.dueTodayCount = case when c.dueTodayDate = :today then c.dueTodayCount + :dueToday "
+            + "else c.dueTodayCount end "
+            + "where c.userId = :userId")
+    int add(@Param("userId") Long userId, @Param("total") long total, @Param("open") long open,
+            @Param("important") long important, @Param("dueToday") long dueToday, @Param("today") LocalDate today);
+
+    /**
+     * Get a user's counters as last committed, locking them until the transaction ends
+     * @param userId the user
+     * @return the counters, or empty if the user has none yet
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from TaskCounter c where c.userId = :userId")
+    Optional<TaskCounter> findForUpdate(@Param("userId") Long userId);
+
+    /**
+     * Get the version of a user's task collection
+     * @param userId the user
+     * @return the collection version, or empty if the user has no counters yet
+     */
+    @Query("select c.collectionVersion from TaskCounter c where c.userId = :userId")
+    Optional<Long> findCollectionVersion(@Param("userId") Long userId);
+
+    /**
+     * Get the highest change sequence whose tombstones were compacted for a user
+     * @param userId the user
+     * @return the compacted sequence, or empty if the user has no counters yet
+     */
+    @Query("select c.compactedSeq from TaskCounter c where c.userId = :userId")
+    Optional<Long> findCompactedSeq(@Param("userId") Long userId);
+
+    /**
+     * Record the highest change sequence among tombstones about to be compacted
+     * @param cutoff tombstones for deletions before this instant are being removed
+     * @return the number of counter rows updated
+     */
+    @Modifying
+    @Query("update TaskCounter c set c.compactedSeq = "
+            + "(select max(t.changeSeq) from TaskTombstone t where t.userId = c.userId and t.deletedAt < :cutoff) "
+            + "where exists (select 1 from TaskTombstone t where t.userId = c.userId and t.deletedAt < :cutoff)")
+    int markCompacted(@Param("cutoff") Instant cutoff);
+
+    /**
+     * Recount tasks due on a new day for every user whose counters are behind
+     * @param today the new day
+     * @return the number of counter rows updated
+     */
+    @Modifying
+    @Query("update TaskCounter c set c.dueTodayCount = "
+            + "(select count(t) from Task t where t.assignee.id = c.userId and t.dueDate = :today), "
+            + "c.dueTodayDate = :today "
+            + "where c.dueTodayDate is null or c.dueTodayDate <> :today")
+    int rollover(@Param("today") LocalDate today);
+
+    /**
+     * Recount tasks due on a new day for one user
+     * @param userId the user whose counters are behind
+     * @param today the new day
+     * @return the number of counter rows updated
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update TaskCounter c set c.dueTodayCount = "
+            + "(select count(t) from Task t where t.assignee.id = c.userId and t.dueDate = :today), "
+            + "c.dueTodayDate = :today "
+            + "where c.userId = :userId")
+    int rolloverUser(@Param("userId") Long userId, @Param("today") LocalDate today);
+
+    /**
+     * Count a user's tasks from scratch, as stored. Pending changes are not flushed first,
+     * so a write in progress can apply its own delta on top of the result.
+     * @param userId the user to count tasks for
+     * @param today the day to count due tasks for
+     * @return the user's task counts
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "COMMIT"))
+    @Query("select new com.absurdrambler.apcproject.dto.TaskCountsResponse(count(t), "
+            + "coalesce(sum(case when t.isCompleted = true then 0 else 1 end), 0), "
+            + "coalesce(sum(case when t.isImportant = true then 1 else 0 end), 0), "
+            + "coalesce(sum(case when t.dueDate = :today then 1 else 0 end), 0)) "
+            + "from Task t where t.assignee.id = :userId")
+    TaskCountsResponse countTasks(@Param("userId") Long userId, @Param("today") LocalDate today);
+
+    /**
+     * Create a user's counters, unless another transaction already has. Waits for a
+     * transaction creating them concurrently, rather than failing on its primary key.
+     * Only the counters are evicted from the caches, not every cached entity.
+     * @param userId the user
+     * @param total the user's tasks
+     * @param open the user's open tasks
+     * @param important the user's important tasks
+     * @param dueToday the user's tasks due today
+     * @param today the day the due-today count is for
+     * @return the number of counter rows created (0 if the user already had counters)
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "task_counters"))
+    @Query(value = "insert into task_counters (user_id, total_count, open_count, important_count, due_today_count, "
+            + "due_today_date, collection_version, compacted_seq) "
+            + "values (:userId, :total, :open, :important, :dueToday, :today, 0, 0) "
+            + "on conflict do nothing", nativeQuery = true)
+    int insertIfAbsent(@Param("userId") Long userId, @Param("total") long total, @Param("open") long open,
+                       @Param("important") long important, @Param("dueToday") long dueToday,
+                       @Param("today") LocalDate today);
+
+    /**
+     * Delete a user's counters
+     * @param userId the user
+     * @return the number of counter rows removed
+     */
+    @Modifying
+    @Query("delete from TaskCounter c where c.userId = :userId")
+    int deleteByUserId(@Param("userId") Long userId);
+}
@@ -0,0 +1,11 @@
+package com.absurdrambler.apcproject.repository;
+
+import java.time.LocalDate;
+
+/**
+ * Position of the last task on a page, used to seek to the next page.
+ * @param dueDate the due date of the last task (may be null)
+ * @param id the id of the last task
+ */
+public record TaskKeyset(LocalDate dueDate, Long id) {
+}
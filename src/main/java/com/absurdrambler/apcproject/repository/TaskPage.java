@@ -0,0 +1,14 @@
+package com.absurdrambler.apcproject.repository;
+
+import java.util.List;
+
+/**
+ * One keyset page of tasks.
+ * @param items the tasks on this page
+ * @param next position to continue from, or null if this is the last page
+ * @param collectionVersion the version of the user's task collection, read before the tasks in the
+ *                          same transaction so the tasks are at least as new; null if the user has no counters
+ * @param <T> the task projection type
+ */
+public record TaskPage<T>(List<T> items, TaskKeyset next, Long collectionVersion) {
+}
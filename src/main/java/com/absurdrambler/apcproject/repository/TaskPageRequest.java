@@ -0,0 +1,15 @@
+package com.absurdrambler.apcproject.repository;
+
+/**
+ * Keyset page request for task listings.
+ * @param after position of the last task on the previous page, or null for the first page
+ * @param sort the sort order
+ * @param limit the maximum number of tasks to return
+ * @param includeArchived whether to list archived tasks along with the others
+ */
+public record TaskPageRequest(TaskKeyset after, TaskSort sort, int limit, boolean includeArchived) {
+
+    public TaskPageRequest(TaskKeyset after, TaskSort sort, int limit) {
+        this(after, sort, limit, false);
+    }
+}
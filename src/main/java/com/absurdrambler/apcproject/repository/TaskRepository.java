@@ -1,49 +1,203 @@
 package com.absurdrambler.apcproject.repository;
 
+import com.absurdrambler.apcproject.cache.CacheRegions;
+import com.absurdrambler.apcproject.dto.TaskCountsResponse;
 import com.absurdrambler.apcproject.entity.Task;
 import com.absurdrambler.apcproject.entity.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
- * Repository interface for Task entity operations
+ * Repository interface for Task entity operations. Results of the per-assignee queries are
+ * cached; any committed write to the tasks table invalidates them.
  */
 @Repository
-public interface TaskRepository extends JpaRepository<Task, Long> {
+public interface TaskRepository extends JpaRepository<Task, Long>, TaskRepositoryCustom {
 
     /**
-     * Find all tasks assigned to a specific user
-     * @param assignee the user to find tasks for
-     * @return list of tasks assigned to the user
+     * Find a task by ID, fetching its assignee in the same query
+     * @param id the task ID
+     * @return Optional containing the task if found
      */
-    List<Task> findByAssignee(User assignee);
+    @Override
+    @EntityGraph(attributePaths = "assignee")
+    Optional<Task> findById(Long id);
 
     /**
-     * Find all important tasks assigned to a specific user
-     * @param assignee the user to find tasks for
-     * @param isImportant true to find important tasks
-     * @return list of important tasks assigned to the user
+     * Find task by ID and assignee (for security - users can only access their own tasks)
+     * @param id the task ID
+     * @param assignee the assigned user
+     * @return list containing the task if found and belongs to the user
      */
-    List<Task> findByAssigneeAndIsImportant(User assignee, Boolean isImportant);
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = CacheRegions.TASK_QUERIES)})
+    @EntityGraph(attributePaths = "assignee")
+    List<Task> findByIdAndAssignee(Long id, User assignee);
 
     /**
-     * Find all tasks assigned to a specific user with a specific due date
-     * @param assignee the user to find tasks for
-     * @param dueDate the due date to filter by
-     * @return list of tasks assigned to the user with the specified due date
+     * Find tasks by ID, fetching their assignees in the same query
+     * @param ids the task IDs
+     * @return the tasks that exist, in no particular order
      */
-    List<Task> findByAssigneeAndDueDate(User assignee, LocalDate dueDate);
+    @EntityGraph(attributePaths = "assignee")
+    List<Task> findByIdIn(Collection<Long> ids);
 
     /**
-     * Find task by ID and assignee (for security - users can only access their own tasks)
+     * Get the ID of a task's assignee, without loading the task
      * @param id the task ID
-     * @param assignee the assigned user
-     * @return list containing the task if found and belongs to the user
+     * @return the assignee's ID, or empty if the task does not exist or is unassigned
      */
-    List<Task> findByIdAndAssignee(Long id, User assignee);
+    @Query("select t.assignee.id from Task t where t.id = :id")
+    Optional<Long> findAssigneeId(@Param("id") Long id);
+
+    /**
+     * Get the version of a task assigned to a user, without loading the task
+     * @param id the task ID
+     * @param assigneeId the user the task must be assigned to
+     * @return the task's version, or empty if no such task is assigned to the user
+     */
+    @Query("select t.version from Task t where t.id = :id and t.assignee.id = :assigneeId")
+    Optional<Long> findVersion(@Param("id") Long id, @Param("assigneeId") Long assigneeId);
+
+    /**
+     * Stream every task in ID order, fetching assignees in the same query. Rows are read
+     * from a forward-only cursor a fetch at a time and bypass the second-level cache.
+     * Must be consumed inside a transaction and closed.
+     * @return the tasks
+     */
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE")})
+    @Query("select t from Task t left join fetch t.assignee order by t.id")
+    Stream<Task> streamAll();
+
+    /**
+     * Stream the tasks assigned to a user in ID order, like {@link #streamAll()}
+     * @param assigneeId the user's ID
+     * @return the user's tasks
+     */
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE")})
+    @Query("select t from Task t join fetch t.assignee a where a.id = :assigneeId order by t.id")
+    Stream<Task> streamByAssigneeId(@Param("assigneeId") Long assigneeId);
+
+    /**
+     * Get the IDs of a user's open tasks, lowest first
+     * @param assigneeId the user's ID
+     * @param limit the maximum number of IDs
+     * @return the task IDs
+     */
+    @Query("select t.id from Task t where t.assignee.id = :assigneeId "
+            + "and (t.isCompleted = false or t.isCompleted is null) order by t.id")
+    List<Long> findOpenIds(@Param("assigneeId") Long assigneeId, Limit limit);
+
+    /**
+     * Get the IDs of a user's open tasks due before a day, lowest first
+     * @param assigneeId the user's ID
+     * @param today tasks due before this day are overdue
+     * @param limit the maximum number of IDs
+     * @return the task IDs
+     */
+    @Query("select t.id from Task t where t.assignee.id = :assigneeId and t.dueDate < :today "
+            + "and (t.isCompleted = false or t.isCompleted is null) order by t.id")
+    List<Long> findOverdueIds(@Param("assigneeId") Long assigneeId, @Param("today") LocalDate today, Limit limit);
+
+    /**
+     * Get the IDs of a user's tasks, lowest first
+     * @param assigneeId the user's ID
+     * @param limit the maximum number of IDs
+     * @return the task IDs
+     */
+    @Query("select t.id from Task t where t.assignee.id = :assigneeId order by t.id")
+    List<Long> findIds(@Param("assigneeId") Long assigneeId, Limit limit);
+
+    /**
+     * Get the IDs of tasks completed and unchanged since a cutoff, lowest first, with their assignees.
+     * Unassigned tasks are never archived.
+     * @param completedBefore tasks last changed before this instant qualify
+     * @param afterId only tasks with higher IDs qualify
+     * @param limit the maximum number of IDs
+     * @return the task IDs and their assignees' IDs
+     */
+    @Query("select new com.absurdrambler.apcproject.repository.AssignedTaskId(t.id, t.assignee.id) from Task t "
+            + "where t.isCompleted = true and t.updatedAt < :completedBefore and t.id > :afterId order by t.id")
+    List<AssignedTaskId> findArchivable(@Param("completedBefore") Instant completedBefore,
+                                        @Param("afterId") long afterId, Limit limit);
+
+    /**
+     * Get which of some tasks are still assigned to a user, completed and unchanged since a cutoff
+     * @param ids the task IDs
+     * @param assigneeId the user's ID
+     * @param completedBefore tasks last changed before this instant qualify
+     * @return the IDs of the tasks that still qualify
+     */
+    @Query("select t.id from Task t where t.id in :ids and t.assignee.id = :assigneeId and t.isCompleted = true "
+            + "and t.updatedAt < :completedBefore")
+    List<Long> findArchivableIds(@Param("ids") Collection<Long> ids, @Param("assigneeId") Long assigneeId,
+                                 @Param("completedBefore") Instant completedBefore);
+
+    /**
+     * Count tasks by ID the way the per-user counters count them, without loading them
+     * @param ids the task IDs
+     * @param today the day to count due tasks for
+     * @return the counts of the tasks
+     */
+    @Query("select new com.absurdrambler.apcproject.dto.TaskCountsResponse(count(t), "
+            + "coalesce(sum(case when t.isCompleted = true then 0 else 1 end), 0), "
+            + "coalesce(sum(case when t.isImportant = true then 1 else 0 end), 0), "
+            + "coalesce(sum(case when t.dueDate = :today then 1 else 0 end), 0)) "
+            + "from Task t where t.id in :ids")
+    TaskCountsResponse countByIdIn(@Param("ids") Collection<Long> ids, @Param("today") LocalDate today);
+
+    /**
+     * Assign tasks to another user with one statement
+     * @param ids the task IDs
+     * @param assignee the new assignee
+     * @param changeSeq the new assignee's collection version
+     * @param updatedAt the time of the change
+     * @return the number of tasks updated
+     */
+    @Modifying
+    @Query("update Task t set t.assignee = :assignee, t.version = t.version + 1, t.changeSeq = :changeSeq, "
+            + "t.updatedAt = :updatedAt where t.id in :ids")
+    int reassign(@Param("ids") Collection<Long> ids, @Param("assignee") User assignee,
+                 @Param("changeSeq") long changeSeq, @Param("updatedAt") Instant updatedAt);
+
+    /**
+     * Mark tasks completed with one statement
+     * @param ids the task IDs
+     * @param changeSeq the assignee's collection version
+     * @param updatedAt the time of the change
+     * @return the number of tasks updated
+     */
+    @Modifying
+    @Query("update Task t set t.isCompleted = true, t.version = t.version + 1, t.changeSeq = :changeSeq, "
+            + "t.updatedAt = :updatedAt where t.id in :ids")
+    int complete(@Param("ids") Collection<Long> ids, @Param("changeSeq") long changeSeq,
+                 @Param("updatedAt") Instant updatedAt);
+
+    /**
+     * Delete tasks with one statement
+     * @param ids the task IDs
+     * @return the number of tasks deleted
+     */
+    @Modifying
+    @Query("delete from Task t where t.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
 }
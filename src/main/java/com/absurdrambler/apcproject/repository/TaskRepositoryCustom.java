@@ -0,0 +1,81 @@
+package com.absurdrambler.apcproject.repository;
+
+import com.absurdrambler.apcproject.dto.TaskRequest;
+import com.absurdrambler.apcproject.dto.TaskResponse;
+import com.absurdrambler.apcproject.dto.TaskSummaryResponse;
+import com.absurdrambler.apcproject.entity.Task;
+import com.absurdrambler.apcproject.entity.User;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Custom task queries that cannot be expressed as derived queries
+ */
+public interface TaskRepositoryCustom {
+
+    /**
+     * Find one keyset page of tasks assigned to a user. Seeks past the previous page
+     * instead of using OFFSET, so every page costs the same to fetch. Rows are projected
+     * straight into responses, with the assignee name joined in the same statement. Archived
+     * tasks are only listed if the page asks for them.
+     * @param assignee the user to find tasks for
+     * @param isImportant if not null, only tasks with this importance flag
+     * @param dueDate if not null, only tasks due on this date
+     * @param page the keyset position, sort order, page size and whether to include archived tasks
+     * @return up to page.limit() tasks, in page.sort() order
+     */
+    List<TaskResponse> findPageByAssignee(User assignee, Boolean isImportant, LocalDate dueDate, TaskPageRequest page);
+
+    /**
+     * Same as {@link #findPageByAssignee}, but without reading the description column
+     * @param assignee the user to find tasks for
+     * @param isImportant if not null, only tasks with this importance flag
+     * @param dueDate if not null, only tasks due on this date
+     * @param page the keyset position, sort order, page size and whether to include archived tasks
+     * @return up to page.limit() task summaries, in page.sort() order
+     */
+    List<TaskSummaryResponse> findSummaryPageByAssignee(User assignee, Boolean isImportant, LocalDate dueDate,
+                                                        TaskPageRequest page);
+
+    /**
+     * Find the tasks assigned to a user that were created or changed after a sync position
+     * @param assignee the user to find tasks for
+     * @param after the position of the last change the client has
+     * @param upTo the highest change sequence to include
+     * @param limit the maximum number of tasks to return
+     * @return up to limit changed tasks, by change sequence then id
+     */
+    List<TaskChange> findChangedSince(User assignee, TaskSyncKeyset after, long upTo, int limit);
+
+    /**
+     * Find one keyset page of the tasks assigned to a user matching every search term,
+     * most relevant first. Terms match words starting with them; matches in the title
+     * rank above matches in the description.
+     * @param assignee the user to search tasks for
+     * @param terms the search terms, lower case letters and digits only
+     * @param after position of the last task on the previous page, or null for the first page
+     * @param limit the maximum number of tasks to return
+     * @return up to limit matching tasks, by descending rank then descending id
+     */
+    List<TaskSearchHit> search(User assignee, List<String> terms, TaskSearchKeyset after, int limit);
+
+    /**
+     * Change the non-null fields of a request on a task with one UPDATE, without reading the task
+     * first. The version is bumped and the change sequence stamped in the same statement, which
+     * returns the row as it was before. Hibernate does not see the change, so the caller evicts
+     * the task from the second-level cache once it commits.
+     * @param id the task ID
+     * @param assigneeId the user the task must be assigned to
+     * @param expectedVersions if not null, the versions the task must be at
+     * @param changes the fields to change; the assignee is never changed
+     * @param changeSeq the assignee's new collection version
+     * @param updatedAt the time of the change
+     * @return the task as it was before the update, without its assignee, or empty if no row matched
+     */
+    Optional<Task> patch(Long id, Long assigneeId, Collection<Long> expectedVersions, TaskRequest changes,
+                         long changeSeq, Instant updatedAt);
+}
@@ -0,0 +1,318 @@
+package com.absurdrambler.apcproject.repository;
+
+import com.absurdrambler.apcproject.dto.TaskRequest;
+import com.absurdrambler.apcproject.dto.TaskResponse;
+import com.absurdrambler.apcproject.dto.TaskSummaryResponse;
+import com.absurdrambler.apcproject.entity.Task;
+import com.absurdrambler.apcproject.entity.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.StandardBasicTypes;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of custom task queries
+ */
+public class TaskRepositoryImpl implements TaskRepositoryCustom {
+
+    private static final String SELECT_FULL = "select new " + TaskResponse.class.getName()
+            + "(t.id, t.title, t.description, t.dueDate, t.isImportant, t.isCompleted, a.username, t.version)";
+
+    private static final String SELECT_SUMMARY = "select new " + TaskSummaryResponse.class.getName()
+            + "(t.id, t.title, t.dueDate, t.isImportant, t.isCompleted, a.username, t.version)";
+
+    private static final String SEARCH_COLUMNS = "t.id, t.title, t.description, t.due_date, t.is_important,"
+            + " t.is_completed, u.username, t.version";
+
+    private static final String PATCH_COLUMNS = "id, title, description, due_date, is_important, is_completed, version";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private Boolean postgreSql;
+
+    @Override
+    public List<TaskResponse> findPageByAssignee(User assignee, Boolean isImportant, LocalDate dueDate,
+                                                 TaskPageRequest page) {
+        return findPage(TaskResponse.class, SELECT_FULL, assignee, isImportant, dueDate, page,
+                task -> new TaskKeyset(task.getDueDate(), task.getId()));
+    }
+
+    @Override
+    public List<TaskSummaryResponse> findSummaryPageByAssignee(User assignee, Boolean isImportant, LocalDate dueDate,
+                                                               TaskPageRequest page) {
+        return findPage(TaskSummaryResponse.class, SELECT_SUMMARY, assignee, isImportant, dueDate, page,
+                task -> new TaskKeyset(task.getDueDate(), task.getId()));
+    }
+
+    @Override
+    public List<TaskChange> findChangedSince(User assignee, TaskSyncKeyset after, long upTo, int limit) {
+        List<Object[]> rows = entityManager.createQuery("select t.id, t.title, t.description, t.dueDate,"
+                        + " t.isImportant, t.isCompleted, a.username, t.version, t.changeSeq"
+                        + " from Task t join t.assignee a"
+                        + " where t.assignee.id = :assigneeId and t.changeSeq <= :upTo"
+                        + " and (t.changeSeq > :afterSeq or (t.changeSeq = :afterSeq and t.id > :afterId))"
+                        + " order by t.changeSeq, t.id", Object[].class)
+                .setParameter("assigneeId", assignee.getId())
+                .setParameter("upTo", upTo)
+                .setParameter("afterSeq", after.changeSeq())
+                .setParameter("afterId", after.id())
+                .setMaxResults(limit)
+                .getResultList();
+        List<TaskChange> changes = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            changes.add(new TaskChange(new TaskResponse((Long) row[0], (String) row[1], (String) row[2],
+                    (LocalDate) row[3], (Boolean) row[4], (Boolean) row[5], (String) row[6], (Long) row[7]),
+                    (Long) row[8]));
+        }
+        return changes;
+    }
+
+    @Override
+    public List<TaskSearchHit> search(User assignee, List<String> terms, TaskSearchKeyset after, int limit) {
+        String match;
+        String rank;
+        if (isPostgreSql()) {
+            match = "t.search_vector @@ to_tsquery('simple', :query)";
+            rank = "ts_rank(t.search_vector, to_tsquery('simple', :query))";
+        } else {
+            // No text search types: match words by prefix with LIKE, and rank by where they matched
+            List<String> matches = new ArrayList<>();
+            List<String> ranks = new ArrayList<>();
+            for (int i = 0; i < terms.size(); i++) {
+                String inTitle = "(lower(t.title) like :prefix" + i + " or lower(t.title) like :word" + i + ")";
+                String inDescription = "(lower(t.description) like :prefix" + i
+                        + " or lower(t.description) like :word" + i + ")";
+                matches.add("(" + inTitle + " or " + inDescription + ")");
+                ranks.add("case when " + inTitle + " then 2 else 0 end + case when " + inDescription
+                        + " then 1 else 0 end");
+            }
+            match = String.join(" and ", matches);
+            rank = "cast(" + String.join(" + ", ranks) + " as real)";
+        }
+
+        StringBuilder sql = new StringBuilder("select * from (select ").append(SEARCH_COLUMNS)
+                .append(", ").append(rank).append(" as search_rank")
+                .append(" from tasks t join users u on u.id = t.assignee_id")
+                .append(" where t.assignee_id = :assigneeId and ").append(match).append(") hits");
+        if (after != null) {
+            sql.append(" where hits.search_rank < :afterRank"
+                    + " or (hits.search_rank = :afterRank and hits.id < :afterId)");
+        }
+        sql.append(" order by hits.search_rank desc, hits.id desc");
+
+        NativeQuery<?> query = entityManager.createNativeQuery(sql.toString())
+                .unwrap(NativeQuery.class)
+                .addScalar("id", StandardBasicTypes.LONG)
+                .addScalar("title", StandardBasicTypes.STRING)
+                .addScalar("description", StandardBasicTypes.STRING)
+                .addScalar("due_date", StandardBasicTypes.LOCAL_DATE)
+                .addScalar("is_important", StandardBasicTypes.BOOLEAN)
+                .addScalar("is_completed", StandardBasicTypes.BOOLEAN)
+                .addScalar("username", StandardBasicTypes.STRING)
+                .addScalar("version", StandardBasicTypes.LONG)
+                .addScalar("search_rank", StandardBasicTypes.FLOAT)
+                .setParameter("assigneeId", assignee.getId())
+                .setMaxResults(limit);
+        if (isPostgreSql()) {
+            query.setParameter("query", String.join(" & ", terms.stream().map(term -> term + ":*").toList()));
+        } else {
+            for (int i = 0; i < terms.size(); i++) {
+                query.setParameter("prefix" + i, terms.get(i) + "%");
+                query.setParameter("word" + i, "% " + terms.get(i) + "%");
+            }
+        }
+        if (after != null) {
+            query.setParameter("afterRank", after.rank());
+            query.setParameter("afterId", after.id());
+        }
+
+        List<TaskSearchHit> hits = new ArrayList<>();
+        for (Object result : query.getResultList()) {
+            Object[] row = (Object[]) result;
+            hits.add(new TaskSearchHit(new TaskResponse((Long) row[0], (String) row[1], (String) row[2],
+                    (LocalDate) row[3], (Boolean) row[4], (Boolean) row[5], (String) row[6], (Long) row[7]),
+                    (Float) row[8]));
+        }
+        return hits;
+    }
+
+    @Override
+    public Optional<Task> patch(Long id, Long assigneeId, Collection<Long> expectedVersions, TaskRequest changes,
+                                long changeSeq, Instant updatedAt) {
+        Map<String, Object> columns = new LinkedHashMap<>();
+        if (changes.getTitle() != null) {
+            columns.put("title", changes.getTitle());
+        }
+        if (changes.getDescription() != null) {
+            columns.put("description", changes.getDescription());
+        }
+        if (changes.getDueDate() != null) {
+            columns.put("due_date", changes.getDueDate());
+        }
+        if (changes.getIsImportant() != null) {
+            columns.put("is_important", changes.getIsImportant());
+        }
+        if (changes.getIsCompleted() != null) {
+            columns.put("is_completed", changes.getIsCompleted());
+        }
+
+        boolean postgreSql = isPostgreSql();
+        StringBuilder set = new StringBuilder();
+        columns.keySet().forEach(column -> set.append(column).append(" = :").append(column).append(", "));
+        set.append("version = ").append(postgreSql ? "t." : "").append("version + 1")
+                .append(", change_seq = :changeSeq, updated_at = :updatedAt");
+        String where = "id = :id and assignee_id = :assigneeId"
+                + (expectedVersions != null ? " and version in (:versions)" : "");
+
+        String sql;
+        if (postgreSql) {
+            // The old row comes from a locked self-join, so it is the one the update replaces
+            sql = "update tasks t set " + set + " from (select " + PATCH_COLUMNS + " from tasks where " + where
+                    + " for update) prev where t.id = prev.id returning " + qualified("prev", PATCH_COLUMNS);
+        } else {
+            sql = "select " + PATCH_COLUMNS + " from old table (update tasks set " + set + " where " + where + ")";
+        }
+
+        NativeQuery<?> query = entityManager.createNativeQuery(sql)
+                .unwrap(NativeQuery.class)
+                .addScalar("id", StandardBasicTypes.LONG)
+                .addScalar("title", StandardBasicTypes.STRING)
+                .addScalar("description", StandardBasicTypes.STRING)
+                .addScalar("due_date", StandardBasicTypes.LOCAL_DATE)
+                .addScalar("is_important", StandardBasicTypes.BOOLEAN)
+                .addScalar("is_completed", StandardBasicTypes.BOOLEAN)
+                .addScalar("version", StandardBasicTypes.LONG)
+                .setParameter("id", id)
+                .setParameter("assigneeId", assigneeId)
+                .setParameter("changeSeq", changeSeq)
+                .setParameter("updatedAt", updatedAt);
+        columns.forEach(query::setParameter);
+        if (expectedVersions != null) {
+            query.setParameter("versions", expectedVersions);
+        }
+
+        List<?> rows = query.getResultList();
+        if (rows.isEmpty()) {
+            return Optional.empty();
+        }
+        Object[] row = (Object[]) rows.get(0);
+        Task task = new Task();
+        task.setId((Long) row[0]);
+        task.setTitle((String) row[1]);
+        task.setDescription((String) row[2]);
+        task.setDueDate((LocalDate) row[3]);
+        task.setIsImportant((Boolean) row[4]);
+        task.setIsCompleted((Boolean) row[5]);
+        task.setVersion((Long) row[6]);
+        return Optional.of(task);
+    }
+
+    private static String qualified(String alias, String columns) {
+        return alias + "." + columns.replace(", ", ", " + alias + ".");
+    }
+
+    /**
+     * Read a page from the tasks table and, if asked, one from the archive, merged. Both are read
+     * with the same seek and order, so the first rows of their merge are the page across both.
+     */
+    private <T> List<T> findPage(Class<T> type, String select, User assignee, Boolean isImportant,
+                                 LocalDate dueDate, TaskPageRequest page, Function<T, TaskKeyset> keyset) {
+        List<T> tasks = findPage(type, select, "Task", assignee, isImportant, dueDate, page);
+        if (!page.includeArchived()) {
+            return tasks;
+        }
+        List<T> archived = findPage(type, select, "ArchivedTask", assignee, isImportant, dueDate, page);
+        return Stream.concat(tasks.stream(), archived.stream())
+                .sorted(Comparator.comparing(keyset, page.sort().comparator()))
+                .limit(page.limit())
+                .toList();
+    }
+
+    private <T> List<T> findPage(Class<T> type, String select, String entity, User assignee, Boolean isImportant,
+                                 LocalDate dueDate, TaskPageRequest page) {
+        StringBuilder jpql = new StringBuilder(select)
+                .append(" from ").append(entity).append(" t join t.assignee a where t.assignee.id = :assigneeId");
+        if (isImportant != null) {
+            jpql.append(" and t.isImportant = :isImportant");
+        }
+        if (dueDate != null) {
+            jpql.append(" and t.dueDate = :dueDate");
+        }
+
+        TaskKeyset after = page.after();
+        if (after != null) {
+            jpql.append(" and ").append(seekPredicate(page.sort(), after));
+        }
+        jpql.append(" order by ").append(orderBy(page.sort()));
+
+        TypedQuery<T> query = entityManager.createQuery(jpql.toString(), type)
+                .setParameter("assigneeId", assignee.getId())
+                .setMaxResults(page.limit());
+        if (isImportant != null) {
+            query.setParameter("isImportant", isImportant);
+        }
+        if (dueDate != null) {
+            query.setParameter("dueDate", dueDate);
+        }
+        if (after != null) {
+            query.setParameter("afterId", after.id());
+            if (page.sort().byDueDate() && after.dueDate() != null) {
+                query.setParameter("afterDueDate", after.dueDate());
+            }
+        }
+        return query.getResultList();
+    }
+
+    /**
+     * Build the predicate selecting rows strictly after the keyset position.
+     * Null due dates sort last ascending and first descending, matching the
+     * database's default null ordering so one index serves both directions.
+     */
+    private static String seekPredicate(TaskSort sort, TaskKeyset after) {
+        boolean nullDueDate = after.dueDate() == null;
+        return switch (sort) {
+            case DUE_DATE_ASC -> nullDueDate
+                    ? "(t.dueDate is null and t.id > :afterId)"
+                    : "(t.dueDate > :afterDueDate or (t.dueDate = :afterDueDate and t.id > :afterId)"
+                            + " or t.dueDate is null)";
+            case DUE_DATE_DESC -> nullDueDate
+                    ? "((t.dueDate is null and t.id < :afterId) or t.dueDate is not null)"
+                    : "(t.dueDate < :afterDueDate or (t.dueDate = :afterDueDate and t.id < :afterId))";
+            case CREATED_ASC -> "t.id > :afterId";
+            case CREATED_DESC -> "t.id < :afterId";
+        };
+    }
+
+    private static String orderBy(TaskSort sort) {
+        return switch (sort) {
+            case DUE_DATE_ASC -> "t.dueDate asc nulls last, t.id asc";
+            case DUE_DATE_DESC -> "t.dueDate desc nulls first, t.id desc";
+            case CREATED_ASC -> "t.id asc";
+            case CREATED_DESC -> "t.id desc";
+        };
+    }
+
+    private boolean isPostgreSql() {
+        if (postgreSql == null) {
+            postgreSql = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                    .getJdbcServices().getDialect() instanceof PostgreSQLDialect;
+        }
+        return postgreSql;
+    }
+}
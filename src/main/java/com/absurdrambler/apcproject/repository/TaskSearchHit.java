@@ -0,0 +1,11 @@
+package com.absurdrambler.apcproject.repository;
+
+import com.absurdrambler.apcproject.dto.TaskResponse;
+
+/**
+ * One task matching a search, with its relevance
+ * @param task the task
+ * @param rank the relevance; higher ranks first
+ */
+public record TaskSearchHit(TaskResponse task, float rank) {
+}
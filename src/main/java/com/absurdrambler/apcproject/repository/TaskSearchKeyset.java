@@ -0,0 +1,9 @@
+package com.absurdrambler.apcproject.repository;
+
+/**
+ * Position of the last task on a page of search results, used to seek to the next page.
+ * @param rank the relevance of the last task
+ * @param id the id of the last task
+ */
+public record TaskSearchKeyset(float rank, Long id) {
+}
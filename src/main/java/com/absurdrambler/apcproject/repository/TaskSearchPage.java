@@ -0,0 +1,13 @@
+package com.absurdrambler.apcproject.repository;
+
+import com.absurdrambler.apcproject.dto.TaskResponse;
+
+import java.util.List;
+
+/**
+ * One keyset page of search results, most relevant first.
+ * @param items the tasks on this page
+ * @param next position to continue from, or null if this is the last page
+ */
+public record TaskSearchPage(List<TaskResponse> items, TaskSearchKeyset next) {
+}
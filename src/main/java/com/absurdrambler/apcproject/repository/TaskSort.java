@@ -0,0 +1,42 @@
+package com.absurdrambler.apcproject.repository;
+
+import java.util.Comparator;
+
+/**
+ * Stable sort orders supported by keyset-paginated task listings.
+ * Every order ends with the task id, so ties never reorder between pages.
+ */
+public enum TaskSort {
+    /** Earliest due date first, tasks without a due date last */
+    DUE_DATE_ASC,
+    /** Latest due date first, tasks without a due date first (exact reverse of DUE_DATE_ASC) */
+    DUE_DATE_DESC,
+    /** Oldest task first */
+    CREATED_ASC,
+    /** Newest task first */
+    CREATED_DESC;
+
+    /**
+     * Whether this order is keyed on the due date as well as the id
+     * @return true for the due-date orders
+     */
+    public boolean byDueDate() {
+        return this == DUE_DATE_ASC || this == DUE_DATE_DESC;
+    }
+
+    /**
+     * Get this order as a comparator of positions, for merging pages read from several tables
+     * @return the comparator, ordering positions the way the database orders their tasks
+     */
+    public Comparator<TaskKeyset> comparator() {
+        Comparator<TaskKeyset> byDueDate = Comparator.comparing(TaskKeyset::dueDate,
+                Comparator.nullsLast(Comparator.naturalOrder()));
+        Comparator<TaskKeyset> byId = Comparator.comparing(TaskKeyset::id);
+        return switch (this) {
+            case DUE_DATE_ASC -> byDueDate.thenComparing(byId);
+            case DUE_DATE_DESC -> byDueDate.thenComparing(byId).reversed();
+            case CREATED_ASC -> byId;
+            case CREATED_DESC -> byId.reversed();
+        };
+    }
+}
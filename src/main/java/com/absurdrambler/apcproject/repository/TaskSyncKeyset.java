@@ -0,0 +1,12 @@
+package com.absurdrambler.apcproject.repository;
+
+/**
+ * Position of the last change on a page of a sync, used to seek to the next page. Changed
+ * tasks and deletions are read in one order, by change sequence and then task id.
+ * @param changeSeq the change sequence of the last change
+ * @param id the id of the task last changed or deleted
+ * @param deletedAfter deletions up to this change sequence are left out, as the client's copy
+ *                     starts from a snapshot taken after them
+ */
+public record TaskSyncKeyset(long changeSeq, long id, long deletedAfter) {
+}
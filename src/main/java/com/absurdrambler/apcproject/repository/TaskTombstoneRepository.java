@@ -0,0 +1,93 @@
+package com.absurdrambler.apcproject.repository;
+
+import com.absurdrambler.apcproject.entity.TaskTombstone;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository interface for TaskTombstone entity operations
+ */
+@Repository
+public interface TaskTombstoneRepository extends JpaRepository<TaskTombstone, Long> {
+
+    /**
+     * Find a user's tombstones after a sync position
+     * @param userId the user whose tasks were deleted
+     * @param afterSeq the change sequence of the last change the client has
+     * @param afterId the id of the task last changed or deleted
+     * @param deletedAfter tombstones up to this change sequence are left out
+     * @param upTo the highest change sequence to include
+     * @param limit the maximum number of tombstones to return
+     * @return up to limit tombstones, by change sequence then task id
+     */
+    @Query("select t from TaskTombstone t where t.userId = :userId and t.changeSeq <= :upTo "
+            + "and t.changeSeq > :deletedAfter "
+            + "and (t.changeSeq > :afterSeq or (t.changeSeq = :afterSeq and t.taskId > :afterId)) "
+            + "order by t.changeSeq, t.taskId")
+    List<TaskTombstone> findDeletedSince(@Param("userId") Long userId, @Param("afterSeq") long afterSeq,
+                                         @Param("afterId") long afterId, @Param("deletedAfter") long deletedAfter,
+                                         @Param("upTo") long upTo, Limit limit);
+
+    /**
+     * Delete tombstones older than a cutoff
+     * @param cutoff tombstones for deletions before this instant are removed
+     * @return the number of tombstones removed
+     */
+    @Modifying
+    @Query("delete from TaskTombstone t where t.deletedAt < :cutoff")
+    int deleteOlderThan(@Param("cutoff") Instant cutoff);
+
+    /**
+     * Record tasks as deleted for a user with one statement, replacing earlier tombstones of the
+     * tasks. Used when tasks leave a user's collection without being loaded.
+     * @param ids the task IDs
+     * @param userId the user whose collection the tasks left
+     * @param changeSeq the user's collection version
+     * @param deletedAt the time of the change
+     * @return the number of tombstones written
+     */
+    default int replaceForTasks(Collection<Long> ids, Long userId, long changeSeq, Instant deletedAt) {
+        deleteByTaskIds(ids);
+        return insertForTasks(ids, userId, changeSeq, deletedAt);
+    }
+
+    /**
+     * Delete the tombstones of tasks
+     * @param ids the task IDs
+     * @return the number of tombstones removed
+     */
+    @Modifying
+    @Query("delete from TaskTombstone t where t.taskId in :ids")
+    int deleteByTaskIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Insert tombstones for existing tasks, which must have none
+     * @param ids the task IDs
+     * @param userId the user whose collection the tasks left
+     * @param changeSeq the user's collection version
+     * @param deletedAt the time of the change
+     * @return the number of tombstones written
+     */
+    @Modifying
+    @Query("insert into TaskTombstone (taskId, userId, changeSeq, deletedAt) "
+            + "select t.id, :userId, :changeSeq, :deletedAt from Task t where t.id in :ids")
+    int insertForTasks(@Param("ids") Collection<Long> ids, @Param("userId") Long userId,
+                       @Param("changeSeq") long changeSeq, @Param("deletedAt") Instant deletedAt);
+
+    /**
+     * Delete a user's tombstones
+     * @param userId the user
+     * @return the number of tombstones removed
+     */
+    @Modifying
+    @Query("delete from TaskTombstone t where t.userId = :userId")
+    int deleteByUserId(@Param("userId") Long userId);
+}
@@ -1,13 +1,20 @@
 package com.absurdrambler.apcproject.repository;
 
+import com.absurdrambler.apcproject.cache.CacheRegions;
 import com.absurdrambler.apcproject.entity.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
- * Repository interface for User entity operations
+ * Repository interface for User entity operations. Reads load the user row only; assigned
+ * tasks are read through TaskRepository, never through the lazy collection.
  */
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
@@ -17,6 +24,8 @@ public interface UserRepository extends JpaRepository<User, Long> {
      * @param username the username to search for
      * @return Optional containing the user if found
      */
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = CacheRegions.USER_QUERIES)})
     Optional<User> findByUsername(String username);
 
     /**
@@ -25,4 +34,11 @@ public interface UserRepository extends JpaRepository<User, Long> {
      * @return true if user exists, false otherwise
      */
     boolean existsByUsername(String username);
+
+    /**
+     * Find users by username
+     * @param usernames the usernames to search for
+     * @return the users that exist
+     */
+    List<User> findByUsernameIn(Collection<String> usernames);
 }
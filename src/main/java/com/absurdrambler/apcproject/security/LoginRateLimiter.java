@@ -0,0 +1,93 @@
+package com.absurdrambler.apcproject.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory fixed-window limits on login attempts per username and per client address.
+ * Counts are per instance, so behind a load balancer each instance allows the full limit.
+ */
+@Component
+public class LoginRateLimiter {
+
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+    private final int perUsername;
+    private final int perAddress;
+    private final long windowMillis;
+    private final int maxKeys;
+
+    public LoginRateLimiter(@Value("${app.security.login.rate-limit.per-username:10}") int perUsername,
+                            @Value("${app.security.login.rate-limit.per-ip:50}") int perAddress,
+                            @Value("${app.security.login.rate-limit.window:PT1M}") Duration window,
+                            @Value("${app.security.login.rate-limit.max-keys:100000}") int maxKeys) {
+        this.perUsername = perUsername;
+        this.perAddress = perAddress;
+        this.windowMillis = window.toMillis();
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * Count a login attempt against its username and client address. A limit of zero or less disables that limit.
+     * @param username the username being logged in to
+     * @param remoteAddress the client address, or null if unknown
+     * @throws LoginRejectedException if either has used up its attempts in the current window
+     */
+    public void acquire(String username, String remoteAddress) {
+        long now = System.currentTimeMillis();
+        long retryAfter = Math.max(
+                acquire("user:" + (username == null ? "" : username.trim().toLowerCase(Locale.ROOT)), perUsername, now),
+                remoteAddress == null ? 0 : acquire("ip:" + remoteAddress, perAddress, now));
+        if (retryAfter > 0) {
+            throw new LoginRejectedException("Too many login attempts", HttpStatus.TOO_MANY_REQUESTS, retryAfter);
+        }
+    }
+
+    /**
+     * Remove all attempt counts
+     */
+    public void clear() {
+        windows.clear();
+    }
+
+    /**
+     * @return seconds until the key's window resets if it is over its limit, otherwise 0
+     */
+    private long acquire(String key, int limit, long now) {
+        if (limit <= 0) {
+            return 0;
+        }
+        if (windows.size() >= maxKeys && !windows.containsKey(key)) {
+            evict(now);
+        }
+        Window window = windows.compute(key, (k, current) -> current == null || now - current.start() >= windowMillis
+                ? new Window(now, 1)
+                : new Window(current.start(), current.attempts() + 1));
+        if (window.attempts() <= limit) {
+            return 0;
+        }
+        return Math.max(1, (window.start() + windowMillis - now + 999) / 1000);
+    }
+
+    /**
+     * Drop expired windows, or an arbitrary one if none have expired
+     */
+    private void evict(long now) {
+        windows.values().removeIf(window -> now - window.start() >= windowMillis);
+        if (windows.size() >= maxKeys) {
+            Iterator<String> keys = windows.keySet().iterator();
+            if (keys.hasNext()) {
+                windows.remove(keys.next());
+            }
+        }
+    }
+
+    private record Window(long start, int attempts) {
+    }
+}
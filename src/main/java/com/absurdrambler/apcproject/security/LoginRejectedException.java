@@ -0,0 +1,28 @@
+package com.absurdrambler.apcproject.security;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.AuthenticationException;
+
+/**
+ * Login attempt refused before the password was checked, either because the caller is
+ * over its rate limit or because the authentication pool is saturated
+ */
+public class LoginRejectedException extends AuthenticationException {
+
+    private final HttpStatus status;
+    private final long retryAfterSeconds;
+
+    public LoginRejectedException(String message, HttpStatus status, long retryAfterSeconds) {
+        super(message);
+        this.status = status;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
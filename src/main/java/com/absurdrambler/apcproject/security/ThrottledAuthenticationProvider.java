@@ -0,0 +1,151 @@
+package com.absurdrambler.apcproject.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs password checks on a small dedicated pool, so a burst of logins is bounded to a few
+ * threads' worth of CPU instead of taking every request thread. Attempts over the rate limit,
+ * or beyond the pool's queue, are rejected without hashing anything. The request thread waits
+ * for its check, so at most threads + queue-capacity request threads are ever held by logins.
+ */
+public class ThrottledAuthenticationProvider implements AuthenticationProvider {
+
+    private final AuthenticationProvider delegate;
+    private final LoginRateLimiter rateLimiter;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+    private final Timer waitTimer;
+    private final Timer successTimer;
+    private final Timer failureTimer;
+    private final Counter rateLimitedCounter;
+    private final Counter busyCounter;
+
+    public ThrottledAuthenticationProvider(AuthenticationProvider delegate, LoginRateLimiter rateLimiter,
+                                           int threads, int queueCapacity, Duration timeout,
+                                           MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.rateLimiter = rateLimiter;
+        this.timeoutMillis = timeout.toMillis();
+        BlockingQueue<Runnable> queue = queueCapacity > 0
+                ? new ArrayBlockingQueue<>(queueCapacity)
+                : new SynchronousQueue<>();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, queue,
+                new CustomizableThreadFactory("login-"), new ThreadPoolExecutor.AbortPolicy());
+
+        this.waitTimer = Timer.builder("auth.login.wait")
+                .description("Time login password checks wait for a thread")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.successTimer = checkTimer("success", meterRegistry);
+        this.failureTimer = checkTimer("failure", meterRegistry);
+        this.rateLimitedCounter = rejectedCounter("rate-limited", meterRegistry);
+        this.busyCounter = rejectedCounter("busy", meterRegistry);
+        Gauge.builder("auth.login.queued", executor, pool -> pool.getQueue().size())
+                .description("Login password checks waiting for a thread")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        String remoteAddress = authentication.getDetails() instanceof WebAuthenticationDetails details
+                ? details.getRemoteAddress()
+                : null;
+        try {
+            rateLimiter.acquire(authentication.getName(), remoteAddress);
+        } catch (LoginRejectedException e) {
+            rateLimitedCounter.increment();
+            throw e;
+        }
+
+        long submitted = System.nanoTime();
+        Future<Authentication> result;
+        try {
+            result = executor.submit(() -> check(authentication, submitted));
+        } catch (RejectedExecutionException e) {
+            throw busy();
+        }
+        try {
+            return result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof AuthenticationException failure) {
+                throw failure;
+            }
+            throw new InternalAuthenticationServiceException("Authentication failed", e.getCause());
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            throw busy();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.cancel(true);
+            throw new InternalAuthenticationServiceException("Interrupted waiting for authentication", e);
+        }
+    }
+
+    /**
+     * Check the password on a login thread, timing the wait and the check
+     */
+    private Authentication check(Authentication authentication, long submitted) {
+        long started = System.nanoTime();
+        waitTimer.record(started - submitted, TimeUnit.NANOSECONDS);
+        try {
+            Authentication authenticated = delegate.authenticate(authentication);
+            successTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            return authenticated;
+        } catch (RuntimeException e) {
+            failureTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return delegate.supports(authentication);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private LoginRejectedException busy() {
+        busyCounter.increment();
+        return new LoginRejectedException("Login service busy", HttpStatus.SERVICE_UNAVAILABLE, 1);
+    }
+
+    private static Timer checkTimer(String result, MeterRegistry meterRegistry) {
+        return Timer.builder("auth.login.check")
+                .description("Time to look up the user and check the password")
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static Counter rejectedCounter(String reason, MeterRegistry meterRegistry) {
+        return Counter.builder("auth.login.rejected")
+                .description("Login attempts rejected without checking the password")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,28 @@
+package com.absurdrambler.apcproject.security;
+
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+
+/**
+ * Authentication established from a verified access token. Its principal is built
+ * from the token's claims alone, so it is trusted as is until the token expires.
+ */
+public class TokenAuthentication extends AbstractAuthenticationToken {
+
+    private final AuthenticatedUser principal;
+
+    public TokenAuthentication(AuthenticatedUser principal) {
+        super(principal.getAuthorities());
+        this.principal = principal;
+        setAuthenticated(true);
+    }
+
+    @Override
+    public Object getCredentials() {
+        return null;
+    }
+
+    @Override
+    public AuthenticatedUser getPrincipal() {
+        return principal;
+    }
+}
@@ -0,0 +1,47 @@
+package com.absurdrambler.apcproject.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextHolderStrategy;
+import org.springframework.security.web.context.SecurityContextRepository;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Authenticates requests carrying a valid access token, from its claims alone.
+ * Requests without a valid token continue unauthenticated.
+ * Not a bean, so it only runs inside the security filter chain.
+ */
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+
+    private final TokenService tokenService;
+    private final SecurityContextRepository securityContextRepository;
+    private final SecurityContextHolderStrategy securityContextHolderStrategy =
+            SecurityContextHolder.getContextHolderStrategy();
+
+    public TokenAuthenticationFilter(TokenService tokenService, SecurityContextRepository securityContextRepository) {
+        this.tokenService = tokenService;
+        this.securityContextRepository = securityContextRepository;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String token = tokenService.resolveAccessToken(request);
+        if (token != null) {
+            tokenService.verify(token, TokenService.ACCESS).ifPresent(claims -> {
+                SecurityContext context = securityContextHolderStrategy.createEmptyContext();
+                context.setAuthentication(new TokenAuthentication(claims.toPrincipal()));
+                securityContextHolderStrategy.setContext(context);
+                // Kept on the request, so async dispatches of long-lived responses stay authenticated
+                securityContextRepository.saveContext(context, request, response);
+            });
+        }
+        filterChain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,30 @@
+package com.absurdrambler.apcproject.security;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Verified claims of an access or refresh token
+ * @param userId the user's ID
+ * @param username the user's username
+ * @param role the user's role when the token was issued
+ * @param type the token type, access or refresh
+ * @param expiresAt the expiry, in epoch seconds
+ * @param tokenId the refresh token's ID, null for access tokens
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record TokenClaims(@JsonProperty("uid") Long userId,
+                          @JsonProperty("sub") String username,
+                          @JsonProperty("role") String role,
+                          @JsonProperty("typ") String type,
+                          @JsonProperty("exp") long expiresAt,
+                          @JsonProperty("jti") String tokenId) {
+
+    /**
+     * Create the principal these claims describe, without credentials
+     * @return the principal
+     */
+    public AuthenticatedUser toPrincipal() {
+        return new AuthenticatedUser(userId, username, null, role);
+    }
+}
@@ -0,0 +1,210 @@
+package com.absurdrambler.apcproject.security;
+
+import com.absurdrambler.apcproject.dto.TokenResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Issues and verifies signed access and refresh tokens (HS256 JSON Web Tokens).
+ * Verifying a token needs only the key, so requests in stateless mode are
+ * authenticated without a session or a database lookup.
+ */
+@Component
+@Slf4j
+public class TokenService {
+
+    public static final String ACCESS = "access";
+    public static final String REFRESH = "refresh";
+    public static final String ACCESS_COOKIE = "access_token";
+    public static final String REFRESH_COOKIE = "refresh_token";
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final String HEADER = ENCODER.encodeToString(
+            "{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8));
+
+    private final SecretKeySpec key;
+    private final Duration accessTtl;
+    private final Duration refreshTtl;
+    private final boolean enabled;
+    private final ObjectMapper objectMapper;
+
+    public TokenService(@Value("${app.security.token.secret:}") String secret,
+                        @Value("${app.security.token.access-ttl:PT15M}") Duration accessTtl,
+                        @Value("${app.security.token.refresh-ttl:P7D}") Duration refreshTtl,
+                        @Value("${app.security.stateless.enabled:false}") boolean enabled,
+                        ObjectMapper objectMapper) {
+        byte[] keyBytes;
+        if (secret == null || secret.isBlank()) {
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+            if (enabled) {
+                log.warn("No app.security.token.secret set; using a random key, so tokens are only valid on this instance until it restarts");
+            }
+        } else {
+            keyBytes = Base64.getDecoder().decode(secret);
+            if (keyBytes.length < 32) {
+                throw new IllegalStateException("app.security.token.secret must be at least 256 bits, base64 encoded");
+            }
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+        this.accessTtl = accessTtl;
+        this.refreshTtl = refreshTtl;
+        this.enabled = enabled;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Whether stateless token authentication replaces the HTTP session
+     * @return true in stateless mode
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Get how long refresh tokens are valid for
+     * @return the refresh token lifetime
+     */
+    public Duration getRefreshTtl() {
+        return refreshTtl;
+    }
+
+    /**
+     * Issue a new access and refresh token pair for a user. Refresh tokens are only honoured
+     * once recorded, so this is called through RefreshTokenService.
+     * @param principal the authenticated user
+     * @param refreshTokenId the ID the refresh token is recorded under
+     * @return the tokens, with the user's name and role
+     */
+    public TokenResponse issueTokens(AuthenticatedUser principal, String refreshTokenId) {
+        long now = Instant.now().getEpochSecond();
+        return new TokenResponse(true, "Login successful", principal.getUsername(), principal.getRole(),
+                issue(principal, ACCESS, now + accessTtl.toSeconds(), null),
+                issue(principal, REFRESH, now + refreshTtl.toSeconds(), refreshTokenId),
+                "Bearer", accessTtl.toSeconds());
+    }
+
+    /**
+     * Verify a token's signature, type and expiry
+     * @param token the encoded token
+     * @param expectedType the token type to accept, access or refresh
+     * @return the token's claims, or empty if the token is not valid
+     */
+    public Optional<TokenClaims> verify(String token, String expectedType) {
+        int first = token.indexOf('.');
+        int second = token.indexOf('.', first + 1);
+        if (first != HEADER.length() || second < 0 || token.indexOf('.', second + 1) >= 0
+                || !token.startsWith(HEADER)) {
+            return Optional.empty();
+        }
+        try {
+            byte[] expected = sign(token.substring(0, second));
+            byte[] actual = DECODER.decode(token.substring(second + 1));
+            if (!MessageDigest.isEqual(expected, actual)) {
+                return Optional.empty();
+            }
+            TokenClaims claims = objectMapper.readValue(DECODER.decode(token.substring(first + 1, second)),
+                    TokenClaims.class);
+            if (!expectedType.equals(claims.type()) || claims.expiresAt() <= Instant.now().getEpochSecond()) {
+                return Optional.empty();
+            }
+            return Optional.of(claims);
+        } catch (IllegalArgumentException | IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Find the access token of a request, from the Authorization header or the access cookie
+     * @param request the request
+     * @return the encoded token, or null if there is none
+     */
+    public String resolveAccessToken(HttpServletRequest request) {
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (authorization != null && authorization.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            return authorization.substring(7).trim();
+        }
+        return cookieValue(request, ACCESS_COOKIE);
+    }
+
+    /**
+     * Find the refresh cookie of a request
+     * @param request the request
+     * @return the encoded refresh token, or null if there is none
+     */
+    public String resolveRefreshCookie(HttpServletRequest request) {
+        return cookieValue(request, REFRESH_COOKIE);
+    }
+
+    /**
+     * Set the tokens as HttpOnly cookies, so the browser app is authenticated without handling them.
+     * The refresh cookie is only sent to the auth endpoints.
+     * @param request the request, to decide whether the cookies need the Secure flag
+     * @param response the response to add the cookies to
+     * @param tokens the issued tokens
+     */
+    public void addCookies(HttpServletRequest request, HttpServletResponse response, TokenResponse tokens) {
+        response.addHeader(HttpHeaders.SET_COOKIE, ResponseCookie.from(ACCESS_COOKIE, tokens.getAccessToken())
+                .httpOnly(true).secure(request.isSecure()).sameSite("Strict").path("/")
+                .maxAge(accessTtl).build().toString());
+        response.addHeader(HttpHeaders.SET_COOKIE, ResponseCookie.from(REFRESH_COOKIE, tokens.getRefreshToken())
+                .httpOnly(true).secure(request.isSecure()).sameSite("Strict").path("/api/auth")
+                .maxAge(refreshTtl).build().toString());
+    }
+
+    private String issue(AuthenticatedUser principal, String type, long expiresAt, String tokenId) {
+        try {
+            TokenClaims claims = new TokenClaims(principal.getId(), principal.getUsername(), principal.getRole(),
+                    type, expiresAt, tokenId);
+            String unsigned = HEADER + "." + ENCODER.encodeToString(objectMapper.writeValueAsBytes(claims));
+            return unsigned + "." + ENCODER.encodeToString(sign(unsigned));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not encode token claims", e);
+        }
+    }
+
+    private byte[] sign(String unsigned) {
+        try {
+            // Mac instances are not thread-safe; creating one costs far less than the signature itself
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(unsigned.getBytes(StandardCharsets.US_ASCII));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not sign token", e);
+        }
+    }
+
+    private static String cookieValue(HttpServletRequest request, String name) {
+        if (request.getCookies() == null) {
+            return null;
+        }
+        for (Cookie cookie : request.getCookies()) {
+            if (name.equals(cookie.getName())) {
+                return cookie.getValue();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,82 @@
+package com.absurdrambler.apcproject.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded in-memory cache of authenticated principals keyed by username.
+ * Entries are evicted by UserService whenever a user is saved.
+ */
+@Component
+public class UserPrincipalCache {
+
+    private final Map<String, AuthenticatedUser> principals = new ConcurrentHashMap<>();
+    private final int maxSize;
+
+    public UserPrincipalCache(@Value("${app.security.principal-cache.max-size:10000}") int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get a cached principal
+     * @param username the username to look up
+     * @return Optional containing a copy of the cached principal
+     */
+    public Optional<AuthenticatedUser> get(String username) {
+        AuthenticatedUser principal = principals.get(username);
+        return principal != null ? Optional.of(principal.copy()) : Optional.empty();
+    }
+
+    /**
+     * Cache a principal, evicting an arbitrary entry when the cache is full
+     * @param principal the principal to cache
+     */
+    public void put(AuthenticatedUser principal) {
+        if (maxSize <= 0) {
+            return;
+        }
+        if (principals.size() >= maxSize && !principals.containsKey(principal.getUsername())) {
+            Iterator<String> keys = principals.keySet().iterator();
+            if (keys.hasNext()) {
+                principals.remove(keys.next());
+            }
+        }
+        principals.put(principal.getUsername(), principal.copy());
+    }
+
+    /**
+     * Remove a principal from the cache
+     * @param username the username to evict
+     */
+    public void evict(String username) {
+        if (username != null) {
+            principals.remove(username);
+        }
+    }
+
+    /**
+     * Remove any principal with the given user id, covering renamed users
+     * @param id the user id to evict
+     */
+    public void evictById(Long id) {
+        if (id != null) {
+            principals.values().removeIf(principal -> id.equals(principal.getId()));
+        }
+    }
+
+    /**
+     * Remove all cached principals
+     */
+    public void clear() {
+        principals.clear();
+    }
+
+    public int size() {
+        return principals.size();
+    }
+}
@@ -0,0 +1,102 @@
+package com.absurdrambler.apcproject.service;
+
+import com.absurdrambler.apcproject.dto.TokenResponse;
+import com.absurdrambler.apcproject.entity.RefreshToken;
+import com.absurdrambler.apcproject.repository.RefreshTokenRepository;
+import com.absurdrambler.apcproject.security.AuthenticatedUser;
+import com.absurdrambler.apcproject.security.TokenClaims;
+import com.absurdrambler.apcproject.security.TokenService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Service issuing and rotating refresh tokens in stateless mode. Every refresh token is
+ * recorded and can be exchanged once; the exchange issues the next token of the same family.
+ * A token presented again after its exchange was copied, so the whole family is revoked and
+ * both its holders must log in again. Logging out revokes the family too.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RefreshTokenService {
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final TokenService tokenService;
+    private final UserService userService;
+
+    /**
+     * Issue a token pair on login, starting a new refresh token family
+     * @param principal the authenticated user
+     * @return the tokens
+     */
+    @Transactional
+    public TokenResponse issue(AuthenticatedUser principal) {
+        return issue(principal, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Exchange a refresh token for a new token pair. The user is looked up again, so deleted
+     * users and role changes take effect on refresh.
+     * @param token the encoded refresh token
+     * @return the new tokens, or empty if the token is invalid, revoked or already used
+     */
+    @Transactional
+    public Optional<TokenResponse> refresh(String token) {
+        Optional<RefreshToken> stored = find(token);
+        if (stored.isEmpty()) {
+            return Optional.empty();
+        }
+        RefreshToken refreshToken = stored.get();
+        if (refreshToken.isUsed() || refreshTokenRepository.markUsed(refreshToken.getTokenId()) == 0) {
+            log.warn("Refresh token reused for user {}, revoking its family", refreshToken.getUserId());
+            refreshTokenRepository.deleteByFamilyId(refreshToken.getFamilyId());
+            return Optional.empty();
+        }
+        return userService.findById(refreshToken.getUserId())
+                .map(AuthenticatedUser::fromEntity)
+                .map(principal -> issue(principal, refreshToken.getFamilyId()));
+    }
+
+    /**
+     * Revoke a refresh token and every token refreshed from the same login
+     * @param token the encoded refresh token
+     */
+    @Transactional
+    public void revoke(String token) {
+        find(token).ifPresent(refreshToken -> refreshTokenRepository.deleteByFamilyId(refreshToken.getFamilyId()));
+    }
+
+    /**
+     * Remove expired refresh tokens
+     */
+    @Scheduled(cron = "${app.security.token.purge-cron:0 45 0 * * *}")
+    @Transactional
+    public void purgeExpired() {
+        int removed = refreshTokenRepository.deleteExpiredBefore(Instant.now());
+        log.info("Purged {} expired refresh tokens", removed);
+    }
+
+    private TokenResponse issue(AuthenticatedUser principal, String familyId) {
+        String tokenId = UUID.randomUUID().toString();
+        refreshTokenRepository.save(new RefreshToken(tokenId, familyId, principal.getId(), false,
+                Instant.now().plus(tokenService.getRefreshTtl())));
+        return tokenService.issueTokens(principal, tokenId);
+    }
+
+    /**
+     * Helper method to verify a refresh token and find its record
+     */
+    private Optional<RefreshToken> find(String token) {
+        return Optional.ofNullable(token)
+                .flatMap(refreshToken -> tokenService.verify(refreshToken, TokenService.REFRESH))
+                .map(TokenClaims::tokenId)
+                .flatMap(refreshTokenRepository::findById);
+    }
+}
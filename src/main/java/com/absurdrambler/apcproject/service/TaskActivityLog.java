@@ -0,0 +1,303 @@
+package com.absurdrambler.apcproject.service;
+
+import com.absurdrambler.apcproject.dto.TaskFieldChange;
+import com.absurdrambler.apcproject.entity.Task;
+import com.absurdrambler.apcproject.entity.TaskActivity;
+import com.absurdrambler.apcproject.security.AuthenticatedUser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Activity log of task writes. Once a write commits, its field-level changes are put in a
+ * bounded buffer, and a background writer inserts them into task_events in batches, so
+ * requests never wait for the log's inserts. When the buffer is full, entries are dropped,
+ * or with the BLOCK overflow policy the request waits a bounded time for room first.
+ * On shutdown, after the web server has stopped taking requests, the writer drains the
+ * buffer before the database connections are closed.
+ */
+@Component
+@Slf4j
+public class TaskActivityLog implements SmartLifecycle {
+
+    private static final String INSERT = "INSERT INTO task_events (task_id, actor_id, action, changes, occurred_at)"
+            + " VALUES (?, ?, ?, ?, ?)";
+
+    // Stops after the web server, which stops in the default phase minus 1024 or 2048
+    private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+
+    /**
+     * What to do with an entry when the buffer is full
+     */
+    public enum OverflowPolicy {
+        DROP, BLOCK
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final BlockingQueue<Entry> buffer;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final OverflowPolicy overflowPolicy;
+    private final long blockTimeoutMillis;
+    private final long shutdownTimeoutMillis;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Counter writtenCounter;
+    private final Timer writeTimer;
+    private volatile boolean running;
+    private Thread writer;
+
+    public TaskActivityLog(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                           @Value("${app.tasks.activity.enabled:true}") boolean enabled,
+                           @Value("${app.tasks.activity.buffer-size:10000}") int bufferSize,
+                           @Value("${app.tasks.activity.batch-size:500}") int batchSize,
+                           @Value("${app.tasks.activity.flush-interval-millis:200}") long flushIntervalMillis,
+                           @Value("${app.tasks.activity.overflow-policy:DROP}") OverflowPolicy overflowPolicy,
+                           @Value("${app.tasks.activity.block-timeout-millis:100}") long blockTimeoutMillis,
+                           @Value("${app.tasks.activity.shutdown-timeout-millis:10000}") long shutdownTimeoutMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeoutMillis = blockTimeoutMillis;
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+
+        Gauge.builder("app.tasks.activity.buffered", buffer, BlockingQueue::size)
+                .description("Activity log entries waiting to be written")
+                .register(meterRegistry);
+        FunctionCounter.builder("app.tasks.activity.dropped", dropped, AtomicLong::get)
+                .description("Activity log entries dropped because the buffer was full")
+                .register(meterRegistry);
+        this.writtenCounter = Counter.builder("app.tasks.activity.written")
+                .description("Activity log entries written")
+                .register(meterRegistry);
+        this.writeTimer = Timer.builder("app.tasks.activity.write")
+                .description("Time to insert one batch of activity log entries")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Record a task change once its transaction commits. Only the fields changed since the
+     * task was loaded or last logged are recorded.
+     * @param event the task change
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onTaskChanged(TaskChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        Task task = event.task();
+        Task.LoggedState before = event.type() == TaskChangedEvent.Type.CREATED ? null : task.getLoggedState();
+        Map<String, TaskFieldChange> changes = event.type() == TaskChangedEvent.Type.DELETED
+                ? Map.of()
+                : changes(before, task);
+        task.markLogged();
+        if (event.type() == TaskChangedEvent.Type.UPDATED && changes.isEmpty()) {
+            return;
+        }
+        offer(new Entry(task.getId(), currentActorId(), action(event.type(), changes), changes, Instant.now()));
+    }
+
+    /**
+     * Record a chunk of tasks written with one statement once its transaction commits, with
+     * the same changes for every task
+     * @param event the bulk task change
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onTasksChanged(TaskBulkChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        Long actorId = currentActorId();
+        TaskActivity.Action action = action(event.type(), event.changes());
+        Instant now = Instant.now();
+        event.taskIds().forEach(taskId -> offer(new Entry(taskId, actorId, action, event.changes(), now)));
+    }
+
+    /**
+     * Get the number of entries waiting to be written
+     * @return the number of buffered entries
+     */
+    public int getBufferedCount() {
+        return buffer.size();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        writer = new Thread(this::drain, "task-activity-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stop taking entries and write what is buffered, waiting at most the shutdown timeout
+     */
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            writer.join(shutdownTimeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            writer.interrupt();
+            log.warn("Activity log writer did not finish within {} ms, {} entries were not written",
+                    shutdownTimeoutMillis, buffer.size());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    private void offer(Entry entry) {
+        boolean accepted;
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            try {
+                accepted = buffer.offer(entry, blockTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                accepted = false;
+            }
+        } else {
+            accepted = buffer.offer(entry);
+        }
+        if (!accepted && dropped.getAndIncrement() % 1000 == 0) {
+            log.warn("Activity log buffer is full, dropped {} entries so far", dropped.get());
+        }
+    }
+
+    /**
+     * Writer loop: waits for an entry, then writes it with whatever else is buffered, up to a batch.
+     * Keeps going after stop until the buffer is empty.
+     */
+    private void drain() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (running || !buffer.isEmpty()) {
+            try {
+                Entry first = buffer.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                buffer.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                log.error("Failed to write {} activity log entries", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Entry> batch) {
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            rows.add(new Object[] {entry.taskId(), entry.actorId(), entry.action().name(), toJson(entry.changes()),
+                    Timestamp.from(entry.occurredAt())});
+        }
+        writeTimer.record(() -> jdbcTemplate.batchUpdate(INSERT, rows));
+        writtenCounter.increment(rows.size());
+    }
+
+    private String toJson(Map<String, TaskFieldChange> changes) {
+        if (changes.isEmpty()) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(changes);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize task changes", e);
+        }
+    }
+
+    /**
+     * Compare a task with its logged state, field by field; every set field counts as changed on creation
+     */
+    private static Map<String, TaskFieldChange> changes(Task.LoggedState before, Task task) {
+        Map<String, TaskFieldChange> changes = new LinkedHashMap<>();
+        compare(changes, "title", before != null ? before.title() : null, task.getTitle());
+        compare(changes, "description", before != null ? before.description() : null, task.getDescription());
+        compare(changes, "dueDate", before != null ? before.dueDate() : null, task.getDueDate());
+        compare(changes, "isImportant", before != null ? before.isImportant() : null, task.getIsImportant());
+        compare(changes, "isCompleted", before != null ? before.isCompleted() : null, task.getIsCompleted());
+        compare(changes, "assigneeId", before != null ? before.assigneeId() : null,
+                task.getAssignee() != null ? task.getAssignee().getId() : null);
+        return changes;
+    }
+
+    private static void compare(Map<String, TaskFieldChange> changes, String field, Object before, Object after) {
+        if (!Objects.equals(before, after)) {
+            changes.put(field, new TaskFieldChange(before, after));
+        }
+    }
+
+    private static TaskActivity.Action action(TaskChangedEvent.Type type, Map<String, TaskFieldChange> changes) {
+        return switch (type) {
+            case CREATED -> TaskActivity.Action.CREATED;
+            case DELETED -> TaskActivity.Action.DELETED;
+            case ARCHIVED -> TaskActivity.Action.ARCHIVED;
+            case UPDATED -> {
+                TaskFieldChange completed = changes.get("isCompleted");
+                if (completed == null) {
+                    yield TaskActivity.Action.UPDATED;
+                }
+                yield Boolean.TRUE.equals(completed.getTo()) ? TaskActivity.Action.COMPLETED : TaskActivity.Action.REOPENED;
+            }
+        };
+    }
+
+    /**
+     * The user whose request made the change; listeners run on the thread that committed
+     */
+    private static Long currentActorId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser user
+                ? user.getId()
+                : null;
+    }
+
+    private record Entry(Long taskId, Long actorId, TaskActivity.Action action,
+                         Map<String, TaskFieldChange> changes, Instant occurredAt) {
+    }
+}
@@ -0,0 +1,84 @@
+package com.absurdrambler.apcproject.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Nightly job moving tasks completed long ago out of the tasks table into the archive, so
+ * task listings and indexes only carry tasks users still look at. A task is archived once it
+ * has been completed and unchanged for the configured number of days. Tasks move in batches,
+ * each in its own transaction, with a pause after each batch so the job never crowds out requests.
+ */
+@Component
+@Slf4j
+public class TaskArchiver {
+
+    private final TaskBulkService taskBulkService;
+    private final boolean enabled;
+    private final int afterDays;
+    private final int batchSize;
+    private final long pauseMillis;
+    private final Counter archivedCounter;
+
+    public TaskArchiver(TaskBulkService taskBulkService, MeterRegistry meterRegistry,
+                        @Value("${app.tasks.archive.enabled:true}") boolean enabled,
+                        @Value("${app.tasks.archive.after-days:90}") int afterDays,
+                        @Value("${app.tasks.archive.batch-size:500}") int batchSize,
+                        @Value("${app.tasks.archive.pause-millis:100}") long pauseMillis) {
+        this.taskBulkService = taskBulkService;
+        this.enabled = enabled;
+        this.afterDays = afterDays;
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+        this.archivedCounter = Counter.builder("app.tasks.archived")
+                .description("Completed tasks moved to the archive")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Archive the tasks completed and unchanged for the configured number of days
+     */
+    @Scheduled(cron = "${app.tasks.archive.cron:0 0 1 * * *}")
+    public void archive() {
+        if (enabled) {
+            archiveCompletedBefore(Instant.now().minus(Duration.ofDays(afterDays)));
+        }
+    }
+
+    /**
+     * Archive the tasks completed and unchanged since a cutoff, batch by batch
+     * @param completedBefore tasks last changed before this instant are archived
+     * @return the number of tasks archived
+     */
+    public long archiveCompletedBefore(Instant completedBefore) {
+        long total = 0;
+        long afterId = 0;
+        TaskBulkService.ArchiveBatch batch;
+        // Batches carry on past their last candidate, so candidates that were skipped are not picked again
+        while ((batch = taskBulkService.archiveCompletedTasks(completedBefore, afterId, batchSize)).candidates() > 0) {
+            total += batch.archived();
+            archivedCounter.increment(batch.archived());
+            afterId = batch.lastCandidateId();
+            if (batch.candidates() < batchSize) {
+                break;
+            }
+            if (pauseMillis > 0) {
+                try {
+                    Thread.sleep(pauseMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        log.info("Archived {} completed tasks", total);
+        return total;
+    }
+}
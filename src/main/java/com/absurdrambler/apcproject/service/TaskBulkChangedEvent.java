@@ -0,0 +1,19 @@
+package com.absurdrambler.apcproject.service;
+
+import com.absurdrambler.apcproject.dto.TaskFieldChange;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Application event published by TaskBulkService for a chunk of tasks written with one
+ * statement, which were never loaded. Every task in the chunk changed the same way.
+ * Stream subscribers receive it only once the writing transaction commits.
+ * @param type what happened to the tasks
+ * @param taskIds the written tasks
+ * @param changes the field changes made to every task; empty for deletions
+ * @param changeSeqs the collection version after the write of every user whose collection changed
+ */
+public record TaskBulkChangedEvent(TaskChangedEvent.Type type, List<Long> taskIds,
+                                   Map<String, TaskFieldChange> changes, Map<Long, Long> changeSeqs) {
+}
@@ -0,0 +1,230 @@
+package com.absurdrambler.apcproject.service;
+
+import com.absurdrambler.apcproject.cache.ClusterCacheInvalidator;
+import com.absurdrambler.apcproject.dto.TaskFieldChange;
+import com.absurdrambler.apcproject.entity.Task;
+import com.absurdrambler.apcproject.repository.ArchivedTaskRepository;
+import com.absurdrambler.apcproject.repository.AssignedTaskId;
+import com.absurdrambler.apcproject.repository.TaskRepository;
+import com.absurdrambler.apcproject.repository.TaskTombstoneRepository;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Service for bulk task writes: admin operations on all of a user's tasks, and moving old
+ * completed tasks to the archive. Each call changes one chunk of tasks
+ * in its own transaction, with set-based statements and without loading the tasks, so memory
+ * use and lock times do not grow with the number of tasks; callers repeat it until a chunk
+ * comes back short. Like every task write, a chunk locks its users' counters first, so the
+ * tasks it selects cannot change before it writes them.
+ */
+@Service
+@Timed(value = "app.service", histogram = true)
+@RequiredArgsConstructor
+public class TaskBulkService {
+
+    private final TaskRepository taskRepository;
+    private final ArchivedTaskRepository archivedTaskRepository;
+    private final TaskTombstoneRepository taskTombstoneRepository;
+    private final TaskCounterService taskCounterService;
+    private final UserService userService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ClusterCacheInvalidator cacheInvalidator;
+
+    @Value("${app.tasks.bulk.chunk-size:500}")
+    private int chunkSize;
+
+    /**
+     * Get the number of tasks changed per transaction
+     * @return the chunk size
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Reassign one chunk of a user's open tasks to another user. The tasks leave the old
+     * assignee's collection as tombstones and join the new one's as changes.
+     * @param fromUserId the user whose open tasks to reassign
+     * @param toUserId the user to assign them to
+     * @return the number of tasks reassigned; fewer than the chunk size once none are left
+     * @throws IllegalArgumentException if both users are the same
+     */
+    @Transactional
+    public int reassignOpenTasks(Long fromUserId, Long toUserId) {
+        if (fromUserId.equals(toUserId)) {
+            throw new IllegalArgumentException("Cannot reassign tasks to their own assignee");
+        }
+        Map<Long, Long> changeSeqs = reserveChanges(fromUserId, toUserId);
+        List<Long> ids = taskRepository.findOpenIds(fromUserId, Limit.of(chunkSize));
+        if (ids.isEmpty()) {
+            return nothingChanged();
+        }
+
+        Instant now = Instant.now();
+        TaskCounterService.Delta moved = TaskCounterService.Delta.of(
+                taskRepository.countByIdIn(ids, LocalDate.now()));
+        taskTombstoneRepository.replaceForTasks(ids, fromUserId, changeSeqs.get(fromUserId), now);
+        taskRepository.reassign(ids, userService.getReference(toUserId), changeSeqs.get(toUserId), now);
+        taskCounterService.add(fromUserId, moved.negate());
+        taskCounterService.add(toUserId, moved);
+        written(TaskChangedEvent.Type.UPDATED, ids, Map.of("assigneeId", new TaskFieldChange(fromUserId, toUserId)),
+                changeSeqs);
+        return ids.size();
+    }
+
+    /**
+     * Complete one chunk of a user's open tasks that were due before today
+     * @param userId the user whose overdue tasks to complete
+     * @return the number of tasks completed; fewer than the chunk size once none are left
+     */
+    @Transactional
+    public int completeOverdueTasks(Long userId) {
+        long changeSeq = taskCounterService.reserveChange(userId);
+        List<Long> ids = taskRepository.findOverdueIds(userId, LocalDate.now(), Limit.of(chunkSize));
+        if (ids.isEmpty()) {
+            return nothingChanged();
+        }
+
+        taskRepository.complete(ids, changeSeq, Instant.now());
+        // Overdue tasks are not due today, so completing them only changes the open count
+        taskCounterService.add(userId, new TaskCounterService.Delta(0, -ids.size(), 0, 0));
+        written(TaskChangedEvent.Type.UPDATED, ids, Map.of("isCompleted", new TaskFieldChange(false, true)),
+                Map.of(userId, changeSeq));
+        return ids.size();
+    }
+
+    /**
+     * Delete one chunk of a user's tasks, and the user along with their counters and
+     * tombstones once no tasks are left
+     * @param userId the user to remove
+     * @return the number of tasks deleted; fewer than the chunk size once the user is removed
+     */
+    @Transactional
+    public int removeUser(Long userId) {
+        long changeSeq = taskCounterService.reserveChange(userId);
+        List<Long> ids = taskRepository.findIds(userId, Limit.of(chunkSize));
+        if (!ids.isEmpty()) {
+            TaskCounterService.Delta removed = TaskCounterService.Delta.of(
+                    taskRepository.countByIdIn(ids, LocalDate.now()));
+            taskTombstoneRepository.replaceForTasks(ids, userId, changeSeq, Instant.now());
+            taskRepository.deleteByIds(ids);
+            taskCounterService.add(userId, removed.negate());
+            written(TaskChangedEvent.Type.DELETED, ids, Map.of(), Map.of(userId, changeSeq));
+        }
+        if (ids.size() < chunkSize) {
+            // No tasks left, and none can be assigned to the user while its counters are locked
+            archivedTaskRepository.deleteByAssigneeId(userId);
+            taskTombstoneRepository.deleteByUserId(userId);
+            taskCounterService.remove(userId);
+            userService.delete(userId);
+        }
+        return ids.size();
+    }
+
+    /**
+     * Move one batch of tasks completed and unchanged since a cutoff to the archive. The tasks
+     * leave their assignees' collections and counters as if deleted, and are only listed
+     * again when archived tasks are asked for. Candidates that changed after they were picked
+     * are skipped, so a batch may archive fewer tasks than it found, or none.
+     * @param completedBefore tasks last changed before this instant are archived
+     * @param afterId only tasks with higher IDs are archived; the previous batch's last candidate
+     * @param limit the maximum number of tasks to archive
+     * @return the candidates found and the tasks archived
+     */
+    @Transactional
+    public ArchiveBatch archiveCompletedTasks(Instant completedBefore, long afterId, int limit) {
+        List<AssignedTaskId> candidates = taskRepository.findArchivable(completedBefore, afterId, Limit.of(limit));
+        if (candidates.isEmpty()) {
+            return new ArchiveBatch(0, afterId, 0);
+        }
+        long lastCandidateId = candidates.get(candidates.size() - 1).id();
+        Map<Long, List<Long>> idsByAssignee = new TreeMap<>();
+        candidates.forEach(task -> idsByAssignee.computeIfAbsent(task.assigneeId(), id -> new ArrayList<>())
+                .add(task.id()));
+        Map<Long, Long> changeSeqs = reserveChanges(idsByAssignee.keySet().toArray(Long[]::new));
+
+        Instant now = Instant.now();
+        List<Long> archived = new ArrayList<>(candidates.size());
+        idsByAssignee.forEach((userId, candidateIds) -> {
+            // Checked again under the lock, since a task may have been reopened or changed after it was picked
+            List<Long> ids = taskRepository.findArchivableIds(candidateIds, userId, completedBefore);
+            if (ids.isEmpty()) {
+                return;
+            }
+            TaskCounterService.Delta removed = TaskCounterService.Delta.of(
+                    taskRepository.countByIdIn(ids, LocalDate.now()));
+            archivedTaskRepository.copyFromTasks(ids, now);
+            taskTombstoneRepository.replaceForTasks(ids, userId, changeSeqs.get(userId), now);
+            taskRepository.deleteByIds(ids);
+            taskCounterService.add(userId, removed.negate());
+            archived.addAll(ids);
+        });
+        if (archived.isEmpty()) {
+            return new ArchiveBatch(candidates.size(), lastCandidateId, nothingChanged());
+        }
+        written(TaskChangedEvent.Type.ARCHIVED, archived, Map.of(), changeSeqs);
+        return new ArchiveBatch(candidates.size(), lastCandidateId, archived.size());
+    }
+
+    /**
+     * Bump users' collection versions, locking their counters in user ID order so that
+     * chunks locking the same two users cannot deadlock
+     */
+    private Map<Long, Long> reserveChanges(Long... userIds) {
+        Map<Long, Long> changeSeqs = new HashMap<>();
+        for (Long userId : new TreeSet<>(List.of(userIds))) {
+            changeSeqs.put(userId, taskCounterService.reserveChange(userId));
+        }
+        return changeSeqs;
+    }
+
+    /**
+     * Roll back the reserved changes, leaving the collection versions alone so clients' list ETags stay valid
+     */
+    private static int nothingChanged() {
+        TransactionInterceptor.currentTransactionStatus().setRollbackOnly();
+        return 0;
+    }
+
+    /**
+     * Evict the cached tasks once the chunk commits, since the statements bypassed the cache,
+     * and publish the change for the event streams and activity log
+     */
+    private void written(TaskChangedEvent.Type type, List<Long> ids, Map<String, TaskFieldChange> changes,
+                         Map<Long, Long> changeSeqs) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cacheInvalidator.evictAllChanged(Task.class);
+            }
+        });
+        eventPublisher.publishEvent(new TaskBulkChangedEvent(type, ids, changes, changeSeqs));
+    }
+
+    /**
+     * The outcome of one archive batch
+     * @param candidates the number of tasks picked for archiving; fewer than the limit once none are left
+     * @param lastCandidateId the highest ID picked, where the next batch carries on from
+     * @param archived the number of tasks archived
+     */
+    public record ArchiveBatch(int candidates, long lastCandidateId, int archived) {
+    }
+}
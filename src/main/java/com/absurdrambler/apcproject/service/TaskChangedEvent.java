@@ -0,0 +1,18 @@
+package com.absurdrambler.apcproject.service;
+
+import com.absurdrambler.apcproject.entity.Task;
+
+/**
+ * Application event published by TaskService for every task write. Stream
+ * subscribers receive it only once the writing transaction commits.
+ * @param type what happened to the task
+ * @param task the written task
+ * @param userId the task's assignee
+ * @param changeSeq the assignee's collection version after the write
+ */
+public record TaskChangedEvent(Type type, Task task, Long userId, long changeSeq) {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED, ARCHIVED
+    }
+}
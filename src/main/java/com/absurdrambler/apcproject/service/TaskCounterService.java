@@ -0,0 +1,289 @@
+package com.absurdrambler.apcproject.service;
+
+import com.absurdrambler.apcproject.dto.TaskCountsResponse;
+import com.absurdrambler.apcproject.entity.Task;
+import com.absurdrambler.apcproject.entity.TaskCounter;
+import com.absurdrambler.apcproject.repository.TaskCounterRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Service maintaining the per-user "smart list" counters. Task writes apply deltas
+ * in the same transaction, so reading the counts never scans the tasks table.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TaskCounterService {
+
+    private final TaskCounterRepository taskCounterRepository;
+
+    /**
+     * Get the counts for a user. Only counts tasks if the user has no counters yet,
+     * or if the nightly rollover has not reached the user's due-today bucket.
+     * @param userId the user to get counts for
+     * @return the user's task counts
+     */
+    @Transactional
+    public TaskCountsResponse getCounts(Long userId) {
+        LocalDate today = LocalDate.now();
+        TaskCounter counter = taskCounterRepository.findById(userId).orElse(null);
+        if (counter == null) {
+            counter = recount(userId, today);
+        } else if (!today.equals(counter.getDueTodayDate())) {
+            taskCounterRepository.rolloverUser(userId, today);
+            counter = taskCounterRepository.findById(userId).orElseThrow();
+        }
+        return new TaskCountsResponse(counter.getTotalCount(), counter.getOpenCount(),
+                counter.getImportantCount(), counter.getDueTodayCount());
+    }
+
+    /**
+     * Get the version of a user's task collection, which changes on every write to their tasks
+     * @param userId the user
+     * @return the collection version
+     */
+    @Transactional
+    public long getCollectionVersion(Long userId) {
+        return taskCounterRepository.findCollectionVersion(userId)
+                .orElseGet(() -> recount(userId, LocalDate.now()).getCollectionVersion());
+    }
+
+    /**
+     * Find the version of a user's task collection without counting tasks, in the caller's
+     * transaction, so it can be read together with the tasks it versions
+     * @param userId the user
+     * @return the collection version, or empty if the user has no counters yet
+     */
+    @Transactional(readOnly = true)
+    public Optional<Long> findCollectionVersion(Long userId) {
+        return taskCounterRepository.findCollectionVersion(userId);
+    }
+
+    /**
+     * Create empty counters for a new user
+     * @param userId the new user's ID
+     */
+    @Transactional
+    public void initialize(Long userId) {
+        taskCounterRepository.insertIfAbsent(userId, 0, 0, 0, 0, LocalDate.now());
+    }
+
+    /**
+     * Count a newly created task and stamp it with its assignee's new collection version
+     * @param task the created task
+     */
+    @Transactional
+    public void taskCreated(Task task) {
+        task.setChangeSeq(apply(assigneeId(task), contributionOf(task)));
+        task.markCounted();
+    }
+
+    /**
+     * Count the changes made to a task since it was loaded or last counted, and stamp
+     * it with its assignee's new collection version
+     * @param task the updated task
+     */
+    @Transactional
+    public void taskUpdated(Task task) {
+        task.setChangeSeq(apply(assigneeId(task), changeOf(task)));
+        task.markCounted();
+    }
+
+    /**
+     * Bump a user's collection version ahead of a write whose counter changes are only known
+     * once it has run. Takes the counters' row lock first, like every other task write.
+     * @param userId the user whose task is about to change
+     * @return the user's new collection version
+     */
+    @Transactional
+    public long reserveChange(Long userId) {
+        return apply(userId, Delta.NONE);
+    }
+
+    /**
+     * Count the changes a patch made to a task, after {@link #reserveChange} bumped its
+     * assignee's collection version
+     * @param task the patched task, counted as it was before the patch
+     */
+    @Transactional
+    public void taskPatched(Task task) {
+        add(assigneeId(task), changeOf(task));
+        task.markCounted();
+    }
+
+    /**
+     * Apply a delta to a user's counters, after {@link #reserveChange} bumped their collection version
+     * @param userId the user whose tasks changed
+     * @param delta the change to the user's counters
+     */
+    @Transactional
+    public void add(Long userId, Delta delta) {
+        if (!delta.equals(Delta.NONE)) {
+            taskCounterRepository.add(userId, delta.total(), delta.open(), delta.important(), delta.dueToday(),
+                    LocalDate.now());
+        }
+    }
+
+    /**
+     * Remove a user's counters
+     * @param userId the user being removed
+     */
+    @Transactional
+    public void remove(Long userId) {
+        taskCounterRepository.deleteByUserId(userId);
+    }
+
+    /**
+     * Stop counting a deleted task
+     * @param task the deleted task
+     * @return the assignee's new collection version
+     */
+    @Transactional
+    public long taskDeleted(Task task) {
+        return apply(assigneeId(task), countedContribution(task).negate());
+    }
+
+    /**
+     * Get the delta a task contributes as a new task
+     * @param task the task
+     * @return the task's contribution to its assignee's counters
+     */
+    public Delta contributionOf(Task task) {
+        return Delta.of(task.getIsImportant(), task.getIsCompleted(), task.getDueDate());
+    }
+
+    /**
+     * Get the delta between a task's counted state and its current state
+     * @param task the task
+     * @return the change to its assignee's counters
+     */
+    public Delta changeOf(Task task) {
+        return contributionOf(task).plus(countedContribution(task).negate());
+    }
+
+    /**
+     * Get the delta a task contributed when last loaded or counted
+     * @param task the task
+     * @return the task's counted contribution, or its current one if it was never counted
+     */
+    public Delta countedContribution(Task task) {
+        Task.CountedState counted = task.getCountedState();
+        return counted != null
+                ? Delta.of(counted.isImportant(), counted.isCompleted(), counted.dueDate())
+                : contributionOf(task);
+    }
+
+    /**
+     * Apply accumulated deltas, one update per user. Users' counters are locked in user ID
+     * order, as bulk writes lock them, so two writes locking the same users cannot deadlock.
+     * @param deltas the deltas keyed by user ID
+     * @return the new collection versions keyed by user ID
+     */
+    @Transactional
+    public Map<Long, Long> apply(Map<Long, Delta> deltas) {
+        Map<Long, Long> versions = new HashMap<>();
+        new TreeMap<>(deltas).forEach((userId, delta) -> versions.put(userId, apply(userId, delta)));
+        return versions;
+    }
+
+    /**
+     * Get the sync state of a user's task collection
+     * @param userId the user
+     * @return the user's counters, including the collection version and compacted sequence
+     */
+    @Transactional
+    public TaskCounter getSyncState(Long userId) {
+        return taskCounterRepository.findById(userId)
+                .orElseGet(() -> recount(userId, LocalDate.now()));
+    }
+
+    /**
+     * Recount tasks due today for every user. Runs nightly; reads also recount a
+     * single user's bucket if they happen before the rollover.
+     */
+    @Scheduled(cron = "${app.tasks.counters.rollover-cron:0 0 0 * * *}")
+    @Transactional
+    public void rollover() {
+        int updated = taskCounterRepository.rollover(LocalDate.now());
+        log.info("Rolled over due-today counters for {} users", updated);
+    }
+
+    /**
+     * Runs even for a zero delta, to bump the collection version. The row lock the update
+     * takes is held until commit, so each user's writes commit in collection version order
+     * and a sync position never skips a change that commits later.
+     */
+    private long apply(Long userId, Delta delta) {
+        if (userId == null) {
+            return 0;
+        }
+        LocalDate today = LocalDate.now();
+        if (increment(userId, delta, today) == 0) {
+            // No counters yet: count the tasks as stored, then apply this change on top
+            recount(userId, today);
+            increment(userId, delta, today);
+        }
+        return taskCounterRepository.findCollectionVersion(userId).orElseThrow();
+    }
+
+    private int increment(Long userId, Delta delta, LocalDate today) {
+        return taskCounterRepository.increment(userId, delta.total(), delta.open(), delta.important(),
+                delta.dueToday(), today);
+    }
+
+    private TaskCounter recount(Long userId, LocalDate today) {
+        TaskCountsResponse counts = taskCounterRepository.countTasks(userId, today);
+        // Concurrent first writes both count; whichever inserts second keeps the first's counters,
+        // read under lock since a plain read can still miss a row committed while the insert waited
+        taskCounterRepository.insertIfAbsent(userId, counts.getTotal(), counts.getOpen(), counts.getImportant(),
+                counts.getDueToday(), today);
+        return taskCounterRepository.findForUpdate(userId).orElseThrow();
+    }
+
+    private static Long assigneeId(Task task) {
+        return task.getAssignee() != null ? task.getAssignee().getId() : null;
+    }
+
+    /**
+     * Change to one user's counters
+     */
+    public record Delta(long total, long open, long important, long dueToday) {
+
+        public static final Delta NONE = new Delta(0, 0, 0, 0);
+
+        static Delta of(Boolean isImportant, Boolean isCompleted, LocalDate dueDate) {
+            return new Delta(1,
+                    Boolean.TRUE.equals(isCompleted) ? 0 : 1,
+                    Boolean.TRUE.equals(isImportant) ? 1 : 0,
+                    LocalDate.now().equals(dueDate) ? 1 : 0);
+        }
+
+        public Delta plus(Delta other) {
+            return new Delta(total + other.total, open + other.open,
+                    important + other.important, dueToday + other.dueToday);
+        }
+
+        /**
+         * Get the delta tasks contribute, from their counts
+         * @param counts the counts of the tasks
+         * @return the tasks' contribution to their assignee's counters
+         */
+        public static Delta of(TaskCountsResponse counts) {
+            return new Delta(counts.getTotal(), counts.getOpen(), counts.getImportant(), counts.getDueToday());
+        }
+
+        public Delta negate() {
+            return new Delta(-total, -open, -important, -dueToday);
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package com.absurdrambler.apcproject.service;
+
+import com.absurdrambler.apcproject.dto.TaskEvent;
+import com.absurdrambler.apcproject.dto.TaskResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process bus pushing committed task changes to the assignee's open event streams.
+ * Idle streams are parked as async requests and hold no thread; a stream with events to
+ * write gets a sender thread of its own until it has written them, virtual when virtual
+ * threads are enabled. Each stream buffers a bounded number of events, and a stream that
+ * falls further behind has its buffer replaced by a single resync event, telling the client
+ * to catch up through the sync endpoint instead. A stream stuck on one write for longer
+ * than the write timeout is closed.
+ */
+@Component
+@Slf4j
+public class TaskEventBus {
+
+    private static final String RESYNC = "resync";
+
+    private final Map<Long, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final ExecutorService sender;
+    private final int bufferSize;
+    private final long timeoutMillis;
+    private final int maxConnectionsPerUser;
+    private final long writeTimeoutNanos;
+
+    @Autowired
+    public TaskEventBus(@Value("${app.tasks.stream.buffer-size:256}") int bufferSize,
+                        @Value("${app.tasks.stream.timeout-millis:1800000}") long timeoutMillis,
+                        @Value("${app.tasks.stream.max-connections-per-user:10}") int maxConnectionsPerUser,
+                        @Value("${app.tasks.stream.sender-threads:4}") int senderThreads,
+                        @Value("${app.tasks.stream.write-timeout-millis:10000}") long writeTimeoutMillis,
+                        Environment environment) {
+        this(bufferSize, timeoutMillis, maxConnectionsPerUser, senderThreads, writeTimeoutMillis,
+                Threading.VIRTUAL.isActive(environment));
+    }
+
+    /**
+     * Create a bus with the given settings
+     * @param bufferSize events each stream buffers before it is told to resync
+     * @param timeoutMillis how long a stream may stay open
+     * @param maxConnectionsPerUser streams each user may have open
+     * @param senderThreads platform sender threads kept between writes; more are started while
+     *                      streams are writing, and none are kept on virtual threads
+     * @param writeTimeoutMillis how long one write may take before its stream is closed
+     * @param virtualThreads whether senders run on virtual threads
+     */
+    public TaskEventBus(int bufferSize, long timeoutMillis, int maxConnectionsPerUser, int senderThreads,
+                        long writeTimeoutMillis, boolean virtualThreads) {
+        this.bufferSize = bufferSize;
+        this.timeoutMillis = timeoutMillis;
+        this.maxConnectionsPerUser = maxConnectionsPerUser;
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeoutMillis);
+        ThreadFactory threads = virtualThreads
+                ? new VirtualThreadTaskExecutor("task-stream-").getVirtualThreadFactory()
+                : new CustomizableThreadFactory("task-stream-");
+        // No queue: a draining stream never waits behind another stream's blocked write
+        this.sender = new ThreadPoolExecutor(senderThreads, senderThreads,
+                virtualThreads ? 0 : 60, TimeUnit.SECONDS, new java.util.concurrent.LinkedBlockingQueue<>(), threads);
+    }
+
+    /**
+     * Open an event stream for a user
+     * @param userId the user whose task changes to stream
+     * @return the stream, or null if the user already has the maximum number of streams open
+     */
+    public SseEmitter subscribe(Long userId) {
+        SseEmitter emitter = createEmitter(timeoutMillis);
+        Subscription subscription = new Subscription(userId, emitter);
+        Set<Subscription> userSubscriptions = subscriptions.compute(userId, (id, existing) -> {
+            Set<Subscription> result = existing != null ? existing : ConcurrentHashMap.newKeySet();
+            if (result.size() < maxConnectionsPerUser) {
+                result.add(subscription);
+            }
+            return result;
+        });
+        if (!userSubscriptions.contains(subscription)) {
+            return null;
+        }
+
+        emitter.onCompletion(subscription::close);
+        emitter.onTimeout(subscription::close);
+        emitter.onError(error -> subscription.close());
+        try {
+            // Sent on the request thread, so the response is committed there rather than by a
+            // sender racing the request's own header writes; also tells the client the stream is open
+            emitter.send(StreamEvent.comment("connected").toSse());
+        } catch (IOException e) {
+            subscription.close();
+            return null;
+        }
+        return emitter;
+    }
+
+    /**
+     * Create the emitter for a new stream
+     * @param timeoutMillis how long the stream may stay open
+     * @return the emitter
+     */
+    protected SseEmitter createEmitter(long timeoutMillis) {
+        return new SseEmitter(timeoutMillis);
+    }
+
+    /**
+     * Push a task change to its assignee's streams once the writing transaction commits
+     * @param event the task change
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onTaskChanged(TaskChangedEvent event) {
+        Set<Subscription> userSubscriptions = subscriptions.get(event.userId());
+        if (userSubscriptions == null) {
+            return;
+        }
+        TaskResponse task = event.type() != TaskChangedEvent.Type.DELETED
+                ? TaskResponse.fromEntity(event.task())
+                : null;
+        StreamEvent streamEvent = new StreamEvent(event.type().name().toLowerCase(Locale.ROOT),
+                String.valueOf(event.changeSeq()), new TaskEvent(event.task().getId(), event.changeSeq(), task));
+        userSubscriptions.forEach(subscription -> subscription.offer(streamEvent));
+    }
+
+    /**
+     * Tell the streams of every user whose collection a bulk write changed to resync, once the
+     * writing transaction commits; the tasks are not sent one by one
+     * @param event the bulk task change
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onTasksChanged(TaskBulkChangedEvent event) {
+        event.changeSeqs().forEach((userId, changeSeq) -> {
+            Set<Subscription> userSubscriptions = subscriptions.get(userId);
+            if (userSubscriptions != null) {
+                StreamEvent resync = new StreamEvent(RESYNC, String.valueOf(changeSeq),
+                        new TaskEvent(null, changeSeq, null));
+                userSubscriptions.forEach(subscription -> subscription.offer(resync));
+            }
+        });
+    }
+
+    /**
+     * Write a comment to idle streams, keeping proxies from closing them and
+     * detecting clients that went away
+     */
+    @Scheduled(fixedRateString = "${app.tasks.stream.heartbeat-millis:30000}")
+    public void heartbeat() {
+        StreamEvent heartbeat = StreamEvent.comment("heartbeat");
+        subscriptions.values().forEach(userSubscriptions ->
+                userSubscriptions.forEach(subscription -> subscription.offerIfIdle(heartbeat)));
+    }
+
+    /**
+     * Close streams whose client has not taken a write for longer than the write timeout.
+     * Their sender stays blocked until the write fails or completes; the stream is then
+     * completed, and the client reconnects and resyncs.
+     */
+    @Scheduled(fixedDelayString = "${app.tasks.stream.write-check-millis:1000}")
+    public void closeStalledStreams() {
+        long now = System.nanoTime();
+        subscriptions.values().forEach(userSubscriptions ->
+                userSubscriptions.forEach(subscription -> subscription.closeIfStalled(now)));
+    }
+
+    /**
+     * Get the number of open streams
+     * @return the number of open streams across all users
+     */
+    public int getConnectionCount() {
+        return subscriptions.values().stream().mapToInt(Set::size).sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+        subscriptions.values().forEach(userSubscriptions ->
+                userSubscriptions.forEach(subscription -> subscription.emitter.complete()));
+    }
+
+    /**
+     * Event waiting in a stream's buffer. Built into an SSE event per stream,
+     * since a built event cannot be sent twice.
+     */
+    private record StreamEvent(String name, String id, Object data) {
+
+        static StreamEvent comment(String text) {
+            return new StreamEvent(null, null, text);
+        }
+
+        SseEmitter.SseEventBuilder toSse() {
+            if (name == null) {
+                return SseEmitter.event().comment((String) data);
+            }
+            return SseEmitter.event().name(name).id(id).data(data, MediaType.APPLICATION_JSON);
+        }
+    }
+
+    private final class Subscription {
+
+        private final Long userId;
+        private final SseEmitter emitter;
+        private final Deque<StreamEvent> buffer = new ArrayDeque<>();
+        // Offers run on request threads, which may be virtual: a lock, unlike a monitor, never pins them
+        private final Lock lock = new ReentrantLock();
+        private boolean draining;
+        private boolean closed;
+        private boolean stalled;
+        // Start of the write in progress, or 0 between writes; read by closeStalledStreams
+        private volatile long writeStartedNanos;
+
+        Subscription(Long userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+
+        void offer(StreamEvent event) {
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                if (buffer.size() >= bufferSize) {
+                    // Too far behind: drop what it has not read and have it resync from this event on
+                    log.debug("Task stream for user {} overflowed, sending resync", userId);
+                    buffer.clear();
+                    TaskEvent resync = event.data() instanceof TaskEvent taskEvent
+                            ? new TaskEvent(null, taskEvent.getToken(), null)
+                            : new TaskEvent(null, 0, null);
+                    buffer.add(new StreamEvent(RESYNC, event.id(), resync));
+                } else {
+                    buffer.add(event);
+                }
+                if (draining) {
+                    return;
+                }
+                draining = true;
+            } finally {
+                lock.unlock();
+            }
+            sender.execute(this::drain);
+        }
+
+        void offerIfIdle(StreamEvent event) {
+            lock.lock();
+            try {
+                if (!buffer.isEmpty()) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            offer(event);
+        }
+
+        private void drain() {
+            while (true) {
+                StreamEvent event;
+                boolean complete = false;
+                lock.lock();
+                try {
+                    event = closed ? null : buffer.poll();
+                    if (event == null) {
+                        draining = false;
+                        complete = stalled;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                if (event == null) {
+                    if (complete) {
+                        // Closed while a write was stuck; the events it missed are gone, so end the stream
+                        emitter.complete();
+                    }
+                    return;
+                }
+                writeStartedNanos = System.nanoTime();
+                try {
+                    emitter.send(event.toSse());
+                } catch (IOException | IllegalStateException e) {
+                    // Client went away or the stream already completed
+                    close();
+                    return;
+                } finally {
+                    writeStartedNanos = 0;
+                }
+            }
+        }
+
+        void closeIfStalled(long now) {
+            long started = writeStartedNanos;
+            if (started == 0 || now - started <= writeTimeoutNanos) {
+                return;
+            }
+            log.debug("Task stream for user {} stalled on a write, closing it", userId);
+            boolean writing;
+            lock.lock();
+            try {
+                stalled = true;
+                writing = draining;
+            } finally {
+                lock.unlock();
+            }
+            close();
+            // Completing waits for the emitter's lock, which a stuck write holds; the sender completes it then
+            if (!writing) {
+                emitter.complete();
+            }
+        }
+
+        void close() {
+            lock.lock();
+            try {
+                closed = true;
+                buffer.clear();
+            } finally {
+                lock.unlock();
+            }
+            subscriptions.computeIfPresent(userId, (id, userSubscriptions) -> {
+                userSubscriptions.remove(this);
+                return userSubscriptions.isEmpty() ? null : userSubscriptions;
+            });
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.absurdrambler.apcproject.service;
+
+import com.absurdrambler.apcproject.dto.TaskRequest;
+import com.absurdrambler.apcproject.entity.Task;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces unconditional patches to the same task. A patch arriving while another to the
+ * task is being applied waits for it, merged with any others that arrived meanwhile; later
+ * fields win. The merged patch is then applied with one update, and every patch in it gets
+ * the same result, so a checkbox clicked several times while a toggle is being written costs
+ * one more update, not one per click. A patch with nothing in flight is applied right away.
+ */
+@Component
+public class TaskPatchCoalescer {
+
+    private final TaskService taskService;
+    private final boolean enabled;
+    private final Counter coalescedCounter;
+    private final ConcurrentMap<Key, Slot> slots = new ConcurrentHashMap<>();
+
+    public TaskPatchCoalescer(TaskService taskService, MeterRegistry meterRegistry,
+                              @Value("${app.tasks.patch.coalescing-enabled:true}") boolean enabled) {
+        this.taskService = taskService;
+        this.enabled = enabled;
+        this.coalescedCounter = Counter.builder("app.tasks.patch.coalesced")
+                .description("Task patches merged into another patch's update")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Apply a patch to a task assigned to a user, together with any patches to the task
+     * that arrive while an earlier one is being applied
+     * @param id the task ID
+     * @param assigneeId the user the task must be assigned to
+     * @param changes the fields to change
+     * @return the task after the update that included this patch, or empty if no task matched
+     */
+    public Optional<Task> patch(Long id, Long assigneeId, TaskRequest changes) {
+        if (!enabled) {
+            return taskService.patchTask(id, assigneeId, null, changes);
+        }
+
+        Key key = new Key(id, assigneeId);
+        Slot slot = slots.compute(key, (k, existing) -> {
+            Slot joined = existing != null ? existing : new Slot();
+            joined.members++;
+            return joined;
+        });
+        try {
+            Batch batch;
+            slot.merging.lock();
+            try {
+                if (slot.open == null) {
+                    slot.open = new Batch();
+                } else {
+                    coalescedCounter.increment();
+                }
+                batch = slot.open;
+                batch.merge(changes);
+            } finally {
+                slot.merging.unlock();
+            }
+
+            // Updates to the task run one at a time; whoever gets to run a batch first applies it for all
+            slot.running.lock();
+            try {
+                if (!batch.done) {
+                    slot.merging.lock();
+                    try {
+                        slot.open = null;
+                    } finally {
+                        slot.merging.unlock();
+                    }
+                    batch.apply(() -> taskService.patchTask(id, assigneeId, null, batch.changes));
+                }
+            } finally {
+                slot.running.unlock();
+            }
+            return batch.result();
+        } finally {
+            slots.computeIfPresent(key, (k, existing) -> --existing.members == 0 ? null : existing);
+        }
+    }
+
+    private record Key(Long taskId, Long assigneeId) {
+    }
+
+    /**
+     * Patches in flight for one task: the batch still taking patches, the lock held while one
+     * is merged into it, and the lock held while one is applied. Patches arrive on request
+     * threads, which may be virtual, so these are locks rather than monitors that would pin them.
+     */
+    private static final class Slot {
+        private final Lock merging = new ReentrantLock();
+        private final Lock running = new ReentrantLock();
+        private Batch open;
+        private int members;
+    }
+
+    /**
+     * Patches applied together, and their shared result. Patches are merged holding the slot's
+     * merging lock; the result is set and read holding its running lock.
+     */
+    private static final class Batch {
+        private final TaskRequest changes = new TaskRequest();
+        private boolean done;
+        private Optional<Task> result;
+        private RuntimeException failure;
+
+        private void merge(TaskRequest later) {
+            if (later.getTitle() != null) {
+                changes.setTitle(later.getTitle());
+            }
+            if (later.getDescription() != null) {
+                changes.setDescription(later.getDescription());
+            }
+            if (later.getDueDate() != null) {
+                changes.setDueDate(later.getDueDate());
+            }
+            if (later.getIsImportant() != null) {
+                changes.setIsImportant(later.getIsImportant());
+            }
+            if (later.getIsCompleted() != null) {
+                changes.setIsCompleted(later.getIsCompleted());
+            }
+        }
+
+        private void apply(Supplier<Optional<Task>> update) {
+            try {
+                result = update.get();
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            done = true;
+        }
+
+        private Optional<Task> result() {
+            if (failure != null) {
+                throw failure;
+            }
+            return result;
+        }
+    }
+}
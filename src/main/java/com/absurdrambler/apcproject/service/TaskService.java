@@ -1,49 +1,193 @@
 package com.absurdrambler.apcproject.service;
 
+import com.absurdrambler.apcproject.cache.ClusterCacheInvalidator;
+import com.absurdrambler.apcproject.dto.TaskActivityResponse;
+import com.absurdrambler.apcproject.dto.TaskBatchRequest;
+import com.absurdrambler.apcproject.dto.TaskBatchResponse;
+import com.absurdrambler.apcproject.dto.TaskBatchResult;
+import com.absurdrambler.apcproject.dto.TaskBatchUpdate;
+import com.absurdrambler.apcproject.dto.TaskCountsResponse;
+import com.absurdrambler.apcproject.dto.TaskCursor;
+import com.absurdrambler.apcproject.dto.TaskFieldChange;
+import com.absurdrambler.apcproject.dto.TaskRequest;
+import com.absurdrambler.apcproject.dto.TaskResponse;
+import com.absurdrambler.apcproject.dto.TaskSummaryResponse;
+import com.absurdrambler.apcproject.dto.TaskSyncResponse;
 import com.absurdrambler.apcproject.entity.Task;
+import com.absurdrambler.apcproject.entity.TaskActivity;
+import com.absurdrambler.apcproject.entity.TaskCounter;
+import com.absurdrambler.apcproject.entity.TaskTombstone;
 import com.absurdrambler.apcproject.entity.User;
+import com.absurdrambler.apcproject.repository.ArchivedTaskRepository;
+import com.absurdrambler.apcproject.repository.TaskActivityPage;
+import com.absurdrambler.apcproject.repository.TaskActivityRepository;
+import com.absurdrambler.apcproject.repository.TaskChange;
+import com.absurdrambler.apcproject.repository.TaskCounterRepository;
+import com.absurdrambler.apcproject.repository.TaskKeyset;
+import com.absurdrambler.apcproject.repository.TaskPage;
+import com.absurdrambler.apcproject.repository.TaskPageRequest;
 import com.absurdrambler.apcproject.repository.TaskRepository;
+import com.absurdrambler.apcproject.repository.TaskSearchHit;
+import com.absurdrambler.apcproject.repository.TaskSearchKeyset;
+import com.absurdrambler.apcproject.repository.TaskSearchPage;
+import com.absurdrambler.apcproject.repository.TaskSort;
+import com.absurdrambler.apcproject.repository.TaskSyncKeyset;
+import com.absurdrambler.apcproject.repository.TaskTombstoneRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 /**
  * Service class for Task-related business logic
  */
 @Service
+@Timed(value = "app.service", histogram = true)
 @RequiredArgsConstructor
+@Slf4j
 public class TaskService {
 
+    // Matches the export queries' fetch size, so each fetch starts with an empty persistence context
+    private static final int EXPORT_CLEAR_INTERVAL = 1000;
+
+    private static final int MAX_SEARCH_TERMS = 8;
+    private static final Pattern SEARCH_TERM_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final TypeReference<Map<String, TaskFieldChange>> CHANGES_TYPE = new TypeReference<>() {
+    };
+
     private final TaskRepository taskRepository;
+    private final ArchivedTaskRepository archivedTaskRepository;
+    private final TaskTombstoneRepository taskTombstoneRepository;
+    private final TaskCounterRepository taskCounterRepository;
+    private final TaskActivityRepository taskActivityRepository;
+    private final UserService userService;
+    private final TaskCounterService taskCounterService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ClusterCacheInvalidator cacheInvalidator;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.tasks.page.default-size:50}")
+    private int defaultPageSize;
+
+    @Value("${app.tasks.page.max-size:500}")
+    private int maxPageSize;
+
+    @Value("${app.tasks.batch.max-size:1000}")
+    private int maxBatchSize;
+
+    @Value("${app.tasks.sync.tombstone-retention-days:30}")
+    private int tombstoneRetentionDays;
 
     /**
-     * Get all tasks assigned to a user
+     * Get one page of tasks assigned to a user
      * @param user the user to get tasks for
-     * @return list of tasks assigned to the user
+     * @param after position of the last task on the previous page, or null for the first page
+     * @param sort the sort order
+     * @param limit the requested page size, or null for the default
+     * @param summary true to leave out task descriptions
+     * @param includeArchived true to list archived tasks as well
+     * @return the page of tasks
      */
-    public List<Task> getTasksAssignedToUser(User user) {
-        return taskRepository.findByAssignee(user);
+    @Transactional(readOnly = true)
+    public TaskPage<?> getTasksAssignedToUser(User user, TaskKeyset after, TaskSort sort, Integer limit, boolean summary,
+                                              boolean includeArchived) {
+        return findPage(user, null, null, after, sort, limit, summary, includeArchived);
     }
 
     /**
-     * Get all important tasks assigned to a user
+     * Get one page of important tasks assigned to a user
      * @param user the user to get tasks for
-     * @return list of important tasks assigned to the user
+     * @param after position of the last task on the previous page, or null for the first page
+     * @param sort the sort order
+     * @param limit the requested page size, or null for the default
+     * @param summary true to leave out task descriptions
+     * @param includeArchived true to list archived tasks as well
+     * @return the page of important tasks
      */
-    public List<Task> getImportantTasksForUser(User user) {
-        return taskRepository.findByAssigneeAndIsImportant(user, true);
+    @Transactional(readOnly = true)
+    public TaskPage<?> getImportantTasksForUser(User user, TaskKeyset after, TaskSort sort, Integer limit, boolean summary,
+                                                boolean includeArchived) {
+        return findPage(user, true, null, after, sort, limit, summary, includeArchived);
     }
 
     /**
-     * Get all tasks assigned to a user due today
+     * Get one page of tasks assigned to a user due today
      * @param user the user to get tasks for
-     * @return list of tasks assigned to the user due today
+     * @param after position of the last task on the previous page, or null for the first page
+     * @param sort the sort order
+     * @param limit the requested page size, or null for the default
+     * @param summary true to leave out task descriptions
+     * @param includeArchived true to list archived tasks as well
+     * @return the page of tasks due today
      */
-    public List<Task> getDailyTasksForUser(User user) {
-        return taskRepository.findByAssigneeAndDueDate(user, LocalDate.now());
+    @Transactional(readOnly = true)
+    public TaskPage<?> getDailyTasksForUser(User user, TaskKeyset after, TaskSort sort, Integer limit, boolean summary,
+                                            boolean includeArchived) {
+        return findPage(user, null, LocalDate.now(), after, sort, limit, summary, includeArchived);
+    }
+
+    /**
+     * Search the tasks assigned to a user, most relevant first. Every word of the query must
+     * match the start of a word in the task's title or description; title matches rank higher.
+     * @param user the user to search tasks for
+     * @param query the search text
+     * @param after position of the last task on the previous page, or null for the first page
+     * @param limit the requested page size, or null for the default
+     * @return the page of matching tasks
+     * @throws IllegalArgumentException if the query contains no words
+     */
+    @Transactional(readOnly = true)
+    public TaskSearchPage searchTasks(User user, String query, TaskSearchKeyset after, Integer limit) {
+        List<String> terms = SEARCH_TERM_SEPARATOR.splitAsStream(query != null ? query.toLowerCase(Locale.ROOT) : "")
+                .filter(term -> !term.isEmpty())
+                .distinct()
+                .limit(MAX_SEARCH_TERMS)
+                .toList();
+        if (terms.isEmpty()) {
+            throw new IllegalArgumentException("Search query has no words");
+        }
+
+        int pageSize = limit == null || limit <= 0 ? defaultPageSize : Math.min(limit, maxPageSize);
+        List<TaskSearchHit> hits = taskRepository.search(user, terms, after, pageSize + 1);
+        List<TaskResponse> items = hits.stream().limit(pageSize).map(TaskSearchHit::task).toList();
+        if (hits.size() <= pageSize) {
+            return new TaskSearchPage(items, null);
+        }
+        TaskSearchHit last = hits.get(pageSize - 1);
+        return new TaskSearchPage(items, new TaskSearchKeyset(last.rank(), last.task().getId()));
     }
 
     /**
@@ -51,8 +195,14 @@ public class TaskService {
      * @param task the task to create
      * @return the created task
      */
+    @Transactional
     public Task createTask(Task task) {
-        return taskRepository.save(task);
+        // Counted before saving, so the insert already carries the change sequence
+        taskCounterService.taskCreated(task);
+        Task saved = taskRepository.save(task);
+        loadAssignee(saved);
+        publish(TaskChangedEvent.Type.CREATED, saved, saved.getChangeSeq());
+        return saved;
     }
 
     /**
@@ -60,8 +210,198 @@ public class TaskService {
      * @param task the task to update
      * @return the updated task
      */
+    @Transactional
     public Task updateTask(Task task) {
-        return taskRepository.save(task);
+        Task saved = taskRepository.save(task);
+        loadAssignee(saved);
+        taskCounterService.taskUpdated(saved);
+        publish(TaskChangedEvent.Type.UPDATED, saved, saved.getChangeSeq());
+        return saved;
+    }
+
+    /**
+     * Change the non-null fields of a request on a task assigned to a user, with one targeted
+     * UPDATE instead of loading the task and saving it whole. Nothing is written unless the
+     * update matches a row.
+     * @param id the task ID
+     * @param assigneeId the user the task must be assigned to
+     * @param expectedVersions if not null, the versions the task must be at
+     * @param changes the fields to change; the assignee is never changed
+     * @return the patched task, or empty if no task matched
+     */
+    @Transactional
+    public Optional<Task> patchTask(Long id, Long assigneeId, Collection<Long> expectedVersions, TaskRequest changes) {
+        long changeSeq = taskCounterService.reserveChange(assigneeId);
+        Instant now = Instant.now();
+        Optional<Task> patched = taskRepository.patch(id, assigneeId, expectedVersions, changes, changeSeq, now);
+        if (patched.isEmpty()) {
+            // Leave the collection version alone, so clients' list ETags stay valid
+            TransactionInterceptor.currentTransactionStatus().setRollbackOnly();
+            return Optional.empty();
+        }
+
+        // Counted and logged as it was before the update, then changed the same way as the row
+        Task task = patched.get();
+        task.setAssignee(entityManager.find(User.class, assigneeId));
+        task.markCounted();
+        task.markLogged();
+        changes.applyTo(task);
+        task.setVersion(task.getVersion() + 1);
+        task.setChangeSeq(changeSeq);
+        task.setUpdatedAt(now);
+        taskCounterService.taskPatched(task);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cacheInvalidator.evictChanged(Task.class, id);
+            }
+        });
+        publish(TaskChangedEvent.Type.UPDATED, task, changeSeq);
+        return Optional.of(task);
+    }
+
+    /**
+     * Get the ID of a task's assignee without loading the task
+     * @param id the task ID
+     * @return the assignee's ID, or empty if the task does not exist or is unassigned
+     */
+    public Optional<Long> findAssigneeId(Long id) {
+        return taskRepository.findAssigneeId(id);
+    }
+
+    /**
+     * Get the current version of a task assigned to a user without loading the task
+     * @param id the task ID
+     * @param assigneeId the user the task must be assigned to
+     * @return the task's version, or empty if no such task is assigned to the user
+     */
+    public Optional<Long> findVersion(Long id, Long assigneeId) {
+        return taskRepository.findVersion(id, assigneeId);
+    }
+
+    /**
+     * Get the version of a user's task collection, which changes on every write to their tasks
+     * @param user the user
+     * @return the collection version
+     */
+    public long getCollectionVersion(User user) {
+        return taskCounterService.getCollectionVersion(user.getId());
+    }
+
+    /**
+     * Get the sidebar task counts for a user, read from the user's counters
+     * @param user the user to get counts for
+     * @return the user's task counts
+     */
+    public TaskCountsResponse getTaskCounts(User user) {
+        return taskCounterService.getCounts(user.getId());
+    }
+
+    /**
+     * Get one page of the changes to a user's tasks since a sync token. Changed tasks and
+     * deletions are paged together in change order, so a bulk change spreads over several
+     * pages. Each page only reads changes up to the collection version read before them, so
+     * a change committing in between is sent on a later page or sync rather than missed.
+     * Clients whose token predates compacted tombstones, or who have no token, get a full
+     * snapshot instead, also paged.
+     * @param user the user to sync tasks for
+     * @param since the token returned by the previous sync, or null for a full snapshot
+     * @param after the position from the previous page's cursor, or null for the first page
+     * @param limit the requested page size, or null for the default
+     * @return the tasks created or changed and the IDs of tasks deleted on this page
+     */
+    @Transactional
+    public TaskSyncResponse sync(User user, Long since, TaskSyncKeyset after, Integer limit) {
+        int pageSize = limit == null || limit <= 0 ? defaultPageSize : Math.min(limit, maxPageSize);
+        TaskCounter state = taskCounterService.getSyncState(user.getId());
+        long token = state.getCollectionVersion();
+        long compactedSeq = state.getCompactedSeq();
+        boolean reset = false;
+        if (after == null && since != null && since >= compactedSeq && since <= token) {
+            after = new TaskSyncKeyset(since, Long.MAX_VALUE, since);
+        } else if (after == null || after.changeSeq() > token
+                || (compactedSeq > after.deletedAfter() && compactedSeq >= after.changeSeq())) {
+            // Every task; the only deletions sent are those made while the snapshot is paged through
+            after = new TaskSyncKeyset(-1, Long.MAX_VALUE, token);
+            reset = true;
+        }
+
+        List<TaskChange> changes = taskRepository.findChangedSince(user, after, token, pageSize + 1);
+        List<TaskTombstone> tombstones = taskTombstoneRepository.findDeletedSince(user.getId(), after.changeSeq(),
+                after.id(), after.deletedAfter(), token, Limit.of(pageSize + 1));
+        List<TaskResponse> upserts = new ArrayList<>();
+        List<Long> deletions = new ArrayList<>();
+        int nextChange = 0;
+        int nextTombstone = 0;
+        TaskSyncKeyset last = after;
+        while (upserts.size() + deletions.size() < pageSize
+                && (nextChange < changes.size() || nextTombstone < tombstones.size())) {
+            TaskChange change = nextChange < changes.size() ? changes.get(nextChange) : null;
+            TaskTombstone tombstone = nextTombstone < tombstones.size() ? tombstones.get(nextTombstone) : null;
+            if (tombstone == null || (change != null && (change.changeSeq() < tombstone.getChangeSeq()
+                    || (change.changeSeq() == tombstone.getChangeSeq()
+                    && change.task().getId() < tombstone.getTaskId())))) {
+                upserts.add(change.task());
+                last = new TaskSyncKeyset(change.changeSeq(), change.task().getId(), after.deletedAfter());
+                nextChange++;
+            } else {
+                deletions.add(tombstone.getTaskId());
+                last = new TaskSyncKeyset(tombstone.getChangeSeq(), tombstone.getTaskId(), after.deletedAfter());
+                nextTombstone++;
+            }
+        }
+        boolean hasMore = nextChange < changes.size() || nextTombstone < tombstones.size();
+        return new TaskSyncResponse(upserts, deletions, token, reset, hasMore,
+                hasMore ? TaskCursor.encode(last) : null);
+    }
+
+    /**
+     * Remove tombstones past the retention period. Users' compacted sequences are raised first,
+     * so clients that synced before the removed deletions get a full snapshot.
+     */
+    @Scheduled(cron = "${app.tasks.sync.compaction-cron:0 30 0 * * *}")
+    @Transactional
+    public void compactTombstones() {
+        Instant cutoff = Instant.now().minus(Duration.ofDays(tombstoneRetentionDays));
+        taskCounterRepository.markCompacted(cutoff);
+        int removed = taskTombstoneRepository.deleteOlderThan(cutoff);
+        log.info("Compacted {} task tombstones", removed);
+    }
+
+    /**
+     * Get one page of a task's history, newest first. Entries are written shortly after
+     * each change commits, so the latest change may not be listed yet.
+     * @param taskId the task
+     * @param beforeId ID of the last entry on the previous page, or null for the first page
+     * @param limit the requested page size, or null for the default
+     * @return the page of history entries
+     */
+    @Transactional(readOnly = true)
+    public TaskActivityPage getTaskHistory(Long taskId, Long beforeId, Integer limit) {
+        int pageSize = limit == null || limit <= 0 ? defaultPageSize : Math.min(limit, maxPageSize);
+        List<TaskActivity> entries = beforeId == null
+                ? taskActivityRepository.findByTaskIdOrderByIdDesc(taskId, Limit.of(pageSize + 1))
+                : taskActivityRepository.findByTaskIdAndIdLessThanOrderByIdDesc(taskId, beforeId, Limit.of(pageSize + 1));
+
+        Set<Long> actorIds = new HashSet<>();
+        entries.forEach(entry -> {
+            if (entry.getActorId() != null) {
+                actorIds.add(entry.getActorId());
+            }
+        });
+        Map<Long, String> actorNames = new HashMap<>();
+        if (!actorIds.isEmpty()) {
+            userService.findAllById(actorIds).forEach(user -> actorNames.put(user.getId(), user.getUsername()));
+        }
+
+        List<TaskActivityResponse> items = entries.stream()
+                .limit(pageSize)
+                .map(entry -> new TaskActivityResponse(entry.getId(), entry.getTaskId(), entry.getAction(),
+                        entry.getActorId(), actorNames.get(entry.getActorId()), parseChanges(entry.getChanges()),
+                        entry.getOccurredAt()))
+                .toList();
+        Long next = entries.size() > pageSize ? items.get(pageSize - 1).getId() : null;
+        return new TaskActivityPage(items, next);
     }
 
     /**
@@ -69,8 +409,11 @@ public class TaskService {
      * @param id the task ID
      * @return Optional containing the task if found
      */
+    @Transactional(readOnly = true)
     public Optional<Task> findById(Long id) {
-        return taskRepository.findById(id);
+        Optional<Task> task = taskRepository.findById(id);
+        task.ifPresent(this::loadAssignee);
+        return task;
     }
 
     /**
@@ -79,8 +422,9 @@ public class TaskService {
      * @param user the user who should own the task
      * @return Optional containing the task if found and belongs to the user
      */
+    @Transactional(readOnly = true)
     public Optional<Task> findByIdAndUser(Long id, User user) {
-        List<Task> tasks = taskRepository.findByIdAndAssignee(id, user);
+        List<Task> tasks = withAssignees(taskRepository.findByIdAndAssignee(id, user));
         return tasks.isEmpty() ? Optional.empty() : Optional.of(tasks.get(0));
     }
 
@@ -88,15 +432,330 @@ public class TaskService {
      * Delete a task
      * @param task the task to delete
      */
+    @Transactional
     public void deleteTask(Task task) {
         taskRepository.delete(task);
+        long changeSeq = taskCounterService.taskDeleted(task);
+        if (task.getAssignee() != null) {
+            taskTombstoneRepository.save(tombstone(task, changeSeq));
+        }
+        publish(TaskChangedEvent.Type.DELETED, task, changeSeq);
     }
 
     /**
      * Delete a task by ID
      * @param id the ID of the task to delete
      */
+    @Transactional
     public void deleteTaskById(Long id) {
-        taskRepository.deleteById(id);
+        taskRepository.findById(id).ifPresent(this::deleteTask);
+    }
+
+    /**
+     * Apply a batch of creates, updates and deletes in one transaction. Operations that
+     * fail validation or target a missing task are reported and skipped; the rest are
+     * flushed as JDBC batches at commit.
+     * @param request the batch of operations
+     * @param currentUser the user making the request
+     * @param admin whether the user may assign and modify other users' tasks
+     * @return one result per requested operation
+     * @throws IllegalArgumentException if the batch exceeds the configured maximum size
+     */
+    @Transactional
+    public TaskBatchResponse applyBatch(TaskBatchRequest request, User currentUser, boolean admin) {
+        List<TaskRequest> creates = request.getCreate() != null ? request.getCreate() : List.of();
+        List<TaskBatchUpdate> updates = request.getUpdate() != null ? request.getUpdate() : List.of();
+        List<Long> deletes = request.getDelete() != null ? request.getDelete() : List.of();
+        if (creates.size() + updates.size() + deletes.size() > maxBatchSize) {
+            throw new IllegalArgumentException("Batch exceeds " + maxBatchSize + " operations");
+        }
+
+        // Resolve every referenced assignee and task up front, one query each
+        Map<Long, User> assignees = new HashMap<>();
+        if (admin) {
+            Set<Long> assigneeIds = new HashSet<>();
+            for (TaskRequest create : creates) {
+                if (create != null && create.getAssigneeId() != null) {
+                    assigneeIds.add(create.getAssigneeId());
+                }
+            }
+            if (!assigneeIds.isEmpty()) {
+                userService.findAllById(assigneeIds).forEach(user -> assignees.put(user.getId(), user));
+            }
+        }
+
+        Set<Long> taskIds = new HashSet<>(deletes);
+        for (TaskBatchUpdate update : updates) {
+            if (update != null && update.getId() != null) {
+                taskIds.add(update.getId());
+            }
+        }
+        Map<Long, Task> tasks = new HashMap<>();
+        if (!taskIds.isEmpty()) {
+            for (Task task : taskRepository.findByIdIn(taskIds)) {
+                if (admin || isAssignedTo(task, currentUser)) {
+                    tasks.put(task.getId(), task);
+                }
+            }
+        }
+
+        List<TaskBatchResult> created = new ArrayList<>(creates.size());
+        List<Task> toCreate = new ArrayList<>(creates.size());
+        List<Integer> createIndexes = new ArrayList<>(creates.size());
+        for (int i = 0; i < creates.size(); i++) {
+            TaskRequest create = creates.get(i);
+            if (create == null || create.getTitle() == null || create.getTitle().isBlank()) {
+                created.add(TaskBatchResult.failure(i, null, 400, "Title is required"));
+                continue;
+            }
+            User assignee = currentUser;
+            if (admin && create.getAssigneeId() != null) {
+                assignee = assignees.get(create.getAssigneeId());
+                if (assignee == null) {
+                    created.add(TaskBatchResult.failure(i, null, 400, "Unknown assignee"));
+                    continue;
+                }
+            }
+            Task task = create.toEntity();
+            task.setAssignee(assignee);
+            toCreate.add(task);
+            createIndexes.add(i);
+            created.add(null);
+        }
+        // Counter changes are summed per user and applied with one statement each
+        Map<Long, TaskCounterService.Delta> counterDeltas = new HashMap<>();
+        for (Task task : toCreate) {
+            counterDeltas.merge(task.getAssignee().getId(), taskCounterService.contributionOf(task),
+                    TaskCounterService.Delta::plus);
+            task.markCounted();
+        }
+
+        List<TaskBatchResult> updated = new ArrayList<>(updates.size());
+        List<Task> changed = new ArrayList<>(updates.size());
+        for (int i = 0; i < updates.size(); i++) {
+            TaskBatchUpdate update = updates.get(i);
+            Long id = update != null ? update.getId() : null;
+            Task task = id != null ? tasks.get(id) : null;
+            if (task == null) {
+                updated.add(TaskBatchResult.failure(i, id, 404, "Task not found"));
+                continue;
+            }
+            if (update.getChanges() != null) {
+                update.getChanges().applyTo(task);
+                changed.add(task);
+                counterDeltas.merge(task.getAssignee().getId(), taskCounterService.changeOf(task),
+                        TaskCounterService.Delta::plus);
+                task.markCounted();
+            }
+            updated.add(TaskBatchResult.success(i, 200, TaskResponse.fromEntity(task)));
+        }
+
+        List<TaskBatchResult> deleted = new ArrayList<>(deletes.size());
+        List<Task> toDelete = new ArrayList<>(deletes.size());
+        for (int i = 0; i < deletes.size(); i++) {
+            Long id = deletes.get(i);
+            Task task = id != null ? tasks.remove(id) : null;
+            if (task == null) {
+                deleted.add(TaskBatchResult.failure(i, id, 404, "Task not found"));
+                continue;
+            }
+            toDelete.add(task);
+            deleted.add(new TaskBatchResult(i, id, 204, null, null));
+            counterDeltas.merge(task.getAssignee().getId(), taskCounterService.countedContribution(task).negate(),
+                    TaskCounterService.Delta::plus);
+        }
+
+        // Every change in the batch shares its assignee's new collection version. New tasks
+        // are saved only after it is known, so their inserts already carry it.
+        Map<Long, Long> changeSeqs = taskCounterService.apply(counterDeltas);
+        for (Task task : toCreate) {
+            task.setChangeSeq(changeSeqs.get(task.getAssignee().getId()));
+        }
+        for (Task task : changed) {
+            task.setChangeSeq(changeSeqs.get(task.getAssignee().getId()));
+        }
+        List<Task> saved = taskRepository.saveAll(toCreate);
+        saved.forEach(this::loadAssignee);
+        for (int i = 0; i < saved.size(); i++) {
+            int index = createIndexes.get(i);
+            created.set(index, TaskBatchResult.success(index, 201, TaskResponse.fromEntity(saved.get(i))));
+        }
+        taskRepository.deleteAll(toDelete);
+        taskTombstoneRepository.saveAll(toDelete.stream()
+                .map(task -> tombstone(task, changeSeqs.get(task.getAssignee().getId())))
+                .toList());
+        saved.forEach(task -> publish(TaskChangedEvent.Type.CREATED, task, task.getChangeSeq()));
+        changed.forEach(task -> publish(TaskChangedEvent.Type.UPDATED, task, task.getChangeSeq()));
+        toDelete.forEach(task -> publish(TaskChangedEvent.Type.DELETED, task, changeSeqs.get(task.getAssignee().getId())));
+
+        return new TaskBatchResponse(created, updated, deleted);
+    }
+
+    /**
+     * Export tasks in ID order from a forward-only cursor, then archived tasks the same way.
+     * The persistence context is cleared as rows are consumed, so memory use does not grow
+     * with the number of tasks.
+     * @param assigneeId the user whose tasks to export, or null for every task
+     * @param consumer receives each task as it is read
+     * @return the number of tasks exported
+     */
+    @Transactional(readOnly = true)
+    public long exportTasks(Long assigneeId, Consumer<TaskResponse> consumer) {
+        long count = export(assigneeId != null
+                ? taskRepository.streamByAssigneeId(assigneeId)
+                : taskRepository.streamAll(), TaskResponse::fromEntity, consumer, 0);
+        return export(assigneeId != null
+                ? archivedTaskRepository.streamByAssigneeId(assigneeId)
+                : archivedTaskRepository.streamAll(), TaskResponse::fromEntity, consumer, count);
+    }
+
+    private <T> long export(Stream<T> rows, Function<T, TaskResponse> toResponse, Consumer<TaskResponse> consumer,
+                            long count) {
+        try (rows) {
+            Iterator<T> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                consumer.accept(toResponse.apply(iterator.next()));
+                if (++count % EXPORT_CLEAR_INTERVAL == 0) {
+                    entityManager.clear();
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Import a batch of exported tasks as new tasks, in one transaction. Admins' tasks keep
+     * their exported assignee; everyone else's are assigned to themselves. The persistence
+     * context is cleared afterwards, so a long import made of many batches stays flat.
+     * @param tasks the tasks, as exported
+     * @param firstIndex position of the first task of the batch in the whole import
+     * @param currentUser the user making the request
+     * @param admin whether tasks keep their exported assignee
+     * @return a failure for every task that was not imported
+     */
+    @Transactional
+    public List<TaskBatchResult> importTasks(List<TaskResponse> tasks, int firstIndex, User currentUser, boolean admin) {
+        // Loaded rather than referenced, so stream subscribers can still read the assignee after the clear
+        User importer = userService.findById(currentUser.getId()).orElseThrow();
+        Map<String, User> assignees = new HashMap<>();
+        if (admin) {
+            Set<String> usernames = new HashSet<>();
+            for (TaskResponse task : tasks) {
+                if (task != null && task.getAssigneeName() != null) {
+                    usernames.add(task.getAssigneeName());
+                }
+            }
+            if (!usernames.isEmpty()) {
+                userService.findAllByUsername(usernames).forEach(user -> assignees.put(user.getUsername(), user));
+            }
+        }
+
+        List<TaskBatchResult> failures = new ArrayList<>();
+        List<Task> toCreate = new ArrayList<>(tasks.size());
+        Map<Long, TaskCounterService.Delta> counterDeltas = new HashMap<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            TaskResponse imported = tasks.get(i);
+            if (imported == null || imported.getTitle() == null || imported.getTitle().isBlank()) {
+                failures.add(TaskBatchResult.failure(firstIndex + i, null, 400, "Title is required"));
+                continue;
+            }
+            User assignee = importer;
+            if (admin && imported.getAssigneeName() != null) {
+                assignee = assignees.get(imported.getAssigneeName());
+                if (assignee == null) {
+                    failures.add(TaskBatchResult.failure(firstIndex + i, null, 400, "Unknown assignee"));
+                    continue;
+                }
+            }
+            Task task = new Task(imported.getTitle(), imported.getDescription(), imported.getDueDate(),
+                    imported.getIsImportant(), imported.getIsCompleted(), assignee);
+            toCreate.add(task);
+            counterDeltas.merge(assignee.getId(), taskCounterService.contributionOf(task),
+                    TaskCounterService.Delta::plus);
+            task.markCounted();
+        }
+
+        Map<Long, Long> changeSeqs = taskCounterService.apply(counterDeltas);
+        for (Task task : toCreate) {
+            task.setChangeSeq(changeSeqs.get(task.getAssignee().getId()));
+        }
+        List<Task> saved = taskRepository.saveAll(toCreate);
+        taskRepository.flush();
+        saved.forEach(task -> publish(TaskChangedEvent.Type.CREATED, task, task.getChangeSeq()));
+        entityManager.clear();
+        return failures;
+    }
+
+    /**
+     * Publish a task change for the event stream, which delivers it after commit
+     */
+    private void publish(TaskChangedEvent.Type type, Task task, long changeSeq) {
+        if (task.getAssignee() != null) {
+            eventPublisher.publishEvent(new TaskChangedEvent(type, task, task.getAssignee().getId(), changeSeq));
+        }
+    }
+
+    /**
+     * Load a task's assignee where it is only a reference, so the task stays readable after the
+     * transaction. Assignees are references when set from the current user, or when a task is
+     * served from the second-level cache, which skips the fetch plan. Users are cached too, so
+     * this rarely runs a query.
+     */
+    private void loadAssignee(Task task) {
+        User assignee = task.getAssignee();
+        if (assignee != null && !Hibernate.isInitialized(assignee)) {
+            task.setAssignee(entityManager.find(User.class, assignee.getId()));
+        }
+    }
+
+    private List<Task> withAssignees(List<Task> tasks) {
+        tasks.forEach(this::loadAssignee);
+        return tasks;
+    }
+
+    private Map<String, TaskFieldChange> parseChanges(String changes) {
+        if (changes == null) {
+            return Map.of();
+        }
+        try {
+            return objectMapper.readValue(changes, CHANGES_TYPE);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Malformed task activity changes", e);
+        }
+    }
+
+    private static TaskTombstone tombstone(Task task, long changeSeq) {
+        return new TaskTombstone(task.getId(), task.getAssignee().getId(), changeSeq, Instant.now());
+    }
+
+    private static boolean isAssignedTo(Task task, User user) {
+        return task.getAssignee() != null && task.getAssignee().getId().equals(user.getId());
+    }
+
+    /**
+     * Fetch one row past the page size to find out whether another page exists
+     */
+    private TaskPage<?> findPage(User user, Boolean isImportant, LocalDate dueDate, TaskKeyset after,
+                                 TaskSort sort, Integer limit, boolean summary, boolean includeArchived) {
+        int pageSize = limit == null || limit <= 0 ? defaultPageSize : Math.min(limit, maxPageSize);
+        TaskPageRequest request = new TaskPageRequest(after, sort != null ? sort : TaskSort.DUE_DATE_ASC, pageSize + 1,
+                includeArchived);
+        // Before the tasks and in their transaction, so on a lagging replica the version lags with them
+        Long version = taskCounterService.findCollectionVersion(user.getId()).orElse(null);
+
+        if (summary) {
+            List<TaskSummaryResponse> rows = taskRepository.findSummaryPageByAssignee(user, isImportant, dueDate, request);
+            return toPage(rows, pageSize, last -> new TaskKeyset(last.getDueDate(), last.getId()), version);
+        }
+        List<TaskResponse> rows = taskRepository.findPageByAssignee(user, isImportant, dueDate, request);
+        return toPage(rows, pageSize, last -> new TaskKeyset(last.getDueDate(), last.getId()), version);
+    }
+
+    private static <T> TaskPage<T> toPage(List<T> rows, int pageSize, Function<T, TaskKeyset> keyset, Long version) {
+        if (rows.size() <= pageSize) {
+            return new TaskPage<>(rows, null, version);
+        }
+        List<T> items = rows.subList(0, pageSize);
+        return new TaskPage<>(items, keyset.apply(items.get(pageSize - 1)), version);
     }
 }
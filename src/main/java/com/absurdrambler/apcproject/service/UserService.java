@@ -2,13 +2,20 @@ package com.absurdrambler.apcproject.service;
 
 import com.absurdrambler.apcproject.entity.User;
 import com.absurdrambler.apcproject.repository.UserRepository;
+import com.absurdrambler.apcproject.security.AuthenticatedUser;
+import com.absurdrambler.apcproject.security.UserPrincipalCache;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.core.userdetails.User.UserBuilder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,15 +23,19 @@ import java.util.Optional;
  * Service class for User-related business logic
  */
 @Service
+@Timed(value = "app.service", histogram = true)
 @RequiredArgsConstructor
-public class UserService implements UserDetailsService {
+public class UserService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
+    private final UserPrincipalCache principalCache;
+    private final TaskCounterService taskCounterService;
 
     /**
      * Get all users (for admin dropdown)
      * @return list of all users
      */
+    @Transactional(readOnly = true)
     public List<User> getAllUsers() {
         return userRepository.findAll();
     }
@@ -34,6 +45,7 @@ public class UserService implements UserDetailsService {
      * @param username the username to search for
      * @return Optional containing the user if found
      */
+    @Transactional(readOnly = true)
     public Optional<User> findByUsername(String username) {
         return userRepository.findByUsername(username);
     }
@@ -43,17 +55,97 @@ public class UserService implements UserDetailsService {
      * @param id the user ID
      * @return Optional containing the user if found
      */
+    @Transactional(readOnly = true)
     public Optional<User> findById(Long id) {
         return userRepository.findById(id);
     }
 
     /**
-     * Save a user
+     * Find users by ID
+     * @param ids the user IDs
+     * @return the users that exist
+     */
+    @Transactional(readOnly = true)
+    public List<User> findAllById(Iterable<Long> ids) {
+        return userRepository.findAllById(ids);
+    }
+
+    /**
+     * Find users by username
+     * @param usernames the usernames
+     * @return the users that exist
+     */
+    @Transactional(readOnly = true)
+    public List<User> findAllByUsername(Collection<String> usernames) {
+        return userRepository.findByUsernameIn(usernames);
+    }
+
+    /**
+     * Get a reference to a user by ID without loading it from the database
+     * @param id the user ID
+     * @return a lazy reference to the user
+     */
+    public User getReference(Long id) {
+        return userRepository.getReferenceById(id);
+    }
+
+    /**
+     * Save a user, evicting any cached principal for it once the save commits
      * @param user the user to save
      * @return the saved user
      */
+    @Transactional
     public User save(User user) {
-        return userRepository.save(user);
+        boolean isNew = user.getId() == null;
+        User saved = userRepository.save(user);
+        if (isNew) {
+            taskCounterService.initialize(saved.getId());
+        }
+        Long id = saved.getId();
+        String username = saved.getUsername();
+        evictAfterCommit(() -> {
+            principalCache.evictById(id);
+            principalCache.evict(username);
+        });
+        return saved;
+    }
+
+    /**
+     * Delete a user that has no tasks left, evicting any cached principal for it once the deletion commits
+     * @param id the user's ID
+     */
+    @Transactional
+    public void delete(Long id) {
+        userRepository.deleteById(id);
+        evictAfterCommit(() -> principalCache.evictById(id));
+    }
+
+    // Evicting before commit would let a concurrent login cache the old row again until it expires
+    private static void evictAfterCommit(Runnable eviction) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                eviction.run();
+            }
+        });
+    }
+
+    /**
+     * Find the principal for an authenticated username, using the principal cache when possible
+     * @param username the authenticated username
+     * @return Optional containing the principal if the user exists
+     */
+    public Optional<AuthenticatedUser> findCurrentUser(String username) {
+        Optional<AuthenticatedUser> cached = principalCache.get(username);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        return userRepository.findByUsername(username)
+                .map(AuthenticatedUser::fromEntity)
+                .map(principal -> {
+                    principalCache.put(principal);
+                    return principal;
+                });
     }
 
     /**
@@ -68,18 +160,28 @@ public class UserService implements UserDetailsService {
     /**
      * Load user by username for Spring Security
      * @param username the username
-     * @return UserDetails object
+     * @return UserDetails object carrying the user id and role
      * @throws UsernameNotFoundException if user not found
      */
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username)
+        return findCurrentUser(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
+    }
 
-        UserBuilder builder = org.springframework.security.core.userdetails.User.withUsername(username);
-        builder.password(user.getPassword());
-        builder.roles(user.getRole().replace("ROLE_", ""));
-
-        return builder.build();
+    /**
+     * Store a password re-hashed at the current work factor after a successful login
+     * @param user the authenticated user
+     * @param newPassword the new password hash
+     * @return the principal carrying the new password hash
+     * @throws UsernameNotFoundException if the user was deleted meanwhile
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        User entity = userRepository.findByUsername(user.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("User not found: " + user.getUsername()));
+        entity.setPassword(newPassword);
+        return AuthenticatedUser.fromEntity(save(entity));
     }
 }
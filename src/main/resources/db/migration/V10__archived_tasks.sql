@@ -0,0 +1,29 @@
+-- Cold tier for tasks completed long ago. TaskArchiver moves them out of tasks in batches,
+-- keeping their IDs, so the hot table and its indexes only carry tasks users still look at.
+
+CREATE TABLE archived_tasks (
+    id           BIGINT NOT NULL,
+    title        VARCHAR(255) NOT NULL,
+    description  TEXT,
+    due_date     DATE,
+    is_important BOOLEAN,
+    is_completed BOOLEAN,
+    assignee_id  BIGINT,
+    version      BIGINT NOT NULL,
+    change_seq   BIGINT NOT NULL,
+    updated_at   TIMESTAMP WITH TIME ZONE,
+    archived_at  TIMESTAMP WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_archived_tasks_assignee FOREIGN KEY (assignee_id) REFERENCES users (id)
+);
+
+-- Listings that include archived tasks, sorted by due date or creation order
+CREATE INDEX idx_archived_tasks_assignee_due_date ON archived_tasks (assignee_id, due_date, id);
+CREATE INDEX idx_archived_tasks_assignee_id ON archived_tasks (assignee_id, id);
+
+-- Tasks last written before V6 have no change time. They count as changed now, so they are
+-- archived once they have been completed and unchanged for the full period from here on.
+UPDATE tasks SET updated_at = CURRENT_TIMESTAMP WHERE updated_at IS NULL;
+
+-- Lets the archiver find completed tasks by age without scanning the table
+CREATE INDEX idx_tasks_completed_updated_at ON tasks (is_completed, updated_at, id);
@@ -0,0 +1,23 @@
+-- Schema as previously generated by Hibernate (ddl-auto=update).
+-- Existing databases are baselined at this version and skip it.
+
+CREATE TABLE users (
+    id       BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    username VARCHAR(255) NOT NULL,
+    password VARCHAR(255) NOT NULL,
+    role     VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_users_username UNIQUE (username)
+);
+
+CREATE TABLE tasks (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    title        VARCHAR(255) NOT NULL,
+    description  TEXT,
+    due_date     DATE,
+    is_important BOOLEAN,
+    is_completed BOOLEAN,
+    assignee_id  BIGINT,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_tasks_assignee FOREIGN KEY (assignee_id) REFERENCES users (id)
+);
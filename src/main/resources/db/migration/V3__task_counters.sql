@@ -0,0 +1,23 @@
+-- Per-user sidebar counters, maintained by TaskService on every task write
+
+CREATE TABLE task_counters (
+    user_id         BIGINT NOT NULL,
+    total_count     BIGINT NOT NULL DEFAULT 0,
+    open_count      BIGINT NOT NULL DEFAULT 0,
+    important_count BIGINT NOT NULL DEFAULT 0,
+    due_today_count BIGINT NOT NULL DEFAULT 0,
+    due_today_date  DATE,
+    PRIMARY KEY (user_id),
+    CONSTRAINT fk_task_counters_user FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE
+);
+
+INSERT INTO task_counters (user_id, total_count, open_count, important_count, due_today_count, due_today_date)
+SELECT u.id,
+       COUNT(t.id),
+       COALESCE(SUM(CASE WHEN t.id IS NOT NULL AND NOT COALESCE(t.is_completed, FALSE) THEN 1 ELSE 0 END), 0),
+       COALESCE(SUM(CASE WHEN t.is_important THEN 1 ELSE 0 END), 0),
+       COALESCE(SUM(CASE WHEN t.due_date = CURRENT_DATE THEN 1 ELSE 0 END), 0),
+       CURRENT_DATE
+FROM users u
+LEFT JOIN tasks t ON t.assignee_id = u.id
+GROUP BY u.id;
@@ -0,0 +1,5 @@
+-- Per-user task collection version, bumped by every task write and exposed as the list ETag
+ALTER TABLE task_counters ADD COLUMN collection_version BIGINT NOT NULL DEFAULT 0;
+
+-- Optimistic locking version for tasks, exposed as the task ETag
+ALTER TABLE tasks ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,21 @@
+-- Change tracking for delta sync. A task's change_seq is its assignee's collection
+-- version at the time of its last write; deletions leave tombstones with the same sequence.
+
+ALTER TABLE tasks ADD COLUMN change_seq BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE tasks ADD COLUMN updated_at TIMESTAMP WITH TIME ZONE;
+
+CREATE INDEX idx_tasks_assignee_change_seq ON tasks (assignee_id, change_seq);
+
+CREATE TABLE task_tombstones (
+    task_id    BIGINT NOT NULL,
+    user_id    BIGINT NOT NULL,
+    change_seq BIGINT NOT NULL,
+    deleted_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (task_id)
+);
+
+CREATE INDEX idx_task_tombstones_user_change_seq ON task_tombstones (user_id, change_seq);
+CREATE INDEX idx_task_tombstones_deleted_at ON task_tombstones (deleted_at);
+
+-- Highest change_seq of a compacted tombstone; older sync tokens must resync in full
+ALTER TABLE task_counters ADD COLUMN compacted_seq BIGINT NOT NULL DEFAULT 0;
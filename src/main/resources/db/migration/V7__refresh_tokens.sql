@@ -0,0 +1,16 @@
+-- Issued refresh tokens, for rotation in stateless mode. Each refresh marks its token used
+-- and issues the next one in the same family; presenting a used token again revokes the family.
+
+CREATE TABLE refresh_tokens (
+    token_id   VARCHAR(36) NOT NULL,
+    family_id  VARCHAR(36) NOT NULL,
+    user_id    BIGINT NOT NULL,
+    used       BOOLEAN NOT NULL DEFAULT FALSE,
+    expires_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (token_id),
+    CONSTRAINT fk_refresh_tokens_user FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_refresh_tokens_family_id ON refresh_tokens (family_id);
+CREATE INDEX idx_refresh_tokens_user_id ON refresh_tokens (user_id);
+CREATE INDEX idx_refresh_tokens_expires_at ON refresh_tokens (expires_at);
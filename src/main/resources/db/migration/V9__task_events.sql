@@ -0,0 +1,13 @@
+-- Append-only activity log of task writes, written in batches after commit by TaskActivityLog.
+-- Events outlive their task, so there is no foreign key to tasks.
+
+CREATE TABLE task_events (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    task_id     BIGINT NOT NULL,
+    actor_id    BIGINT,
+    action      VARCHAR(16) NOT NULL,
+    changes     TEXT,
+    occurred_at TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
+CREATE INDEX idx_task_events_task_id ON task_events (task_id, id);
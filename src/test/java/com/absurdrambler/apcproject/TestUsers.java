@@ -0,0 +1,46 @@
+package com.absurdrambler.apcproject;
+
+import com.absurdrambler.apcproject.entity.User;
+import com.absurdrambler.apcproject.security.AuthenticatedUser;
+import com.absurdrambler.apcproject.service.UserService;
+
+import java.util.UUID;
+
+/**
+ * Users for tests. Tests sharing a context share its database, so each creates users of its
+ * own under unique names rather than counting on the seeded accounts having no other tasks.
+ */
+public final class TestUsers {
+
+    private TestUsers() {
+    }
+
+    /**
+     * Create a user with a unique name
+     * @param userService the service to save the user with
+     * @param prefix the start of the username, naming the test that owns the user
+     * @return the saved user
+     */
+    public static User create(UserService userService, String prefix) {
+        return userService.save(new User(prefix + "-" + UUID.randomUUID(), "unused", "ROLE_USER"));
+    }
+
+    /**
+     * Get the principal of an existing user, such as one of the seeded accounts
+     * @param userService the service to look the user up with
+     * @param username the username
+     * @return the user's principal
+     */
+    public static AuthenticatedUser principal(UserService userService, String username) {
+        return AuthenticatedUser.fromEntity(userService.findByUsername(username).orElseThrow());
+    }
+
+    /**
+     * Get the principal of the seeded admin account
+     * @param userService the service to look the admin up with
+     * @return the admin's principal
+     */
+    public static AuthenticatedUser admin(UserService userService) {
+        return principal(userService, "admin");
+    }
+}
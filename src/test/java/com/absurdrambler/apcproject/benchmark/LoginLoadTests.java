@@ -0,0 +1,224 @@
+package com.absurdrambler.apcproject.benchmark;
+
+import com.absurdrambler.apcproject.ApcprojectApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures task endpoint latency on its own, then while failing logins arrive at a fixed rate
+ * above what the password check can sustain. Runs once with the bounded login pool and once with a pool as large as
+ * Tomcat's, which behaves like hashing on the request threads. Rate limits are disabled so
+ * every login reaches the pool.
+ * Run with: mvn test -Pbenchmark -Dtest=LoginLoadTests
+ */
+@Tag("benchmark")
+class LoginLoadTests {
+
+    private static final int TASK_CLIENTS = Integer.getInteger("load.clients", 50);
+    private static final int LOGINS_PER_SECOND = Integer.getInteger("load.login-rate", 50);
+    private static final int WARMUP_SECONDS = Integer.getInteger("load.warmup-seconds", 10);
+    private static final int MEASURED_SECONDS = Integer.getInteger("load.seconds", 10);
+
+    @Test
+    void taskLatencyStaysFlatWhileLoginIsSaturated() throws Exception {
+        Run bounded = run("bounded login pool");
+        Run unbounded = run("login pool of 200", "app.security.login.threads=200", "app.security.login.queue-capacity=0");
+
+        System.out.println(TASK_CLIENTS + " task clients, " + LOGINS_PER_SECOND + " logins/s, "
+                + MEASURED_SECONDS + "s measured per phase");
+        System.out.println(bounded.format());
+        System.out.println(unbounded.format());
+        assertThat(bounded.idle().errors()).isZero();
+        assertThat(bounded.flooded().errors()).isZero();
+        assertThat(bounded.flooded().p99Millis()).isLessThan(Math.max(3 * bounded.idle().p99Millis(), 50));
+    }
+
+    private Run run(String label, String... properties) throws Exception {
+        // Passed as arguments, since default properties would lose to application.properties
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--app.security.login.rate-limit.per-username=0",
+                "--app.security.login.rate-limit.per-ip=0",
+                "--logging.level.org.springframework.security=INFO"));
+        Arrays.stream(properties).map(property -> "--" + property).forEach(args::add);
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ApcprojectApplication.class)
+                .run(args.toArray(String[]::new))) {
+            int port = Integer.parseInt(context.getEnvironment().getRequiredProperty("local.server.port"));
+            return drive(label, port);
+        }
+    }
+
+    private Run drive(String label, int port) throws Exception {
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(8);
+        ScheduledExecutorService loginScheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            HttpClient taskClient = HttpClient.newBuilder()
+                    .cookieHandler(new CookieManager())
+                    .executor(clientExecutor)
+                    .build();
+            HttpResponse<String> login = taskClient.send(login(port, "user123"), HttpResponse.BodyHandlers.ofString());
+            assertThat(login.statusCode()).isEqualTo(200);
+            HttpRequest counts = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/tasks/counts"))
+                    .build();
+
+            Result idle = measure(taskClient, counts);
+
+            HttpClient loginClient = HttpClient.newBuilder().executor(clientExecutor).build();
+            HttpRequest badLogin = login(port, "wrong-password");
+            LoginCounts loginCounts = new LoginCounts();
+            // Open loop: logins keep arriving at the same rate however slowly they are answered
+            loginScheduler.scheduleAtFixedRate(() -> {
+                loginCounts.sent.increment();
+                loginClient.sendAsync(badLogin, HttpResponse.BodyHandlers.discarding())
+                        .whenComplete((response, error) -> loginCounts.record(error != null ? -1 : response.statusCode()));
+            }, 0, 1_000_000_000L / LOGINS_PER_SECOND, TimeUnit.NANOSECONDS);
+            Result flooded = measure(taskClient, counts);
+            loginScheduler.shutdownNow();
+            return new Run(label, idle, flooded, loginCounts);
+        } finally {
+            loginScheduler.shutdownNow();
+            clientExecutor.shutdownNow();
+        }
+    }
+
+    private static HttpRequest login(int port, String password) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/auth/login"))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString("username=user&password=" + password))
+                .build();
+    }
+
+    private Result measure(HttpClient client, HttpRequest request) throws InterruptedException {
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(WARMUP_SECONDS);
+        long measureUntil = measureFrom + TimeUnit.SECONDS.toNanos(MEASURED_SECONDS);
+        CountDownLatch finished = new CountDownLatch(TASK_CLIENTS);
+        AtomicLong errors = new AtomicLong();
+        List<Client> clients = new ArrayList<>(TASK_CLIENTS);
+        for (int i = 0; i < TASK_CLIENTS; i++) {
+            Client c = new Client(client, request, measureFrom, measureUntil, errors, finished);
+            clients.add(c);
+            c.next();
+        }
+        assertThat(finished.await(MEASURED_SECONDS + WARMUP_SECONDS + 120, TimeUnit.SECONDS)).isTrue();
+
+        long[] latencies = clients.stream()
+                .flatMapToLong(c -> Arrays.stream(c.latencies, 0, c.count))
+                .sorted()
+                .toArray();
+        return new Result(latencies.length / (double) MEASURED_SECONDS,
+                percentile(latencies, 0.50), percentile(latencies, 0.99), errors.get());
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)] / 1_000_000.0;
+    }
+
+    /**
+     * Closed-loop client: sends its next request as soon as the previous one completes
+     */
+    private static final class Client {
+
+        private final HttpClient client;
+        private final HttpRequest request;
+        private final long measureFrom;
+        private final long measureUntil;
+        private final AtomicLong errors;
+        private final CountDownLatch finished;
+        private long[] latencies = new long[1_024];
+        private int count;
+
+        Client(HttpClient client, HttpRequest request, long measureFrom, long measureUntil,
+               AtomicLong errors, CountDownLatch finished) {
+            this.client = client;
+            this.request = request;
+            this.measureFrom = measureFrom;
+            this.measureUntil = measureUntil;
+            this.errors = errors;
+            this.finished = finished;
+        }
+
+        void next() {
+            long sent = System.nanoTime();
+            if (sent >= measureUntil) {
+                finished.countDown();
+                return;
+            }
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                long done = System.nanoTime();
+                if (error != null || response.statusCode() != 200) {
+                    errors.incrementAndGet();
+                } else if (sent >= measureFrom && done <= measureUntil) {
+                    record(done - sent);
+                }
+                next();
+            });
+        }
+
+        private void record(long nanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+        }
+    }
+
+    /**
+     * Logins sent, and responses by status; -1 counts transport errors
+     */
+    private static final class LoginCounts {
+
+        private final ConcurrentHashMap<Integer, LongAdder> byStatus = new ConcurrentHashMap<>();
+        private final LongAdder sent = new LongAdder();
+
+        void record(int status) {
+            byStatus.computeIfAbsent(status, s -> new LongAdder()).increment();
+        }
+
+        long get(int status) {
+            LongAdder count = byStatus.get(status);
+            return count != null ? count.sum() : 0;
+        }
+    }
+
+    private record Result(double requestsPerSecond, double p50Millis, double p99Millis, long errors) {
+
+        String format() {
+            return String.format("%,.0f req/s, p50 %.1f ms, p99 %.1f ms, %d errors",
+                    requestsPerSecond, p50Millis, p99Millis, errors);
+        }
+    }
+
+    private record Run(String label, Result idle, Result flooded, LoginCounts logins) {
+
+        String format() {
+            return String.format("%s: idle %s%n  %s: flooded %s; logins sent %,d, checked %,d, rejected busy %,d, unanswered or failed %,d",
+                    label, idle.format(), label, flooded.format(), logins.sent.sum(),
+                    logins.get(401), logins.get(503), logins.sent.sum() - logins.get(401) - logins.get(503));
+        }
+    }
+}
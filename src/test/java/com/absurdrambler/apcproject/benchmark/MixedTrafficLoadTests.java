@@ -0,0 +1,283 @@
+package com.absurdrambler.apcproject.benchmark;
+
+import com.absurdrambler.apcproject.ApcprojectApplication;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * End-to-end load run: seeds synthetic users and tasks, logs each client in as its own user,
+ * then drives a weighted mix of list, count, create, update and login requests and reports
+ * throughput and latency percentiles per operation.
+ * By default starts the application on the embedded database. Point it at a local PostgreSQL with
+ * -Dload.datasource-url=jdbc:postgresql://localhost:5432/todoapp (plus load.datasource-username and
+ * load.datasource-password), or at an already running instance seeded with app.seed.enabled=true
+ * and login rate limits disabled with -Dload.base-url=http://localhost:8080. Extra application
+ * arguments for the started application can be given as -Dload.app-args=--a=1,--b=2, for example
+ * to compare runs with a feature switched off.
+ * Run with: mvn test -Pbenchmark -Dtest=MixedTrafficLoadTests
+ */
+@Tag("benchmark")
+class MixedTrafficLoadTests {
+
+    private static final int USERS = Integer.getInteger("load.users", 200);
+    private static final int TASKS_PER_USER = Integer.getInteger("load.tasks-per-user", 200);
+    private static final int CLIENTS = Integer.getInteger("load.clients", 32);
+    private static final int WARMUP_SECONDS = Integer.getInteger("load.warmup-seconds", 10);
+    private static final int MEASURED_SECONDS = Integer.getInteger("load.seconds", 30);
+    private static final String BASE_URL = System.getProperty("load.base-url");
+    private static final String DATASOURCE_URL = System.getProperty("load.datasource-url");
+    private static final String USERNAME_PREFIX = System.getProperty("load.username-prefix", "load-user-");
+    private static final String PASSWORD = System.getProperty("load.password", "load123");
+    private static final String APP_ARGS = System.getProperty("load.app-args", "");
+
+    private static final Pattern TASK_ID = Pattern.compile("\"id\":(\\d+)");
+
+    /**
+     * Requests in the mix, with their share of traffic in percent
+     */
+    private enum Operation {
+        ASSIGNED_TO_ME(35), IMPORTANT(15), DAILY(15), COUNTS(15), CREATE(8), UPDATE(10), LOGIN(2);
+
+        private final int weight;
+
+        Operation(int weight) {
+            this.weight = weight;
+        }
+
+        static Operation pick(int percent) {
+            for (Operation operation : values()) {
+                percent -= operation.weight;
+                if (percent < 0) {
+                    return operation;
+                }
+            }
+            return ASSIGNED_TO_ME;
+        }
+    }
+
+    @Test
+    void mixedTraffic() throws Exception {
+        if (BASE_URL != null) {
+            report(drive(BASE_URL));
+            return;
+        }
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--app.seed.enabled=true",
+                "--app.seed.users=" + USERS,
+                "--app.seed.tasks-per-user=" + TASKS_PER_USER,
+                "--app.seed.password=" + PASSWORD,
+                "--app.security.login.rate-limit.per-username=0",
+                "--app.security.login.rate-limit.per-ip=0",
+                "--logging.level.org.springframework.security=INFO"));
+        if (DATASOURCE_URL != null) {
+            args.addAll(List.of(
+                    "--spring.datasource.url=" + DATASOURCE_URL,
+                    "--spring.datasource.username=" + System.getProperty("load.datasource-username", "todouser"),
+                    "--spring.datasource.password=" + System.getProperty("load.datasource-password", "todopass"),
+                    "--spring.datasource.driver-class-name=org.postgresql.Driver",
+                    "--spring.jpa.database-platform=org.hibernate.dialect.PostgreSQLDialect"));
+        }
+        if (!APP_ARGS.isBlank()) {
+            args.addAll(List.of(APP_ARGS.split(",")));
+        }
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ApcprojectApplication.class)
+                .run(args.toArray(String[]::new))) {
+            int port = Integer.parseInt(context.getEnvironment().getRequiredProperty("local.server.port"));
+            report(drive("http://localhost:" + port));
+        }
+    }
+
+    private Client[] drive(String baseUrl) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            long start = System.nanoTime();
+            long measureFrom = start + TimeUnit.SECONDS.toNanos(WARMUP_SECONDS);
+            long measureUntil = measureFrom + TimeUnit.SECONDS.toNanos(MEASURED_SECONDS);
+            CountDownLatch finished = new CountDownLatch(CLIENTS);
+            Client[] clients = new Client[CLIENTS];
+            for (int i = 0; i < CLIENTS; i++) {
+                HttpClient http = HttpClient.newBuilder()
+                        .cookieHandler(new CookieManager())
+                        .executor(executor)
+                        .build();
+                clients[i] = new Client(http, baseUrl, USERNAME_PREFIX + (i % USERS + 1),
+                        measureFrom, measureUntil, finished);
+                clients[i].send(Operation.LOGIN);
+            }
+            assertThat(finished.await(WARMUP_SECONDS + MEASURED_SECONDS + 120, TimeUnit.SECONDS)).isTrue();
+            return clients;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void report(Client[] clients) {
+        System.out.println(CLIENTS + " clients over " + Math.min(CLIENTS, USERS) + " users, "
+                + (BASE_URL != null ? BASE_URL : USERS + " users x " + TASKS_PER_USER + " tasks on "
+                + (DATASOURCE_URL != null ? DATASOURCE_URL : "the embedded database"))
+                + ", " + MEASURED_SECONDS + "s measured");
+        System.out.printf("%-16s %9s %9s %9s %9s %9s %9s %7s%n",
+                "operation", "count", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms", "errors");
+        long taskErrors = 0;
+        List<long[]> all = new ArrayList<>();
+        for (Operation operation : Operation.values()) {
+            long[] latencies = Arrays.stream(clients)
+                    .flatMapToLong(c -> Arrays.stream(c.latencies[operation.ordinal()], 0, c.counts[operation.ordinal()]))
+                    .sorted()
+                    .toArray();
+            long errors = Arrays.stream(clients).mapToLong(c -> c.errors.get(operation.ordinal())).sum();
+            print(operation.name().toLowerCase(), latencies, errors);
+            all.add(latencies);
+            if (operation != Operation.LOGIN) {
+                taskErrors += errors;
+            }
+        }
+        long[] total = all.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        print("total", total, taskErrors);
+
+        // Logins may be turned away with 503 when the password check pool is saturated; task requests may not fail
+        assertThat(total).isNotEmpty();
+        assertThat(taskErrors).isZero();
+    }
+
+    private static void print(String label, long[] sorted, long errors) {
+        System.out.printf("%-16s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %7d%n", label, sorted.length,
+                sorted.length / (double) MEASURED_SECONDS, percentile(sorted, 0.50), percentile(sorted, 0.95),
+                percentile(sorted, 0.99), percentile(sorted, 1.0), errors);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)] / 1_000_000.0;
+    }
+
+    /**
+     * Closed-loop client logged in as one user: sends its next request as soon as the previous one completes.
+     * Until its first login succeeds it only retries the login.
+     */
+    private static final class Client {
+
+        private final HttpClient http;
+        private final String baseUrl;
+        private final String username;
+        private final long measureFrom;
+        private final long measureUntil;
+        private final CountDownLatch finished;
+        private final long[][] latencies = new long[Operation.values().length][1_024];
+        private final int[] counts = new int[Operation.values().length];
+        private final AtomicLongArray errors = new AtomicLongArray(Operation.values().length);
+        private final List<Long> createdTaskIds = new ArrayList<>();
+        private boolean loggedIn;
+
+        Client(HttpClient http, String baseUrl, String username, long measureFrom, long measureUntil,
+               CountDownLatch finished) {
+            this.http = http;
+            this.baseUrl = baseUrl;
+            this.username = username;
+            this.measureFrom = measureFrom;
+            this.measureUntil = measureUntil;
+            this.finished = finished;
+        }
+
+        void send(Operation operation) {
+            long sent = System.nanoTime();
+            if (sent >= measureUntil) {
+                finished.countDown();
+                return;
+            }
+            http.sendAsync(request(operation), HttpResponse.BodyHandlers.ofString()).whenComplete((response, error) -> {
+                long done = System.nanoTime();
+                if (error != null || response.statusCode() != 200) {
+                    errors.incrementAndGet(operation.ordinal());
+                    if (!loggedIn) {
+                        // Logins beyond the password check pool are turned away; try again shortly
+                        CompletableFuture.runAsync(() -> send(Operation.LOGIN),
+                                CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS));
+                        return;
+                    }
+                } else {
+                    loggedIn |= operation == Operation.LOGIN;
+                    if (operation == Operation.CREATE) {
+                        Matcher id = TASK_ID.matcher(response.body());
+                        if (id.find()) {
+                            createdTaskIds.add(Long.parseLong(id.group(1)));
+                        }
+                    }
+                    if (sent >= measureFrom && done <= measureUntil) {
+                        record(operation, done - sent);
+                    }
+                }
+                send(next());
+            });
+        }
+
+        private Operation next() {
+            Operation operation = Operation.pick(ThreadLocalRandom.current().nextInt(100));
+            return operation == Operation.UPDATE && createdTaskIds.isEmpty() ? Operation.CREATE : operation;
+        }
+
+        private HttpRequest request(Operation operation) {
+            return switch (operation) {
+                case ASSIGNED_TO_ME -> get("/api/tasks/assigned-to-me");
+                case IMPORTANT -> get("/api/tasks/important");
+                case DAILY -> get("/api/tasks/daily");
+                case COUNTS -> get("/api/tasks/counts");
+                case CREATE -> json("/api/tasks", "POST", "{\"title\":\"Load test task\","
+                        + "\"description\":\"Created by the load runner\",\"dueDate\":\"" + LocalDate.now()
+                        + "\",\"isImportant\":" + ThreadLocalRandom.current().nextBoolean() + "}");
+                case UPDATE -> json("/api/tasks/" + createdTaskIds.get(
+                                ThreadLocalRandom.current().nextInt(createdTaskIds.size())), "PUT",
+                        "{\"isCompleted\":" + ThreadLocalRandom.current().nextBoolean() + "}");
+                case LOGIN -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/login"))
+                        .header("Content-Type", "application/x-www-form-urlencoded")
+                        .POST(HttpRequest.BodyPublishers.ofString("username=" + username + "&password=" + PASSWORD))
+                        .build();
+            };
+        }
+
+        private HttpRequest get(String path) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + path)).build();
+        }
+
+        private HttpRequest json(String path, String method, String body) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .header("Content-Type", "application/json")
+                    .method(method, HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+        }
+
+        private void record(Operation operation, long nanos) {
+            int i = operation.ordinal();
+            if (counts[i] == latencies[i].length) {
+                latencies[i] = Arrays.copyOf(latencies[i], counts[i] * 2);
+            }
+            latencies[i][counts[i]++] = nanos;
+        }
+    }
+}
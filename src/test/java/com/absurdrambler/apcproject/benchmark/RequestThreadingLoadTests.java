@@ -0,0 +1,198 @@
+package com.absurdrambler.apcproject.benchmark;
+
+import com.absurdrambler.apcproject.ApcprojectApplication;
+import com.absurdrambler.apcproject.entity.Task;
+import com.absurdrambler.apcproject.entity.User;
+import com.absurdrambler.apcproject.repository.TaskRepository;
+import com.absurdrambler.apcproject.service.UserService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives the task list endpoint with many concurrent clients, first with requests on
+ * Tomcat's platform-thread pool, then on virtual threads (Java 21+ only), and reports
+ * throughput and latency percentiles for both. Both runs use the same connection pool size.
+ * Run with: mvn test -Pbenchmark,java21 -Dtest=RequestThreadingLoadTests -Dload.clients=2000
+ * Against PostgreSQL, also pass -Dspring.datasource.url=... and the matching credentials,
+ * dialect and driver; the embedded database serializes on locks of its own.
+ */
+@Tag("benchmark")
+class RequestThreadingLoadTests {
+
+    private static final int CLIENTS = Integer.getInteger("load.clients", 1_000);
+    private static final int WARMUP_SECONDS = Integer.getInteger("load.warmup-seconds", 5);
+    private static final int MEASURED_SECONDS = Integer.getInteger("load.seconds", 20);
+    private static final int TASK_COUNT = 500;
+
+    @Test
+    void comparePlatformAndVirtualThreads() throws Exception {
+        List<String> report = new ArrayList<>();
+        Result platform = run("spring.threads.virtual.enabled=false");
+        report.add(platform.format("platform threads"));
+        assertThat(platform.errors()).isZero();
+
+        if (Runtime.version().feature() >= 21) {
+            Result virtual = run("spring.profiles.active=virtual-threads");
+            report.add(virtual.format("virtual threads"));
+            assertThat(virtual.errors()).isZero();
+        } else {
+            report.add("virtual threads: skipped, needs Java 21+ (running " + Runtime.version() + ")");
+        }
+        System.out.println(CLIENTS + " concurrent clients, " + MEASURED_SECONDS + "s measured");
+        report.forEach(System.out::println);
+    }
+
+    private Result run(String mode) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ApcprojectApplication.class)
+                .properties(mode,
+                        "server.port=0",
+                        "server.tomcat.max-connections=" + (CLIENTS * 2),
+                        "server.tomcat.accept-count=" + CLIENTS,
+                        "spring.datasource.hikari.maximum-pool-size=20",
+                        "logging.level.org.springframework.security=INFO")
+                .run()) {
+            seedTasks(context);
+            int port = Integer.parseInt(context.getEnvironment().getRequiredProperty("local.server.port"));
+            return drive(port);
+        }
+    }
+
+    private void seedTasks(ConfigurableApplicationContext context) {
+        TaskRepository taskRepository = context.getBean(TaskRepository.class);
+        User user = context.getBean(UserService.class).findByUsername("user").orElseThrow();
+        if (taskRepository.findIds(user.getId(), Limit.of(TASK_COUNT)).size() >= TASK_COUNT) {
+            return;
+        }
+        List<Task> tasks = new ArrayList<>(TASK_COUNT);
+        for (int i = 0; i < TASK_COUNT; i++) {
+            tasks.add(new Task("Task " + i, "Description " + i, LocalDate.now().plusDays(i % 30),
+                    i % 4 == 0, i % 3 == 0, user));
+        }
+        taskRepository.saveAll(tasks);
+    }
+
+    private Result drive(int port) throws Exception {
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(8);
+        try {
+            HttpClient client = HttpClient.newBuilder()
+                    .cookieHandler(new CookieManager())
+                    .executor(clientExecutor)
+                    .build();
+            HttpResponse<String> login = client.send(HttpRequest.newBuilder(
+                                    URI.create("http://localhost:" + port + "/api/auth/login"))
+                            .header("Content-Type", "application/x-www-form-urlencoded")
+                            .POST(HttpRequest.BodyPublishers.ofString("username=user&password=user123"))
+                            .build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertThat(login.statusCode()).isEqualTo(200);
+
+            HttpRequest request = HttpRequest.newBuilder(
+                    URI.create("http://localhost:" + port + "/api/tasks/assigned-to-me?limit=50")).build();
+            long start = System.nanoTime();
+            long measureFrom = start + TimeUnit.SECONDS.toNanos(WARMUP_SECONDS);
+            long measureUntil = measureFrom + TimeUnit.SECONDS.toNanos(MEASURED_SECONDS);
+            CountDownLatch finished = new CountDownLatch(CLIENTS);
+            AtomicLong errors = new AtomicLong();
+            List<Client> clients = new ArrayList<>(CLIENTS);
+            for (int i = 0; i < CLIENTS; i++) {
+                Client c = new Client(client, request, measureFrom, measureUntil, errors, finished);
+                clients.add(c);
+                c.next();
+            }
+            assertThat(finished.await(MEASURED_SECONDS + WARMUP_SECONDS + 120, TimeUnit.SECONDS)).isTrue();
+
+            long[] latencies = clients.stream()
+                    .flatMapToLong(c -> Arrays.stream(c.latencies, 0, c.count))
+                    .sorted()
+                    .toArray();
+            return new Result(latencies.length / (double) MEASURED_SECONDS,
+                    percentile(latencies, 0.50), percentile(latencies, 0.99), errors.get());
+        } finally {
+            clientExecutor.shutdownNow();
+        }
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)] / 1_000_000.0;
+    }
+
+    /**
+     * Closed-loop client: sends its next request as soon as the previous one completes
+     */
+    private static final class Client {
+
+        private final HttpClient client;
+        private final HttpRequest request;
+        private final long measureFrom;
+        private final long measureUntil;
+        private final AtomicLong errors;
+        private final CountDownLatch finished;
+        private long[] latencies = new long[1_024];
+        private int count;
+
+        Client(HttpClient client, HttpRequest request, long measureFrom, long measureUntil,
+               AtomicLong errors, CountDownLatch finished) {
+            this.client = client;
+            this.request = request;
+            this.measureFrom = measureFrom;
+            this.measureUntil = measureUntil;
+            this.errors = errors;
+            this.finished = finished;
+        }
+
+        void next() {
+            long sent = System.nanoTime();
+            if (sent >= measureUntil) {
+                finished.countDown();
+                return;
+            }
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                long done = System.nanoTime();
+                if (error != null || response.statusCode() != 200) {
+                    errors.incrementAndGet();
+                } else if (sent >= measureFrom && done <= measureUntil) {
+                    record(done - sent);
+                }
+                next();
+            });
+        }
+
+        private void record(long nanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+        }
+    }
+
+    private record Result(double requestsPerSecond, double p50Millis, double p99Millis, long errors) {
+
+        String format(String label) {
+            return String.format("%s: %,.0f req/s, p50 %.1f ms, p99 %.1f ms, %d errors",
+                    label, requestsPerSecond, p50Millis, p99Millis, errors);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.absurdrambler.apcproject.benchmark;
+
+import com.absurdrambler.apcproject.TestUsers;
+import com.absurdrambler.apcproject.dto.TaskCursor;
+import com.absurdrambler.apcproject.dto.TaskResponse;
+import com.absurdrambler.apcproject.dto.TaskSyncResponse;
+import com.absurdrambler.apcproject.entity.User;
+import com.absurdrambler.apcproject.repository.TaskCounterRepository;
+import com.absurdrambler.apcproject.repository.TaskSort;
+import com.absurdrambler.apcproject.service.TaskArchiver;
+import com.absurdrambler.apcproject.service.TaskService;
+import com.absurdrambler.apcproject.service.UserService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Grows a user's completed-task history from 1x to 100x their open tasks and times the hot
+ * read paths with the history still in the tasks table and after archiving it: the first list
+ * page, the full sync snapshot and a counter recount. With the history archived, the hot paths
+ * should stay flat. Run with: mvn test -Pbenchmark -Dtest=TaskArchiveBenchmarkTests
+ */
+@SpringBootTest(properties = "app.tasks.archive.pause-millis=0")
+@Tag("benchmark")
+class TaskArchiveBenchmarkTests {
+
+    private static final int OPEN_TASKS = 500;
+    private static final int IMPORT_BATCH = 1_000;
+    private static final int PAGE_SIZE = 50;
+    private static final int SYNC_PAGE_SIZE = 500;
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final int MEASURED_ITERATIONS = 100;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TaskCounterRepository taskCounterRepository;
+
+    @Autowired
+    private TaskArchiver taskArchiver;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void hotQueriesStayFlatAsHistoryGrows() {
+        User user = TestUsers.create(userService, "archive-bench");
+        importTasks(user, OPEN_TASKS, false);
+
+        List<Result> results = new ArrayList<>();
+        int history = 0;
+        for (int scale : new int[] {1, 100}) {
+            importTasks(user, OPEN_TASKS * scale - history, true);
+            history = OPEN_TASKS * scale;
+            // Completed long ago, as far as the archiver can tell
+            jdbcTemplate.update("update tasks set updated_at = ? where assignee_id = ? and is_completed = true",
+                    Timestamp.from(Instant.now().minus(Duration.ofDays(365))), user.getId());
+
+            results.add(measure(scale + "x history, in tasks", user));
+            long started = System.nanoTime();
+            long archived = taskArchiver.archiveCompletedBefore(Instant.now().minus(Duration.ofDays(90)));
+            System.out.printf("archived %,d tasks in %,d ms%n", archived,
+                    Duration.ofNanos(System.nanoTime() - started).toMillis());
+            results.add(measure(scale + "x history, archived", user));
+        }
+        results.forEach(System.out::println);
+
+        Result small = results.get(1);
+        Result large = results.get(3);
+        assertThat(large.snapshotMicros()).isLessThan(small.snapshotMicros() * 3);
+        assertThat(large.recountMicros()).isLessThan(small.recountMicros() * 3);
+        assertThat(results.get(2).snapshotMicros()).isGreaterThan(large.snapshotMicros() * 10);
+    }
+
+    private void importTasks(User user, int count, boolean completed) {
+        List<TaskResponse> batch = new ArrayList<>(IMPORT_BATCH);
+        for (int i = 0; i < count; i++) {
+            batch.add(new TaskResponse(null, (completed ? "Done " : "Open ") + i, "Description " + i,
+                    LocalDate.now().plusDays(i % 60 - 30), i % 7 == 0, completed, null, null));
+            if (batch.size() == IMPORT_BATCH || i == count - 1) {
+                taskService.importTasks(batch, 0, user, false);
+                batch.clear();
+            }
+        }
+    }
+
+    private Result measure(String name, User user) {
+        return new Result(name,
+                medianMicros(() -> taskService.getTasksAssignedToUser(user, null, TaskSort.DUE_DATE_ASC, PAGE_SIZE,
+                        false, false).items().size()),
+                medianMicros(() -> snapshot(user)),
+                medianMicros(() -> (int) taskCounterRepository.countTasks(user.getId(), LocalDate.now()).getTotal()));
+    }
+
+    /**
+     * Page through a full sync snapshot
+     * @return the number of tasks in it
+     */
+    private int snapshot(User user) {
+        TaskSyncResponse page = taskService.sync(user, null, null, SYNC_PAGE_SIZE);
+        int tasks = page.getUpserts().size();
+        while (page.isHasMore()) {
+            page = taskService.sync(user, null, TaskCursor.decodeSync(page.getNextCursor()), SYNC_PAGE_SIZE);
+            tasks += page.getUpserts().size();
+        }
+        return tasks;
+    }
+
+    private static long medianMicros(IntSupplier request) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            request.getAsInt();
+        }
+        long[] micros = new long[MEASURED_ITERATIONS];
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            long start = System.nanoTime();
+            request.getAsInt();
+            micros[i] = (System.nanoTime() - start) / 1_000;
+        }
+        Arrays.sort(micros);
+        return micros[MEASURED_ITERATIONS / 2];
+    }
+
+    private record Result(String name, long pageMicros, long snapshotMicros, long recountMicros) {
+        @Override
+        public String toString() {
+            return String.format("%-24s first page=%,7d us  sync snapshot=%,9d us  recount=%,7d us",
+                    name, pageMicros, snapshotMicros, recountMicros);
+        }
+    }
+}
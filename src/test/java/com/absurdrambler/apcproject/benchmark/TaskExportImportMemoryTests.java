@@ -0,0 +1,123 @@
+package com.absurdrambler.apcproject.benchmark;
+
+import com.absurdrambler.apcproject.ApcprojectApplication;
+import com.absurdrambler.apcproject.service.UserService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pipes a user's task export straight into an import, with a small and a large task set,
+ * sampling live heap (after a full GC) while it runs. Streaming export and import keep the
+ * peak independent of the number of tasks; what growth remains is the database's and
+ * Hibernate's bounded caches warming up. Uses a file database with a small page cache, so
+ * imported rows do not grow the heap the way the in-memory test database would.
+ * Run with: mvn test -Pbenchmark -Dtest=TaskExportImportMemoryTests
+ */
+@Tag("benchmark")
+class TaskExportImportMemoryTests {
+
+    private static final int SMALL = 10_000;
+    private static final int LARGE = Integer.getInteger("load.tasks", 200_000);
+    private static final long MAX_GROWTH_BYTES = 64L * 1024 * 1024;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    @Test
+    void liveHeapStaysFlatAsTheTaskSetGrows() throws Exception {
+        Run small = run(SMALL);
+        Run large = run(LARGE);
+
+        System.out.println(small.format());
+        System.out.println(large.format());
+        assertThat(small.imported()).isEqualTo(SMALL);
+        assertThat(large.imported()).isEqualTo(LARGE);
+        assertThat(large.peakGrowthBytes()).isLessThan(small.peakGrowthBytes() + MAX_GROWTH_BYTES);
+    }
+
+    private Run run(int tasks) throws Exception {
+        Path database = Path.of("target", "export-memory-" + tasks);
+        FileSystemUtils.deleteRecursively(database);
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ApcprojectApplication.class)
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:file:./" + database + "/db;MODE=PostgreSQL;"
+                                + "DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;CACHE_SIZE=8192;MAX_MEMORY_ROWS=1000",
+                        "--app.seed.enabled=true",
+                        "--app.seed.users=1",
+                        "--app.seed.tasks-per-user=" + tasks,
+                        "--app.cache.tasks.max-size=1000",
+                        "--logging.level.org.springframework.security=INFO")) {
+            int port = Integer.parseInt(context.getEnvironment().getRequiredProperty("local.server.port"));
+            long userId = context.getBean(UserService.class).findByUsername("load-user-1").orElseThrow().getId();
+            return pipe(tasks, "http://localhost:" + port, userId);
+        } finally {
+            FileSystemUtils.deleteRecursively(database);
+        }
+    }
+
+    private Run pipe(int tasks, String baseUrl, long userId) throws Exception {
+        HttpClient client = HttpClient.newBuilder().cookieHandler(new CookieManager()).build();
+        HttpResponse<String> login = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/login"))
+                        .header("Content-Type", "application/x-www-form-urlencoded")
+                        .POST(HttpRequest.BodyPublishers.ofString("username=admin&password=admin123"))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertThat(login.statusCode()).isEqualTo(200);
+
+        long baseline = liveHeap();
+        AtomicLong peak = new AtomicLong(baseline);
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleWithFixedDelay(() -> peak.accumulateAndGet(liveHeap(), Math::max), 0, 250, TimeUnit.MILLISECONDS);
+        long start = System.nanoTime();
+        try {
+            HttpResponse<InputStream> export = client.send(
+                    HttpRequest.newBuilder(URI.create(baseUrl + "/api/tasks/export?userId=" + userId)).build(),
+                    HttpResponse.BodyHandlers.ofInputStream());
+            assertThat(export.statusCode()).isEqualTo(200);
+            HttpResponse<String> imported = client.send(
+                    HttpRequest.newBuilder(URI.create(baseUrl + "/api/tasks/import"))
+                            .header("Content-Type", "application/x-ndjson")
+                            .POST(HttpRequest.BodyPublishers.ofInputStream(export::body))
+                            .build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertThat(imported.statusCode()).isEqualTo(200);
+            long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+            long count = Long.parseLong(imported.body().replaceAll(".*\"imported\":(\\d+).*", "$1"));
+            return new Run(tasks, count, count / seconds, peak.get() - baseline);
+        } finally {
+            sampler.shutdownNow();
+            sampler.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private long liveHeap() {
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private record Run(int tasks, long imported, long tasksPerSecond, long peakGrowthBytes) {
+
+        String format() {
+            return String.format("%,9d tasks: exported and imported at %,d tasks/s, peak live heap +%,d KB",
+                    tasks, tasksPerSecond, peakGrowthBytes / 1024);
+        }
+    }
+}
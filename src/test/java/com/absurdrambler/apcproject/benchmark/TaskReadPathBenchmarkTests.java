@@ -0,0 +1,120 @@
+package com.absurdrambler.apcproject.benchmark;
+
+import com.absurdrambler.apcproject.dto.TaskResponse;
+import com.absurdrambler.apcproject.entity.Task;
+import com.absurdrambler.apcproject.entity.User;
+import com.absurdrambler.apcproject.repository.TaskRepository;
+import com.absurdrambler.apcproject.repository.TaskSort;
+import com.absurdrambler.apcproject.service.TaskService;
+import com.absurdrambler.apcproject.service.UserService;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the entity-based task list read path with the projection-based one.
+ * Reports rows/sec and bytes allocated per request. Run with: mvn test -Pbenchmark
+ */
+@SpringBootTest
+@Tag("benchmark")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class TaskReadPathBenchmarkTests {
+
+    private static final int TASK_COUNT = 5_000;
+    private static final int PAGE_SIZE = 500;
+    private static final int WARMUP_ITERATIONS = 50;
+    private static final int MEASURED_ITERATIONS = 200;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private User user;
+
+    @BeforeAll
+    void seedTasks() {
+        user = userService.findByUsername("user").orElseThrow();
+        String description = "x".repeat(2_000);
+        List<Task> tasks = new ArrayList<>(TASK_COUNT);
+        for (int i = 0; i < TASK_COUNT; i++) {
+            tasks.add(new Task("Task " + i, description, LocalDate.now().plusDays(i % 90),
+                    i % 5 == 0, i % 3 == 0, user));
+        }
+        taskRepository.saveAll(tasks);
+    }
+
+    @Test
+    void compareReadPaths() {
+        Result entities = measure("entity + fromEntity", () -> transactionTemplate.execute(status ->
+                entityManager.createQuery("select t from Task t join fetch t.assignee"
+                                + " where t.assignee.id = :assigneeId order by t.dueDate, t.id", Task.class)
+                        .setParameter("assigneeId", user.getId())
+                        .setMaxResults(PAGE_SIZE)
+                        .getResultList().stream()
+                        .map(TaskResponse::fromEntity)
+                        .toList()
+                        .size()));
+        Result full = measure("projection (full)", () ->
+                taskService.getTasksAssignedToUser(user, null, TaskSort.DUE_DATE_ASC, PAGE_SIZE, false, false).items().size());
+        Result summary = measure("projection (summary)", () ->
+                taskService.getTasksAssignedToUser(user, null, TaskSort.DUE_DATE_ASC, PAGE_SIZE, true, false).items().size());
+
+        System.out.println(entities);
+        System.out.println(full);
+        System.out.println(summary);
+
+        assertThat(full.rows()).isEqualTo(entities.rows());
+        assertThat(summary.bytesPerRequest()).isLessThan(entities.bytesPerRequest());
+    }
+
+    private Result measure(String name, Supplier<Integer> request) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            request.get();
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long rows = 0;
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            rows += request.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        return new Result(name, rows / MEASURED_ITERATIONS, rows * 1_000_000_000L / elapsed,
+                allocated / MEASURED_ITERATIONS);
+    }
+
+    private record Result(String name, long rows, long rowsPerSecond, long bytesPerRequest) {
+        @Override
+        public String toString() {
+            return String.format("%-22s rows/request=%d rows/sec=%,d bytes/request=%,d",
+                    name, rows, rowsPerSecond, bytesPerRequest);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.absurdrambler.apcproject.benchmark;
+
+import com.absurdrambler.apcproject.ApcprojectApplication;
+import com.absurdrambler.apcproject.entity.User;
+import com.absurdrambler.apcproject.service.TaskService;
+import com.absurdrambler.apcproject.service.UserService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures search latency for one user with many tasks, for queries made of words taken from
+ * the user's own tasks with the last word cut short as if still being typed.
+ * Only asserts the latency target against PostgreSQL: the embedded database has no text search
+ * index and scans the user's tasks with LIKE. Run against a local PostgreSQL with
+ * -Dsearch.datasource-url=jdbc:postgresql://localhost:5432/todoapp (plus search.datasource-username
+ * and search.datasource-password).
+ * Run with: mvn test -Pbenchmark -Dtest=TaskSearchBenchmarkTests
+ */
+@Tag("benchmark")
+class TaskSearchBenchmarkTests {
+
+    private static final String DATASOURCE_URL = System.getProperty("search.datasource-url");
+    private static final int TASKS = Integer.getInteger("search.tasks", 100_000);
+    // Fewer queries on the embedded database, where each one scans all of the user's tasks
+    private static final int QUERIES = Integer.getInteger("search.queries", DATASOURCE_URL != null ? 2_000 : 100);
+    private static final int WARMUP_QUERIES = QUERIES / 5;
+    private static final double P99_TARGET_MS = 20;
+    private static final String USERNAME_PREFIX = "search-user-";
+
+    @Test
+    void searchLatency() {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.main.web-application-type=none",
+                "--app.seed.enabled=true",
+                "--app.seed.users=1",
+                "--app.seed.tasks-per-user=" + TASKS,
+                "--app.seed.username-prefix=" + USERNAME_PREFIX));
+        if (DATASOURCE_URL != null) {
+            args.addAll(List.of(
+                    "--spring.datasource.url=" + DATASOURCE_URL,
+                    "--spring.datasource.username=" + System.getProperty("search.datasource-username", "todouser"),
+                    "--spring.datasource.password=" + System.getProperty("search.datasource-password", "todopass"),
+                    "--spring.datasource.driver-class-name=org.postgresql.Driver",
+                    "--spring.jpa.database-platform=org.hibernate.dialect.PostgreSQLDialect"));
+        }
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ApcprojectApplication.class)
+                .run(args.toArray(String[]::new))) {
+            TaskService taskService = context.getBean(TaskService.class);
+            User user = context.getBean(UserService.class).findByUsername(USERNAME_PREFIX + 1).orElseThrow();
+            List<String> queries = sampleQueries(context.getBean(JdbcTemplate.class), user.getId());
+
+            long hits = 0;
+            for (int i = 0; i < WARMUP_QUERIES; i++) {
+                taskService.searchTasks(user, queries.get(i % queries.size()), null, null);
+            }
+            long[] latencies = new long[QUERIES];
+            for (int i = 0; i < QUERIES; i++) {
+                long start = System.nanoTime();
+                hits += taskService.searchTasks(user, queries.get(i % queries.size()), null, null).items().size();
+                latencies[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(latencies);
+
+            double p99 = percentile(latencies, 0.99);
+            System.out.printf("Search over %d tasks on %s: %d queries, %.1f results/query,"
+                            + " p50 %.2f ms, p95 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                    TASKS, DATASOURCE_URL != null ? DATASOURCE_URL : "the embedded database", QUERIES,
+                    hits / (double) QUERIES, percentile(latencies, 0.50), percentile(latencies, 0.95), p99,
+                    percentile(latencies, 1.0));
+
+            assertThat(hits).isPositive();
+            if (DATASOURCE_URL != null) {
+                assertThat(p99).isLessThan(P99_TARGET_MS);
+            }
+        }
+    }
+
+    /**
+     * Build queries of one or two words from random tasks' titles, the last cut to a prefix of at least three letters
+     */
+    private static List<String> sampleQueries(JdbcTemplate jdbcTemplate, Long userId) {
+        SplittableRandom random = new SplittableRandom(7);
+        List<String> titles = jdbcTemplate.queryForList(
+                "SELECT title FROM tasks WHERE assignee_id = ? ORDER BY id", String.class, userId);
+        List<String> queries = new ArrayList<>();
+        while (queries.size() < 500) {
+            String[] words = titles.get(random.nextInt(titles.size())).toLowerCase().split(" ");
+            int first = random.nextInt(words.length);
+            String last = words[random.nextInt(words.length)];
+            last = last.substring(0, 3 + random.nextInt(last.length() - 2));
+            queries.add(random.nextBoolean() ? last : words[first] + " " + last);
+        }
+        return queries;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)] / 1_000_000.0;
+    }
+}
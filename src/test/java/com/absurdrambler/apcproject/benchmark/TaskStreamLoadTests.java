@@ -0,0 +1,150 @@
+package com.absurdrambler.apcproject.benchmark;
+
+import com.absurdrambler.apcproject.entity.Task;
+import com.absurdrambler.apcproject.entity.User;
+import com.absurdrambler.apcproject.service.TaskEventBus;
+import com.absurdrambler.apcproject.service.TaskService;
+import com.absurdrambler.apcproject.service.UserService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Opens many idle task streams for one user, checks the server holds them without
+ * a thread each, then measures how long one task change takes to reach all of them.
+ * Run with: mvn test -Pbenchmark -Dstream.connections=20000
+ * (client and server share the process, so ulimit -n must allow two descriptors per stream)
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "app.tasks.stream.max-connections-per-user=1000000",
+        "server.tomcat.max-connections=100000",
+        "logging.level.org.springframework.security=INFO"
+})
+@Tag("benchmark")
+class TaskStreamLoadTests {
+
+    private static final int CONNECTIONS = Integer.getInteger("stream.connections", 5_000);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TaskEventBus taskEventBus;
+
+    @Test
+    void holdsIdleStreamsWithoutThreadPerConnection() throws Exception {
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(4);
+        HttpClient client = HttpClient.newBuilder()
+                .cookieHandler(new CookieManager())
+                .executor(clientExecutor)
+                .build();
+        HttpResponse<String> login = client.send(HttpRequest.newBuilder(uri("/api/auth/login"))
+                        .header("Content-Type", "application/x-www-form-urlencoded")
+                        .POST(HttpRequest.BodyPublishers.ofString("username=user&password=user123"))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertThat(login.statusCode()).isEqualTo(200);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        int threadsBefore = threads.getThreadCount();
+
+        CountDownLatch opened = new CountDownLatch(CONNECTIONS);
+        CountDownLatch received = new CountDownLatch(CONNECTIONS);
+        long openStart = System.nanoTime();
+        HttpRequest stream = HttpRequest.newBuilder(uri("/api/tasks/stream")).GET().build();
+        for (int i = 0; i < CONNECTIONS; i++) {
+            client.sendAsync(stream, HttpResponse.BodyHandlers.fromLineSubscriber(new EventCounter(opened, received)));
+        }
+        assertThat(opened.await(5, TimeUnit.MINUTES)).as("all streams opened").isTrue();
+        long openMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - openStart);
+
+        int threadsOpen = threads.getThreadCount();
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long heapUsed = runtime.totalMemory() - runtime.freeMemory();
+
+        User user = userService.findByUsername("user").orElseThrow();
+        long pushStart = System.nanoTime();
+        taskService.createTask(new Task("Pushed task", null, LocalDate.now(), false, false, user));
+        assertThat(received.await(5, TimeUnit.MINUTES)).as("all streams received the event").isTrue();
+        long pushMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pushStart);
+
+        System.out.printf("%,d streams opened in %,d ms; threads %d -> %d; heap used %,d MB; "
+                        + "one change reached all streams in %,d ms%n",
+                CONNECTIONS, openMillis, threadsBefore, threadsOpen, heapUsed / (1024 * 1024), pushMillis);
+
+        assertThat(taskEventBus.getConnectionCount()).isEqualTo(CONNECTIONS);
+        // Tomcat's worker pool (200 by default) is the ceiling, whatever the number of streams
+        assertThat(threadsOpen - threadsBefore).isLessThan(250);
+        clientExecutor.shutdownNow();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    /**
+     * Counts a stream as open on its first line, and as received on its first created event
+     */
+    private static final class EventCounter implements Flow.Subscriber<String> {
+
+        private final CountDownLatch opened;
+        private final CountDownLatch received;
+        private boolean open;
+        private boolean done;
+
+        EventCounter(CountDownLatch opened, CountDownLatch received) {
+            this.opened = opened;
+            this.received = received;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (!open) {
+                open = true;
+                opened.countDown();
+            }
+            if (!done && line.equals("event:created")) {
+                done = true;
+                received.countDown();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.absurdrambler.apcproject.benchmark;
+
+import com.absurdrambler.apcproject.security.AuthenticatedUser;
+import com.absurdrambler.apcproject.security.TokenService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the cost of authenticating a request from an access token with the cost
+ * of re-checking a BCrypt password hash. Run with: mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+class TokenVerificationBenchmarkTests {
+
+    private static final int WARMUP_VERIFICATIONS = 100_000;
+    private static final int MEASURED_VERIFICATIONS = 200_000;
+    private static final int BCRYPT_CHECKS = 20;
+
+    @Test
+    void compareTokenVerificationWithBcrypt() {
+        TokenService tokenService = new TokenService(Base64.getEncoder().encodeToString(new byte[32]),
+                Duration.ofMinutes(15), Duration.ofDays(7), true, new ObjectMapper());
+        String token = tokenService.issueTokens(new AuthenticatedUser(1L, "user", null, "ROLE_USER"), "benchmark")
+                .getAccessToken();
+
+        int verified = 0;
+        for (int i = 0; i < WARMUP_VERIFICATIONS; i++) {
+            verified += tokenService.verify(token, TokenService.ACCESS).isPresent() ? 1 : 0;
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_VERIFICATIONS; i++) {
+            verified += tokenService.verify(token, TokenService.ACCESS).isPresent() ? 1 : 0;
+        }
+        double tokenMicros = (System.nanoTime() - start) / 1_000.0 / MEASURED_VERIFICATIONS;
+        assertThat(verified).isEqualTo(WARMUP_VERIFICATIONS + MEASURED_VERIFICATIONS);
+
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder();
+        String hash = encoder.encode("user123");
+        encoder.matches("user123", hash);
+        start = System.nanoTime();
+        for (int i = 0; i < BCRYPT_CHECKS; i++) {
+            assertThat(encoder.matches("user123", hash)).isTrue();
+        }
+        double bcryptMicros = (System.nanoTime() - start) / 1_000.0 / BCRYPT_CHECKS;
+
+        System.out.printf("token verification: %.1f us/op; BCrypt check: %,.0f us/op (%.0fx)%n",
+                tokenMicros, bcryptMicros, bcryptMicros / tokenMicros);
+        assertThat(tokenMicros).isLessThan(50);
+    }
+}
@@ -0,0 +1,124 @@
+package com.absurdrambler.apcproject.cache;
+
+import com.absurdrambler.apcproject.ApcprojectApplication;
+import com.absurdrambler.apcproject.entity.Task;
+import com.absurdrambler.apcproject.entity.User;
+import com.absurdrambler.apcproject.metrics.SqlStatementCounter;
+import com.absurdrambler.apcproject.repository.TaskRepository;
+import com.absurdrambler.apcproject.repository.UserRepository;
+import com.absurdrambler.apcproject.service.UserService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.cache.CacheManager;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs two application instances against one database, connected by the in-memory
+ * invalidation bus, and checks that a change committed on one evicts the other's cached copy
+ */
+class ClusterCacheInvalidationTests {
+
+    private static ConfigurableApplicationContext first;
+    private static ConfigurableApplicationContext second;
+
+    @BeforeAll
+    static void start() {
+        first = startInstance();
+        second = startInstance();
+    }
+
+    @AfterAll
+    static void stop() {
+        second.close();
+        first.close();
+    }
+
+    private static ConfigurableApplicationContext startInstance() {
+        return new SpringApplicationBuilder(ApcprojectApplication.class).run("--server.port=0");
+    }
+
+    @Test
+    void taskChangesEvictOtherInstancesCopies() throws Exception {
+        User assignee = inTransaction(first, context -> context.getBean(UserRepository.class)
+                .save(new User("cache-task-user", "password", "ROLE_USER")));
+        User other = inTransaction(first, context -> context.getBean(UserRepository.class)
+                .save(new User("cache-task-other", "password", "ROLE_USER")));
+        Long taskId = inTransaction(first, context -> context.getBean(TaskRepository.class)
+                .save(new Task("Original", null, LocalDate.now(), false, false, assignee)).getId());
+
+        long hitsBefore = cacheHits(second, CacheRegions.TASKS);
+        assertThat(title(second, taskId)).isEqualTo("Original");
+        assertThat(title(second, taskId)).isEqualTo("Original");
+        assertThat(cacheHits(second, CacheRegions.TASKS)).isGreaterThan(hitsBefore);
+        assertThat(assignedCount(second, taskId, assignee)).isEqualTo(1);
+
+        inTransaction(first, context -> {
+            TaskRepository tasks = context.getBean(TaskRepository.class);
+            Task task = tasks.findById(taskId).orElseThrow();
+            task.setTitle("Renamed");
+            task.setAssignee(other);
+            return tasks.save(task);
+        });
+
+        assertThat(title(second, taskId)).isEqualTo("Renamed");
+        assertThat(assignedCount(second, taskId, assignee)).isZero();
+        assertThat(assignedCount(second, taskId, other)).isEqualTo(1);
+    }
+
+    @Test
+    void userChangesEvictOtherInstancesCopiesAndPrincipals() {
+        inTransaction(first, context -> context.getBean(UserRepository.class)
+                .save(new User("cache-role-user", "password", "ROLE_USER")));
+        assertThat(second.getBean(UserService.class).findCurrentUser("cache-role-user").orElseThrow().getRole())
+                .isEqualTo("ROLE_USER");
+        // Cached now, so only an eviction from the first instance's change would make it reread the user
+        SqlStatementCounter.start();
+        second.getBean(UserService.class).findCurrentUser("cache-role-user");
+        assertThat(SqlStatementCounter.stop()).isZero();
+
+        inTransaction(first, context -> {
+            UserRepository users = context.getBean(UserRepository.class);
+            User user = users.findByUsername("cache-role-user").orElseThrow();
+            user.setRole("ROLE_ADMIN");
+            return users.save(user);
+        });
+
+        assertThat(second.getBean(UserService.class).findCurrentUser("cache-role-user").orElseThrow().getRole())
+                .isEqualTo("ROLE_ADMIN");
+        assertThat(role(second, "cache-role-user")).isEqualTo("ROLE_ADMIN");
+    }
+
+    private static String title(ConfigurableApplicationContext context, Long taskId) {
+        return inTransaction(context, c -> c.getBean(TaskRepository.class).findById(taskId).orElseThrow().getTitle());
+    }
+
+    private static int assignedCount(ConfigurableApplicationContext context, Long taskId, User assignee) {
+        return inTransaction(context, c -> c.getBean(TaskRepository.class).findByIdAndAssignee(taskId, assignee).size());
+    }
+
+    private static String role(ConfigurableApplicationContext context, String username) {
+        return inTransaction(context, c -> c.getBean(UserRepository.class).findByUsername(username).orElseThrow().getRole());
+    }
+
+    private static <T> T inTransaction(ConfigurableApplicationContext context,
+                                       Function<ConfigurableApplicationContext, T> work) {
+        return context.getBean(TransactionTemplate.class).execute(status -> work.apply(context));
+    }
+
+    private static long cacheHits(ConfigurableApplicationContext context, String region) throws Exception {
+        CacheManager cacheManager = context.getBean(CacheManager.class);
+        ObjectName statistics = new ObjectName("javax.cache:type=CacheStatistics,CacheManager="
+                + cacheManager.getURI() + ",Cache=" + region);
+        return (Long) ManagementFactory.getPlatformMBeanServer().getAttribute(statistics, "CacheHits");
+    }
+}
@@ -0,0 +1,150 @@
+package com.absurdrambler.apcproject.controller;
+
+import com.absurdrambler.apcproject.ApcprojectApplication;
+import com.absurdrambler.apcproject.TestUsers;
+import com.absurdrambler.apcproject.dto.TaskResponse;
+import com.absurdrambler.apcproject.entity.Task;
+import com.absurdrambler.apcproject.entity.User;
+import com.absurdrambler.apcproject.repository.TaskPage;
+import com.absurdrambler.apcproject.repository.TaskSort;
+import com.absurdrambler.apcproject.security.AuthenticatedUser;
+import com.absurdrambler.apcproject.service.TaskService;
+import com.absurdrambler.apcproject.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+/**
+ * Without open session in view, entities are detached once their transaction ends, so a lazy
+ * load while building or writing a response throws and fails the request. Every endpoint is
+ * called twice, so the second call reads from warm second-level and query caches.
+ */
+@SpringBootTest(classes = ApcprojectApplication.class)
+@AutoConfigureMockMvc
+class LazyLoadingTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ApplicationContext context;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private User owner;
+    private AuthenticatedUser ownerPrincipal;
+    private AuthenticatedUser admin;
+
+    @BeforeEach
+    void createOwnerWithTasks() {
+        owner = TestUsers.create(userService, "lazy");
+        for (int i = 1; i <= 3; i++) {
+            taskService.createTask(new Task("Lazy task " + i, "Description " + i, LocalDate.now(),
+                    i == 1, false, owner));
+        }
+        ownerPrincipal = AuthenticatedUser.fromEntity(owner);
+        admin = TestUsers.admin(userService);
+    }
+
+    @Test
+    void openSessionInViewIsOff() {
+        assertThat(context.getBeansOfType(OpenEntityManagerInViewInterceptor.class)).isEmpty();
+    }
+
+    @Test
+    void everyEndpointServesDetachedEntities() throws Exception {
+        for (AuthenticatedUser principal : new AuthenticatedUser[] {ownerPrincipal, admin}) {
+            long id = createTask(principal);
+            for (int i = 0; i < 2; i++) {
+                for (String list : new String[] {"/api/tasks/assigned-to-me", "/api/tasks/important", "/api/tasks/daily"}) {
+                    call(get(list), principal);
+                    call(get(list).param("summary", "true"), principal);
+                }
+                call(get("/api/tasks/search").param("q", "lazy"), principal);
+                call(get("/api/tasks/" + id + "/history"), principal);
+                call(get("/api/tasks/counts"), principal);
+                call(get("/api/tasks/sync"), principal);
+                call(get("/api/tasks/sync").param("since", "0"), principal);
+                call(get("/api/tasks/export"), principal);
+                call(get("/api/auth/me"), principal);
+                call(put("/api/tasks/" + id).contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Lazy task renamed " + i + "\"}"), principal);
+            }
+            call(post("/api/tasks/batch").contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"create\":[{\"title\":\"Batched\"}],"
+                            + "\"update\":[{\"id\":" + id + ",\"changes\":{\"isImportant\":true}}]}"), principal);
+            call(post("/api/tasks/import").contentType(MediaType.APPLICATION_NDJSON)
+                    .content("{\"title\":\"Imported\"}\n"), principal);
+            call(delete("/api/tasks/" + id), principal);
+        }
+        call(get("/api/users"), admin);
+        call(get("/api/tasks/export").param("userId", String.valueOf(owner.getId())), admin);
+    }
+
+    @Test
+    void serviceReadsReturnTasksReadableAfterTheirTransaction() {
+        for (int i = 0; i < 2; i++) {
+            List<TaskResponse> assigned = items(
+                    taskService.getTasksAssignedToUser(owner, null, TaskSort.DUE_DATE_ASC, null, false, false));
+            assertThat(assigned).isNotEmpty()
+                    .allSatisfy(task -> assertThat(task.getAssigneeName()).isEqualTo(owner.getUsername()));
+            assertThat(items(taskService.getImportantTasksForUser(owner, null, TaskSort.DUE_DATE_ASC, null, false, false)))
+                    .isNotEmpty()
+                    .allSatisfy(task -> assertThat(task.getAssigneeName()).isEqualTo(owner.getUsername()));
+            assertThat(items(taskService.getDailyTasksForUser(owner, null, TaskSort.DUE_DATE_ASC, null, false, false)))
+                    .isNotEmpty()
+                    .allSatisfy(task -> assertThat(task.getAssigneeName()).isEqualTo(owner.getUsername()));
+            Long id = assigned.get(0).getId();
+            assertThat(taskService.findById(id).orElseThrow().getAssignee().getUsername())
+                    .isEqualTo(owner.getUsername());
+            assertThat(taskService.findByIdAndUser(id, userService.getReference(owner.getId())).orElseThrow()
+                    .getAssignee().getUsername()).isEqualTo(owner.getUsername());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<TaskResponse> items(TaskPage<?> page) {
+        return (List<TaskResponse>) page.items();
+    }
+
+    private long createTask(AuthenticatedUser principal) throws Exception {
+        String body = call(post("/api/tasks").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"Lazy task\",\"description\":\"Created by " + principal.getUsername() + "\"}"), principal);
+        return objectMapper.readTree(body).get("id").asLong();
+    }
+
+    /**
+     * A lazy load outside a transaction fails the request with LazyInitializationException
+     */
+    private String call(MockHttpServletRequestBuilder request, AuthenticatedUser principal) throws Exception {
+        MockHttpServletResponse response = mockMvc.perform(request.with(user(principal))).andReturn().getResponse();
+        assertThat(response.getStatus()).isLessThan(400);
+        return response.getContentAsString();
+    }
+}
@@ -0,0 +1,212 @@
+package com.absurdrambler.apcproject.controller;
+
+import com.absurdrambler.apcproject.ApcprojectApplication;
+import com.absurdrambler.apcproject.TestUsers;
+import com.absurdrambler.apcproject.entity.Task;
+import com.absurdrambler.apcproject.entity.User;
+import com.absurdrambler.apcproject.security.AuthenticatedUser;
+import com.absurdrambler.apcproject.service.TaskArchiver;
+import com.absurdrambler.apcproject.service.TaskBulkService;
+import com.absurdrambler.apcproject.service.TaskService;
+import com.absurdrambler.apcproject.service.UserService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.configuration.FluentConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = ApcprojectApplication.class)
+@AutoConfigureMockMvc
+class TaskArchiveTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private TaskArchiver taskArchiver;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private User owner;
+    private AuthenticatedUser ownerPrincipal;
+    private List<Task> oldCompleted;
+
+    @BeforeEach
+    void createOwnerWithHistory() {
+        owner = TestUsers.create(userService, "archive");
+        ownerPrincipal = AuthenticatedUser.fromEntity(owner);
+        LocalDate today = LocalDate.now();
+        oldCompleted = List.of(
+                taskService.createTask(new Task("Done long ago", null, today.minusDays(200), true, true, owner)),
+                taskService.createTask(new Task("Also done long ago", null, today.plusDays(1), false, true, owner)));
+        taskService.createTask(new Task("Done recently", null, today.minusDays(1), false, true, owner));
+        taskService.createTask(new Task("Open", null, today, false, false, owner));
+        taskService.createTask(new Task("Open without due date", null, null, true, false, owner));
+        for (Task task : oldCompleted) {
+            jdbcTemplate.update("update tasks set updated_at = ? where id = ?",
+                    Timestamp.from(Instant.now().minus(Duration.ofDays(120))), task.getId());
+        }
+    }
+
+    @Test
+    void archivesOldCompletedTasksOutOfDefaultListsAndCounts() throws Exception {
+        long token = read("/api/tasks/sync").get("token").asLong();
+        String etag = list("/api/tasks/assigned-to-me").getHeader(HttpHeaders.ETAG);
+
+        assertThat(taskArchiver.archiveCompletedBefore(Instant.now().minus(Duration.ofDays(90))))
+                .isGreaterThanOrEqualTo(2);
+
+        List<Long> archivedIds = oldCompleted.stream().map(Task::getId).toList();
+        assertThat(titles(read("/api/tasks/assigned-to-me")))
+                .containsExactly("Done recently", "Open", "Open without due date");
+        assertThat(read("/api/tasks/counts").get("total").asLong()).isEqualTo(3);
+        assertThat(read("/api/tasks/counts").get("important").asLong()).isEqualTo(1);
+        assertThat(read("/api/tasks/sync?since=" + token).get("deletions")).extracting(JsonNode::asLong)
+                .containsExactlyInAnyOrderElementsOf(archivedIds);
+        assertThat(taskService.findById(archivedIds.get(0))).isEmpty();
+        assertThat(list("/api/tasks/assigned-to-me").getHeader(HttpHeaders.ETAG)).isNotEqualTo(etag);
+
+        // Pages of two, so pages mix archived and hot tasks
+        assertThat(titlesOfAllPages("/api/tasks/assigned-to-me?includeArchived=true&limit=2"))
+                .containsExactly("Done long ago", "Done recently", "Open", "Also done long ago", "Open without due date");
+        assertThat(titlesOfAllPages("/api/tasks/assigned-to-me?includeArchived=true&limit=2&sort=DUE_DATE_DESC"))
+                .containsExactly("Open without due date", "Also done long ago", "Open", "Done recently", "Done long ago");
+        assertThat(titles(read("/api/tasks/important?includeArchived=true")))
+                .containsExactly("Done long ago", "Open without due date");
+        assertThat(list("/api/tasks/assigned-to-me?includeArchived=true").getHeader(HttpHeaders.ETAG))
+                .isNotEqualTo(list("/api/tasks/assigned-to-me").getHeader(HttpHeaders.ETAG));
+
+        // Archived tasks go with their user
+        AuthenticatedUser admin = TestUsers.admin(userService);
+        mockMvc.perform(delete("/api/users/" + owner.getId()).with(user(admin))).andExpect(status().isOk());
+        assertThat(userService.findById(owner.getId())).isEmpty();
+    }
+
+    @Test
+    void keepsTasksChangedSinceTheCutoff() throws Exception {
+        // Still completed, but renamed since the cutoff
+        mockMvc.perform(patch("/api/tasks/" + oldCompleted.get(0).getId()).with(user(ownerPrincipal))
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"title\":\"Done long ago, renamed\"}"))
+                .andExpect(status().isOk());
+
+        taskArchiver.archiveCompletedBefore(Instant.now().minus(Duration.ofDays(90)));
+
+        assertThat(titles(read("/api/tasks/assigned-to-me")))
+                .containsExactly("Done long ago, renamed", "Done recently", "Open", "Open without due date");
+        assertThat(read("/api/tasks/counts").get("total").asLong()).isEqualTo(4);
+    }
+
+    @Test
+    void carriesOnPastBatchesWhoseCandidatesAllChanged() {
+        List<Long> afterIds = new ArrayList<>();
+        TaskBulkService batches = new TaskBulkService(null, null, null, null, null, null, null) {
+            @Override
+            public ArchiveBatch archiveCompletedTasks(Instant completedBefore, long afterId, int limit) {
+                afterIds.add(afterId);
+                // The first batch's candidates all changed after they were picked
+                return afterId == 0 ? new ArchiveBatch(limit, 20, 0) : new ArchiveBatch(1, 21, 1);
+            }
+        };
+        TaskArchiver archiver = new TaskArchiver(batches, new SimpleMeterRegistry(), true, 90, 2, 0);
+
+        assertThat(archiver.archiveCompletedBefore(Instant.now())).isEqualTo(1);
+        assertThat(afterIds).containsExactly(0L, 20L);
+    }
+
+    @Test
+    void exportsArchivedTasksAfterTheRest() throws Exception {
+        taskArchiver.archiveCompletedBefore(Instant.now().minus(Duration.ofDays(90)));
+
+        String export = list("/api/tasks/export").getContentAsString();
+        List<String> titles = new ArrayList<>();
+        for (String line : export.split("\n")) {
+            titles.add(objectMapper.readTree(line).get("title").asText());
+        }
+        assertThat(titles).containsExactly("Done recently", "Open", "Open without due date",
+                "Done long ago", "Also done long ago");
+    }
+
+    @Test
+    void migrationGivesTasksWithoutAChangeTimeOne() {
+        // A fresh database, migrated up to just before the archive
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:archive_migration;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", "sa", "");
+        FluentConfiguration flyway = Flyway.configure().dataSource(dataSource)
+                .locations("classpath:db/migration", "classpath:db/vendor/h2");
+        flyway.target("9").load().migrate();
+        JdbcTemplate migrated = new JdbcTemplate(dataSource);
+        migrated.update("insert into users (id, username, password, role) values (1, 'legacy', 'unused', 'ROLE_USER')");
+        migrated.update("insert into tasks (id, title, is_completed, assignee_id) values (1, 'Done before V6', true, 1)");
+
+        Instant before = Instant.now().minusSeconds(1);
+        flyway.target("latest").load().migrate();
+
+        Timestamp updatedAt = migrated.queryForObject("select updated_at from tasks where id = 1", Timestamp.class);
+        assertThat(updatedAt).isNotNull();
+        assertThat(updatedAt.toInstant()).isAfter(before);
+        migrated.execute("DROP ALL OBJECTS");
+    }
+
+    private List<String> titlesOfAllPages(String uri) throws Exception {
+        List<String> titles = new ArrayList<>();
+        String cursor = null;
+        do {
+            JsonNode page = read(cursor == null ? uri : uri + "&cursor=" + cursor);
+            titles.addAll(titles(page));
+            cursor = page.hasNonNull("nextCursor") ? page.get("nextCursor").asText() : null;
+        } while (cursor != null);
+        return titles;
+    }
+
+    private static List<String> titles(JsonNode page) {
+        List<String> titles = new ArrayList<>();
+        page.get("items").forEach(task -> titles.add(task.get("title").asText()));
+        return titles;
+    }
+
+    private MockHttpServletResponse list(String uri) throws Exception {
+        return mockMvc.perform(get(uri).with(user(ownerPrincipal))).andReturn().getResponse();
+    }
+
+    private JsonNode read(String uri) throws Exception {
+        String body = mockMvc.perform(get(uri).with(user(ownerPrincipal)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+}
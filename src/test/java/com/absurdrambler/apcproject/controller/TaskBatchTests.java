@@ -0,0 +1,131 @@
+package com.absurdrambler.apcproject.controller;
+
+import com.absurdrambler.apcproject.ApcprojectApplication;
+import com.absurdrambler.apcproject.TestUsers;
+import com.absurdrambler.apcproject.dto.TaskBatchRequest;
+import com.absurdrambler.apcproject.dto.TaskBatchResponse;
+import com.absurdrambler.apcproject.dto.TaskBatchResult;
+import com.absurdrambler.apcproject.dto.TaskRequest;
+import com.absurdrambler.apcproject.entity.Task;
+import com.absurdrambler.apcproject.entity.User;
+import com.absurdrambler.apcproject.metrics.SqlStatementCounter;
+import com.absurdrambler.apcproject.security.AuthenticatedUser;
+import com.absurdrambler.apcproject.service.TaskService;
+import com.absurdrambler.apcproject.service.UserService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = ApcprojectApplication.class)
+@AutoConfigureMockMvc
+class TaskBatchTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.tasks.batch.max-size}")
+    private int maxBatchSize;
+
+    private User owner;
+    private AuthenticatedUser ownerPrincipal;
+
+    @BeforeEach
+    void createOwner() {
+        owner = TestUsers.create(userService, "batch");
+        ownerPrincipal = AuthenticatedUser.fromEntity(owner);
+    }
+
+    @Test
+    void reportsAResultForEveryOperation() throws Exception {
+        Task renamed = taskService.createTask(new Task("Rename me", null, null, false, false, owner));
+        Task deleted = taskService.createTask(new Task("Delete me", null, null, false, false, owner));
+        User other = TestUsers.create(userService, "batch-other");
+        Task othersTask = taskService.createTask(new Task("Not yours", null, null, false, false, other));
+
+        JsonNode response = batch("{"
+                + "\"create\":[{\"title\":\"Created\"},{\"title\":\" \"}],"
+                + "\"update\":[{\"id\":" + renamed.getId() + ",\"changes\":{\"title\":\"Renamed\"}},"
+                + "{\"id\":" + othersTask.getId() + ",\"changes\":{\"title\":\"Taken\"}},"
+                + "{\"id\":" + Long.MAX_VALUE + ",\"changes\":{\"title\":\"Missing\"}}],"
+                + "\"delete\":[" + deleted.getId() + "," + othersTask.getId() + "]}");
+
+        assertThat(statuses(response.get("created"))).containsExactly(201, 400);
+        assertThat(response.get("created").get(0).get("task").get("title").asText()).isEqualTo("Created");
+        assertThat(response.get("created").get(1).get("error").asText()).isEqualTo("Title is required");
+        assertThat(statuses(response.get("updated"))).containsExactly(200, 404, 404);
+        assertThat(statuses(response.get("deleted"))).containsExactly(204, 404);
+        assertThat(response.get("deleted").get(1).get("id").asLong()).isEqualTo(othersTask.getId());
+
+        assertThat(taskService.findById(renamed.getId()).orElseThrow().getTitle()).isEqualTo("Renamed");
+        assertThat(taskService.findById(deleted.getId())).isEmpty();
+        assertThat(taskService.findById(othersTask.getId()).orElseThrow().getTitle()).isEqualTo("Not yours");
+        assertThat(taskService.getTaskCounts(owner).getTotal()).isEqualTo(2);
+    }
+
+    @Test
+    void rejectsBatchesOverTheLimit() throws Exception {
+        StringBuilder creates = new StringBuilder();
+        for (int i = 0; i <= maxBatchSize; i++) {
+            creates.append(i > 0 ? "," : "").append("{\"title\":\"Task ").append(i).append("\"}");
+        }
+        mockMvc.perform(post("/api/tasks/batch").with(user(ownerPrincipal))
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"create\":[" + creates + "]}"))
+                .andExpect(status().isBadRequest());
+        assertThat(taskService.getTaskCounts(owner).getTotal()).isZero();
+    }
+
+    @Test
+    void sendsThousandsOfCreatesAsJdbcBatches() {
+        List<TaskRequest> creates = IntStream.range(0, 1000)
+                .mapToObj(i -> new TaskRequest("Task " + i, null, null, false, false, null))
+                .toList();
+
+        SqlStatementCounter.start();
+        TaskBatchResponse response = taskService.applyBatch(new TaskBatchRequest(creates, null, null), owner, false);
+        int statements = SqlStatementCounter.stop();
+
+        assertThat(response.getCreated()).extracting(TaskBatchResult::getStatus).containsOnly(201);
+        assertThat(taskService.getTaskCounts(owner).getTotal()).isEqualTo(1000);
+        // 20 insert batches of 50 plus the counters' statements; an insert per task would be over a thousand
+        assertThat(statements).isLessThan(50);
+    }
+
+    private JsonNode batch(String body) throws Exception {
+        String response = mockMvc.perform(post("/api/tasks/batch").with(user(ownerPrincipal))
+                        .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(response);
+    }
+
+    private static List<Integer> statuses(JsonNode results) {
+        List<Integer> statuses = new ArrayList<>();
+        results.forEach(result -> statuses.add(result.get("status").asInt()));
+        return statuses;
+    }
+}
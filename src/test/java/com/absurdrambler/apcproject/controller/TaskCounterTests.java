@@ -0,0 +1,147 @@
+package com.absurdrambler.apcproject.controller;
+
+import com.absurdrambler.apcproject.ApcprojectApplication;
+import com.absurdrambler.apcproject.TestUsers;
+import com.absurdrambler.apcproject.entity.Task;
+import com.absurdrambler.apcproject.entity.User;
+import com.absurdrambler.apcproject.security.AuthenticatedUser;
+import com.absurdrambler.apcproject.service.TaskCounterService;
+import com.absurdrambler.apcproject.service.TaskService;
+import com.absurdrambler.apcproject.service.UserService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = ApcprojectApplication.class)
+@AutoConfigureMockMvc
+class TaskCounterTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private TaskCounterService taskCounterService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private User owner;
+    private AuthenticatedUser ownerPrincipal;
+
+    @BeforeEach
+    void createOwner() {
+        owner = TestUsers.create(userService, "counter");
+        ownerPrincipal = AuthenticatedUser.fromEntity(owner);
+    }
+
+    @Test
+    void countsFollowEveryWrite() throws Exception {
+        Task dueToday = taskService.createTask(new Task("Due today", null, LocalDate.now(), true, false, owner));
+        Task done = taskService.createTask(new Task("Done", null, null, false, true, owner));
+        taskService.createTask(new Task("Later", null, LocalDate.now().plusDays(1), false, false, owner));
+        assertCounts(3, 2, 1, 1);
+
+        mockMvc.perform(patch("/api/tasks/" + dueToday.getId()).with(user(ownerPrincipal))
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"isCompleted\":true,\"isImportant\":false}"))
+                .andExpect(status().isOk());
+        assertCounts(3, 1, 0, 1);
+
+        mockMvc.perform(delete("/api/tasks/" + done.getId()).with(user(ownerPrincipal)))
+                .andExpect(status().isNoContent());
+        assertCounts(2, 1, 0, 1);
+    }
+
+    @Test
+    void concurrentFirstWritesBothCount() throws Exception {
+        // Counters made before the user's first task would hide the race, so start without any
+        taskCounterService.remove(owner.getId());
+        CountDownLatch counted = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(status -> {
+            taskService.createTask(new Task("First", null, null, false, false, owner));
+            counted.countDown();
+            await(commit);
+        }));
+        assertThat(counted.await(10, TimeUnit.SECONDS)).isTrue();
+
+        // Finds no counters either, and waits for the first write's to commit rather than failing on them
+        CompletableFuture<Task> second = CompletableFuture.supplyAsync(() ->
+                taskService.createTask(new Task("Second", null, LocalDate.now(), true, false, owner)));
+        Thread.sleep(300);
+        commit.countDown();
+
+        first.get(10, TimeUnit.SECONDS);
+        assertThat(second.get(10, TimeUnit.SECONDS).getId()).isNotNull();
+        assertCounts(2, 2, 1, 1);
+        assertThat(taskService.getCollectionVersion(owner)).isEqualTo(2);
+    }
+
+    @Test
+    void rolloverRecountsTasksDueOnTheNewDay() throws Exception {
+        taskService.createTask(new Task("Due today", null, LocalDate.now(), false, false, owner));
+        taskService.createTask(new Task("Due yesterday", null, LocalDate.now().minusDays(1), false, false, owner));
+        // As the counters were left the day before
+        jdbcTemplate.update("update task_counters set due_today_count = 5, due_today_date = ? where user_id = ?",
+                LocalDate.now().minusDays(1), owner.getId());
+
+        taskCounterService.rollover();
+
+        assertThat(jdbcTemplate.queryForObject("select due_today_date from task_counters where user_id = ?",
+                LocalDate.class, owner.getId())).isEqualTo(LocalDate.now());
+        assertThat(jdbcTemplate.queryForObject("select due_today_count from task_counters where user_id = ?",
+                Long.class, owner.getId())).isEqualTo(1);
+        assertCounts(2, 2, 0, 1);
+    }
+
+    private void assertCounts(long total, long open, long important, long dueToday) throws Exception {
+        String body = mockMvc.perform(get("/api/tasks/counts").with(user(ownerPrincipal)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        JsonNode counts = objectMapper.readTree(body);
+        assertThat(counts.get("total").asLong()).as("total").isEqualTo(total);
+        assertThat(counts.get("open").asLong()).as("open").isEqualTo(open);
+        assertThat(counts.get("important").asLong()).as("important").isEqualTo(important);
+        assertThat(counts.get("dueToday").asLong()).as("dueToday").isEqualTo(dueToday);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.absurdrambler.apcproject.controller;
+
+import com.absurdrambler.apcproject.ApcprojectApplication;
+import com.absurdrambler.apcproject.entity.Task;
+import com.absurdrambler.apcproject.entity.User;
+import com.absurdrambler.apcproject.service.TaskService;
+import com.absurdrambler.apcproject.service.UserService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(classes = ApcprojectApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class TaskEncodingTests {
+
+    private static final String SMILE = "application/x-jackson-smile";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private HttpClient http;
+
+    @BeforeEach
+    void loginAsUserWithTasks() throws Exception {
+        String username = "encoding-" + UUID.randomUUID();
+        User user = userService.save(new User(username, passwordEncoder.encode("secret"), "ROLE_USER"));
+        for (int i = 1; i <= 20; i++) {
+            taskService.createTask(new Task("Task " + i, "Description of task " + i, LocalDate.now().plusDays(i),
+                    i % 4 == 0, false, user));
+        }
+
+        http = HttpClient.newBuilder().cookieHandler(new CookieManager()).build();
+        HttpResponse<Void> login = http.send(HttpRequest.newBuilder(uri("/api/auth/login"))
+                        .header("Content-Type", "application/x-www-form-urlencoded")
+                        .POST(HttpRequest.BodyPublishers.ofString("username=" + username + "&password=secret"))
+                        .build(),
+                HttpResponse.BodyHandlers.discarding());
+        assertThat(login.statusCode()).isEqualTo(200);
+    }
+
+    @Test
+    void compressesListsWhenClientAcceptsGzip() throws Exception {
+        HttpResponse<InputStream> response = get("application/json", "gzip");
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.headers().firstValue("Content-Encoding")).hasValue("gzip");
+        assertThat(response.headers().firstValue("ETag")).hasValueSatisfying(etag -> assertThat(etag).startsWith("W/"));
+        try (InputStream body = new GZIPInputStream(response.body())) {
+            assertThat(objectMapper.readTree(body).get("items")).hasSize(20);
+        }
+
+        HttpResponse<InputStream> identity = get("application/json", null);
+        assertThat(identity.headers().firstValue("Content-Encoding")).isEmpty();
+        try (InputStream body = identity.body()) {
+            assertThat(objectMapper.readTree(body).get("items")).hasSize(20);
+        }
+    }
+
+    @Test
+    void sendsSmileWhenClientAcceptsIt() throws Exception {
+        HttpResponse<InputStream> response = get(SMILE, null);
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.headers().firstValue("Content-Type")).hasValue(SMILE);
+        assertThat(response.headers().allValues("Vary")).anySatisfy(vary -> assertThat(vary).containsIgnoringCase("accept"));
+        try (InputStream body = response.body()) {
+            JsonNode page = new ObjectMapper(new SmileFactory()).readTree(body);
+            assertThat(page.get("items")).hasSize(20);
+            assertThat(page.get("items").get(0).get("title").asText()).isEqualTo("Task 1");
+            assertThat(page.get("items").get(0).get("dueDate").asText()).isEqualTo(LocalDate.now().plusDays(1).toString());
+        }
+    }
+
+    private HttpResponse<InputStream> get(String accept, String acceptEncoding) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri("/api/tasks/assigned-to-me")).header("Accept", accept);
+        if (acceptEncoding != null) {
+            request.header("Accept-Encoding", acceptEncoding);
+        }
+        return http.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+}
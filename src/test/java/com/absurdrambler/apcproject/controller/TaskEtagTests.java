@@ -0,0 +1,174 @@
+package com.absurdrambler.apcproject.controller;
+
+import com.absurdrambler.apcproject.ApcprojectApplication;
+import com.absurdrambler.apcproject.TestUsers;
+import com.absurdrambler.apcproject.entity.Task;
+import com.absurdrambler.apcproject.entity.User;
+import com.absurdrambler.apcproject.metrics.SqlStatementCounter;
+import com.absurdrambler.apcproject.security.AuthenticatedUser;
+import com.absurdrambler.apcproject.service.TaskService;
+import com.absurdrambler.apcproject.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+/**
+ * Task ETags carry the task's version and list ETags the version of the user's task
+ * collection. The SQL each request runs is recorded, so a 304 can be shown not to read tasks.
+ */
+@SpringBootTest(classes = ApcprojectApplication.class, properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.absurdrambler.apcproject.controller.TaskEtagTests$RecordingStatementInspector")
+@AutoConfigureMockMvc
+class TaskEtagTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private AuthenticatedUser owner;
+    private Task task;
+
+    @BeforeEach
+    void createOwnerWithTask() {
+        User user = TestUsers.create(userService, "etag");
+        task = taskService.createTask(new Task("Versioned", null, LocalDate.now(), false, false, user));
+        owner = AuthenticatedUser.fromEntity(user);
+    }
+
+    @Test
+    void matchingListEtagsAreNotModifiedWithoutReadingTasks() throws Exception {
+        for (String uri : List.of("/api/tasks/assigned-to-me", "/api/tasks/important", "/api/tasks/daily")) {
+            MockHttpServletResponse listed = perform(get(uri));
+            assertThat(listed.getStatus()).isEqualTo(200);
+            String etag = listed.getHeader(HttpHeaders.ETAG);
+            assertThat(etag).startsWith("W/");
+
+            List<String> statements = RecordingStatementInspector.record();
+            MockHttpServletResponse cached = perform(get(uri).header(HttpHeaders.IF_NONE_MATCH, etag));
+            RecordingStatementInspector.stopRecording();
+            assertThat(cached.getStatus()).as(uri).isEqualTo(304);
+            assertThat(cached.getHeader(HttpHeaders.ETAG)).isEqualTo(etag);
+            assertThat(cached.getContentAsString()).isEmpty();
+            assertThat(statements).as(uri).isNotEmpty()
+                    .noneMatch(sql -> sql.toLowerCase(Locale.ROOT).matches("(?s).*\\b(from|join) tasks\\b.*"));
+        }
+    }
+
+    @Test
+    void staleIfMatchIsPreconditionFailedOnPut() throws Exception {
+        String current = "\"" + task.getVersion() + "\"";
+        MockHttpServletResponse updated = perform(put("/api/tasks/" + task.getId())
+                .header(HttpHeaders.IF_MATCH, current)
+                .contentType(MediaType.APPLICATION_JSON).content("{\"title\":\"First edit\"}"));
+        assertThat(updated.getStatus()).isEqualTo(200);
+        assertThat(updated.getHeader(HttpHeaders.ETAG)).isEqualTo("\"" + (task.getVersion() + 1) + "\"");
+
+        // Written against the version before the first edit
+        MockHttpServletResponse stale = perform(put("/api/tasks/" + task.getId())
+                .header(HttpHeaders.IF_MATCH, current)
+                .contentType(MediaType.APPLICATION_JSON).content("{\"title\":\"Lost edit\"}"));
+        assertThat(stale.getStatus()).isEqualTo(412);
+        assertThat(stale.getHeader(HttpHeaders.ETAG)).isEqualTo(updated.getHeader(HttpHeaders.ETAG));
+        assertThat(taskService.findById(task.getId()).orElseThrow().getTitle()).isEqualTo("First edit");
+
+        // A weak ETag never matches If-Match
+        assertThat(perform(put("/api/tasks/" + task.getId())
+                .header(HttpHeaders.IF_MATCH, "W/" + updated.getHeader(HttpHeaders.ETAG))
+                .contentType(MediaType.APPLICATION_JSON).content("{\"title\":\"Weak edit\"}")).getStatus())
+                .isEqualTo(412);
+    }
+
+    @Test
+    void everyWriteBumpsTheTaskAndListVersions() throws Exception {
+        List<String> listEtags = new ArrayList<>();
+        listEtags.add(listEtag());
+
+        MockHttpServletResponse created = perform(post("/api/tasks")
+                .contentType(MediaType.APPLICATION_JSON).content("{\"title\":\"Created\"}"));
+        assertThat(created.getStatus()).isEqualTo(200);
+        long createdId = objectMapper.readTree(created.getContentAsString()).get("id").asLong();
+        assertThat(created.getHeader(HttpHeaders.ETAG)).isEqualTo("\"0\"");
+        listEtags.add(listEtag());
+
+        MockHttpServletResponse updated = perform(put("/api/tasks/" + createdId)
+                .contentType(MediaType.APPLICATION_JSON).content("{\"isImportant\":true}"));
+        assertThat(updated.getHeader(HttpHeaders.ETAG)).isEqualTo("\"1\"");
+        listEtags.add(listEtag());
+
+        MockHttpServletResponse patched = perform(patch("/api/tasks/" + createdId)
+                .contentType(MediaType.APPLICATION_JSON).content("{\"isCompleted\":true}"));
+        assertThat(patched.getHeader(HttpHeaders.ETAG)).isEqualTo("\"2\"");
+        listEtags.add(listEtag());
+
+        assertThat(perform(delete("/api/tasks/" + createdId)).getStatus()).isEqualTo(204);
+        listEtags.add(listEtag());
+
+        assertThat(listEtags).doesNotHaveDuplicates();
+    }
+
+    private String listEtag() throws Exception {
+        return perform(get("/api/tasks/assigned-to-me")).getHeader(HttpHeaders.ETAG);
+    }
+
+    private MockHttpServletResponse perform(MockHttpServletRequestBuilder request) throws Exception {
+        return mockMvc.perform(request.with(user(owner))).andReturn().getResponse();
+    }
+
+    /**
+     * Counts statements as the application's inspector does, and records those run on a
+     * thread that asked for them
+     */
+    public static class RecordingStatementInspector extends SqlStatementCounter {
+
+        private static final ThreadLocal<List<String>> STATEMENTS = new ThreadLocal<>();
+
+        static List<String> record() {
+            List<String> statements = new ArrayList<>();
+            STATEMENTS.set(statements);
+            return statements;
+        }
+
+        static void stopRecording() {
+            STATEMENTS.remove();
+        }
+
+        @Override
+        public String inspect(String sql) {
+            List<String> statements = STATEMENTS.get();
+            if (statements != null) {
+                statements.add(sql);
+            }
+            return super.inspect(sql);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.absurdrambler.apcproject.controller;
+
+import com.absurdrambler.apcproject.ApcprojectApplication;
+import com.absurdrambler.apcproject.TestUsers;
+import com.absurdrambler.apcproject.dto.TaskResponse;
+import com.absurdrambler.apcproject.entity.Task;
+import com.absurdrambler.apcproject.entity.User;
+import com.absurdrambler.apcproject.security.AuthenticatedUser;
+import com.absurdrambler.apcproject.service.TaskService;
+import com.absurdrambler.apcproject.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = ApcprojectApplication.class)
+@AutoConfigureMockMvc
+class TaskExportImportTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private AuthenticatedUser owner;
+    private AuthenticatedUser admin;
+
+    @BeforeEach
+    void createOwnerWithTasks() {
+        User user = TestUsers.create(userService, "export");
+        for (int i = 1; i <= 3; i++) {
+            taskService.createTask(new Task("Task " + i, "Description " + i, LocalDate.now().plusDays(i),
+                    i == 1, i == 2, user));
+        }
+        owner = AuthenticatedUser.fromEntity(user);
+        admin = TestUsers.admin(userService);
+    }
+
+    @Test
+    void exportStreamsOwnTasksAsNewlineDelimitedJson() throws Exception {
+        String body = mockMvc.perform(get("/api/tasks/export").with(user(owner)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(body).startsWith("{").endsWith("}\n").doesNotContain("\n ");
+        List<TaskResponse> tasks = parse(body);
+        assertThat(tasks).extracting(TaskResponse::getTitle).containsExactly("Task 1", "Task 2", "Task 3");
+        assertThat(tasks).extracting(TaskResponse::getAssigneeName).containsOnly(owner.getUsername());
+
+        mockMvc.perform(get("/api/tasks/export").param("userId", String.valueOf(admin.getId())).with(user(owner)))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void importRecreatesExportedTasksAndReportsFailedLines() throws Exception {
+        String export = mockMvc.perform(get("/api/tasks/export")
+                        .param("userId", String.valueOf(owner.getId())).with(user(admin)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String body = export
+                + "{\"description\":\"no title\"}\n"
+                + "{\"title\":\"Orphan\",\"assigneeName\":\"no-such-user\"}\n";
+
+        mockMvc.perform(post("/api/tasks/import").with(user(admin))
+                        .contentType(MediaType.APPLICATION_NDJSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(3))
+                .andExpect(jsonPath("$.failed").value(2))
+                .andExpect(jsonPath("$.failures[0].index").value(3))
+                .andExpect(jsonPath("$.failures[1].index").value(4))
+                .andExpect(jsonPath("$.failures[1].error").value("Unknown assignee"));
+
+        mockMvc.perform(get("/api/tasks/counts").with(user(owner)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(6));
+    }
+
+    @Test
+    void importKeepsLinesBeforeMalformedJson() throws Exception {
+        String body = "{\"title\":\"Imported\"}\n{\"title\":";
+
+        mockMvc.perform(post("/api/tasks/import").with(user(owner))
+                        .contentType(MediaType.APPLICATION_NDJSON).content(body))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.failures[0].index").value(1));
+
+        String export = mockMvc.perform(get("/api/tasks/export").with(user(owner)))
+                .andReturn().getResponse().getContentAsString();
+        assertThat(parse(export)).extracting(TaskResponse::getTitle).contains("Imported").hasSize(4);
+    }
+
+    private List<TaskResponse> parse(String ndjson) throws Exception {
+        List<TaskResponse> tasks = new ArrayList<>();
+        for (String line : ndjson.split("\n")) {
+            tasks.add(objectMapper.readValue(line, TaskResponse.class));
+        }
+        return tasks;
+    }
+}
@@ -0,0 +1,138 @@
+package com.absurdrambler.apcproject.controller;
+
+import com.absurdrambler.apcproject.ApcprojectApplication;
+import com.absurdrambler.apcproject.TestUsers;
+import com.absurdrambler.apcproject.entity.User;
+import com.absurdrambler.apcproject.security.AuthenticatedUser;
+import com.absurdrambler.apcproject.service.UserService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = ApcprojectApplication.class)
+@AutoConfigureMockMvc
+class TaskHistoryTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private AuthenticatedUser owner;
+    private AuthenticatedUser admin;
+
+    @BeforeEach
+    void createOwner() {
+        User user = TestUsers.create(userService, "history");
+        owner = AuthenticatedUser.fromEntity(user);
+        admin = TestUsers.admin(userService);
+    }
+
+    @Test
+    void recordsWhoChangedWhichFields() throws Exception {
+        long id = createTask();
+        update(id, "{\"title\":\"Renamed\"}");
+        update(id, "{\"title\":\"Renamed\"}"); // no change, not logged
+        update(id, "{\"isCompleted\":true}");
+
+        List<JsonNode> history = awaitHistory(id, owner, 3);
+        assertThat(history).extracting(entry -> entry.get("action").asText())
+                .containsExactly("COMPLETED", "UPDATED", "CREATED");
+        assertThat(history).extracting(entry -> entry.get("actorName").asText()).containsOnly(owner.getUsername());
+
+        JsonNode completed = history.get(0).get("changes");
+        assertThat(completed.size()).isEqualTo(1);
+        assertThat(completed.get("isCompleted").get("from").asBoolean()).isFalse();
+        assertThat(completed.get("isCompleted").get("to").asBoolean()).isTrue();
+        JsonNode renamed = history.get(1).get("changes");
+        assertThat(renamed.size()).isEqualTo(1);
+        assertThat(renamed.get("title").get("from").asText()).isEqualTo("Original");
+        assertThat(renamed.get("title").get("to").asText()).isEqualTo("Renamed");
+        assertThat(history.get(2).get("changes").get("title").get("to").asText()).isEqualTo("Original");
+
+        mockMvc.perform(get("/api/tasks/" + id + "/history").with(user(TestUsers.principal(userService, "user"))))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void pagesThroughHistoryAndKeepsItAfterDeletion() throws Exception {
+        long id = createTask();
+        for (int i = 1; i <= 4; i++) {
+            update(id, "{\"title\":\"Title " + i + "\"}");
+        }
+        mockMvc.perform(delete("/api/tasks/" + id).with(user(owner))).andExpect(status().isNoContent());
+        awaitHistory(id, admin, 6);
+
+        mockMvc.perform(get("/api/tasks/" + id + "/history").with(user(owner))).andExpect(status().isNotFound());
+
+        List<String> actions = new ArrayList<>();
+        JsonNode page = history(id, admin, null, 4);
+        page.get("items").forEach(entry -> actions.add(entry.get("action").asText()));
+        assertThat(page.get("nextCursor").isNull()).isFalse();
+        page = history(id, admin, page.get("nextCursor").asText(), 4);
+        page.get("items").forEach(entry -> actions.add(entry.get("action").asText()));
+        assertThat(page.get("nextCursor").isNull()).isTrue();
+        assertThat(actions).containsExactly("DELETED", "UPDATED", "UPDATED", "UPDATED", "UPDATED", "CREATED");
+    }
+
+    private long createTask() throws Exception {
+        String body = mockMvc.perform(post("/api/tasks").with(user(owner))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Original\",\"description\":\"Something to do\"}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).get("id").asLong();
+    }
+
+    private void update(long id, String changes) throws Exception {
+        mockMvc.perform(put("/api/tasks/" + id).with(user(owner))
+                        .contentType(MediaType.APPLICATION_JSON).content(changes))
+                .andExpect(status().isOk());
+    }
+
+    /**
+     * Entries are written asynchronously, shortly after each change commits
+     */
+    private List<JsonNode> awaitHistory(long id, AuthenticatedUser reader, int expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (true) {
+            List<JsonNode> items = new ArrayList<>();
+            history(id, reader, null, 100).get("items").forEach(items::add);
+            if (items.size() >= expected || System.currentTimeMillis() > deadline) {
+                assertThat(items).hasSize(expected);
+                return items;
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    private JsonNode history(long id, AuthenticatedUser reader, String cursor, int limit) throws Exception {
+        String body = mockMvc.perform(get("/api/tasks/" + id + "/history").with(user(reader))
+                        .param("limit", String.valueOf(limit))
+                        .param("cursor", cursor))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+}
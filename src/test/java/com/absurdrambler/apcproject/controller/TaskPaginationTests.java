@@ -0,0 +1,146 @@
+package com.absurdrambler.apcproject.controller;
+
+import com.absurdrambler.apcproject.ApcprojectApplication;
+import com.absurdrambler.apcproject.TestUsers;
+import com.absurdrambler.apcproject.entity.Task;
+import com.absurdrambler.apcproject.entity.User;
+import com.absurdrambler.apcproject.repository.TaskSort;
+import com.absurdrambler.apcproject.security.AuthenticatedUser;
+import com.absurdrambler.apcproject.service.TaskService;
+import com.absurdrambler.apcproject.service.UserService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Walks the keyset-paginated listings page by page in every sort order
+ */
+@SpringBootTest(classes = ApcprojectApplication.class, properties = "app.tasks.page.max-size=5")
+@AutoConfigureMockMvc
+class TaskPaginationTests {
+
+    private static final int PAGE_SIZE = 2;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.tasks.page.max-size}")
+    private int maxPageSize;
+
+    private AuthenticatedUser ownerPrincipal;
+    private final List<Task> tasks = new ArrayList<>();
+
+    @BeforeEach
+    void createTasks() {
+        User owner = TestUsers.create(userService, "pagination");
+        ownerPrincipal = AuthenticatedUser.fromEntity(owner);
+        tasks.clear();
+        // Runs of equal and null due dates, so page boundaries fall inside ties
+        LocalDate today = LocalDate.now();
+        LocalDate[] dueDates = {null, today, today, null, today.plusDays(1), null, today, today.minusDays(1), null,
+                today, today.plusDays(1), null, today};
+        for (int i = 0; i < dueDates.length; i++) {
+            tasks.add(taskService.createTask(new Task("Task " + i, null, dueDates[i], i % 3 != 1, false, owner)));
+        }
+    }
+
+    @Test
+    void walksEveryListingInEverySortOrder() throws Exception {
+        LocalDate today = LocalDate.now();
+        for (TaskSort sort : TaskSort.values()) {
+            assertWalk("/api/tasks/assigned-to-me", sort, task -> true);
+            assertWalk("/api/tasks/important", sort, Task::getIsImportant);
+            assertWalk("/api/tasks/daily", sort, task -> today.equals(task.getDueDate()));
+        }
+    }
+
+    @Test
+    void rejectsACursorFromAnotherSortOrder() throws Exception {
+        String cursor = page("/api/tasks/assigned-to-me", TaskSort.DUE_DATE_ASC, null, PAGE_SIZE)
+                .get("nextCursor").asText();
+
+        for (TaskSort sort : TaskSort.values()) {
+            if (sort != TaskSort.DUE_DATE_ASC) {
+                mockMvc.perform(get("/api/tasks/assigned-to-me").with(user(ownerPrincipal))
+                                .param("sort", sort.name()).param("cursor", cursor))
+                        .andExpect(status().isBadRequest());
+            }
+        }
+    }
+
+    @Test
+    void clampsTheLimitToTheMaximumPageSize() throws Exception {
+        JsonNode page = page("/api/tasks/assigned-to-me", TaskSort.CREATED_ASC, null, 1000);
+
+        assertThat(page.get("items")).hasSize(maxPageSize);
+        assertThat(page.get("nextCursor").isNull()).isFalse();
+    }
+
+    private void assertWalk(String path, TaskSort sort, Predicate<Task> filter) throws Exception {
+        List<Long> expected = tasks.stream().filter(filter).sorted(order(sort)).map(Task::getId).toList();
+
+        List<Long> walked = new ArrayList<>();
+        String cursor = null;
+        do {
+            JsonNode page = page(path, sort, cursor, PAGE_SIZE);
+            assertThat(page.get("items").size()).as("%s %s page size", path, sort).isLessThanOrEqualTo(PAGE_SIZE);
+            page.get("items").forEach(item -> walked.add(item.get("id").asLong()));
+            cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+            assertThat(walked.size()).as("%s %s ends", path, sort).isLessThanOrEqualTo(tasks.size());
+        } while (cursor != null);
+
+        // Nothing skipped or repeated across page boundaries, in the sort's order
+        assertThat(walked).as("%s %s", path, sort).containsExactlyElementsOf(expected);
+    }
+
+    private JsonNode page(String path, TaskSort sort, String cursor, int limit) throws Exception {
+        MockHttpServletRequestBuilder request = get(path).with(user(ownerPrincipal))
+                .param("sort", sort.name())
+                .param("limit", String.valueOf(limit));
+        if (cursor != null) {
+            request.param("cursor", cursor);
+        }
+        String body = mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+
+    private static Comparator<Task> order(TaskSort sort) {
+        Comparator<Task> byDueDate = Comparator.comparing(Task::getDueDate, Comparator.nullsLast(Comparator.naturalOrder()));
+        Comparator<Task> byId = Comparator.comparing(Task::getId);
+        return switch (sort) {
+            case DUE_DATE_ASC -> byDueDate.thenComparing(byId);
+            case DUE_DATE_DESC -> byDueDate.thenComparing(byId).reversed();
+            case CREATED_ASC -> byId;
+            case CREATED_DESC -> byId.reversed();
+        };
+    }
+}
@@ -0,0 +1,153 @@
+package com.absurdrambler.apcproject.controller;
+
+import com.absurdrambler.apcproject.ApcprojectApplication;
+import com.absurdrambler.apcproject.TestUsers;
+import com.absurdrambler.apcproject.entity.Task;
+import com.absurdrambler.apcproject.entity.User;
+import com.absurdrambler.apcproject.security.AuthenticatedUser;
+import com.absurdrambler.apcproject.service.TaskService;
+import com.absurdrambler.apcproject.service.UserService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = ApcprojectApplication.class)
+@AutoConfigureMockMvc
+class TaskPatchTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private AuthenticatedUser owner;
+    private Task task;
+
+    @BeforeEach
+    void createOwnerWithTask() {
+        User user = TestUsers.create(userService, "patch");
+        task = taskService.createTask(new Task("Patch me", "A long description", LocalDate.now(), false, false, user));
+        owner = AuthenticatedUser.fromEntity(user);
+    }
+
+    @Test
+    void changesOnlyTheGivenFieldsAndKeepsCountsAndCachesCurrent() throws Exception {
+        // Cache the task and its lookup query first, so a stale cache would show below
+        taskService.findByIdAndUser(task.getId(), userService.getReference(owner.getId()));
+
+        MockHttpServletResponse response = patchAs(owner, "{\"isCompleted\":true}", null);
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo("\"" + (task.getVersion() + 1) + "\"");
+        JsonNode patched = objectMapper.readTree(response.getContentAsString());
+        assertThat(patched.get("isCompleted").asBoolean()).isTrue();
+        assertThat(patched.get("title").asText()).isEqualTo("Patch me");
+        assertThat(patched.get("description").asText()).isEqualTo("A long description");
+        assertThat(patched.get("assigneeName").asText()).isEqualTo(owner.getUsername());
+
+        JsonNode counts = read("/api/tasks/counts");
+        assertThat(counts.get("total").asLong()).isEqualTo(1);
+        assertThat(counts.get("open").asLong()).isZero();
+        assertThat(counts.get("dueToday").asLong()).isEqualTo(1);
+        JsonNode sync = read("/api/tasks/sync?since=" + task.getChangeSeq());
+        assertThat(sync.get("upserts")).hasSize(1);
+        assertThat(sync.get("upserts").get(0).get("isCompleted").asBoolean()).isTrue();
+
+        // PUT reads the task through the cache, which must hold the patched version
+        mockMvc.perform(put("/api/tasks/" + task.getId()).with(user(owner))
+                        .header(HttpHeaders.IF_MATCH, response.getHeader(HttpHeaders.ETAG))
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"isImportant\":true}"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void rowCountsDecideTheResponse() throws Exception {
+        AuthenticatedUser other = AuthenticatedUser.fromEntity(TestUsers.create(userService, "patch-other"));
+        AuthenticatedUser admin = TestUsers.admin(userService);
+
+        assertThat(patchAs(other, "{\"isCompleted\":true}", null).getStatus()).isEqualTo(404);
+        assertThat(patchAs(owner, "{\"isCompleted\":true}", null, Long.MAX_VALUE).getStatus()).isEqualTo(404);
+        assertThat(patchAs(owner, "{}", null).getStatus()).isEqualTo(400);
+
+        MockHttpServletResponse stale = patchAs(owner, "{\"isCompleted\":true}", "\"" + (task.getVersion() + 5) + "\"");
+        assertThat(stale.getStatus()).isEqualTo(412);
+        assertThat(stale.getHeader(HttpHeaders.ETAG)).isEqualTo("\"" + task.getVersion() + "\"");
+        assertThat(read("/api/tasks/counts").get("open").asLong()).isEqualTo(1);
+
+        assertThat(patchAs(owner, "{\"isImportant\":true}", "\"" + task.getVersion() + "\"").getStatus()).isEqualTo(200);
+        assertThat(patchAs(admin, "{\"title\":\"Patched by admin\"}", null).getStatus()).isEqualTo(200);
+        assertThat(taskService.findById(task.getId()).orElseThrow().getTitle()).isEqualTo("Patched by admin");
+    }
+
+    @Test
+    void concurrentTogglesEndConsistent() throws Exception {
+        int toggles = 40;
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> statuses = new ArrayList<>();
+            for (int i = 0; i < toggles; i++) {
+                String body = "{\"isCompleted\":" + (i % 2 == 0) + "}";
+                statuses.add(executor.submit(() -> patchAs(owner, body, null).getStatus()));
+            }
+            for (Future<Integer> status : statuses) {
+                assertThat(status.get()).isEqualTo(200);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        Task current = taskService.findById(task.getId()).orElseThrow();
+        assertThat(current.getVersion() - task.getVersion()).isBetween(1L, (long) toggles);
+        assertThat(read("/api/tasks/counts").get("open").asLong()).isEqualTo(current.getIsCompleted() ? 0 : 1);
+    }
+
+    private MockHttpServletResponse patchAs(AuthenticatedUser principal, String body, String ifMatch) throws Exception {
+        return patchAs(principal, body, ifMatch, task.getId());
+    }
+
+    private MockHttpServletResponse patchAs(AuthenticatedUser principal, String body, String ifMatch, long id)
+            throws Exception {
+        MockHttpServletRequestBuilder request = patch("/api/tasks/" + id).with(user(principal))
+                .contentType(MediaType.APPLICATION_JSON).content(body);
+        if (ifMatch != null) {
+            request.header(HttpHeaders.IF_MATCH, ifMatch);
+        }
+        return mockMvc.perform(request).andReturn().getResponse();
+    }
+
+    private JsonNode read(String uri) throws Exception {
+        String body = mockMvc.perform(get(uri).with(user(owner)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+}
@@ -0,0 +1,111 @@
+package com.absurdrambler.apcproject.controller;
+
+import com.absurdrambler.apcproject.ApcprojectApplication;
+import com.absurdrambler.apcproject.TestUsers;
+import com.absurdrambler.apcproject.entity.Task;
+import com.absurdrambler.apcproject.entity.User;
+import com.absurdrambler.apcproject.security.AuthenticatedUser;
+import com.absurdrambler.apcproject.service.TaskService;
+import com.absurdrambler.apcproject.service.UserService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = ApcprojectApplication.class)
+@AutoConfigureMockMvc
+class TaskSearchTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private AuthenticatedUser owner;
+
+    @BeforeEach
+    void createOwnerWithTasks() {
+        User user = TestUsers.create(userService, "search");
+        taskService.createTask(new Task("Renew passport", "Book an appointment at the office", null, false, false, user));
+        taskService.createTask(new Task("Call the office", "Ask about the passport renewal", null, false, false, user));
+        taskService.createTask(new Task("Buy groceries", "Milk, eggs and bread", null, false, false, user));
+        owner = AuthenticatedUser.fromEntity(user);
+
+        User other = TestUsers.create(userService, "search");
+        taskService.createTask(new Task("Passport photos", "Someone else's passport", null, false, false, other));
+    }
+
+    @Test
+    void titleMatchesRankAboveDescriptionMatches() throws Exception {
+        assertThat(titles(search("passport"))).containsExactly("Renew passport", "Call the office");
+    }
+
+    @Test
+    void matchesWordPrefixesAndRequiresEveryWord() throws Exception {
+        assertThat(titles(search("pass"))).containsExactly("Renew passport", "Call the office");
+        assertThat(titles(search("RENEW pass"))).containsExactly("Renew passport", "Call the office");
+        assertThat(titles(search("groc milk"))).containsExactly("Buy groceries");
+        assertThat(titles(search("ilk"))).isEmpty();
+        assertThat(titles(search("passport groceries"))).isEmpty();
+    }
+
+    @Test
+    void pagesThroughResultsWithCursor() throws Exception {
+        List<String> titles = new ArrayList<>();
+        JsonNode page = search(get("/api/tasks/search").param("q", "office passport").param("limit", "1"));
+        titles.addAll(titles(page));
+        while (page.hasNonNull("nextCursor")) {
+            page = search(get("/api/tasks/search").param("q", "office passport").param("limit", "1")
+                    .param("cursor", page.get("nextCursor").asText()));
+            titles.addAll(titles(page));
+        }
+        // Both tasks match one word in the title and one in the description: equal rank, newest first
+        assertThat(titles).containsExactly("Call the office", "Renew passport");
+    }
+
+    @Test
+    void rejectsQueriesWithoutWordsAndBadCursors() throws Exception {
+        mockMvc.perform(get("/api/tasks/search").param("q", " - ").with(user(owner)))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/tasks/search").param("q", "passport").param("cursor", "not-a-cursor")
+                        .with(user(owner)))
+                .andExpect(status().isBadRequest());
+    }
+
+    private JsonNode search(String q) throws Exception {
+        return search(get("/api/tasks/search").param("q", q));
+    }
+
+    private JsonNode search(MockHttpServletRequestBuilder request) throws Exception {
+        String body = mockMvc.perform(request.with(user(owner)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+
+    private static List<String> titles(JsonNode page) {
+        List<String> titles = new ArrayList<>();
+        page.get("items").forEach(item -> titles.add(item.get("title").asText()));
+        return titles;
+    }
+}
@@ -0,0 +1,259 @@
+package com.absurdrambler.apcproject.controller;
+
+import com.absurdrambler.apcproject.ApcprojectApplication;
+import com.absurdrambler.apcproject.TestUsers;
+import com.absurdrambler.apcproject.entity.Task;
+import com.absurdrambler.apcproject.entity.User;
+import com.absurdrambler.apcproject.security.AuthenticatedUser;
+import com.absurdrambler.apcproject.service.TaskChangedEvent;
+import com.absurdrambler.apcproject.service.TaskEventBus;
+import com.absurdrambler.apcproject.service.TaskService;
+import com.absurdrambler.apcproject.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = ApcprojectApplication.class, properties = {
+        "app.tasks.stream.buffer-size=2",
+        "app.tasks.stream.max-connections-per-user=2"
+})
+@AutoConfigureMockMvc
+class TaskStreamTests {
+
+    private static final int BUFFER_SIZE = 2;
+    private static final long WRITE_TIMEOUT_MILLIS = 100;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private User owner;
+    private AuthenticatedUser ownerPrincipal;
+
+    @BeforeEach
+    void createOwner() {
+        owner = TestUsers.create(userService, "stream");
+        ownerPrincipal = AuthenticatedUser.fromEntity(owner);
+    }
+
+    @Test
+    void sendsCommittedChangesToTheAssigneesStreamsOnly() throws Exception {
+        User other = TestUsers.create(userService, "stream-other");
+        MvcResult ownerStream = openStream(ownerPrincipal);
+        MvcResult otherStream = openStream(AuthenticatedUser.fromEntity(other));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            taskService.createTask(new Task("Rolled back", null, null, false, false, owner));
+            status.setRollbackOnly();
+        });
+        taskService.createTask(new Task("Committed", null, null, false, false, owner));
+
+        // Events reach a stream in order, so a sent rollback would have arrived first
+        awaitTrue(() -> content(ownerStream).contains("Committed"));
+        assertThat(content(ownerStream)).contains("event:created").doesNotContain("Rolled back");
+        assertThat(content(otherStream)).doesNotContain("event:created");
+    }
+
+    @Test
+    void limitsStreamsPerUser() throws Exception {
+        openStream(ownerPrincipal);
+        openStream(ownerPrincipal);
+
+        mockMvc.perform(get("/api/tasks/stream").with(user(ownerPrincipal)))
+                .andExpect(status().isTooManyRequests());
+    }
+
+    @Test
+    void replacesASlowConsumersBacklogWithOneResync() throws Exception {
+        Task task = taskService.createTask(new Task("Streamed", null, null, false, false, owner));
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingEmitter emitter = new RecordingEmitter(release);
+        TaskEventBus bus = busWith(emitter);
+        try {
+            assertThat(bus.subscribe(owner.getId())).isSameAs(emitter);
+
+            // The sender blocks writing the first event, so the rest pile up in the buffer
+            bus.onTaskChanged(changed(TaskChangedEvent.Type.CREATED, task, 1));
+            assertThat(emitter.sending.await(10, TimeUnit.SECONDS)).isTrue();
+            for (long changeSeq = 2; changeSeq <= BUFFER_SIZE + 2; changeSeq++) {
+                bus.onTaskChanged(changed(TaskChangedEvent.Type.UPDATED, task, changeSeq));
+            }
+            release.countDown();
+            awaitTrue(() -> emitter.events.size() == 2);
+            assertThat(emitter.events).containsExactly("created:1", "resync:" + (BUFFER_SIZE + 2));
+
+            // Caught up, it streams changes one by one again
+            bus.onTaskChanged(changed(TaskChangedEvent.Type.DELETED, task, BUFFER_SIZE + 3));
+            awaitTrue(() -> emitter.events.size() == 3);
+            assertThat(emitter.events.get(2)).isEqualTo("deleted:" + (BUFFER_SIZE + 3));
+        } finally {
+            bus.shutdown();
+        }
+    }
+
+    @Test
+    void namesEventsRegardlessOfTheDefaultLocale() throws Exception {
+        Task task = taskService.createTask(new Task("Archived", null, null, false, false, owner));
+        RecordingEmitter emitter = new RecordingEmitter(new CountDownLatch(0));
+        TaskEventBus bus = busWith(emitter);
+        Locale defaultLocale = Locale.getDefault();
+        try {
+            // Lower-casing "ARCHIVED" in Turkish gives a dotless i
+            Locale.setDefault(Locale.forLanguageTag("tr"));
+            bus.subscribe(owner.getId());
+            bus.onTaskChanged(changed(TaskChangedEvent.Type.ARCHIVED, task, 1));
+            awaitTrue(() -> emitter.events.size() == 1);
+            assertThat(emitter.events).containsExactly("archived:1");
+        } finally {
+            Locale.setDefault(defaultLocale);
+            bus.shutdown();
+        }
+    }
+
+    @Test
+    void aStalledStreamHoldsUpNoOtherStream() throws Exception {
+        User other = TestUsers.create(userService, "stream-other");
+        Task task = taskService.createTask(new Task("Stalled", null, null, false, false, owner));
+        Task othersTask = taskService.createTask(new Task("Read", null, null, false, false, other));
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingEmitter stalled = new RecordingEmitter(release);
+        RecordingEmitter reading = new RecordingEmitter(new CountDownLatch(0));
+        TaskEventBus bus = busWith(stalled, reading);
+        try {
+            bus.subscribe(owner.getId());
+            bus.subscribe(other.getId());
+
+            // One sender thread is kept, and the owner's stream is stuck writing on it
+            bus.onTaskChanged(changed(TaskChangedEvent.Type.CREATED, task, 1));
+            assertThat(stalled.sending.await(10, TimeUnit.SECONDS)).isTrue();
+            bus.onTaskChanged(new TaskChangedEvent(TaskChangedEvent.Type.CREATED, othersTask, other.getId(), 1));
+            awaitTrue(() -> reading.events.size() == 1);
+            assertThat(reading.events).containsExactly("created:1");
+
+            // Past the write timeout the stalled stream is closed, and completed once its write returns
+            awaitTrue(() -> {
+                bus.closeStalledStreams();
+                return bus.getConnectionCount() == 1;
+            });
+            assertThat(stalled.completed).isFalse();
+            release.countDown();
+            awaitTrue(() -> stalled.completed);
+        } finally {
+            release.countDown();
+            bus.shutdown();
+        }
+    }
+
+    private MvcResult openStream(AuthenticatedUser principal) throws Exception {
+        MvcResult stream = mockMvc.perform(get("/api/tasks/stream").with(user(principal)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        awaitTrue(() -> content(stream).contains(":connected"));
+        return stream;
+    }
+
+    private TaskEventBus busWith(RecordingEmitter... emitters) {
+        Deque<RecordingEmitter> created = new ArrayDeque<>(List.of(emitters));
+        return new TaskEventBus(BUFFER_SIZE, 60_000, 2, 1, WRITE_TIMEOUT_MILLIS, false) {
+            @Override
+            protected SseEmitter createEmitter(long timeoutMillis) {
+                return created.poll();
+            }
+        };
+    }
+
+    private TaskChangedEvent changed(TaskChangedEvent.Type type, Task task, long changeSeq) {
+        return new TaskChangedEvent(type, task, owner.getId(), changeSeq);
+    }
+
+    private static String content(MvcResult stream) {
+        try {
+            return stream.getResponse().getContentAsString();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition met within 10 seconds").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Emitter recording the name and ID of each event written to it, and whether it was
+     * completed, standing in for a client that reads nothing until released
+     */
+    private static final class RecordingEmitter extends SseEmitter {
+
+        private final List<String> events = new CopyOnWriteArrayList<>();
+        private final CountDownLatch sending = new CountDownLatch(1);
+        private final CountDownLatch release;
+        private volatile boolean completed;
+
+        RecordingEmitter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+            super.complete();
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            String text = builder.build().stream()
+                    .map(data -> String.valueOf(data.getData()))
+                    .collect(Collectors.joining());
+            if (text.startsWith(":")) {
+                return; // comment
+            }
+            sending.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            events.add(field(text, "event:") + ":" + field(text, "id:"));
+        }
+
+        private static String field(String text, String prefix) {
+            return text.lines().filter(line -> line.startsWith(prefix)).findFirst()
+                    .map(line -> line.substring(prefix.length())).orElse(null);
+        }
+    }
+}
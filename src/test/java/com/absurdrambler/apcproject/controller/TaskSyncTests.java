@@ -0,0 +1,218 @@
+package com.absurdrambler.apcproject.controller;
+
+import com.absurdrambler.apcproject.ApcprojectApplication;
+import com.absurdrambler.apcproject.TestUsers;
+import com.absurdrambler.apcproject.dto.TaskCursor;
+import com.absurdrambler.apcproject.entity.Task;
+import com.absurdrambler.apcproject.entity.User;
+import com.absurdrambler.apcproject.repository.TaskSearchKeyset;
+import com.absurdrambler.apcproject.security.AuthenticatedUser;
+import com.absurdrambler.apcproject.service.TaskService;
+import com.absurdrambler.apcproject.service.UserService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = ApcprojectApplication.class)
+@AutoConfigureMockMvc
+class TaskSyncTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private User owner;
+    private AuthenticatedUser ownerPrincipal;
+    private List<Task> tasks;
+
+    @BeforeEach
+    void createOwnerWithTasks() {
+        owner = TestUsers.create(userService, "sync");
+        ownerPrincipal = AuthenticatedUser.fromEntity(owner);
+        tasks = List.of(
+                taskService.createTask(new Task("Kept", null, LocalDate.now(), false, false, owner)),
+                taskService.createTask(new Task("Changed", null, null, false, false, owner)),
+                taskService.createTask(new Task("Deleted", null, null, true, false, owner)));
+    }
+
+    @Test
+    void sendsTheChangesAndDeletionsAfterAToken() throws Exception {
+        JsonNode snapshot = sync(null);
+        assertThat(snapshot.get("reset").asBoolean()).isTrue();
+        assertThat(titles(snapshot)).containsExactlyInAnyOrder("Kept", "Changed", "Deleted");
+        long token = snapshot.get("token").asLong();
+
+        mockMvc.perform(put("/api/tasks/" + tasks.get(1).getId()).with(user(ownerPrincipal))
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"title\":\"Changed again\"}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/api/tasks/" + tasks.get(2).getId()).with(user(ownerPrincipal)))
+                .andExpect(status().isNoContent());
+        taskService.createTask(new Task("Created", null, null, false, false, owner));
+
+        JsonNode changes = sync(token);
+        assertThat(changes.get("reset").asBoolean()).isFalse();
+        assertThat(titles(changes)).containsExactlyInAnyOrder("Changed again", "Created");
+        assertThat(changes.get("deletions")).extracting(JsonNode::asLong).containsExactly(tasks.get(2).getId());
+        assertThat(changes.get("token").asLong()).isGreaterThan(token);
+
+        JsonNode nothing = sync(changes.get("token").asLong());
+        assertThat(nothing.get("reset").asBoolean()).isFalse();
+        assertThat(nothing.get("upserts")).isEmpty();
+        assertThat(nothing.get("deletions")).isEmpty();
+
+        // A token the server never issued gets a snapshot
+        assertThat(sync(changes.get("token").asLong() + 100).get("reset").asBoolean()).isTrue();
+    }
+
+    @Test
+    void tokensOlderThanCompactedTombstonesResyncInFull() throws Exception {
+        long token = sync(null).get("token").asLong();
+        Long oldDeletion = tasks.get(2).getId();
+        mockMvc.perform(delete("/api/tasks/" + oldDeletion).with(user(ownerPrincipal)))
+                .andExpect(status().isNoContent());
+        jdbcTemplate.update("update task_tombstones set deleted_at = ? where task_id = ?",
+                Timestamp.from(Instant.now().minus(Duration.ofDays(31))), oldDeletion);
+        long afterOldDeletion = sync(token).get("token").asLong();
+        Long recentDeletion = tasks.get(1).getId();
+        mockMvc.perform(delete("/api/tasks/" + recentDeletion).with(user(ownerPrincipal)))
+                .andExpect(status().isNoContent());
+
+        taskService.compactTombstones();
+
+        assertThat(tombstones(oldDeletion)).isZero();
+        assertThat(tombstones(recentDeletion)).isEqualTo(1);
+        // The old deletion is gone, so a client that has not seen it must start over
+        JsonNode resync = sync(token);
+        assertThat(resync.get("reset").asBoolean()).isTrue();
+        assertThat(titles(resync)).containsExactly("Kept");
+        assertThat(resync.get("deletions")).isEmpty();
+        // A client that saw it still gets the deletions after it
+        JsonNode changes = sync(afterOldDeletion);
+        assertThat(changes.get("reset").asBoolean()).isFalse();
+        assertThat(changes.get("deletions")).extracting(JsonNode::asLong).containsExactly(recentDeletion);
+    }
+
+    @Test
+    void pagesSnapshotsAndDeltasInChangeOrder() throws Exception {
+        taskService.createTask(new Task("Extra 1", null, null, false, false, owner));
+        taskService.createTask(new Task("Extra 2", null, null, false, false, owner));
+
+        JsonNode first = sync(null, null, 2);
+        assertThat(first.get("reset").asBoolean()).isTrue();
+        assertThat(first.get("hasMore").asBoolean()).isTrue();
+        assertThat(titles(first)).containsExactly("Kept", "Changed");
+
+        // Changes made while the snapshot is paged through follow it, in the order they were made
+        mockMvc.perform(put("/api/tasks/" + tasks.get(0).getId()).with(user(ownerPrincipal))
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"title\":\"Kept again\"}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/api/tasks/" + tasks.get(2).getId()).with(user(ownerPrincipal)))
+                .andExpect(status().isNoContent());
+
+        List<String> titles = new ArrayList<>();
+        List<Long> deletions = new ArrayList<>();
+        JsonNode page = first;
+        while (page.get("hasMore").asBoolean()) {
+            page = sync(null, page.get("nextCursor").asText(), 2);
+            assertThat(page.get("reset").asBoolean()).isFalse();
+            assertThat(page.get("upserts").size() + page.get("deletions").size()).isBetween(1, 2);
+            titles.addAll(titles(page));
+            page.get("deletions").forEach(id -> deletions.add(id.asLong()));
+        }
+        assertThat(titles).containsExactly("Extra 1", "Extra 2", "Kept again");
+        assertThat(deletions).containsExactly(tasks.get(2).getId());
+        assertThat(page.get("nextCursor").isNull()).isTrue();
+        long token = page.get("token").asLong();
+
+        // A bulk change is paged too
+        for (int i = 0; i < 5; i++) {
+            taskService.createTask(new Task("Later " + i, null, null, false, false, owner));
+        }
+        titles.clear();
+        page = sync(token, null, 2);
+        titles.addAll(titles(page));
+        while (page.get("hasMore").asBoolean()) {
+            assertThat(page.get("upserts")).hasSize(2);
+            page = sync(token, page.get("nextCursor").asText(), 2);
+            titles.addAll(titles(page));
+        }
+        assertThat(titles).containsExactly("Later 0", "Later 1", "Later 2", "Later 3", "Later 4");
+        assertThat(sync(page.get("token").asLong(), null, 2).get("upserts")).isEmpty();
+    }
+
+    @Test
+    void rejectsCursorsFromOtherEndpoints() throws Exception {
+        String searchCursor = TaskCursor.encode(new TaskSearchKeyset(1.0f, 1L));
+        mockMvc.perform(get("/api/tasks/sync?cursor=" + searchCursor).with(user(ownerPrincipal)))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/tasks/sync?cursor=not-a-cursor").with(user(ownerPrincipal)))
+                .andExpect(status().isBadRequest());
+    }
+
+    private int tombstones(Long taskId) {
+        return jdbcTemplate.queryForObject("select count(*) from task_tombstones where task_id = ?",
+                Integer.class, taskId);
+    }
+
+    private static List<String> titles(JsonNode sync) {
+        List<String> titles = new ArrayList<>();
+        sync.get("upserts").forEach(task -> titles.add(task.get("title").asText()));
+        return titles;
+    }
+
+    private JsonNode sync(Long since) throws Exception {
+        JsonNode sync = sync(since, null, null);
+        assertThat(sync.get("hasMore").asBoolean()).isFalse();
+        return sync;
+    }
+
+    private JsonNode sync(Long since, String cursor, Integer limit) throws Exception {
+        MockHttpServletRequestBuilder request = get("/api/tasks/sync").with(user(ownerPrincipal));
+        if (since != null) {
+            request.param("since", since.toString());
+        }
+        if (cursor != null) {
+            request.param("cursor", cursor);
+        }
+        if (limit != null) {
+            request.param("limit", limit.toString());
+        }
+        String body = mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+}
@@ -0,0 +1,188 @@
+package com.absurdrambler.apcproject.controller;
+
+import com.absurdrambler.apcproject.ApcprojectApplication;
+import com.absurdrambler.apcproject.TestUsers;
+import com.absurdrambler.apcproject.dto.TaskResponse;
+import com.absurdrambler.apcproject.entity.Task;
+import com.absurdrambler.apcproject.entity.User;
+import com.absurdrambler.apcproject.repository.TaskSort;
+import com.absurdrambler.apcproject.security.AuthenticatedUser;
+import com.absurdrambler.apcproject.service.TaskService;
+import com.absurdrambler.apcproject.service.UserService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Bulk operations run with a chunk size of two, so every operation below takes several chunks
+ */
+@SpringBootTest(classes = ApcprojectApplication.class, properties = "app.tasks.bulk.chunk-size=2")
+@AutoConfigureMockMvc
+class UserAdminTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private AuthenticatedUser admin;
+    private User owner;
+    private List<Task> openTasks;
+
+    @BeforeEach
+    void createOwnerWithTasks() {
+        admin = TestUsers.admin(userService);
+        owner = TestUsers.create(userService, "bulk");
+        LocalDate today = LocalDate.now();
+        openTasks = List.of(
+                taskService.createTask(new Task("Overdue", null, today.minusDays(3), true, false, owner)),
+                taskService.createTask(new Task("Also overdue", null, today.minusDays(1), false, false, owner)),
+                taskService.createTask(new Task("Due today", null, today, false, false, owner)));
+        taskService.createTask(new Task("Done", null, today.minusDays(2), false, true, owner));
+        taskService.createTask(new Task("Done too", null, null, true, true, owner));
+    }
+
+    @Test
+    void reassignMovesOpenTasksWithCountsAndSync() throws Exception {
+        User other = TestUsers.create(userService, "bulk-other");
+        taskService.createTask(new Task("Already theirs", null, null, false, false, other));
+        long ownerToken = sync(owner, null).get("token").asLong();
+        long otherToken = sync(other, null).get("token").asLong();
+
+        List<JsonNode> progress = run(post("/api/users/" + owner.getId() + "/tasks/reassign")
+                .param("to", String.valueOf(other.getId())));
+        assertThat(progress).extracting(line -> line.get("processed").asLong()).containsExactly(2L, 3L);
+        assertThat(progress).extracting(line -> line.get("done").asBoolean()).containsExactly(false, true);
+
+        assertThat(taskService.getTasksAssignedToUser(owner, null, TaskSort.DUE_DATE_ASC, null, false, false).items())
+                .extracting(task -> ((TaskResponse) task).getTitle())
+                .containsExactlyInAnyOrder("Done", "Done too");
+        JsonNode ownerCounts = counts(owner);
+        assertThat(ownerCounts.get("total").asLong()).isEqualTo(2);
+        assertThat(ownerCounts.get("open").asLong()).isZero();
+        assertThat(ownerCounts.get("important").asLong()).isEqualTo(1);
+        assertThat(ownerCounts.get("dueToday").asLong()).isZero();
+        JsonNode otherCounts = counts(other);
+        assertThat(otherCounts.get("total").asLong()).isEqualTo(4);
+        assertThat(otherCounts.get("open").asLong()).isEqualTo(4);
+        assertThat(otherCounts.get("important").asLong()).isEqualTo(1);
+        assertThat(otherCounts.get("dueToday").asLong()).isEqualTo(1);
+
+        List<Long> openIds = openTasks.stream().map(Task::getId).toList();
+        JsonNode ownerSync = sync(owner, ownerToken);
+        assertThat(ownerSync.get("upserts")).isEmpty();
+        assertThat(ownerSync.get("deletions")).extracting(JsonNode::asLong).containsExactlyInAnyOrderElementsOf(openIds);
+        JsonNode otherSync = sync(other, otherToken);
+        assertThat(otherSync.get("upserts")).extracting(task -> task.get("id").asLong())
+                .containsExactlyInAnyOrderElementsOf(openIds);
+        assertThat(taskService.findById(openIds.get(0)).orElseThrow().getAssignee().getId()).isEqualTo(other.getId());
+
+        // Moving all the other user's open tasks back replaces the tombstones, so the owner sees them as changed
+        run(post("/api/users/" + other.getId() + "/tasks/reassign").param("to", String.valueOf(owner.getId())));
+        JsonNode backSync = sync(owner, ownerToken);
+        assertThat(backSync.get("deletions")).isEmpty();
+        assertThat(backSync.get("upserts")).hasSize(4);
+        assertThat(counts(other).get("total").asLong()).isZero();
+    }
+
+    @Test
+    void completeOverdueLeavesOtherTasksAlone() throws Exception {
+        List<JsonNode> progress = run(post("/api/users/" + owner.getId() + "/tasks/complete-overdue"));
+        assertThat(progress).extracting(line -> line.get("processed").asLong()).containsExactly(2L, 2L);
+        assertThat(progress.get(progress.size() - 1).get("done").asBoolean()).isTrue();
+
+        assertThat(taskService.findById(openTasks.get(0).getId()).orElseThrow().getIsCompleted()).isTrue();
+        assertThat(taskService.findById(openTasks.get(1).getId()).orElseThrow().getIsCompleted()).isTrue();
+        assertThat(taskService.findById(openTasks.get(2).getId()).orElseThrow().getIsCompleted()).isFalse();
+        JsonNode counts = counts(owner);
+        assertThat(counts.get("total").asLong()).isEqualTo(5);
+        assertThat(counts.get("open").asLong()).isEqualTo(1);
+        assertThat(counts.get("dueToday").asLong()).isEqualTo(1);
+    }
+
+    @Test
+    void removeDeletesTheUserAndAllTheirTasks() throws Exception {
+        List<JsonNode> progress = run(delete("/api/users/" + owner.getId()));
+        assertThat(progress).extracting(line -> line.get("processed").asLong()).containsExactly(2L, 4L, 5L);
+        assertThat(progress.get(progress.size() - 1).get("done").asBoolean()).isTrue();
+
+        assertThat(userService.findById(owner.getId())).isEmpty();
+        assertThat(taskService.findById(openTasks.get(0).getId())).isEmpty();
+        assertThat(userService.findCurrentUser(owner.getUsername())).isEmpty();
+    }
+
+    @Test
+    void rejectsInvalidRequests() throws Exception {
+        AuthenticatedUser ownerPrincipal = AuthenticatedUser.fromEntity(owner);
+        mockMvc.perform(delete("/api/users/" + owner.getId()).with(user(ownerPrincipal)))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(delete("/api/users/" + admin.getId()).with(user(admin)))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(delete("/api/users/" + Long.MAX_VALUE).with(user(admin)))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(post("/api/users/" + owner.getId() + "/tasks/reassign")
+                        .param("to", String.valueOf(owner.getId())).with(user(admin)))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/users/" + owner.getId() + "/tasks/reassign")
+                        .param("to", String.valueOf(Long.MAX_VALUE)).with(user(admin)))
+                .andExpect(status().isNotFound());
+        assertThat(counts(owner).get("total").asLong()).isEqualTo(5);
+    }
+
+    private List<JsonNode> run(MockHttpServletRequestBuilder request) throws Exception {
+        String body = mockMvc.perform(request.with(user(admin)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            lines.add(objectMapper.readTree(line));
+        }
+        return lines;
+    }
+
+    private JsonNode counts(User user) throws Exception {
+        return read(get("/api/tasks/counts"), user);
+    }
+
+    private JsonNode sync(User user, Long since) throws Exception {
+        MockHttpServletRequestBuilder request = get("/api/tasks/sync");
+        if (since != null) {
+            request.param("since", String.valueOf(since));
+        }
+        return read(request, user);
+    }
+
+    private JsonNode read(MockHttpServletRequestBuilder request, User user) throws Exception {
+        String body = mockMvc.perform(request.with(user(AuthenticatedUser.fromEntity(user))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+}
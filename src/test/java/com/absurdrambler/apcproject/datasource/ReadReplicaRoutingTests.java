@@ -0,0 +1,212 @@
+package com.absurdrambler.apcproject.datasource;
+
+import com.absurdrambler.apcproject.ApcprojectApplication;
+import com.absurdrambler.apcproject.TestUsers;
+import com.absurdrambler.apcproject.entity.Task;
+import com.absurdrambler.apcproject.entity.User;
+import com.absurdrambler.apcproject.security.AuthenticatedUser;
+import com.absurdrambler.apcproject.service.TaskService;
+import com.absurdrambler.apcproject.service.UserService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Two pools on a copy of the test database stand in for two replicas. The copy is refreshed
+ * when a test has the replicas catch up, so writes after that are missing from it, as on a
+ * lagging replica. The reported lag is whatever the copy's replica_lag table says, and replicas
+ * are checked only when a test asks.
+ */
+@SpringBootTest(classes = ApcprojectApplication.class, properties = {
+        "app.datasource.replicas.urls=" + ReadReplicaRoutingTests.REPLICA_URL + "," + ReadReplicaRoutingTests.REPLICA_URL,
+        "app.datasource.replicas.pool-size=2",
+        "app.datasource.replicas.lag-query=SELECT millis FROM replica_lag",
+        "app.datasource.replicas.max-lag-millis=1000",
+        "app.datasource.replicas.check-interval-millis=3600000",
+        "app.datasource.replicas.read-your-writes-millis=60000"
+})
+@AutoConfigureMockMvc
+class ReadReplicaRoutingTests {
+
+    static final String REPLICA_URL =
+            "jdbc:h2:mem:todoapp_replica;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1";
+
+    private final JdbcTemplate replicaJdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    @TempDir
+    private Path scriptDirectory;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ReadReplicaRouter router;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private User ownerUser;
+    private AuthenticatedUser owner;
+    private Task task;
+
+    @BeforeEach
+    void createOwnerWithTaskAndHealthyReplicas() {
+        ownerUser = TestUsers.create(userService, "replica");
+        task = taskService.createTask(new Task("Replicated", null, LocalDate.now(), false, false, ownerUser));
+        owner = AuthenticatedUser.fromEntity(ownerUser);
+        catchUp();
+    }
+
+    @Test
+    void readOnlyTransactionsAlternateBetweenReplicas() throws Exception {
+        double replica1 = reads("replica-1");
+        double replica2 = reads("replica-2");
+        double primary = reads("primary");
+
+        for (int i = 0; i < 4; i++) {
+            JsonNode tasks = list(owner);
+            assertThat(tasks).hasSize(1);
+            assertThat(tasks.get(0).get("title").asText()).isEqualTo("Replicated");
+        }
+
+        assertThat(reads("replica-1")).isGreaterThan(replica1);
+        assertThat(reads("replica-2")).isGreaterThan(replica2);
+        assertThat(reads("primary")).isEqualTo(primary);
+    }
+
+    @Test
+    void writersReadFromThePrimaryUntilTheWindowPasses() throws Exception {
+        AuthenticatedUser reader = AuthenticatedUser.fromEntity(TestUsers.create(userService, "replica-reader"));
+        mockMvc.perform(patch("/api/tasks/" + task.getId()).with(user(owner))
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"isCompleted\":true}"))
+                .andExpect(status().isOk());
+
+        double primary = reads("primary");
+        double replicas = replicaReads();
+        assertThat(list(owner).get(0).get("isCompleted").asBoolean()).isTrue();
+        assertThat(reads("primary")).isGreaterThan(primary);
+        assertThat(replicaReads()).isEqualTo(replicas);
+
+        // Reading alone does not make a user a writer
+        primary = reads("primary");
+        list(reader);
+        list(reader);
+        assertThat(replicaReads()).isGreaterThan(replicas);
+        assertThat(reads("primary")).isEqualTo(primary);
+    }
+
+    @Test
+    void listEtagsNeverRunAheadOfALaggingReplica() throws Exception {
+        long replicated = taskService.getCollectionVersion(ownerUser);
+        // Another writer adds a task the replicas have not caught up with yet, within the allowed lag
+        taskService.createTask(new Task("Added while lagging", null, LocalDate.now(), false, false, ownerUser));
+        setLag(500);
+        assertThat(taskService.getCollectionVersion(ownerUser)).isGreaterThan(replicated);
+
+        MockHttpServletResponse stale = listResponse(owner, null);
+        assertThat(items(stale)).hasSize(1);
+        assertThat(stale.getHeader(HttpHeaders.ETAG)).isEqualTo("W/\"" + replicated + "\"");
+
+        // Once the replicas catch up, the stale page's ETag no longer matches
+        catchUp();
+        MockHttpServletResponse current = listResponse(owner, stale.getHeader(HttpHeaders.ETAG));
+        assertThat(current.getStatus()).isEqualTo(200);
+        assertThat(items(current)).hasSize(2);
+        assertThat(listResponse(owner, current.getHeader(HttpHeaders.ETAG)).getStatus()).isEqualTo(304);
+    }
+
+    @Test
+    void laggingReplicasFallBackToThePrimaryAndReplicaReadsAreNotCached() {
+        entityManagerFactory.getCache().evict(Task.class);
+        assertThat(taskService.findById(task.getId())).isPresent();
+        assertThat(entityManagerFactory.getCache().contains(Task.class, task.getId())).isFalse();
+
+        setLag(5000);
+        double primary = reads("primary");
+        assertThat(taskService.findById(task.getId())).isPresent();
+        assertThat(reads("primary")).isEqualTo(primary + 1);
+        assertThat(entityManagerFactory.getCache().contains(Task.class, task.getId())).isTrue();
+    }
+
+    /**
+     * Copy the test database to the replicas' database, reporting no lag
+     */
+    private void catchUp() {
+        String script = scriptDirectory.resolve("primary.sql").toString();
+        jdbcTemplate.execute("SCRIPT TO '" + script + "'");
+        replicaJdbcTemplate.execute("DROP ALL OBJECTS");
+        replicaJdbcTemplate.execute("RUNSCRIPT FROM '" + script + "'");
+        replicaJdbcTemplate.execute("CREATE TABLE replica_lag (millis BIGINT)");
+        setLag(0);
+    }
+
+    private void setLag(long millis) {
+        replicaJdbcTemplate.update("DELETE FROM replica_lag");
+        replicaJdbcTemplate.update("INSERT INTO replica_lag (millis) VALUES (?)", millis);
+        router.checkReplicas();
+    }
+
+    private double reads(String target) {
+        return meterRegistry.get("app.datasource.reads").tag("target", target).counter().count();
+    }
+
+    private double replicaReads() {
+        return reads("replica-1") + reads("replica-2");
+    }
+
+    private JsonNode list(AuthenticatedUser principal) throws Exception {
+        MockHttpServletResponse response = listResponse(principal, null);
+        assertThat(response.getStatus()).isEqualTo(200);
+        return items(response);
+    }
+
+    private MockHttpServletResponse listResponse(AuthenticatedUser principal, String ifNoneMatch) throws Exception {
+        MockHttpServletRequestBuilder request = get("/api/tasks/assigned-to-me").with(user(principal));
+        if (ifNoneMatch != null) {
+            request.header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return mockMvc.perform(request).andReturn().getResponse();
+    }
+
+    private JsonNode items(MockHttpServletResponse response) throws Exception {
+        return objectMapper.readTree(response.getContentAsString()).get("items");
+    }
+}
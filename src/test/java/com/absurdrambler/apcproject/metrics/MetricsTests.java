@@ -0,0 +1,116 @@
+package com.absurdrambler.apcproject.metrics;
+
+import com.absurdrambler.apcproject.ApcprojectApplication;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = ApcprojectApplication.class)
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class MetricsTests {
+
+    private static final List<String> LIST_ENDPOINTS = List.of(
+            "/api/tasks/assigned-to-me", "/api/tasks/important", "/api/tasks/daily",
+            "/api/tasks/counts", "/api/tasks/sync");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private MockHttpSession session;
+
+    @BeforeEach
+    void login() throws Exception {
+        session = (MockHttpSession) mockMvc.perform(post("/api/auth/login")
+                        .param("username", "user").param("password", "user123"))
+                .andExpect(status().isOk())
+                .andReturn().getRequest().getSession();
+    }
+
+    @Test
+    void prometheusEndpointExposesHotPathMetrics() throws Exception {
+        createTasks(1);
+        for (String endpoint : LIST_ENDPOINTS) {
+            mockMvc.perform(get(endpoint).session(session)).andExpect(status().isOk());
+        }
+        mockMvc.perform(get("/api/auth/me").session(session)).andExpect(status().isOk());
+
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertThat(scrape)
+                .contains("http_server_requests_seconds_bucket{")
+                .contains("uri=\"/api/tasks/assigned-to-me\"")
+                .contains("uri=\"/api/auth/me\"")
+                .contains("app_service_seconds_bucket{")
+                .contains("class=\"com.absurdrambler.apcproject.service.TaskService\"")
+                .contains("method=\"createTask\"")
+                .contains("auth_login_check_seconds_count{result=\"success\"}")
+                .contains("auth_login_wait_seconds_count")
+                .contains("http_server_requests_sql_statements_count{method=\"GET\",uri=\"/api/tasks/counts\"}")
+                .contains("http_server_requests_connection_hold_seconds_count{method=\"GET\",uri=\"/api/tasks/counts\"}")
+                .contains("http_server_json_seconds_count{operation=\"write\",type=\"TaskPageResponse\"}")
+                .contains("http_server_json_seconds_count{operation=\"read\",type=\"TaskRequest\"}")
+                .contains("hikaricp_connections_active")
+                .contains("hibernate_query_executions_total")
+                .contains("hibernate_entities_loads_total")
+                .contains("hibernate_second_level_cache_requests_total{")
+                .contains("region=\"tasks\"");
+
+        mockMvc.perform(get("/actuator/metrics").session(session)).andExpect(status().isForbidden());
+    }
+
+    @Test
+    void listEndpointsRunTheSameStatementsHoweverManyTasksTheyReturn() throws Exception {
+        createTasks(2);
+        Map<String, Double> before = new LinkedHashMap<>();
+        for (String endpoint : LIST_ENDPOINTS) {
+            statementsFor(endpoint);
+            before.put(endpoint, statementsFor(endpoint));
+        }
+
+        createTasks(20);
+        for (String endpoint : LIST_ENDPOINTS) {
+            statementsFor(endpoint);
+            assertThat(statementsFor(endpoint)).as(endpoint).isEqualTo(before.get(endpoint)).isLessThan(5);
+        }
+    }
+
+    private double statementsFor(String endpoint) throws Exception {
+        DistributionSummary summary = meterRegistry.find("http.server.requests.sql").tag("uri", endpoint).summary();
+        double total = summary != null ? summary.totalAmount() : 0;
+        mockMvc.perform(get(endpoint).session(session)).andExpect(status().isOk());
+        return meterRegistry.get("http.server.requests.sql").tag("uri", endpoint).summary().totalAmount() - total;
+    }
+
+    private void createTasks(int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            mockMvc.perform(post("/api/tasks").session(session)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"title\":\"Metrics task " + i + "\",\"isImportant\":true,\"dueDate\":\""
+                                    + LocalDate.now() + "\"}"))
+                    .andExpect(status().isOk());
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.absurdrambler.apcproject.repository;
+
+import com.absurdrambler.apcproject.dto.TaskRequest;
+import com.absurdrambler.apcproject.entity.ArchivedTask;
+import com.absurdrambler.apcproject.entity.Task;
+import com.absurdrambler.apcproject.entity.User;
+import jakarta.persistence.EntityManager;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs EXPLAIN on the SQL of every task query against a seeded database and fails
+ * if any of them plans a sequential scan of the tasks or archived tasks table instead of using an index.
+ * Searches must also use the text search index on PostgreSQL, where they match with it.
+ * Runs on the embedded H2 database by default. To check the PostgreSQL plans, including
+ * the partial and text search indexes, point it at a PostgreSQL 16+ database:
+ * <pre>
+ * mvn test -Dtest=TaskRepositoryQueryPlanTests \
+ *     -Dspring.datasource.url=jdbc:postgresql://localhost:5432/todoapp_test \
+ *     -Dspring.datasource.username=todouser -Dspring.datasource.password=todopass \
+ *     -Dspring.datasource.driver-class-name=org.postgresql.Driver \
+ *     -Dspring.jpa.database-platform=org.hibernate.dialect.PostgreSQLDialect
+ * </pre>
+ */
+// Caching is off so every query reaches the database and its SQL can be explained
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.absurdrambler.apcproject.repository.TaskRepositoryQueryPlanTests$RecordingStatementInspector",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class TaskRepositoryQueryPlanTests {
+
+    private static final int USERS = 50;
+    private static final int TASKS_PER_USER = 100;
+    private static final String SEARCH_INDEX = "idx_tasks_search_vector";
+    private static final Pattern DATA_CHANGE_DELTA = Pattern.compile("(?is)\\bfrom old table \\((.*)\\)\\s*$");
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private ArchivedTaskRepository archivedTaskRepository;
+
+    @Autowired
+    private TaskCounterRepository taskCounterRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private User user;
+    private Task task;
+
+    @BeforeEach
+    void seed() throws Exception {
+        LocalDate today = LocalDate.now();
+        for (int u = 0; u < USERS; u++) {
+            User assignee = new User("plan-user-" + u, "password", "ROLE_USER");
+            entityManager.persist(assignee);
+            for (int t = 0; t < TASKS_PER_USER; t++) {
+                entityManager.persist(new Task("Task " + t, "Description " + t, today.plusDays(t % 30),
+                        t % 7 == 0, t % 3 == 0, assignee));
+            }
+            user = assignee;
+        }
+        entityManager.flush();
+        entityManager.clear();
+        task = taskRepository.findById(taskRepository.findIds(user.getId(), Limit.of(1)).get(0)).orElseThrow();
+        // A copy of every completed task in the archive, so listings including it have rows to read
+        archivedTaskRepository.copyFromTasks(taskRepository.findArchivable(Instant.now().plusSeconds(60), 0,
+                Limit.of(USERS * TASKS_PER_USER)).stream().map(AssignedTaskId::id).toList(), Instant.now());
+
+        if (isPostgres()) {
+            try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+                statement.execute("ANALYZE tasks");
+                statement.execute("ANALYZE archived_tasks");
+                statement.execute("ANALYZE users");
+            }
+        }
+    }
+
+    @Test
+    void taskQueriesUseIndexes() throws Exception {
+        LocalDate today = LocalDate.now();
+        Map<String, Runnable> queries = new LinkedHashMap<>();
+        queries.put("findById", () -> taskRepository.findById(task.getId()));
+        queries.put("findByIdAndAssignee", () -> taskRepository.findByIdAndAssignee(task.getId(), user));
+        queries.put("findByIdIn", () -> taskRepository.findByIdIn(List.of(task.getId())));
+        queries.put("findAssigneeId", () -> taskRepository.findAssigneeId(task.getId()));
+        queries.put("findVersion", () -> taskRepository.findVersion(task.getId(), user.getId()));
+        queries.put("countTasks", () -> taskCounterRepository.countTasks(user.getId(), today));
+        queries.put("findChangedSince", () -> taskRepository.findChangedSince(user,
+                new TaskSyncKeyset(0, Long.MAX_VALUE, 0), Long.MAX_VALUE, 50));
+        queries.put("streamByAssigneeId", () -> {
+            try (Stream<Task> tasks = taskRepository.streamByAssigneeId(user.getId())) {
+                tasks.forEach(streamed -> { });
+            }
+        });
+        // Reads every task, but from the primary key in ID order, so rows stream without a sort first
+        queries.put("streamAll", () -> {
+            try (Stream<Task> tasks = taskRepository.streamAll()) {
+                tasks.forEach(streamed -> { });
+            }
+        });
+        queries.put("archived streamByAssigneeId", () -> {
+            try (Stream<ArchivedTask> tasks = archivedTaskRepository.streamByAssigneeId(user.getId())) {
+                tasks.forEach(streamed -> { });
+            }
+        });
+        queries.put("archived streamAll", () -> {
+            try (Stream<ArchivedTask> tasks = archivedTaskRepository.streamAll()) {
+                tasks.forEach(streamed -> { });
+            }
+        });
+        queries.put("findOpenIds", () -> taskRepository.findOpenIds(user.getId(), Limit.of(50)));
+        queries.put("findOverdueIds", () -> taskRepository.findOverdueIds(user.getId(), today, Limit.of(50)));
+        queries.put("findIds", () -> taskRepository.findIds(user.getId(), Limit.of(50)));
+        queries.put("countByIdIn", () -> taskRepository.countByIdIn(List.of(task.getId()), today));
+        Instant cutoff = Instant.now().minus(Duration.ofDays(90));
+        queries.put("findArchivable", () -> taskRepository.findArchivable(cutoff, task.getId(), Limit.of(50)));
+        queries.put("findArchivableIds",
+                () -> taskRepository.findArchivableIds(List.of(task.getId()), user.getId(), cutoff));
+        for (TaskSort sort : TaskSort.values()) {
+            for (TaskKeyset after : new TaskKeyset[] {null, new TaskKeyset(today, task.getId()), new TaskKeyset(null, task.getId())}) {
+                TaskPageRequest page = new TaskPageRequest(after, sort, 50);
+                String suffix = "(" + sort + ", after=" + after + ")";
+                queries.put("findPageByAssignee" + suffix,
+                        () -> taskRepository.findPageByAssignee(user, null, null, page));
+                queries.put("findPageByAssignee important" + suffix,
+                        () -> taskRepository.findPageByAssignee(user, true, null, page));
+                queries.put("findPageByAssignee daily" + suffix,
+                        () -> taskRepository.findPageByAssignee(user, null, today, page));
+                queries.put("findSummaryPageByAssignee" + suffix,
+                        () -> taskRepository.findSummaryPageByAssignee(user, null, null, page));
+                TaskPageRequest withArchived = new TaskPageRequest(after, sort, 50, true);
+                queries.put("findPageByAssignee includeArchived" + suffix,
+                        () -> taskRepository.findPageByAssignee(user, null, null, withArchived));
+                queries.put("findPageByAssignee important includeArchived" + suffix,
+                        () -> taskRepository.findPageByAssignee(user, true, null, withArchived));
+                queries.put("findPageByAssignee daily includeArchived" + suffix,
+                        () -> taskRepository.findPageByAssignee(user, null, today, withArchived));
+                queries.put("findSummaryPageByAssignee includeArchived" + suffix,
+                        () -> taskRepository.findSummaryPageByAssignee(user, null, null, withArchived));
+            }
+        }
+
+        queries.put("search", () -> taskRepository.search(user, List.of("task"), null, 50));
+        queries.put("search two words", () -> taskRepository.search(user, List.of("task", "description"), null, 50));
+        queries.put("search after", () -> taskRepository.search(user, List.of("task"),
+                new TaskSearchKeyset(0.5f, task.getId()), 50));
+
+        // Writes last, so the reads above see the seeded tasks; the test's transaction rolls them back
+        TaskRequest changes = new TaskRequest();
+        changes.setTitle("Patched");
+        changes.setIsCompleted(true);
+        queries.put("patch", () -> taskRepository.patch(task.getId(), user.getId(), null, changes, 1, Instant.now()));
+        queries.put("patch if version", () -> taskRepository.patch(task.getId(), user.getId(),
+                List.of(task.getVersion()), changes, 1, Instant.now()));
+        queries.put("reassign", () -> taskRepository.reassign(List.of(task.getId()), user, 1, Instant.now()));
+        queries.put("complete", () -> taskRepository.complete(List.of(task.getId()), 1, Instant.now()));
+        Long openId = taskRepository.findOpenIds(user.getId(), Limit.of(1)).get(0);
+        queries.put("copyFromTasks", () -> archivedTaskRepository.copyFromTasks(List.of(openId), Instant.now()));
+        queries.put("deleteByAssigneeId", () -> archivedTaskRepository.deleteByAssigneeId(user.getId()));
+        queries.put("deleteByIds", () -> taskRepository.deleteByIds(List.of(task.getId())));
+
+        List<String> failures = new ArrayList<>();
+        for (Map.Entry<String, Runnable> query : queries.entrySet()) {
+            entityManager.clear();
+            RecordingStatementInspector.STATEMENTS.clear();
+            query.getValue().run();
+            assertThat(RecordingStatementInspector.STATEMENTS).as(query.getKey()).isNotEmpty();
+
+            for (String sql : RecordingStatementInspector.STATEMENTS) {
+                String plan = explain(sql);
+                if (scansTaskTable(plan)) {
+                    failures.add(query.getKey() + " scans a task table:\n  " + sql + "\n  " + plan);
+                }
+                if (query.getKey().startsWith("search") && isPostgres()
+                        && !plan.toLowerCase(Locale.ROOT).contains(SEARCH_INDEX)) {
+                    failures.add(query.getKey() + " does not use " + SEARCH_INDEX + ":\n  " + sql + "\n  " + plan);
+                }
+            }
+        }
+        assertThat(failures).as(String.join("\n", failures)).isEmpty();
+    }
+
+    private String explain(String sql) throws Exception {
+        // H2 plans a data change delta table as a scan of the changed rows, so the change is explained on its own
+        Matcher delta = DATA_CHANGE_DELTA.matcher(sql);
+        if (delta.find()) {
+            return explain(delta.group(1));
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            if (isPostgres()) {
+                // PostgreSQL 16+ can plan a statement with unbound $n parameters
+                int[] index = {0};
+                String numbered = Pattern.compile("\\?").matcher(sql)
+                        .replaceAll(match -> "\\$" + (++index[0]));
+                try (Statement statement = connection.createStatement();
+                     ResultSet rs = statement.executeQuery("EXPLAIN (GENERIC_PLAN) " + numbered)) {
+                    return readPlan(rs);
+                }
+            }
+            try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+                int parameters = statement.getParameterMetaData().getParameterCount();
+                for (int i = 1; i <= parameters; i++) {
+                    statement.setNull(i, Types.NULL);
+                }
+                try (ResultSet rs = statement.executeQuery()) {
+                    return readPlan(rs);
+                }
+            }
+        }
+    }
+
+    private static String readPlan(ResultSet rs) throws Exception {
+        StringBuilder plan = new StringBuilder();
+        while (rs.next()) {
+            plan.append(rs.getString(1)).append('\n');
+        }
+        return plan.toString();
+    }
+
+    private boolean scansTaskTable(String plan) throws Exception {
+        String normalized = plan.toLowerCase(Locale.ROOT);
+        if (isPostgres()) {
+            return normalized.contains("seq scan on tasks") || normalized.contains("seq scan on archived_tasks");
+        }
+        return normalized.contains("public.tasks.tablescan") || normalized.contains("public.archived_tasks.tablescan");
+    }
+
+    private boolean isPostgres() throws Exception {
+        try (Connection connection = dataSource.getConnection()) {
+            return connection.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).contains("postgres");
+        }
+    }
+
+    /**
+     * Records the SQL Hibernate sends to the database
+     */
+    public static class RecordingStatementInspector implements StatementInspector {
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.absurdrambler.apcproject.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+class LoginRateLimiterTests {
+
+    @Test
+    void rejectsAttemptsOverTheUsernameLimit() {
+        LoginRateLimiter limiter = new LoginRateLimiter(3, 0, Duration.ofMinutes(1), 100);
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire("alice", "10.0.0." + i);
+        }
+
+        // Usernames are counted case- and whitespace-insensitively, from any address
+        LoginRejectedException rejected = catchThrowableOfType(LoginRejectedException.class,
+                () -> limiter.acquire(" Alice ", "10.0.0.9"));
+        assertThat(rejected.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(rejected.getRetryAfterSeconds()).isBetween(1L, 60L);
+        assertThatCode(() -> limiter.acquire("bob", "10.0.0.9")).doesNotThrowAnyException();
+    }
+
+    @Test
+    void rejectsAttemptsOverTheAddressLimit() {
+        LoginRateLimiter limiter = new LoginRateLimiter(0, 2, Duration.ofMinutes(1), 100);
+        limiter.acquire("alice", "10.0.0.1");
+        limiter.acquire("bob", "10.0.0.1");
+
+        assertThat(catchThrowableOfType(LoginRejectedException.class, () -> limiter.acquire("carol", "10.0.0.1")))
+                .isNotNull();
+        assertThatCode(() -> limiter.acquire("carol", "10.0.0.2")).doesNotThrowAnyException();
+        // An unknown address is only limited by username
+        assertThatCode(() -> limiter.acquire("carol", null)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void aLimitOfZeroDisablesLimiting() {
+        LoginRateLimiter limiter = new LoginRateLimiter(0, 0, Duration.ofMinutes(1), 100);
+
+        assertThatCode(() -> {
+            for (int i = 0; i < 1000; i++) {
+                limiter.acquire("alice", "10.0.0.1");
+            }
+        }).doesNotThrowAnyException();
+    }
+
+    @Test
+    void allowsAttemptsAgainOnceTheWindowEnds() throws InterruptedException {
+        LoginRateLimiter limiter = new LoginRateLimiter(1, 0, Duration.ofMillis(100), 100);
+        limiter.acquire("alice", null);
+        assertThat(catchThrowableOfType(LoginRejectedException.class, () -> limiter.acquire("alice", null)))
+                .isNotNull();
+
+        Thread.sleep(150);
+        assertThatCode(() -> limiter.acquire("alice", null)).doesNotThrowAnyException();
+    }
+}
@@ -0,0 +1,104 @@
+package com.absurdrambler.apcproject.security;
+
+import com.absurdrambler.apcproject.ApcprojectApplication;
+import com.absurdrambler.apcproject.entity.User;
+import com.absurdrambler.apcproject.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Form login through the throttled provider and the security configuration's handlers
+ */
+@SpringBootTest(classes = ApcprojectApplication.class, properties = {
+        "app.security.login.rate-limit.per-username=2",
+        "app.security.password.bcrypt-strength=10"
+})
+@AutoConfigureMockMvc
+class LoginTests {
+
+    private static final String PASSWORD = "correct horse";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private LoginRateLimiter rateLimiter;
+
+    @BeforeEach
+    void clearRateLimits() {
+        rateLimiter.clear();
+    }
+
+    @Test
+    void rejectsLoginsOverTheLimitWithRetryAfter() throws Exception {
+        User user = createUser(passwordEncoder.encode(PASSWORD));
+        login(user, "wrong").andExpect(status().isUnauthorized());
+        login(user, "wrong").andExpect(status().isUnauthorized());
+
+        // Even the right password is refused until the window ends
+        login(user, PASSWORD)
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, matchesPattern("[1-9][0-9]*")))
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.message").value("Too many login attempts"));
+    }
+
+    @Test
+    void rehashesUnprefixedAndCheaperHashesOnLogin() throws Exception {
+        String cheap = new BCryptPasswordEncoder(4).encode(PASSWORD);
+        User unprefixed = createUser(cheap);
+        User prefixed = createUser("{bcrypt}" + cheap);
+
+        login(unprefixed, PASSWORD).andExpect(status().isOk());
+        login(prefixed, PASSWORD).andExpect(status().isOk());
+
+        for (User user : new User[]{unprefixed, prefixed}) {
+            String stored = userService.findById(user.getId()).orElseThrow().getPassword();
+            assertThat(stored).startsWith("{bcrypt}$2a$10$");
+            assertThat(passwordEncoder.matches(PASSWORD, stored)).isTrue();
+        }
+    }
+
+    @Test
+    void leavesCurrentHashesAlone() throws Exception {
+        String current = passwordEncoder.encode(PASSWORD);
+        User user = createUser(current);
+
+        login(user, PASSWORD).andExpect(status().isOk());
+
+        assertThat(userService.findById(user.getId()).orElseThrow().getPassword()).isEqualTo(current);
+    }
+
+    private User createUser(String passwordHash) {
+        return userService.save(new User("login-" + UUID.randomUUID(), passwordHash, "ROLE_USER"));
+    }
+
+    private ResultActions login(User user, String password) throws Exception {
+        return mockMvc.perform(post("/api/auth/login")
+                .param("username", user.getUsername())
+                .param("password", password));
+    }
+}
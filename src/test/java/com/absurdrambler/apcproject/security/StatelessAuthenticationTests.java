@@ -0,0 +1,195 @@
+package com.absurdrambler.apcproject.security;
+
+import com.absurdrambler.apcproject.ApcprojectApplication;
+import com.absurdrambler.apcproject.dto.TokenResponse;
+import com.absurdrambler.apcproject.entity.User;
+import com.absurdrambler.apcproject.repository.UserRepository;
+import com.absurdrambler.apcproject.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.time.Duration;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(classes = ApcprojectApplication.class, properties = {
+        "app.security.stateless.enabled=true",
+        "app.security.token.secret=" + StatelessAuthenticationTests.SECRET
+})
+@AutoConfigureMockMvc
+class StatelessAuthenticationTests {
+
+    static final String SECRET = "AAECAwQFBgcICQoLDA0ODxAREhMUFRYXGBkaGxwdHh8=";
+    private static final String PASSWORD = "stateless123";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private LoginRateLimiter rateLimiter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private User user;
+
+    @BeforeEach
+    void createUser() {
+        rateLimiter.clear();
+        user = userService.save(new User("stateless-" + UUID.randomUUID(), passwordEncoder.encode(PASSWORD),
+                "ROLE_USER"));
+    }
+
+    @Test
+    void loginIssuesTokensAndCookiesWithoutASession() throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/auth/login")
+                        .param("username", user.getUsername())
+                        .param("password", PASSWORD))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.username").value(user.getUsername()))
+                .andExpect(jsonPath("$.tokenType").value("Bearer"))
+                .andReturn();
+
+        TokenResponse tokens = objectMapper.readValue(result.getResponse().getContentAsString(), TokenResponse.class);
+        assertThat(tokens.getAccessToken()).isNotBlank();
+        assertThat(tokens.getRefreshToken()).isNotBlank();
+        assertThat(result.getResponse().getHeaders(HttpHeaders.SET_COOKIE))
+                .anySatisfy(cookie -> assertThat(cookie).startsWith(TokenService.ACCESS_COOKIE + "=").contains("HttpOnly"))
+                .anySatisfy(cookie -> assertThat(cookie).startsWith(TokenService.REFRESH_COOKIE + "=")
+                        .contains("Path=/api/auth"));
+        assertThat(result.getRequest().getSession(false)).isNull();
+    }
+
+    @Test
+    void authenticatesTaskRequestsFromABearerTokenOrCookie() throws Exception {
+        TokenResponse tokens = login();
+
+        mockMvc.perform(get("/api/tasks/counts").header(HttpHeaders.AUTHORIZATION, "Bearer " + tokens.getAccessToken()))
+                .andExpect(status().isOk());
+        MvcResult result = mockMvc.perform(get("/api/tasks/counts")
+                        .cookie(new Cookie(TokenService.ACCESS_COOKIE, tokens.getAccessToken())))
+                .andExpect(status().isOk())
+                .andReturn();
+        assertThat(result.getRequest().getSession(false)).isNull();
+        mockMvc.perform(get("/api/tasks/counts")).andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void servesTheCurrentUserFromTheClaims() throws Exception {
+        TokenResponse tokens = login();
+
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(get("/api/auth/me").header(HttpHeaders.AUTHORIZATION, "Bearer " + tokens.getAccessToken()))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.username").value(user.getUsername()))
+                    .andExpect(jsonPath("$.role").value("ROLE_USER"));
+        }
+        DistributionSummary statements = meterRegistry.get("http.server.requests.sql").tag("uri", "/api/auth/me")
+                .summary();
+        assertThat(statements.count()).isGreaterThanOrEqualTo(3);
+        assertThat(statements.totalAmount()).isZero();
+    }
+
+    @Test
+    void rejectsTamperedExpiredAndRefreshTokens() throws Exception {
+        TokenResponse tokens = login();
+        String[] parts = tokens.getAccessToken().split("\\.");
+        String admin = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                new String(Base64.getUrlDecoder().decode(parts[1])).replace("ROLE_USER", "ROLE_ADMIN").getBytes());
+        TokenService expiring = new TokenService(SECRET, Duration.ofSeconds(-1), Duration.ofDays(7), true, objectMapper);
+        String expired = expiring.issueTokens(AuthenticatedUser.fromEntity(user), "expired").getAccessToken();
+
+        for (String token : new String[]{parts[0] + "." + admin + "." + parts[2], expired, tokens.getRefreshToken()}) {
+            mockMvc.perform(get("/api/tasks/counts").header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                    .andExpect(status().isUnauthorized());
+            mockMvc.perform(get("/api/auth/me").header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                    .andExpect(status().isUnauthorized());
+        }
+    }
+
+    @Test
+    void rotatesRefreshTokensAndRevokesAFamilyOnReuse() throws Exception {
+        TokenResponse login = login();
+
+        TokenResponse refreshed = objectMapper.readValue(refresh(login.getRefreshToken())
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(), TokenResponse.class);
+        assertThat(refreshed.getRefreshToken()).isNotEqualTo(login.getRefreshToken());
+        mockMvc.perform(get("/api/tasks/counts").header(HttpHeaders.AUTHORIZATION, "Bearer " + refreshed.getAccessToken()))
+                .andExpect(status().isOk());
+
+        // The first token again: someone holds a copy, so neither it nor its replacement works any more
+        refresh(login.getRefreshToken()).andExpect(status().isUnauthorized());
+        refresh(refreshed.getRefreshToken()).andExpect(status().isUnauthorized());
+
+        // Other logins are unaffected
+        refresh(login().getRefreshToken()).andExpect(status().isOk());
+    }
+
+    @Test
+    void logoutRevokesTheRefreshToken() throws Exception {
+        TokenResponse tokens = login();
+
+        mockMvc.perform(post("/api/auth/logout").cookie(new Cookie(TokenService.REFRESH_COOKIE, tokens.getRefreshToken())))
+                .andExpect(status().isOk());
+
+        refresh(tokens.getRefreshToken()).andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void refreshRejectsDeletedUsers() throws Exception {
+        TokenResponse tokens = login();
+
+        userRepository.deleteById(user.getId());
+
+        refresh(tokens.getRefreshToken()).andExpect(status().isUnauthorized());
+        mockMvc.perform(post("/api/auth/refresh").cookie(new Cookie(TokenService.REFRESH_COOKIE, tokens.getRefreshToken())))
+                .andExpect(status().isUnauthorized());
+    }
+
+    private TokenResponse login() throws Exception {
+        String body = mockMvc.perform(post("/api/auth/login")
+                        .param("username", user.getUsername())
+                        .param("password", PASSWORD))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(body, TokenResponse.class);
+    }
+
+    private ResultActions refresh(String refreshToken) throws Exception {
+        return mockMvc.perform(post("/api/auth/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"refreshToken\":\"" + refreshToken + "\"}"));
+    }
+}
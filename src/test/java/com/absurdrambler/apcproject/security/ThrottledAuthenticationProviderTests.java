@@ -0,0 +1,116 @@
+package com.absurdrambler.apcproject.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+class ThrottledAuthenticationProviderTests {
+
+    private final CountDownLatch checking = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger checks = new AtomicInteger();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ThrottledAuthenticationProvider provider;
+
+    @AfterEach
+    void shutdown() {
+        release.countDown();
+        if (provider != null) {
+            provider.shutdown();
+        }
+    }
+
+    @Test
+    void rejectsAttemptsWithBusyWhenThePoolIsSaturated() throws Exception {
+        provider = provider(new LoginRateLimiter(0, 0, Duration.ofMinutes(1), 100), Duration.ofSeconds(10));
+        CompletableFuture<Authentication> first = CompletableFuture.supplyAsync(() -> provider.authenticate(login("alice")));
+        assertThat(checking.await(10, TimeUnit.SECONDS)).isTrue();
+
+        // One thread, no queue: the second attempt is turned away without checking its password
+        LoginRejectedException rejected = catchThrowableOfType(LoginRejectedException.class,
+                () -> provider.authenticate(login("bob")));
+        assertThat(rejected.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(rejected.getRetryAfterSeconds()).isPositive();
+        assertThat(meterRegistry.get("auth.login.rejected").tag("reason", "busy").counter().count()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(first.get(10, TimeUnit.SECONDS).isAuthenticated()).isTrue();
+        assertThat(checks.get()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsAttemptsWithBusyWhenTheCheckTimesOut() {
+        provider = provider(new LoginRateLimiter(0, 0, Duration.ofMinutes(1), 100), Duration.ofMillis(100));
+
+        LoginRejectedException rejected = catchThrowableOfType(LoginRejectedException.class,
+                () -> provider.authenticate(login("alice")));
+        assertThat(rejected.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    void rejectsAttemptsOverTheRateLimitWithoutCheckingThem() {
+        release.countDown();
+        provider = provider(new LoginRateLimiter(1, 0, Duration.ofMinutes(1), 100), Duration.ofSeconds(10));
+        assertThat(provider.authenticate(login("alice")).isAuthenticated()).isTrue();
+
+        LoginRejectedException rejected = catchThrowableOfType(LoginRejectedException.class,
+                () -> provider.authenticate(login("alice")));
+        assertThat(rejected.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(checks.get()).isEqualTo(1);
+        assertThat(meterRegistry.get("auth.login.rejected").tag("reason", "rate-limited").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void passesOnTheCheckFailure() {
+        release.countDown();
+        provider = provider(new LoginRateLimiter(0, 0, Duration.ofMinutes(1), 100), Duration.ofSeconds(10));
+
+        assertThatThrownBy(() -> provider.authenticate(login("wrong")))
+                .isInstanceOf(BadCredentialsException.class);
+    }
+
+    private ThrottledAuthenticationProvider provider(LoginRateLimiter rateLimiter, Duration timeout) {
+        AuthenticationProvider passwordCheck = new AuthenticationProvider() {
+            @Override
+            public Authentication authenticate(Authentication authentication) {
+                checks.incrementAndGet();
+                checking.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (authentication.getName().equals("wrong")) {
+                    throw new BadCredentialsException("Bad credentials");
+                }
+                return UsernamePasswordAuthenticationToken.authenticated(authentication.getName(), null, null);
+            }
+
+            @Override
+            public boolean supports(Class<?> authentication) {
+                return true;
+            }
+        };
+        return new ThrottledAuthenticationProvider(passwordCheck, rateLimiter, 1, 0, timeout, meterRegistry);
+    }
+
+    private static Authentication login(String username) {
+        return UsernamePasswordAuthenticationToken.unauthenticated(username, "password");
+    }
+}
@@ -0,0 +1,62 @@
+package com.absurdrambler.apcproject.security;
+
+import com.absurdrambler.apcproject.dto.TokenResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenServiceTests {
+
+    private static final String SECRET = Base64.getEncoder().encodeToString(new byte[32]);
+
+    private final AuthenticatedUser user = new AuthenticatedUser(7L, "user", "secret", "ROLE_USER");
+
+    private static TokenService tokenService(String secret, Duration accessTtl) {
+        return new TokenService(secret, accessTtl, Duration.ofDays(7), true, new ObjectMapper());
+    }
+
+    @Test
+    void verifiesIssuedTokens() {
+        TokenService tokenService = tokenService(SECRET, Duration.ofMinutes(15));
+        TokenResponse tokens = tokenService.issueTokens(user, "refresh-1");
+
+        TokenClaims access = tokenService.verify(tokens.getAccessToken(), TokenService.ACCESS).orElseThrow();
+        assertThat(access.userId()).isEqualTo(7L);
+        assertThat(access.username()).isEqualTo("user");
+        assertThat(access.role()).isEqualTo("ROLE_USER");
+        assertThat(access.toPrincipal().getPassword()).isNull();
+        assertThat(access.tokenId()).isNull();
+        assertThat(tokenService.verify(tokens.getRefreshToken(), TokenService.REFRESH).orElseThrow().tokenId())
+                .isEqualTo("refresh-1");
+    }
+
+    @Test
+    void rejectsWrongTypeTamperedForeignAndExpiredTokens() {
+        TokenService tokenService = tokenService(SECRET, Duration.ofMinutes(15));
+        TokenResponse tokens = tokenService.issueTokens(user, "refresh-1");
+        String access = tokens.getAccessToken();
+
+        assertThat(tokenService.verify(tokens.getRefreshToken(), TokenService.ACCESS)).isEmpty();
+        assertThat(tokenService.verify(access, TokenService.REFRESH)).isEmpty();
+
+        String[] parts = access.split("\\.");
+        String admin = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                new String(Base64.getUrlDecoder().decode(parts[1])).replace("ROLE_USER", "ROLE_ADMIN").getBytes());
+        assertThat(tokenService.verify(parts[0] + "." + admin + "." + parts[2], TokenService.ACCESS)).isEmpty();
+        assertThat(tokenService.verify(parts[0] + "." + parts[1] + ".", TokenService.ACCESS)).isEmpty();
+        assertThat(tokenService.verify("eyJhbGciOiJub25lIn0." + parts[1] + ".", TokenService.ACCESS)).isEmpty();
+        assertThat(tokenService.verify("not a token", TokenService.ACCESS)).isEmpty();
+
+        String otherSecret = Base64.getEncoder().encodeToString(new byte[]{
+                1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16,
+                17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 32});
+        assertThat(tokenService(otherSecret, Duration.ofMinutes(15)).verify(access, TokenService.ACCESS)).isEmpty();
+
+        TokenService expiring = tokenService(SECRET, Duration.ofSeconds(-1));
+        assertThat(expiring.verify(expiring.issueTokens(user, "refresh-1").getAccessToken(), TokenService.ACCESS)).isEmpty();
+    }
+}
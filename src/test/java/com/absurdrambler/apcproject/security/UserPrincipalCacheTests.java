@@ -0,0 +1,124 @@
+package com.absurdrambler.apcproject.security;
+
+import com.absurdrambler.apcproject.ApcprojectApplication;
+import com.absurdrambler.apcproject.TestUsers;
+import com.absurdrambler.apcproject.entity.User;
+import com.absurdrambler.apcproject.metrics.SqlStatementCounter;
+import com.absurdrambler.apcproject.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Once a user's principal is cached, resolving the current user costs no database round
+ * trips, until saving the user evicts it once the save commits
+ */
+@SpringBootTest(classes = ApcprojectApplication.class)
+class UserPrincipalCacheTests {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserPrincipalCache principalCache;
+
+    @Autowired
+    private CurrentUserArgumentResolver currentUserArgumentResolver;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private User user;
+
+    @BeforeEach
+    void createUser() {
+        user = TestUsers.create(userService, "principal");
+    }
+
+    @AfterEach
+    void clearSecurityContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void resolvesTheCurrentUserWithoutQueries() {
+        assertThat(userService.findCurrentUser(user.getUsername())).isPresent();
+        assertThat(principalCache.get(user.getUsername())).isPresent();
+
+        SqlStatementCounter.start();
+        AuthenticatedUser principal = userService.findCurrentUser(user.getUsername()).orElseThrow();
+        int statements = SqlStatementCounter.stop();
+        assertThat(statements).isZero();
+        assertThat(principal.getId()).isEqualTo(user.getId());
+        assertThat(principal.getRole()).isEqualTo("ROLE_USER");
+
+        // As a session login leaves it for each request
+        SecurityContextHolder.getContext().setAuthentication(UsernamePasswordAuthenticationToken.authenticated(
+                user.getUsername(), null, principal.getAuthorities()));
+        SqlStatementCounter.start();
+        Object resolved = currentUserArgumentResolver.resolveArgument(null, null, null, null);
+        statements = SqlStatementCounter.stop();
+        assertThat(statements).isZero();
+        assertThat(resolved).isEqualTo(principal);
+    }
+
+    @Test
+    void savingAUserEvictsItsPrincipal() {
+        assertThat(userService.findCurrentUser(user.getUsername()).orElseThrow().isAdmin()).isFalse();
+
+        user.setRole("ROLE_ADMIN");
+        userService.save(user);
+        assertThat(userService.findCurrentUser(user.getUsername()).orElseThrow().isAdmin()).isTrue();
+
+        // A renamed user's principal is evicted by ID, so the old name no longer resolves
+        String oldUsername = user.getUsername();
+        user.setUsername(oldUsername + "-renamed");
+        userService.save(user);
+        assertThat(principalCache.get(oldUsername)).isEmpty();
+        assertThat(userService.findCurrentUser(oldUsername)).isEmpty();
+        assertThat(userService.findCurrentUser(user.getUsername()).orElseThrow().getId()).isEqualTo(user.getId());
+    }
+
+    @Test
+    void savingEvictsOnlyOnceTheSaveCommits() {
+        userService.findCurrentUser(user.getUsername());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            user.setRole("ROLE_ADMIN");
+            userService.save(user);
+            assertThat(principalCache.get(user.getUsername())).isPresent();
+
+            // A login on another thread meanwhile still reads, and caches, the committed row
+            principalCache.evictById(user.getId());
+            AuthenticatedUser concurrent = CompletableFuture
+                    .supplyAsync(() -> userService.findCurrentUser(user.getUsername()).orElseThrow())
+                    .join();
+            assertThat(concurrent.isAdmin()).isFalse();
+        });
+
+        assertThat(userService.findCurrentUser(user.getUsername()).orElseThrow().isAdmin()).isTrue();
+    }
+
+    @Test
+    void evictionByIdLeavesOtherPrincipalsCached() {
+        User other = TestUsers.create(userService, "principal-other");
+        userService.findCurrentUser(user.getUsername());
+        userService.findCurrentUser(other.getUsername());
+
+        // What the cluster invalidator does when another instance changes a user
+        principalCache.evictById(user.getId());
+
+        assertThat(principalCache.get(user.getUsername())).isEmpty();
+        assertThat(principalCache.get(other.getUsername())).isPresent();
+        assertThat(userService.findCurrentUser(user.getUsername()).orElseThrow().getId()).isEqualTo(user.getId());
+    }
+}